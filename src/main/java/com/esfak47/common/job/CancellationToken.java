@@ -0,0 +1,104 @@
+package com.esfak47.common.job;
+
+import com.esfak47.common.lang.Assert;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.util.Queue;
+import java.util.concurrent.CancellationException;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.Future;
+
+/**
+ * Tells a job it was cancelled. A job running a loop polls {@link #isCancellationRequested()}, which costs a volatile
+ * read, a job waiting on something else registers a callback which releases it, such as one closing a connection or
+ * cancelling a future, and gives its thread back.
+ * <pre class="code">
+ * CompletableJob.createAsync("download", id, job -&gt; {
+ *     CompletableFuture&lt;byte[]&gt; download = client.get(url);
+ *     job.getCancellationToken().cancelOnCancel(download);
+ *     return download;
+ * });
+ * </pre>
+ * A token is cancelled once and for all, the callbacks are run once, by the thread cancelling the token, or by the
+ * thread registering a callback once the token is cancelled.
+ *
+ * @author tony
+ */
+public final class CancellationToken {
+
+    private static final Logger logger = LoggerFactory.getLogger(CancellationToken.class);
+
+    private volatile boolean cancelled;
+
+    private final Queue<Runnable> callbacks = new ConcurrentLinkedQueue<>();
+
+    /**
+     * @return {@code true} if the token was not cancelled yet
+     */
+    public boolean cancel() {
+        if (cancelled) {
+            return false;
+        }
+        synchronized (this) {
+            if (cancelled) {
+                return false;
+            }
+            cancelled = true;
+        }
+        runCallbacks();
+        return true;
+    }
+
+    public boolean isCancellationRequested() {
+        return cancelled;
+    }
+
+    /**
+     * @throws CancellationException if the token is cancelled
+     */
+    public void throwIfCancellationRequested() {
+        if (cancelled) {
+            throw new CancellationException();
+        }
+    }
+
+    /**
+     * @param callback run when the token is cancelled, at once if it already is
+     */
+    public void onCancel(Runnable callback) {
+        Assert.notNull(callback, "callback should not be null");
+        callbacks.add(callback);
+        if (cancelled) {
+            runCallbacks();
+        }
+    }
+
+    /**
+     * @return whether the callback was registered and has not run
+     */
+    public boolean removeOnCancel(Runnable callback) {
+        return callbacks.remove(callback);
+    }
+
+    /**
+     * @param future cancelled, and interrupted if it is running, when the token is cancelled
+     */
+    public void cancelOnCancel(Future<?> future) {
+        Assert.notNull(future, "future should not be null");
+        onCancel(() -> future.cancel(true));
+    }
+
+    /**
+     * each callback is taken from the queue by a single thread, whichever thread calls it
+     */
+    private void runCallbacks() {
+        for (Runnable callback; (callback = callbacks.poll()) != null; ) {
+            try {
+                callback.run();
+            } catch (Throwable e) {
+                logger.warn("cancellation callback failed", e);
+            }
+        }
+    }
+}
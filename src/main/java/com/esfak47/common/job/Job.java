@@ -1,7 +1,11 @@
 package com.esfak47.common.job;
 
+import com.esfak47.common.utils.thread.ExecutionMode;
+
 import java.io.Serializable;
 import java.util.Date;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionStage;
 
 public interface Job extends Serializable, Runnable {
 
@@ -57,7 +61,32 @@ public interface Job extends Serializable, Runnable {
 
     void setFinishTime();
 
+    /**
+     * 是否异步运行, 异步任务由 {@link #runAsync()} 启动, 等待时不占用线程
+     *
+     * @return whether the job is started by {@link #runAsync()} and completes with the returned stage
+     */
     boolean isAsync();
 
+    /**
+     * 异步运行
+     *
+     * @return a stage completed when the job is done, exceptionally if it failed; the job is run in the calling thread
+     * by default
+     */
+    default CompletionStage<?> runAsync() {
+        run();
+        return CompletableFuture.completedFuture(null);
+    }
+
+    /**
+     * 运行方式, {@code null} 使用 {@link JobManager} 的默认方式
+     *
+     * @return the kind of threads the job runs on, {@code null} for the default of the manager
+     */
+    default ExecutionMode getExecutionMode() {
+        return null;
+    }
+
 
 }
@@ -0,0 +1,79 @@
+package com.esfak47.common.job;
+
+/**
+ * The state of a job when a change of it is delivered to the {@link JobListener}s. Changes are coalesced, so the event
+ * holds the latest state rather than every intermediate one.
+ *
+ * @author tony
+ */
+public final class JobEvent {
+
+    private final Job job;
+
+    private final State state;
+
+    private final int process;
+
+    private final long incarnation;
+
+    public JobEvent(Job job, State state, int process) {
+        this(job, state, process, 0);
+    }
+
+    /**
+     * @param incarnation the submission of the job the event is about, which tells apart the jobs submitted one after
+     *                    the other with the same id
+     */
+    public JobEvent(Job job, State state, int process, long incarnation) {
+        this.job = job;
+        this.state = state;
+        this.process = process;
+        this.incarnation = incarnation;
+    }
+
+    public Job getJob() {
+        return job;
+    }
+
+    public String getJobId() {
+        return job.getId();
+    }
+
+    public State getState() {
+        return state;
+    }
+
+    /**
+     * @return the progress of the job when the event was built
+     */
+    public int getProcess() {
+        return process;
+    }
+
+    /**
+     * @return the submission of the job the event is about, 0 if the manager does not number them
+     */
+    public long getIncarnation() {
+        return incarnation;
+    }
+
+    @Override
+    public String toString() {
+        return "JobEvent{" + job.getId() + ", " + state + ", " + process + "}";
+    }
+
+    public enum State {
+        QUEUED,
+        RUNNING,
+        FINISHED,
+        /**
+         * the job threw an exception
+         */
+        FAILED,
+        CANCELLED,
+        /**
+         * the job is no longer managed
+         */
+        DELETED
+    }
+}
@@ -0,0 +1,20 @@
+package com.esfak47.common.job;
+
+import java.util.List;
+
+/**
+ * Receives the changes of the jobs of a {@link JobManager}, in batches.
+ *
+ * @author tony
+ * @see JobManager#addListener(JobListener)
+ */
+@FunctionalInterface
+public interface JobListener {
+
+    /**
+     * called from the dispatching thread of the manager, never concurrently for the same manager
+     *
+     * @param events the latest state of every job which changed since the previous batch, at most one per job
+     */
+    void onEvents(List<JobEvent> events);
+}
@@ -3,6 +3,9 @@ package com.esfak47.common.job;
 import com.esfak47.common.lang.PageResult;
 import com.esfak47.common.extension.SPI;
 
+import java.util.concurrent.TimeUnit;
+import java.util.function.Supplier;
+
 @SPI
 public interface JobManager {
 
@@ -41,4 +44,52 @@ public interface JobManager {
 
     Job getJob(String id);
 
+    /**
+     * 延迟提交任务
+     *
+     * @param job   the job submitted once the delay elapsed
+     * @param delay delay
+     * @param unit  unit of the delay
+     * @return the schedule, {@code null} if a job with the same id is already managed or scheduled
+     * @throws UnsupportedOperationException if the manager does not schedule jobs
+     */
+    default JobSchedule schedule(Job job, long delay, TimeUnit unit) {
+        throw new UnsupportedOperationException(getClass().getName() + " does not schedule jobs");
+    }
+
+    /**
+     * 周期提交任务
+     *
+     * @param jobs         supplies a job, with an id of its own, each period; a {@code null} job is skipped
+     * @param initialDelay delay of the first job
+     * @param period       period between the submissions, whatever the time the jobs take
+     * @param unit         unit of the delay and the period
+     * @return the schedule
+     * @throws UnsupportedOperationException if the manager does not schedule jobs
+     */
+    default JobSchedule scheduleAtFixedRate(Supplier<? extends Job> jobs, long initialDelay, long period,
+                                            TimeUnit unit) {
+        throw new UnsupportedOperationException(getClass().getName() + " does not schedule jobs");
+    }
+
+    /**
+     * 订阅任务状态变化
+     *
+     * @param listener 监听器
+     * @throws UnsupportedOperationException if the manager does not publish changes
+     */
+    default void addListener(JobListener listener) {
+        throw new UnsupportedOperationException(getClass().getName() + " does not publish job changes");
+    }
+
+    /**
+     * 取消订阅
+     *
+     * @param listener 监听器
+     * @return whether the listener was subscribed
+     */
+    default boolean removeListener(JobListener listener) {
+        return false;
+    }
+
 }
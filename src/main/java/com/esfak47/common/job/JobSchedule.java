@@ -0,0 +1,27 @@
+package com.esfak47.common.job;
+
+import java.util.concurrent.TimeUnit;
+
+/**
+ * A job, or a series of jobs, scheduled for later by a {@link JobManager}.
+ *
+ * @author tony
+ */
+public interface JobSchedule {
+
+    /**
+     * stop submitting the jobs of the schedule; a job already submitted is cancelled through
+     * {@link JobManager#cancel(String)}
+     *
+     * @return {@code true} if the schedule was not cancelled yet, and its one-shot job was not submitted yet
+     */
+    boolean cancel();
+
+    boolean isCancelled();
+
+    /**
+     * @param unit unit of the delay
+     * @return the delay until the next submission, negative if it is late
+     */
+    long getDelay(TimeUnit unit);
+}
@@ -1,10 +1,16 @@
 package com.esfak47.common.job.impl;
 
+import com.esfak47.common.job.CancellationToken;
 import com.esfak47.common.job.Job;
 import com.esfak47.common.lang.Assert;
+import com.esfak47.common.utils.thread.ExecutionMode;
 
+import java.io.IOException;
+import java.io.ObjectInputStream;
 import java.util.Date;
+import java.util.concurrent.CompletionStage;
 import java.util.function.Consumer;
+import java.util.function.Function;
 
 /**
  * @author tony
@@ -13,14 +19,24 @@ public class CompletableJob implements Job {
     private final String id;
 
     private transient Runnable runnable;
-    private boolean finish;
-
-    private boolean cancelled;
-    private boolean exitUnexpectedly;
-    private int process = 0;
+    private transient Function<CompletableJob, ? extends CompletionStage<?>> asyncBody;
+    /**
+     * not serialized, made again by {@link #readObject(ObjectInputStream)}
+     */
+    private transient CancellationToken cancellationToken = new CancellationToken();
+    /**
+     * notified of the changes of the state, set by the manager of the job
+     */
+    private transient volatile Runnable changeListener;
+    private volatile boolean finish;
+
+    private volatile boolean cancelled;
+    private volatile boolean exitUnexpectedly;
+    private volatile int process = 0;
     private Date createTime;
-    private Date finishTime;
+    private volatile Date finishTime;
     private String name;
+    private ExecutionMode executionMode;
 
     private CompletableJob(String id) {
         this.id = id;
@@ -38,6 +54,19 @@ public class CompletableJob implements Job {
         return completableJob;
     }
 
+    /**
+     * @param body starts the job and returns a stage completed when it is done, without waiting for it
+     * @return an asynchronous job, which holds no thread while it waits
+     */
+    public static CompletableJob createAsync(String name, String id,
+                                             Function<CompletableJob, ? extends CompletionStage<?>> body) {
+        Assert.notNull(body, "body should not be null");
+        CompletableJob completableJob = new CompletableJob(id);
+        completableJob.setName(name);
+        completableJob.asyncBody = body;
+        return completableJob;
+    }
+
     public Runnable getRunnable() {
         return runnable;
     }
@@ -68,6 +97,7 @@ public class CompletableJob implements Job {
     @Override
     public void setProcess(int process) {
         this.process = process;
+        changed();
     }
 
     @Override
@@ -78,6 +108,7 @@ public class CompletableJob implements Job {
     @Override
     public void setFinish(boolean finish) {
         this.finish = finish;
+        changed();
     }
 
     @Override
@@ -88,6 +119,17 @@ public class CompletableJob implements Job {
     @Override
     public void setCancelled(boolean cancelled) {
         this.cancelled = cancelled;
+        if (cancelled) {
+            cancellationToken.cancel();
+        }
+        changed();
+    }
+
+    /**
+     * @return the token cancelled with the job, which stays cancelled if the job is marked not cancelled again
+     */
+    public CancellationToken getCancellationToken() {
+        return cancellationToken;
     }
 
     @Override
@@ -98,6 +140,7 @@ public class CompletableJob implements Job {
     @Override
     public void setExitUnexpectedly(boolean exitUnexpectedly) {
         this.exitUnexpectedly = exitUnexpectedly;
+        changed();
     }
 
     @Override
@@ -112,12 +155,33 @@ public class CompletableJob implements Job {
 
     @Override
     public boolean isAsync() {
-        return false;
+        return asyncBody != null;
+    }
+
+    @Override
+    public CompletionStage<?> runAsync() {
+        return asyncBody != null ? asyncBody.apply(this) : Job.super.runAsync();
+    }
+
+    @Override
+    public ExecutionMode getExecutionMode() {
+        return executionMode;
+    }
+
+    /**
+     * @param executionMode the kind of threads the job runs on, {@code null} for the default of the manager
+     * @return this job
+     */
+    public CompletableJob setExecutionMode(ExecutionMode executionMode) {
+        this.executionMode = executionMode;
+        return this;
     }
 
     @Override
     public void run() {
-        if (runnable != null) {
+        if (asyncBody != null) {
+            asyncBody.apply(this).toCompletableFuture().join();
+        } else if (runnable != null) {
             runnable.run();
         }
     }
@@ -127,4 +191,23 @@ public class CompletableJob implements Job {
         return finishTime;
     }
 
+    private void readObject(ObjectInputStream in) throws IOException, ClassNotFoundException {
+        in.defaultReadObject();
+        cancellationToken = new CancellationToken();
+        if (cancelled) {
+            cancellationToken.cancel();
+        }
+    }
+
+    void setChangeListener(Runnable changeListener) {
+        this.changeListener = changeListener;
+    }
+
+    private void changed() {
+        Runnable listener = changeListener;
+        if (listener != null) {
+            listener.run();
+        }
+    }
+
 }
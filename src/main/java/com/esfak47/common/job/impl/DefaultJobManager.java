@@ -0,0 +1,1111 @@
+package com.esfak47.common.job.impl;
+
+import com.esfak47.common.job.Job;
+import com.esfak47.common.job.JobEvent;
+import com.esfak47.common.job.JobListener;
+import com.esfak47.common.job.JobManager;
+import com.esfak47.common.job.JobSchedule;
+import com.esfak47.common.lang.Assert;
+import com.esfak47.common.lang.PageResult;
+import com.esfak47.common.utils.thread.ConcurrencyLimitedExecutor;
+import com.esfak47.common.utils.thread.ExecutionMode;
+import com.esfak47.common.utils.thread.HashedWheelTimer;
+import com.esfak47.common.utils.thread.NamedThreadFactory;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.EnumMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Queue;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.Executor;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.function.Function;
+import java.util.function.Supplier;
+
+/**
+ * Runs jobs on a fixed number of threads fed by a bounded queue, and keeps them, running or not, in submission order.
+ * <pre class="code">
+ * DefaultJobManager jobManager = DefaultJobManager.newBuilder().threads(4).queueCapacity(10_000).build();
+ * jobManager.submit(CompletableJob.create("export", id, job -&gt; export(job)));
+ * PageResult&lt;Job&gt; firstPage = jobManager.getJobs(1, 20);
+ * </pre>
+ * Jobs are looked up, cancelled and deleted by id through a hash map, and listed through a {@link JobIndex}, so a page
+ * costs at most O(page size &times; log n) instead of a copy and a sort of every job. A submission which finds the
+ * queue full is refused rather than blocking the caller. Cancelling a queued job takes it out of the queue of its
+ * executor, at the cost of a walk of that queue, cancelling a running one marks it cancelled
+ * and interrupts its thread, the job is expected to check either, or the
+ * {@link CompletableJob#getCancellationToken() cancellation token} of a {@link CompletableJob}. Finished and cancelled
+ * jobs stay listed until deleted, or until more than the maximum number of finished jobs are kept, the oldest going
+ * first.
+ * <p>
+ * An {@link Job#isAsync() asynchronous} job holds a thread only while {@link Job#runAsync()} starts it, and completes
+ * with the stage it returns, in the thread completing the stage. Cancelling it completes it at once, frees its slot and
+ * cancels the stage, the job releasing what it waits for from a callback of its token.
+ * <p>
+ * Changes of the jobs are published to the {@link JobListener}s in batches, by a dispatching thread started with the
+ * first listener, at most {@link Builder#maxDispatchRate(double)} times per second. A changed job is queued once until
+ * the next batch, whatever the number of changes in between, and the batch carries its state at that time: a
+ * {@link CompletableJob} calling {@link CompletableJob#setProcess(int)} in a loop costs a volatile read per call and
+ * one event per batch. Other {@link Job}s only publish the changes the manager makes, when they start, finish or are
+ * cancelled.
+ * <p>
+ * With a {@link JobJournal}, submissions are recorded before the job is queued and the published changes as they are
+ * dispatched, and the jobs recovered from the journal are restored when the manager is built: the unfinished ones are
+ * submitted again, the others are listed as they ended.
+ * <p>
+ * Jobs run in the {@link ExecutionMode} they ask for, {@link Builder#executionMode(ExecutionMode) the manager's} when
+ * they ask for none. {@link ExecutionMode#VIRTUAL} jobs run on a virtual thread each when the runtime supports them,
+ * and share the platform threads otherwise. Each mode may be given its own
+ * {@link Builder#concurrencyLimit(ExecutionMode, int) concurrency limit}, so that thousands of jobs blocked on I/O do
+ * not overload what they wait for, or so that one mode does not take all the platform threads. The queue capacity
+ * bounds the jobs waiting in all the modes together.
+ * <p>
+ * Delayed and periodic jobs wait on a {@link HashedWheelTimer}, started with the first of them, whose thread only
+ * submits them when they are due: scheduling and cancelling cost O(1) however many jobs wait, and a job is submitted at
+ * most a {@link Builder#timerTick(long, TimeUnit) tick} late. A job waiting for its delay is cancelled by its id, but
+ * is only listed once submitted.
+ * <p>
+ * The extension registered as {@code default} runs as many threads as there are processors.
+ *
+ * @author tony
+ */
+public class DefaultJobManager implements JobManager {
+
+    public static final int DEFAULT_QUEUE_CAPACITY = 65_536;
+
+    public static final int DEFAULT_MAX_FINISHED_JOBS = 100_000;
+
+    public static final double DEFAULT_MAX_DISPATCH_RATE = 10;
+
+    public static final long DEFAULT_TIMER_TICK_MILLIS = 10;
+
+    public static final int DEFAULT_TIMER_WHEEL_SIZE = 512;
+
+    private static final Logger logger = LoggerFactory.getLogger(DefaultJobManager.class);
+
+    private static final int QUEUED = 0;
+
+    private static final int RUNNING = 1;
+
+    private static final int FINISHED = 2;
+
+    private static final int CANCELLED = 3;
+
+    /**
+     * queued when the manager was shut down, never run
+     */
+    private static final int DROPPED = 4;
+
+    private final ConcurrentMap<String, Entry> jobs = new ConcurrentHashMap<>();
+
+    private final JobIndex<Entry> index = new JobIndex<>();
+
+    private final FinishedJobs finished = new FinishedJobs();
+
+    private final AtomicInteger queued = new AtomicInteger();
+
+    private final AtomicInteger running = new AtomicInteger();
+
+    private final List<JobListener> listeners = new CopyOnWriteArrayList<>();
+
+    /**
+     * the jobs changed since the last batch, once each
+     */
+    private final Queue<Entry> changes = new ConcurrentLinkedQueue<>();
+
+    private final AtomicInteger changeCount = new AtomicInteger();
+
+    private final AtomicBoolean dispatching = new AtomicBoolean();
+
+    /**
+     * the one-shot jobs waiting for their delay, by id
+     */
+    private final ConcurrentMap<String, Schedule> scheduled = new ConcurrentHashMap<>();
+
+    private final int maxFinishedJobs;
+
+    private final long dispatchIntervalNanos;
+
+    private final String threadPrefix;
+
+    private final int queueCapacity;
+
+    private final long timerTickNanos;
+
+    private final int timerWheelSize;
+
+    /**
+     * started with the first schedule, written under the lock of this
+     */
+    private volatile HashedWheelTimer timer;
+
+    /**
+     * guarded by this
+     */
+    private boolean timerStopped;
+
+    private final ExecutionMode defaultMode;
+
+    private final ThreadPoolExecutor executor;
+
+    /**
+     * {@code null} unless the runtime supports virtual threads
+     */
+    private final ExecutorService virtualExecutor;
+
+    private final Map<ExecutionMode, Executor> executors = new EnumMap<>(ExecutionMode.class);
+
+    /**
+     * the executor of the default mode, without its concurrency limit, which submits the jobs due so that the timer
+     * never waits for a supplier or the journal
+     */
+    private final Executor scheduleExecutor;
+
+    private final JobJournal journal;
+
+    private volatile ScheduledExecutorService dispatcher;
+
+    /**
+     * the only public constructor, as required by the extension loader
+     */
+    public DefaultJobManager() {
+        this(newBuilder());
+    }
+
+    private DefaultJobManager(Builder builder) {
+        this.maxFinishedJobs = builder.maxFinishedJobs;
+        this.dispatchIntervalNanos = (long) (TimeUnit.SECONDS.toNanos(1) / builder.maxDispatchRate);
+        this.threadPrefix = builder.threadPrefix;
+        this.executor = new ThreadPoolExecutor(builder.threads, builder.threads, 0, TimeUnit.MILLISECONDS,
+                new LinkedBlockingQueue<>(), new NamedThreadFactory(builder.threadPrefix, true));
+        this.queueCapacity = builder.queueCapacity;
+        this.timerTickNanos = builder.timerTickNanos;
+        this.timerWheelSize = builder.timerWheelSize;
+        this.defaultMode = builder.executionMode;
+        this.virtualExecutor = ExecutionMode.VIRTUAL.isVirtual()
+                ? ExecutionMode.VIRTUAL.newExecutor(builder.threadPrefix + "-virtual", builder.threads) : null;
+        for (ExecutionMode mode : ExecutionMode.values()) {
+            Executor modeExecutor = mode == ExecutionMode.VIRTUAL && virtualExecutor != null ? virtualExecutor
+                    : executor;
+            Integer limit = builder.concurrencyLimits.get(mode);
+            executors.put(mode, limit == null ? modeExecutor : new ConcurrencyLimitedExecutor(modeExecutor, limit));
+        }
+        this.scheduleExecutor = defaultMode == ExecutionMode.VIRTUAL && virtualExecutor != null ? virtualExecutor
+                : executor;
+        this.journal = builder.journal;
+        if (journal != null) {
+            addListener(events -> {
+                for (JobEvent event : events) {
+                    if (event.getState() != JobEvent.State.QUEUED) {
+                        journal.recordState(event.getJobId(), event.getIncarnation(), event.getState(),
+                                event.getProcess());
+                    }
+                }
+            });
+            recover(builder.recovery);
+        }
+    }
+
+    public static Builder newBuilder() {
+        return new Builder();
+    }
+
+    /**
+     * @return {@code false} if a job with the same id is already managed, or the queue is full
+     */
+    @Override
+    public boolean submit(Job job) {
+        Assert.notNull(job, "job should not be null");
+        Assert.notNull(job.getId(), "job id should not be null");
+        if (!reserveQueueSlot()) {
+            return false;
+        }
+        // a refused submission does not take the lock of the journal, nor an incarnation, unless it races for its id
+        if (jobs.containsKey(job.getId())) {
+            queued.decrementAndGet();
+            return false;
+        }
+        Entry entry = new Entry(job, journal == null ? 0 : journal.newIncarnation());
+        if (jobs.putIfAbsent(job.getId(), entry) != null) {
+            queued.decrementAndGet();
+            return false;
+        }
+        index.add(entry);
+        if (journal != null) {
+            journal.recordSubmit(job, entry.incarnation);
+        }
+        ExecutionMode mode = job.getExecutionMode();
+        entry.executor = executors.get(mode == null ? defaultMode : mode);
+        try {
+            entry.executor.execute(entry);
+        } catch (RejectedExecutionException e) {
+            queued.decrementAndGet();
+            jobs.remove(job.getId(), entry);
+            index.remove(entry);
+            if (journal != null) {
+                journal.recordState(job.getId(), entry.incarnation, JobEvent.State.DELETED, job.getProcess());
+            }
+            return false;
+        }
+        // cancelled before it reached the queue of its executor
+        if (entry.state.get() == CANCELLED) {
+            entry.dequeue();
+        }
+        if (job instanceof CompletableJob) {
+            ((CompletableJob) job).setChangeListener(entry::changed);
+        }
+        entry.changed();
+        return true;
+    }
+
+    /**
+     * @return {@code true} if the job was queued or running, and is now cancelled
+     */
+    @Override
+    public boolean cancel(String jobId) {
+        Schedule schedule = scheduled.get(jobId);
+        if (schedule != null && schedule.cancel()) {
+            return true;
+        }
+        Entry entry = jobs.get(jobId);
+        return entry != null && entry.cancel();
+    }
+
+    /**
+     * cancel the job if it is queued or running, and forget it
+     *
+     * @return {@code true} if the job was managed
+     */
+    @Override
+    public boolean delete(String jobId) {
+        Schedule schedule = scheduled.get(jobId);
+        if (schedule != null && schedule.cancel()) {
+            return true;
+        }
+        Entry entry = jobs.remove(jobId);
+        if (entry == null) {
+            return false;
+        }
+        finished.remove(entry);
+        entry.cancel();
+        index.remove(entry);
+        entry.forget();
+        return true;
+    }
+
+    /**
+     * @return the schedule, {@code null} if a job with the same id is already managed or scheduled, or the manager is
+     * shut down
+     */
+    @Override
+    public JobSchedule schedule(Job job, long delay, TimeUnit unit) {
+        Assert.notNull(job, "job should not be null");
+        Assert.notNull(job.getId(), "job id should not be null");
+        Assert.notNull(unit, "unit should not be null");
+        Schedule schedule = new Schedule(job, null, System.nanoTime() + unit.toNanos(delay), 0);
+        if (jobs.containsKey(job.getId()) || scheduled.putIfAbsent(job.getId(), schedule) != null) {
+            return null;
+        }
+        if (!schedule.arm()) {
+            scheduled.remove(job.getId(), schedule);
+            return null;
+        }
+        return schedule;
+    }
+
+    /**
+     * A job which is refused when it is due, because the queue is full or its id is already managed, is skipped. The
+     * supplier is called on a thread of the executor of the default mode, after the jobs already waiting for it, and
+     * the deadlines do not wait for it.
+     *
+     * @return the schedule, {@code null} if the manager is shut down
+     */
+    @Override
+    public JobSchedule scheduleAtFixedRate(Supplier<? extends Job> jobs, long initialDelay, long period,
+                                           TimeUnit unit) {
+        Assert.notNull(jobs, "jobs should not be null");
+        Assert.notNull(unit, "unit should not be null");
+        Assert.isTrue(period > 0, "period should be positive");
+        Schedule schedule = new Schedule(null, jobs, System.nanoTime() + unit.toNanos(initialDelay),
+                unit.toNanos(period));
+        return schedule.arm() ? schedule : null;
+    }
+
+    /**
+     * @return the number of delayed or periodic submissions waiting for their time
+     */
+    public int getScheduledCount() {
+        HashedWheelTimer current = timer;
+        return current == null ? 0 : current.getPendingCount();
+    }
+
+    /**
+     * @return the timer, started on the first call, {@code null} if the manager was shut down before, stopped if it
+     * was shut down since
+     */
+    private HashedWheelTimer timer() {
+        HashedWheelTimer current = timer;
+        if (current != null) {
+            return current;
+        }
+        synchronized (this) {
+            if (timer == null && !timerStopped) {
+                timer = new HashedWheelTimer(threadPrefix + "-timer", timerTickNanos, TimeUnit.NANOSECONDS,
+                        timerWheelSize);
+            }
+            return timer;
+        }
+    }
+
+    /**
+     * @param page     page number, from 1
+     * @param pageSize number of jobs of a page
+     * @return the jobs of the page, in submission order
+     */
+    @Override
+    public PageResult<Job> getJobs(int page, int pageSize) {
+        Assert.isTrue(page > 0, "page should be positive");
+        Assert.isTrue(pageSize > 0, "pageSize should be positive");
+        long from = (long) (page - 1) * pageSize;
+        int total = index.size();
+        if (from >= total) {
+            return PageResult.createPageResult(page, pageSize, total, Collections.emptyList());
+        }
+        List<Job> items = index.range((int) from, pageSize, entry -> entry.job);
+        return PageResult.createPageResult(page, pageSize, total, items);
+    }
+
+    @Override
+    public Job getJob(String id) {
+        Entry entry = jobs.get(id);
+        return entry == null ? null : entry.job;
+    }
+
+    /**
+     * @return the number of jobs waiting for a thread
+     */
+    public int getQueueDepth() {
+        return queued.get();
+    }
+
+    /**
+     * @return the mode of the jobs which do not ask for one
+     */
+    public ExecutionMode getExecutionMode() {
+        return defaultMode;
+    }
+
+    /**
+     * @return the number of jobs being run
+     */
+    public int getRunningCount() {
+        return running.get();
+    }
+
+    /**
+     * @return the number of jobs listed by {@link #getJobs(int, int)}
+     */
+    public int getJobCount() {
+        return index.size();
+    }
+
+    /**
+     * submit the unfinished jobs of the journal again, and list the others as they ended
+     */
+    private void recover(Function<JobJournal.JobRecord, ? extends Job> recovery) {
+        for (JobJournal.JobRecord record : journal.getRecoveredJobs()) {
+            Job job = recovery.apply(record);
+            if (job == null) {
+                journal.recordState(record.getId(), record.getIncarnation(), JobEvent.State.DELETED,
+                        record.getProcess());
+                continue;
+            }
+            job.setProcess(record.getProcess());
+            if (record.isUnfinished()) {
+                if (!submit(job)) {
+                    logger.warn("recovered job {} could not be submitted", record.getId());
+                }
+                continue;
+            }
+            Entry entry = new Entry(job, record.getIncarnation());
+            if (record.getState() == JobEvent.State.CANCELLED) {
+                job.setCancelled(true);
+                entry.state.set(CANCELLED);
+            } else {
+                job.setFinish(record.getState() == JobEvent.State.FINISHED);
+                job.setExitUnexpectedly(record.getState() == JobEvent.State.FAILED);
+                entry.state.set(FINISHED);
+            }
+            if (jobs.putIfAbsent(job.getId(), entry) == null) {
+                index.add(entry);
+                retire(entry);
+            }
+        }
+    }
+
+    /**
+     * Start publishing changes to the listener, from the next batch on.
+     */
+    @Override
+    public void addListener(JobListener listener) {
+        Assert.notNull(listener, "listener should not be null");
+        listeners.add(listener);
+        if (dispatching.compareAndSet(false, true)) {
+            ScheduledExecutorService scheduler = Executors.newSingleThreadScheduledExecutor(
+                    new NamedThreadFactory(threadPrefix + "-dispatcher", true));
+            scheduler.scheduleWithFixedDelay(this::dispatch, dispatchIntervalNanos, dispatchIntervalNanos,
+                    TimeUnit.NANOSECONDS);
+            dispatcher = scheduler;
+        }
+    }
+
+    @Override
+    public boolean removeListener(JobListener listener) {
+        return listeners.remove(listener);
+    }
+
+    /**
+     * stop accepting jobs, and interrupt the running ones; the queued ones are dropped, the changes not published yet
+     * are published from the calling thread
+     */
+    public void shutdown() {
+        HashedWheelTimer stoppedTimer;
+        synchronized (this) {
+            timerStopped = true;
+            stoppedTimer = timer;
+        }
+        if (stoppedTimer != null) {
+            stoppedTimer.stop();
+        }
+        scheduled.clear();
+        executor.shutdownNow();
+        if (virtualExecutor != null) {
+            virtualExecutor.shutdownNow();
+        }
+        // the dropped jobs stay queued for the journal, but no longer count in the queue depth
+        for (Entry entry : jobs.values()) {
+            if (entry.state.compareAndSet(QUEUED, DROPPED)) {
+                queued.decrementAndGet();
+            }
+        }
+        ScheduledExecutorService scheduler = dispatcher;
+        if (scheduler != null) {
+            scheduler.shutdown();
+            try {
+                if (scheduler.awaitTermination(1, TimeUnit.SECONDS)) {
+                    dispatch();
+                }
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+            }
+        }
+    }
+
+    /**
+     * the queues of the executors are unbounded, the capacity is enforced here for all of them, so that a cancelled job
+     * frees its slot at once, whether or not it could be taken out of the queue of its executor
+     */
+    private boolean reserveQueueSlot() {
+        for (; ; ) {
+            int current = queued.get();
+            if (current >= queueCapacity) {
+                return false;
+            }
+            if (queued.compareAndSet(current, current + 1)) {
+                return true;
+            }
+        }
+    }
+
+    /**
+     * publish the jobs changed since the last batch; only the changes queued when it starts are taken, so that jobs
+     * changing all the time do not keep it going
+     */
+    private void dispatch() {
+        int count = changeCount.get();
+        if (count == 0) {
+            return;
+        }
+        List<JobEvent> events = new ArrayList<>(count);
+        for (int i = 0; i < count; i++) {
+            Entry entry = changes.poll();
+            if (entry == null) {
+                break;
+            }
+            changeCount.decrementAndGet();
+            // a change from now on queues the job again, for the next batch
+            entry.changed.set(false);
+            events.add(entry.event());
+        }
+        List<JobEvent> batch = Collections.unmodifiableList(events);
+        for (JobListener listener : listeners) {
+            try {
+                listener.onEvents(batch);
+            } catch (RuntimeException e) {
+                logger.warn("job listener {} failed", listener, e);
+            }
+        }
+    }
+
+    /**
+     * keep the finished job listed, and forget the oldest finished one if there are too many
+     */
+    private void retire(Entry entry) {
+        Entry oldest = finished.add(entry);
+        if (oldest != null && jobs.remove(oldest.job.getId(), oldest)) {
+            index.remove(oldest);
+            oldest.forget();
+        }
+    }
+
+    /**
+     * The finished jobs still listed, oldest first, linked through their entries so that a deleted job leaves at once
+     * instead of being kept, and counted, until it is the oldest.
+     */
+    private final class FinishedJobs {
+
+        /**
+         * the following fields, and the links of the entries, are guarded by this
+         */
+        private Entry oldest;
+
+        private Entry newest;
+
+        private int count;
+
+        /**
+         * @return the oldest entry, which no longer fits, or {@code null}
+         */
+        synchronized Entry add(Entry entry) {
+            if (entry.unlisted || entry.retired) {
+                return null;
+            }
+            entry.retired = true;
+            entry.older = newest;
+            entry.newer = null;
+            if (newest == null) {
+                oldest = entry;
+            } else {
+                newest.newer = entry;
+            }
+            newest = entry;
+            if (++count <= maxFinishedJobs) {
+                return null;
+            }
+            Entry evicted = oldest;
+            unlink(evicted);
+            return evicted;
+        }
+
+        /**
+         * stop listing the entry, at once if it is finished, when it finishes otherwise
+         */
+        synchronized void remove(Entry entry) {
+            if (entry.retired) {
+                unlink(entry);
+            }
+            entry.unlisted = true;
+        }
+
+        private void unlink(Entry entry) {
+            if (entry.older == null) {
+                oldest = entry.newer;
+            } else {
+                entry.older.newer = entry.newer;
+            }
+            if (entry.newer == null) {
+                newest = entry.older;
+            } else {
+                entry.newer.older = entry.older;
+            }
+            entry.older = null;
+            entry.newer = null;
+            entry.retired = false;
+            entry.unlisted = true;
+            count--;
+        }
+    }
+
+    /**
+     * A one-shot job, or a supplier of periodic jobs, waiting on the timer. The deadlines are computed from the first
+     * one, so that periodic jobs do not drift with the delays of the timer, and the jobs due are submitted from the
+     * executor, so that the timer does not wait for a supplier, nor for the journal.
+     */
+    private final class Schedule implements JobSchedule {
+
+        private final Job job;
+
+        private final Supplier<? extends Job> jobs;
+
+        private final long periodNanos;
+
+        private final AtomicBoolean cancelled = new AtomicBoolean();
+
+        /**
+         * in {@link System#nanoTime()}, only changed by the thread of the timer once armed
+         */
+        private volatile long deadline;
+
+        private volatile HashedWheelTimer.Timeout timeout;
+
+        Schedule(Job job, Supplier<? extends Job> jobs, long deadline, long periodNanos) {
+            this.job = job;
+            this.jobs = jobs;
+            this.deadline = deadline;
+            this.periodNanos = periodNanos;
+        }
+
+        /**
+         * @return {@code false} if the manager is shut down
+         */
+        boolean arm() {
+            HashedWheelTimer current = timer();
+            if (current == null) {
+                return false;
+            }
+            HashedWheelTimer.Timeout next;
+            try {
+                next = current.newTimeout(this::fire, deadline - System.nanoTime(), TimeUnit.NANOSECONDS);
+            } catch (RejectedExecutionException e) {
+                return false;
+            }
+            timeout = next;
+            // cancelled before the timeout was published
+            if (cancelled.get()) {
+                next.cancel();
+            }
+            return true;
+        }
+
+        /**
+         * run on the thread of the timer, which only re-arms a periodic schedule and hands the submission off
+         */
+        private void fire() {
+            if (cancelled.get()) {
+                return;
+            }
+            if (job == null) {
+                deadline += periodNanos;
+                arm();
+            }
+            try {
+                scheduleExecutor.execute(this::submitDue);
+            } catch (RejectedExecutionException e) {
+                // shut down meanwhile
+            }
+        }
+
+        private void submitDue() {
+            if (cancelled.get()) {
+                return;
+            }
+            if (job != null) {
+                if (scheduled.remove(job.getId(), this) && !submit(job)) {
+                    logger.warn("scheduled job {} was refused", job.getId());
+                }
+                return;
+            }
+            try {
+                Job next = jobs.get();
+                if (next != null && !submit(next)) {
+                    logger.warn("periodic job {} was refused", next.getId());
+                }
+            } catch (Throwable e) {
+                logger.warn("failed to submit a periodic job", e);
+            }
+        }
+
+        @Override
+        public boolean cancel() {
+            if (!cancelled.compareAndSet(false, true)) {
+                return false;
+            }
+            HashedWheelTimer.Timeout current = timeout;
+            if (current != null) {
+                current.cancel();
+            }
+            return job == null || scheduled.remove(job.getId(), this);
+        }
+
+        @Override
+        public boolean isCancelled() {
+            return cancelled.get();
+        }
+
+        @Override
+        public long getDelay(TimeUnit unit) {
+            return unit.convert(deadline - System.nanoTime(), TimeUnit.NANOSECONDS);
+        }
+    }
+
+    /**
+     * A managed job and the state of its run.
+     */
+    private final class Entry extends JobIndex.Node implements Runnable {
+
+        final Job job;
+
+        /**
+         * the submission of the job as numbered by the journal, 0 without a journal
+         */
+        final long incarnation;
+
+        final AtomicInteger state = new AtomicInteger(QUEUED);
+
+        /**
+         * whether the entry is queued for the next batch of events
+         */
+        final AtomicBoolean changed = new AtomicBoolean();
+
+        private volatile boolean deleted;
+
+        /**
+         * the executor the job was handed to
+         */
+        private volatile Executor executor;
+
+        /**
+         * whether the entry is in the finished jobs, or left them, and its links there, guarded by the finished jobs
+         */
+        private boolean retired;
+
+        private boolean unlisted;
+
+        private Entry older;
+
+        private Entry newer;
+
+        /**
+         * the thread running the job, or starting it if it is asynchronous, guarded by this
+         */
+        private Thread runner;
+
+        /**
+         * the completion of an asynchronous job once started, guarded by this
+         */
+        private CompletableFuture<?> completion;
+
+        Entry(Job job, long incarnation) {
+            this.job = job;
+            this.incarnation = incarnation;
+        }
+
+        @Override
+        public void run() {
+            if (!state.compareAndSet(QUEUED, RUNNING)) {
+                return;
+            }
+            queued.decrementAndGet();
+            running.incrementAndGet();
+            synchronized (this) {
+                runner = Thread.currentThread();
+            }
+            changed();
+            if (job.isAsync()) {
+                start();
+                return;
+            }
+            try {
+                job.run();
+                job.setFinish(true);
+            } catch (Throwable e) {
+                job.setExitUnexpectedly(true);
+                logger.warn("job {} exited unexpectedly", job.getId(), e);
+            } finally {
+                synchronized (this) {
+                    runner = null;
+                    state.compareAndSet(RUNNING, FINISHED);
+                }
+                // a cancellation which came too late must not interrupt the next job of the thread
+                Thread.interrupted();
+                job.setFinishTime();
+                running.decrementAndGet();
+                changed();
+                retire(this);
+            }
+        }
+
+        /**
+         * start an asynchronous job, and give the thread back; the job completes in the thread completing its stage,
+         * or in the thread cancelling it
+         */
+        private void start() {
+            CompletableFuture<?> future;
+            try {
+                future = job.runAsync().toCompletableFuture();
+            } catch (Throwable e) {
+                future = new CompletableFuture<>();
+                future.completeExceptionally(e);
+            }
+            boolean cancelled;
+            synchronized (this) {
+                runner = null;
+                completion = future;
+                cancelled = state.get() == CANCELLED;
+            }
+            Thread.interrupted();
+            if (cancelled) {
+                future.cancel(true);
+            }
+            future.whenComplete((result, failure) -> complete(failure));
+        }
+
+        private void complete(Throwable failure) {
+            if (state.get() == RUNNING) {
+                if (failure == null) {
+                    job.setFinish(true);
+                } else {
+                    job.setExitUnexpectedly(true);
+                    logger.warn("job {} exited unexpectedly", job.getId(), failure);
+                }
+            }
+            synchronized (this) {
+                completion = null;
+                state.compareAndSet(RUNNING, FINISHED);
+            }
+            job.setFinishTime();
+            running.decrementAndGet();
+            changed();
+            retire(this);
+        }
+
+        void changed() {
+            if (!listeners.isEmpty() && !changed.get() && changed.compareAndSet(false, true)) {
+                changeCount.incrementAndGet();
+                changes.add(this);
+            }
+        }
+
+        /**
+         * take a cancelled job out of the queue of its executor, rather than keep it until a thread skips it; a virtual
+         * thread per job has no queue
+         */
+        void dequeue() {
+            Executor current = executor;
+            if (current instanceof ThreadPoolExecutor) {
+                ((ThreadPoolExecutor) current).remove(this);
+            } else if (current instanceof ConcurrencyLimitedExecutor) {
+                ((ConcurrencyLimitedExecutor) current).remove(this);
+            }
+        }
+
+        /**
+         * publish the deletion, and stop listening to the job
+         */
+        void forget() {
+            deleted = true;
+            if (job instanceof CompletableJob) {
+                ((CompletableJob) job).setChangeListener(null);
+            }
+            changed();
+        }
+
+        JobEvent event() {
+            JobEvent.State eventState;
+            if (deleted) {
+                eventState = JobEvent.State.DELETED;
+            } else {
+                switch (state.get()) {
+                    case QUEUED:
+                    case DROPPED:
+                        eventState = JobEvent.State.QUEUED;
+                        break;
+                    case RUNNING:
+                        eventState = JobEvent.State.RUNNING;
+                        break;
+                    case CANCELLED:
+                        eventState = JobEvent.State.CANCELLED;
+                        break;
+                    default:
+                        eventState = job.isExitUnexpectedly() ? JobEvent.State.FAILED : JobEvent.State.FINISHED;
+                }
+            }
+            return new JobEvent(job, eventState, job.getProcess(), incarnation);
+        }
+
+        boolean cancel() {
+            if (state.compareAndSet(QUEUED, CANCELLED)) {
+                queued.decrementAndGet();
+                dequeue();
+                job.setCancelled(true);
+                job.setFinishTime();
+                changed();
+                retire(this);
+                return true;
+            }
+            Thread thread;
+            CompletableFuture<?> future;
+            synchronized (this) {
+                if (!state.compareAndSet(RUNNING, CANCELLED)) {
+                    return false;
+                }
+                thread = runner;
+                future = completion;
+            }
+            // the callbacks of the token are user code, which must not hold up the runner, nor wait for it, under the lock
+            job.setCancelled(true);
+            changed();
+            if (thread != null) {
+                synchronized (this) {
+                    // the runner may have moved on to its next job meanwhile
+                    if (runner == thread) {
+                        thread.interrupt();
+                    }
+                }
+            }
+            // an asynchronous job is done at once, whatever its body does with the cancellation
+            if (future != null) {
+                future.cancel(true);
+            }
+            return true;
+        }
+    }
+
+    public static final class Builder {
+        private int threads = Runtime.getRuntime().availableProcessors();
+        private int queueCapacity = DEFAULT_QUEUE_CAPACITY;
+        private int maxFinishedJobs = DEFAULT_MAX_FINISHED_JOBS;
+        private String threadPrefix = "job-manager";
+        private double maxDispatchRate = DEFAULT_MAX_DISPATCH_RATE;
+        private JobJournal journal;
+        private Function<JobJournal.JobRecord, ? extends Job> recovery;
+        private ExecutionMode executionMode = ExecutionMode.PLATFORM;
+        private final Map<ExecutionMode, Integer> concurrencyLimits = new EnumMap<>(ExecutionMode.class);
+        private long timerTickNanos = TimeUnit.MILLISECONDS.toNanos(DEFAULT_TIMER_TICK_MILLIS);
+        private int timerWheelSize = DEFAULT_TIMER_WHEEL_SIZE;
+
+        private Builder() {
+        }
+
+        /**
+         * @param threads number of jobs run at the same time, the number of processors by default
+         * @return this builder
+         */
+        public Builder threads(int threads) {
+            Assert.isTrue(threads > 0, "threads should be positive");
+            this.threads = threads;
+            return this;
+        }
+
+        /**
+         * @param queueCapacity number of jobs waiting for a thread above which submissions are refused
+         * @return this builder
+         */
+        public Builder queueCapacity(int queueCapacity) {
+            Assert.isTrue(queueCapacity > 0, "queueCapacity should be positive");
+            this.queueCapacity = queueCapacity;
+            return this;
+        }
+
+        /**
+         * @param maxFinishedJobs number of finished or cancelled jobs kept listed
+         * @return this builder
+         */
+        public Builder maxFinishedJobs(int maxFinishedJobs) {
+            Assert.isTrue(maxFinishedJobs >= 0, "maxFinishedJobs should not be negative");
+            this.maxFinishedJobs = maxFinishedJobs;
+            return this;
+        }
+
+        /**
+         * @param threadPrefix prefix of the names of the threads
+         * @return this builder
+         */
+        public Builder threadPrefix(String threadPrefix) {
+            Assert.notNull(threadPrefix, "threadPrefix should not be null");
+            this.threadPrefix = threadPrefix;
+            return this;
+        }
+
+        /**
+         * @param maxDispatchRate number of batches of events published per second at most, 10 by default
+         * @return this builder
+         */
+        public Builder maxDispatchRate(double maxDispatchRate) {
+            Assert.isTrue(maxDispatchRate > 0, "maxDispatchRate should be positive");
+            this.maxDispatchRate = maxDispatchRate;
+            return this;
+        }
+
+        /**
+         * @param journal  journal recording the jobs, which stays open when the manager is shut down
+         * @param recovery recreates the jobs recovered from the journal, their runnable is not recorded; a job
+         *                 mapped to {@code null} is deleted from the journal
+         * @return this builder
+         */
+        public Builder journal(JobJournal journal, Function<JobJournal.JobRecord, ? extends Job> recovery) {
+            Assert.notNull(journal, "journal should not be null");
+            Assert.notNull(recovery, "recovery should not be null");
+            this.journal = journal;
+            this.recovery = recovery;
+            return this;
+        }
+
+        /**
+         * @param executionMode mode of the jobs which do not ask for one, {@link ExecutionMode#PLATFORM} by default
+         * @return this builder
+         */
+        public Builder executionMode(ExecutionMode executionMode) {
+            Assert.notNull(executionMode, "executionMode should not be null");
+            this.executionMode = executionMode;
+            return this;
+        }
+
+        /**
+         * @param mode  the mode whose jobs are limited
+         * @param limit number of jobs of the mode run at the same time, unlimited by default, but for the number of
+         *              threads when the jobs run on platform threads
+         * @return this builder
+         */
+        public Builder concurrencyLimit(ExecutionMode mode, int limit) {
+            Assert.notNull(mode, "mode should not be null");
+            Assert.isTrue(limit > 0, "limit should be positive");
+            concurrencyLimits.put(mode, limit);
+            return this;
+        }
+
+        /**
+         * @param tick duration of a tick of the timer of the scheduled jobs, the precision of their delays, 10
+         *             milliseconds by default
+         * @param unit unit of the duration
+         * @return this builder
+         */
+        public Builder timerTick(long tick, TimeUnit unit) {
+            Assert.notNull(unit, "unit should not be null");
+            Assert.isTrue(tick > 0, "tick should be positive");
+            this.timerTickNanos = unit.toNanos(tick);
+            return this;
+        }
+
+        /**
+         * @param timerWheelSize number of ticks of a turn of the timer, rounded up to a power of two, 512 by default;
+         *                       delays longer than a turn cost a count down per turn
+         * @return this builder
+         */
+        public Builder timerWheelSize(int timerWheelSize) {
+            Assert.isTrue(timerWheelSize > 0, "timerWheelSize should be positive");
+            this.timerWheelSize = timerWheelSize;
+            return this;
+        }
+
+        public DefaultJobManager build() {
+            return new DefaultJobManager(this);
+        }
+    }
+}
@@ -0,0 +1,180 @@
+package com.esfak47.common.job.impl;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.locks.StampedLock;
+import java.util.function.Function;
+
+/**
+ * Elements in insertion order, in an array where removed elements leave an empty slot, with a Fenwick tree counting the
+ * occupied slots: the n-th element is found in O(log n), and adding or removing an element costs O(log n) with no
+ * search, since every element knows its slot. A page is read slot after slot, and the next element is looked up in the
+ * tree when the next slot is empty, so it costs O(log n + page size) without holes, and O(page size &times; log n)
+ * however many holes the removals left. The array is compacted once it is full and at least half empty, and doubled
+ * otherwise.
+ * <p>
+ * Readers share the read lock of the {@link StampedLock}, writers take the write lock for the few array writes they
+ * need.
+ *
+ * @author tony
+ */
+final class JobIndex<E extends JobIndex.Node> extends StampedLock {
+
+    private static final int INITIAL_CAPACITY = 1024;
+
+    private Node[] slots = new Node[INITIAL_CAPACITY];
+
+    /**
+     * Fenwick tree of the occupied slots, 1-based
+     */
+    private int[] tree = new int[INITIAL_CAPACITY + 1];
+
+    /**
+     * the slot following the last element
+     */
+    private int tail;
+
+    private int size;
+
+    void add(E element) {
+        long stamp = writeLock();
+        try {
+            if (tail == slots.length) {
+                rebuild(tail - size >= tail / 2 ? slots.length : slots.length * 2);
+            }
+            int slot = tail++;
+            slots[slot] = element;
+            element.slot = slot;
+            increment(slot, 1);
+            size++;
+        } finally {
+            unlockWrite(stamp);
+        }
+    }
+
+    /**
+     * @return whether the element was in the index
+     */
+    boolean remove(E element) {
+        long stamp = writeLock();
+        try {
+            int slot = element.slot;
+            if (slot < 0 || slots[slot] != element) {
+                return false;
+            }
+            slots[slot] = null;
+            element.slot = -1;
+            increment(slot, -1);
+            size--;
+            return true;
+        } finally {
+            unlockWrite(stamp);
+        }
+    }
+
+    int size() {
+        long stamp = tryOptimisticRead();
+        int current = size;
+        if (!validate(stamp)) {
+            stamp = readLock();
+            try {
+                current = size;
+            } finally {
+                unlockRead(stamp);
+            }
+        }
+        return current;
+    }
+
+    /**
+     * @param from   index of the first element, in insertion order
+     * @param count  maximum number of elements
+     * @param mapper applied to the elements while the index is locked
+     * @return the mapped elements
+     */
+    @SuppressWarnings("unchecked")
+    <T> List<T> range(int from, int count, Function<? super E, ? extends T> mapper) {
+        long stamp = readLock();
+        try {
+            if (from < 0 || from >= size || count <= 0) {
+                return Collections.emptyList();
+            }
+            int remaining = Math.min(count, size - from);
+            List<T> elements = new ArrayList<>(remaining);
+            for (int slot = find(from), i = from; ; ) {
+                elements.add(mapper.apply((E) slots[slot]));
+                if (--remaining == 0) {
+                    break;
+                }
+                i++;
+                slot++;
+                // a run of holes is jumped over rather than walked
+                if (slots[slot] == null) {
+                    slot = find(i);
+                }
+            }
+            return elements;
+        } finally {
+            unlockRead(stamp);
+        }
+    }
+
+    /**
+     * @return the slot of the element at the index, in insertion order, by descending the Fenwick tree
+     */
+    private int find(int index) {
+        int slot = 0;
+        int remaining = index + 1;
+        for (int step = Integer.highestOneBit(slots.length); step > 0; step >>= 1) {
+            int next = slot + step;
+            if (next < tree.length && tree[next] < remaining) {
+                slot = next;
+                remaining -= tree[next];
+            }
+        }
+        return slot;
+    }
+
+    private void increment(int slot, int delta) {
+        for (int i = slot + 1; i < tree.length; i += i & -i) {
+            tree[i] += delta;
+        }
+    }
+
+    /**
+     * move the elements to the head of an array of the capacity, and rebuild the tree in O(capacity)
+     */
+    private void rebuild(int capacity) {
+        Node[] compacted = new Node[capacity];
+        int[] counts = new int[capacity + 1];
+        int slot = 0;
+        for (int i = 0; i < tail; i++) {
+            Node element = slots[i];
+            if (element != null) {
+                compacted[slot] = element;
+                element.slot = slot;
+                counts[++slot] = 1;
+            }
+        }
+        for (int i = 1; i <= capacity; i++) {
+            int parent = i + (i & -i);
+            if (parent <= capacity) {
+                counts[parent] += counts[i];
+            }
+        }
+        slots = compacted;
+        tree = counts;
+        tail = slot;
+    }
+
+    /**
+     * An element of the index, which keeps its slot so that it is removed without a search.
+     */
+    static class Node {
+        /**
+         * guarded by the write lock of the index, -1 when the element is not in the index
+         */
+        int slot = -1;
+    }
+}
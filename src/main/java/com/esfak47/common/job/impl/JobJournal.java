@@ -0,0 +1,735 @@
+package com.esfak47.common.job.impl;
+
+import com.esfak47.common.job.Job;
+import com.esfak47.common.job.JobEvent;
+import com.esfak47.common.lang.Assert;
+import com.esfak47.common.utils.io.FileUtils;
+import com.esfak47.common.utils.thread.NamedThreadFactory;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.io.Closeable;
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.ByteBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.DirectoryStream;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.locks.LockSupport;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
+import java.util.zip.CRC32;
+
+/**
+ * An append-only log of the submissions and the state changes of jobs, in memory-mapped segment files of a directory,
+ * from which a {@link DefaultJobManager} rebuilds its jobs after a restart.
+ * <pre class="code">
+ * JobJournal journal = JobJournal.newBuilder("/data/jobs").open();
+ * DefaultJobManager jobManager = DefaultJobManager.newBuilder()
+ *     .journal(journal, record -&gt; CompletableJob.create(record.getName(), record.getId(), job -&gt; export(job)))
+ *     .build();
+ * </pre>
+ * A record is a length, a CRC32 and the payload, written into the mapped segment under a lock, so an append costs a
+ * memory copy and no system call. The segments are forced to disk by a flushing thread every flush interval, one force
+ * covering all the records appended since the previous one; with {@link Builder#syncSubmit(boolean)}, recording a
+ * submission waits for the force which covers it. When a segment is full the next one is created, and once there are
+ * {@link Builder#maxSegments(int)} segments the journal is compacted: the next segment starts with the current state of
+ * the live jobs and the older segments are deleted.
+ * <p>
+ * Opening the journal reads the segments once, in order, stopping at the first torn or corrupted record, and compacts
+ * them into a new segment. The state changes are recorded after they are published, so a job which finished just
+ * before a crash may be recovered as running and run again.
+ * <p>
+ * Every submission gets a new incarnation number, which its state changes carry: a change published late for a job
+ * deleted since, and submitted again with the same id, is ignored rather than applied to the new submission. The
+ * directory is forced once a segment is created, and before the segments it replaces are deleted.
+ * <p>
+ * The full segments are unmapped once forced, see {@link FileUtils#unmapQuietly(MappedByteBuffer)}.
+ *
+ * @author tony
+ */
+public final class JobJournal implements Closeable {
+
+    public static final int DEFAULT_SEGMENT_SIZE = 64 << 20;
+
+    public static final int DEFAULT_MAX_SEGMENTS = 4;
+
+    public static final long DEFAULT_FLUSH_INTERVAL_MILLIS = 2;
+
+    private static final Logger logger = LoggerFactory.getLogger(JobJournal.class);
+
+    private static final Pattern SEGMENT_NAME = Pattern.compile("journal-(\\d{20})\\.log");
+
+    /**
+     * length and CRC32 of the payload
+     */
+    private static final int HEADER_SIZE = 8;
+
+    private static final byte SUBMIT = 1;
+
+    private static final byte STATE = 2;
+
+    private static final JobEvent.State[] STATES = JobEvent.State.values();
+
+    private static final NamedThreadFactory FLUSHER_THREADS = new NamedThreadFactory("job-journal-flusher", true);
+
+    private final Path directory;
+
+    private final int segmentSize;
+
+    private final int maxSegments;
+
+    private final long flushIntervalNanos;
+
+    private final boolean syncSubmit;
+
+    /**
+     * the jobs not deleted, in submission order, guarded by this
+     */
+    private final Map<String, JobRecord> live = new LinkedHashMap<>();
+
+    private final List<JobRecord> recovered;
+
+    /**
+     * the segment files, oldest first, guarded by this
+     */
+    private final List<Path> segments = new ArrayList<>();
+
+    /**
+     * the full segments, forced and released by the next flush, guarded by this
+     */
+    private final List<MappedByteBuffer> retired = new ArrayList<>();
+
+    private final CRC32 crc = new CRC32();
+
+    private final Object flushMonitor = new Object();
+
+    private final Object flushLock = new Object();
+
+    private final Thread flusher;
+
+    private long segmentNumber;
+
+    /**
+     * the incarnation of the next submission, guarded by this
+     */
+    private long nextIncarnation = 1;
+
+    private MappedByteBuffer buffer;
+
+    /**
+     * number of records appended, guarded by this
+     */
+    private long appended;
+
+    /**
+     * number of records on disk
+     */
+    private volatile long flushed;
+
+    private volatile boolean closed;
+
+    private JobJournal(Builder builder) throws IOException {
+        this.directory = Paths.get(builder.directory);
+        this.segmentSize = builder.segmentSize;
+        this.maxSegments = builder.maxSegments;
+        this.flushIntervalNanos = TimeUnit.MILLISECONDS.toNanos(builder.flushIntervalMillis);
+        this.syncSubmit = builder.syncSubmit;
+        Files.createDirectories(directory);
+        synchronized (this) {
+            replay();
+            this.recovered = Collections.unmodifiableList(copyOfLive());
+            startSegment(0, true);
+        }
+        this.flusher = FLUSHER_THREADS.newThread(this::flushLoop);
+        flusher.start();
+    }
+
+    /**
+     * @param directory directory of the segment files, created if needed
+     * @return a builder of a journal in the directory
+     */
+    public static Builder newBuilder(String directory) {
+        Assert.notNull(directory, "directory should not be null");
+        return new Builder(directory);
+    }
+
+    private static byte[] encode(String value) {
+        if (value == null) {
+            return null;
+        }
+        byte[] bytes = value.getBytes(StandardCharsets.UTF_8);
+        Assert.isTrue(bytes.length < 0xffff, "job ids and names should be shorter than 65535 bytes");
+        return bytes;
+    }
+
+    private static int size(byte[] value) {
+        return 2 + (value == null ? 0 : value.length);
+    }
+
+    private static void put(ByteBuffer target, byte[] value) {
+        if (value == null) {
+            target.putShort((short) 0xffff);
+        } else {
+            target.putShort((short) value.length);
+            target.put(value);
+        }
+    }
+
+    private static String getString(ByteBuffer source) {
+        int length = source.getShort() & 0xffff;
+        if (length == 0xffff) {
+            return null;
+        }
+        byte[] bytes = new byte[length];
+        source.get(bytes);
+        return new String(bytes, StandardCharsets.UTF_8);
+    }
+
+    /**
+     * @return the jobs which were not deleted when the journal was opened, in submission order
+     */
+    public List<JobRecord> getRecoveredJobs() {
+        return recovered;
+    }
+
+    /**
+     * @return the incarnation of a new submission, greater than all the recorded ones
+     */
+    public synchronized long newIncarnation() {
+        return nextIncarnation++;
+    }
+
+    /**
+     * record the submission of the job as a new incarnation
+     *
+     * @return the incarnation of the submission
+     * @see #recordSubmit(Job, long)
+     */
+    public long recordSubmit(Job job) {
+        long incarnation = newIncarnation();
+        recordSubmit(job, incarnation);
+        return incarnation;
+    }
+
+    /**
+     * record the submission of the job, which replaces any job recorded with the same id, and wait for it to be on
+     * disk if submissions are synced
+     *
+     * @param incarnation taken from {@link #newIncarnation()}
+     */
+    public void recordSubmit(Job job, long incarnation) {
+        long sequence;
+        synchronized (this) {
+            byte[] id = encode(job.getId());
+            byte[] name = encode(job.getName());
+            long createTime = job.getCreateTime() == null ? 0 : job.getCreateTime().getTime();
+            writeSubmit(id, incarnation, name, createTime);
+            JobRecord record = new JobRecord(job.getId(), incarnation, job.getName(), createTime);
+            live.put(record.id, record);
+            sequence = appended;
+        }
+        if (syncSubmit) {
+            awaitFlushed(sequence);
+        }
+    }
+
+    /**
+     * record a change of the state of the job, {@link JobEvent.State#DELETED} forgets it; the change is ignored if the
+     * job is not recorded, or was submitted again since
+     *
+     * @param incarnation the incarnation of the submission which changed
+     */
+    public void recordState(String jobId, long incarnation, JobEvent.State state, int process) {
+        synchronized (this) {
+            JobRecord record = live.get(jobId);
+            if (record == null || record.incarnation != incarnation) {
+                return;
+            }
+            writeState(encode(jobId), incarnation, state, process);
+            apply(record, state, process);
+        }
+    }
+
+    /**
+     * force the records appended so far to disk
+     */
+    public void flush() {
+        // a single flush at a time, so that a buffer is never released while another flush forces it
+        synchronized (flushLock) {
+            long target;
+            List<MappedByteBuffer> buffers;
+            synchronized (this) {
+                checkOpen();
+                target = appended;
+                if (target <= flushed && retired.isEmpty()) {
+                    return;
+                }
+                buffers = new ArrayList<>(retired);
+                retired.clear();
+                buffers.add(buffer);
+            }
+            // forced outside of the lock of the journal, which appends go on taking
+            for (MappedByteBuffer mapped : buffers) {
+                mapped.force();
+            }
+            synchronized (flushMonitor) {
+                if (target > flushed) {
+                    flushed = target;
+                }
+                flushMonitor.notifyAll();
+            }
+            for (int i = 0; i < buffers.size() - 1; i++) {
+                FileUtils.unmapQuietly(buffers.get(i));
+            }
+        }
+    }
+
+    /**
+     * force the records to disk and release the segments; the journal can not be written any more
+     */
+    @Override
+    public void close() {
+        if (closed) {
+            return;
+        }
+        flush();
+        closed = true;
+        LockSupport.unpark(flusher);
+        try {
+            flusher.join();
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+        synchronized (flushLock) {
+            synchronized (this) {
+                buffer.force();
+                for (MappedByteBuffer mapped : retired) {
+                    mapped.force();
+                    FileUtils.unmapQuietly(mapped);
+                }
+                retired.clear();
+                FileUtils.unmapQuietly(buffer);
+            }
+        }
+        synchronized (flushMonitor) {
+            flushMonitor.notifyAll();
+        }
+    }
+
+    public Path getDirectory() {
+        return directory;
+    }
+
+    /**
+     * @return the number of segment files
+     */
+    public synchronized int getSegmentCount() {
+        return segments.size();
+    }
+
+    private void checkOpen() {
+        if (closed) {
+            throw new IllegalStateException("journal " + directory + " is closed");
+        }
+    }
+
+    private void flushLoop() {
+        while (!closed) {
+            LockSupport.parkNanos(this, flushIntervalNanos);
+            if (closed) {
+                return;
+            }
+            try {
+                flush();
+            } catch (IllegalStateException e) {
+                return;
+            } catch (RuntimeException e) {
+                logger.warn("failed to flush the job journal {}", directory, e);
+            }
+        }
+    }
+
+    private void awaitFlushed(long sequence) {
+        if (flushed >= sequence) {
+            return;
+        }
+        LockSupport.unpark(flusher);
+        synchronized (flushMonitor) {
+            while (flushed < sequence && !closed) {
+                try {
+                    flushMonitor.wait();
+                } catch (InterruptedException e) {
+                    Thread.currentThread().interrupt();
+                    return;
+                }
+            }
+        }
+    }
+
+    private void writeSubmit(byte[] id, long incarnation, byte[] name, long createTime) {
+        int payload = 1 + size(id) + 8 + size(name) + 8;
+        ByteBuffer target = reserve(payload);
+        target.put(SUBMIT);
+        put(target, id);
+        target.putLong(incarnation);
+        put(target, name);
+        target.putLong(createTime);
+        commit(payload);
+    }
+
+    private void writeState(byte[] id, long incarnation, JobEvent.State state, int process) {
+        int payload = 1 + size(id) + 8 + 1 + 4;
+        ByteBuffer target = reserve(payload);
+        target.put(STATE);
+        put(target, id);
+        target.putLong(incarnation);
+        target.put((byte) state.ordinal());
+        target.putInt(process);
+        commit(payload);
+    }
+
+    /**
+     * @return the buffer positioned at the payload of a record of the size, in a new segment if the current one is full
+     */
+    private ByteBuffer reserve(int payload) {
+        checkOpen();
+        if (buffer.remaining() < HEADER_SIZE + payload) {
+            try {
+                startSegment(payload, segments.size() >= maxSegments);
+            } catch (IOException e) {
+                throw new UncheckedIOException("failed to start a segment of the job journal " + directory, e);
+            }
+        }
+        buffer.position(buffer.position() + HEADER_SIZE);
+        return buffer;
+    }
+
+    /**
+     * write the header of the record whose payload was just written, the length last so that a torn record reads as
+     * the end of the segment
+     */
+    private void commit(int payload) {
+        int end = buffer.position();
+        int start = end - payload - HEADER_SIZE;
+        ByteBuffer written = buffer.duplicate();
+        written.limit(end).position(start + HEADER_SIZE);
+        crc.reset();
+        crc.update(written);
+        buffer.putInt(start + 4, (int) crc.getValue());
+        buffer.putInt(start, payload);
+        appended++;
+    }
+
+    private void apply(JobRecord record, JobEvent.State state, int process) {
+        if (state == JobEvent.State.DELETED) {
+            live.remove(record.id);
+        } else {
+            record.state = state;
+            record.process = process;
+        }
+    }
+
+    private List<JobRecord> copyOfLive() {
+        List<JobRecord> copy = new ArrayList<>(live.size());
+        for (JobRecord record : live.values()) {
+            copy.add(new JobRecord(record));
+        }
+        return copy;
+    }
+
+    /**
+     * Move on to a new segment, large enough for a record of the payload. When compacting, the new segment starts
+     * with the live jobs and is forced before the older segments are deleted.
+     */
+    private void startSegment(int payload, boolean compact) throws IOException {
+        List<byte[][]> snapshot = new ArrayList<>();
+        long snapshotSize = 0;
+        if (compact) {
+            for (JobRecord record : live.values()) {
+                byte[][] encoded = {encode(record.id), encode(record.name)};
+                snapshot.add(encoded);
+                snapshotSize += 2 * HEADER_SIZE + 1 + size(encoded[0]) + 8 + size(encoded[1]) + 8
+                        + 1 + size(encoded[0]) + 8 + 1 + 4;
+            }
+        }
+        long capacity = Math.max(segmentSize, snapshotSize + HEADER_SIZE + payload + segmentSize / 2);
+        Assert.isTrue(capacity <= Integer.MAX_VALUE, "the live jobs do not fit in a segment");
+
+        Path path = directory.resolve(String.format("journal-%020d.log", ++segmentNumber));
+        MappedByteBuffer next;
+        try (FileChannel channel = FileChannel.open(path, StandardOpenOption.CREATE_NEW, StandardOpenOption.SPARSE,
+                StandardOpenOption.READ, StandardOpenOption.WRITE)) {
+            // mapping past the end grows the file, with zeros which read as the end of the segment
+            next = channel.map(FileChannel.MapMode.READ_WRITE, 0, capacity);
+        }
+        // the entry of the new segment has to be on disk before the older segments are deleted
+        forceDirectory();
+        if (buffer != null) {
+            retired.add(buffer);
+        }
+        buffer = next;
+        segments.add(path);
+        if (!compact) {
+            return;
+        }
+        int i = 0;
+        for (JobRecord record : live.values()) {
+            byte[][] encoded = snapshot.get(i++);
+            writeSubmit(encoded[0], record.incarnation, encoded[1], record.createTime);
+            writeState(encoded[0], record.incarnation, record.state, record.process);
+        }
+        buffer.force();
+        while (segments.size() > 1) {
+            Files.deleteIfExists(segments.remove(0));
+        }
+        forceDirectory();
+    }
+
+    /**
+     * @throws IOException if the directory could not be forced, before the older segments are deleted they are then
+     *                     kept
+     */
+    private void forceDirectory() throws IOException {
+        FileChannel channel;
+        try {
+            channel = FileChannel.open(directory, StandardOpenOption.READ);
+        } catch (IOException e) {
+            // the platform does not open directories, such as Windows
+            return;
+        }
+        try {
+            channel.force(true);
+        } finally {
+            channel.close();
+        }
+    }
+
+    /**
+     * read the segments in order, to rebuild the live jobs
+     */
+    private void replay() throws IOException {
+        List<Path> found = new ArrayList<>();
+        try (DirectoryStream<Path> stream = Files.newDirectoryStream(directory)) {
+            for (Path path : stream) {
+                if (SEGMENT_NAME.matcher(path.getFileName().toString()).matches()) {
+                    found.add(path);
+                }
+            }
+        }
+        Collections.sort(found);
+        for (Path path : found) {
+            Matcher matcher = SEGMENT_NAME.matcher(path.getFileName().toString());
+            if (matcher.matches()) {
+                segmentNumber = Math.max(segmentNumber, Long.parseLong(matcher.group(1)));
+            }
+        }
+        for (Path path : found) {
+            segments.add(path);
+            if (!replay(path)) {
+                logger.warn("the job journal {} is corrupted, the records following it are ignored", path);
+                break;
+            }
+        }
+        // the ignored segments are deleted with the others by the compaction
+        for (Path path : found) {
+            if (!segments.contains(path)) {
+                segments.add(path);
+            }
+        }
+    }
+
+    /**
+     * @return {@code false} if the segment ends with a corrupted record
+     */
+    private boolean replay(Path path) throws IOException {
+        MappedByteBuffer mapped;
+        try (FileChannel channel = FileChannel.open(path, StandardOpenOption.READ)) {
+            mapped = channel.map(FileChannel.MapMode.READ_ONLY, 0, channel.size());
+        }
+        try {
+            while (mapped.remaining() >= HEADER_SIZE) {
+                int start = mapped.position();
+                int payload = mapped.getInt();
+                int checksum = mapped.getInt();
+                if (payload == 0) {
+                    return true;
+                }
+                if (payload < 0 || payload > mapped.remaining()) {
+                    return false;
+                }
+                ByteBuffer record = mapped.duplicate();
+                record.limit(start + HEADER_SIZE + payload);
+                crc.reset();
+                crc.update(record.duplicate());
+                if ((int) crc.getValue() != checksum) {
+                    return false;
+                }
+                replay(record);
+                mapped.position(start + HEADER_SIZE + payload);
+            }
+            return true;
+        } catch (RuntimeException e) {
+            return false;
+        } finally {
+            FileUtils.unmapQuietly(mapped);
+        }
+    }
+
+    private void replay(ByteBuffer record) {
+        byte type = record.get();
+        String id = getString(record);
+        long incarnation = record.getLong();
+        nextIncarnation = Math.max(nextIncarnation, incarnation + 1);
+        if (type == SUBMIT) {
+            String name = getString(record);
+            live.put(id, new JobRecord(id, incarnation, name, record.getLong()));
+        } else if (type == STATE) {
+            JobRecord existing = live.get(id);
+            if (existing != null && existing.incarnation == incarnation) {
+                apply(existing, STATES[record.get()], record.getInt());
+            }
+        } else {
+            throw new IllegalStateException("unknown record type " + type);
+        }
+    }
+
+    /**
+     * The last recorded state of a job.
+     */
+    public static final class JobRecord {
+        private final String id;
+        private final long incarnation;
+        private final String name;
+        private final long createTime;
+        private JobEvent.State state = JobEvent.State.QUEUED;
+        private int process;
+
+        JobRecord(String id, long incarnation, String name, long createTime) {
+            this.id = id;
+            this.incarnation = incarnation;
+            this.name = name;
+            this.createTime = createTime;
+        }
+
+        JobRecord(JobRecord record) {
+            this(record.id, record.incarnation, record.name, record.createTime);
+            this.state = record.state;
+            this.process = record.process;
+        }
+
+        public String getId() {
+            return id;
+        }
+
+        /**
+         * @return the incarnation of the recorded submission of the job
+         */
+        public long getIncarnation() {
+            return incarnation;
+        }
+
+        public String getName() {
+            return name;
+        }
+
+        /**
+         * @return the creation time of the job, in milliseconds since the epoch
+         */
+        public long getCreateTime() {
+            return createTime;
+        }
+
+        public JobEvent.State getState() {
+            return state;
+        }
+
+        public int getProcess() {
+            return process;
+        }
+
+        /**
+         * @return whether the job was queued or running, and has to be run again
+         */
+        public boolean isUnfinished() {
+            return state == JobEvent.State.QUEUED || state == JobEvent.State.RUNNING;
+        }
+
+        @Override
+        public String toString() {
+            return "JobRecord{" + id + ", " + state + ", " + process + "}";
+        }
+    }
+
+    public static final class Builder {
+        private final String directory;
+        private int segmentSize = DEFAULT_SEGMENT_SIZE;
+        private int maxSegments = DEFAULT_MAX_SEGMENTS;
+        private long flushIntervalMillis = DEFAULT_FLUSH_INTERVAL_MILLIS;
+        private boolean syncSubmit;
+
+        private Builder(String directory) {
+            this.directory = directory;
+        }
+
+        /**
+         * @param segmentSize size of a segment file in bytes, 64 MB by default
+         * @return this builder
+         */
+        public Builder segmentSize(int segmentSize) {
+            Assert.isTrue(segmentSize >= 4096, "segmentSize should be at least 4096");
+            this.segmentSize = segmentSize;
+            return this;
+        }
+
+        /**
+         * @param maxSegments number of segment files which triggers a compaction
+         * @return this builder
+         */
+        public Builder maxSegments(int maxSegments) {
+            Assert.isTrue(maxSegments >= 2, "maxSegments should be at least 2");
+            this.maxSegments = maxSegments;
+            return this;
+        }
+
+        /**
+         * @param flushIntervalMillis time between two forces to disk, 2 milliseconds by default
+         * @return this builder
+         */
+        public Builder flushIntervalMillis(long flushIntervalMillis) {
+            Assert.isTrue(flushIntervalMillis > 0, "flushIntervalMillis should be positive");
+            this.flushIntervalMillis = flushIntervalMillis;
+            return this;
+        }
+
+        /**
+         * @param syncSubmit whether recording a submission waits until it is on disk, {@code false} by default
+         * @return this builder
+         */
+        public Builder syncSubmit(boolean syncSubmit) {
+            this.syncSubmit = syncSubmit;
+            return this;
+        }
+
+        /**
+         * read the journal, and open it for writing
+         *
+         * @return the journal
+         * @throws IOException if the directory can not be read or written
+         */
+        public JobJournal open() throws IOException {
+            return new JobJournal(this);
+        }
+    }
+}
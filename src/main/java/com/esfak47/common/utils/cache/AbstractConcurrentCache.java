@@ -0,0 +1,607 @@
+package com.esfak47.common.utils.cache;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.locks.ReentrantLock;
+import java.util.function.Consumer;
+import java.util.function.Predicate;
+
+/**
+ * Skeleton of the bounded concurrent caches in this package.
+ * <p>
+ * Entries live in a {@link ConcurrentHashMap} so reads never take a lock. The eviction policy keeps its own
+ * bookkeeping (access order, frequencies) which is only touched under the eviction lock: reads are recorded into a
+ * lossy {@link StripedReadBuffer} and replayed in batches, either by the next write or by the reader who fills a buffer
+ * stripe and wins the {@code tryLock}. Writes update the map first and then take the eviction lock to hand the entry
+ * to the policy and evict while the cache is over its maximum: a number of entries by default, or a total weight when
+ * a {@link Weigher} is configured.
+ * <p>
+ * When the cache expires entries after write or access, the deadlines are kept in a {@link TimerWheel} which is
+ * advanced by the same maintenance. A read never returns an expired entry, even if it has not been cleaned up yet.
+ * <p>
+ * Whoever removes an entry from the map owns its value: {@code put} and {@code remove} hand it back to their caller,
+ * evictions, expirations and {@code clear} hand it to the {@link RemovalListener}.
+ *
+ * @author tony
+ */
+abstract class AbstractConcurrentCache<K, V> implements Cache<K, V> {
+
+    private static final Logger logger = LoggerFactory.getLogger(AbstractConcurrentCache.class);
+
+    final ConcurrentMap<K, Node<K, V>> data;
+
+    final ReentrantLock evictionLock = new ReentrantLock();
+
+    private final StripedReadBuffer<Node<K, V>> readBuffer = new StripedReadBuffer<>();
+
+    private final long expireAfterWriteNanos;
+
+    private final long expireAfterAccessNanos;
+
+    private final boolean expiresAfterWrite;
+
+    private final boolean expiresAfterAccess;
+
+    private final Ticker ticker;
+
+    private final long origin;
+
+    /**
+     * guarded by evictionLock, null if entries never expire
+     */
+    private final TimerWheel<K, V> timerWheel;
+
+    private final Weigher<K, V> weigher;
+
+    private final boolean weighted;
+
+    /**
+     * null if nobody listens
+     */
+    private final RemovalListener<K, V> removalListener;
+
+    private final StatsCounter statsCounter;
+
+    private volatile long maximum;
+
+    /**
+     * written under evictionLock
+     */
+    private volatile long weightedSize;
+
+    @SuppressWarnings("unchecked")
+    AbstractConcurrentCache(CacheBuilder<? super K, ? super V> builder) {
+        this.maximum = builder.maximum();
+        this.weighted = builder.isWeighted();
+        this.weigher = (Weigher<K, V>) builder.getWeigher();
+        this.removalListener = (RemovalListener<K, V>) builder.removalListener;
+        this.statsCounter = builder.recordStats ? new ConcurrentStatsCounter() : StatsCounter.disabled();
+        this.data = new ConcurrentHashMap<>(weighted ? 16 : (int) Math.min(maximum, 1 << 16));
+        this.expiresAfterWrite = builder.expiresAfterWrite();
+        this.expiresAfterAccess = builder.expiresAfterAccess();
+        this.expireAfterWriteNanos = builder.expireAfterWriteNanos;
+        this.expireAfterAccessNanos = builder.expireAfterAccessNanos;
+        this.ticker = builder.ticker;
+        this.origin = ticker.read();
+        this.timerWheel = expiresAfterWrite || expiresAfterAccess ? new TimerWheel<>(this) : null;
+    }
+
+    private static long saturatedAdd(long a, long b) {
+        long sum = a + b;
+        return ((a ^ sum) & (b ^ sum)) < 0 ? Long.MAX_VALUE : sum;
+    }
+
+    @Override
+    public V get(Object key) {
+        Node<K, V> node = data.get(key);
+        if (node == null) {
+            statsCounter.recordMisses(1);
+            return null;
+        }
+        if (expires()) {
+            long now = now();
+            if (hasExpired(node, now)) {
+                statsCounter.recordMisses(1);
+                scheduleCleanUp();
+                return null;
+            }
+            if (expiresAfterAccess) {
+                node.accessTime = now;
+            }
+        }
+        statsCounter.recordHits(1);
+        afterRead(node);
+        return node.value;
+    }
+
+    /**
+     * a read which is neither recorded in the statistics nor in the access order
+     *
+     * @param key key
+     * @return the value or {@code null}
+     */
+    final V getQuietly(Object key) {
+        Node<K, V> node = data.get(key);
+        return node == null || (expires() && hasExpired(node, now())) ? null : node.value;
+    }
+
+    @Override
+    public boolean containsKey(Object key) {
+        Node<K, V> node = data.get(key);
+        return node != null && !(expires() && hasExpired(node, now()));
+    }
+
+    @Override
+    public V put(K key, V value) {
+        if (key == null || value == null) {
+            throw new NullPointerException();
+        }
+        Node<K, V> node = newNode(key, value);
+        Node<K, V> prior = data.put(key, node);
+        if (prior != null) {
+            prior.retire();
+        }
+        afterWrite(node, prior);
+        if (prior == null) {
+            return null;
+        }
+        if (expires() && hasExpired(prior, now())) {
+            notifyRemoval(prior, RemovalCause.EXPIRED);
+            return null;
+        }
+        return prior.value;
+    }
+
+    @Override
+    public V putIfAbsent(K key, V value) {
+        if (key == null || value == null) {
+            throw new NullPointerException();
+        }
+        Node<K, V> node = newNode(key, value);
+        for (; ; ) {
+            Node<K, V> prior = data.putIfAbsent(key, node);
+            if (prior == null) {
+                afterWrite(node, null);
+                return null;
+            }
+            if (!(expires() && hasExpired(prior, now()))) {
+                afterRead(prior);
+                return prior.value;
+            }
+            if (data.replace(key, prior, node)) {
+                prior.retire();
+                afterWrite(node, prior);
+                notifyRemoval(prior, RemovalCause.EXPIRED);
+                return null;
+            }
+        }
+    }
+
+    @Override
+    public V remove(Object key) {
+        Node<K, V> node = data.remove(key);
+        if (node == null) {
+            return null;
+        }
+        node.retire();
+        evictionLock.lock();
+        try {
+            unlinkNode(node);
+        } finally {
+            evictionLock.unlock();
+        }
+        if (expires() && hasExpired(node, now())) {
+            notifyRemoval(node, RemovalCause.EXPIRED);
+            return null;
+        }
+        return node.value;
+    }
+
+    /**
+     * Returns the number of entries in the map, which may include expired entries not cleaned up yet.
+     *
+     * @return the number of entries
+     */
+    @Override
+    public int size() {
+        return data.size();
+    }
+
+    @Override
+    public boolean isEmpty() {
+        return data.isEmpty();
+    }
+
+    @Override
+    public void clear() {
+        evictionLock.lock();
+        try {
+            drainBuffers();
+            for (Node<K, V> node : data.values()) {
+                if (data.remove(node.key, node)) {
+                    node.retire();
+                    unlinkNode(node);
+                    notifyRemoval(node, RemovalCause.EXPLICIT);
+                }
+            }
+        } finally {
+            evictionLock.unlock();
+        }
+    }
+
+    /**
+     * Performs the pending maintenance: replays buffered reads and removes expired entries.
+     */
+    @Override
+    public void cleanUp() {
+        evictionLock.lock();
+        try {
+            maintenance();
+        } finally {
+            evictionLock.unlock();
+        }
+    }
+
+    @Override
+    public CacheStats stats() {
+        return statsCounter.snapshot().withWeightedSize(weightedSize);
+    }
+
+    final StatsCounter statsCounter() {
+        return statsCounter;
+    }
+
+    public int getMaxCapacity() {
+        return (int) Math.min(maximum, Integer.MAX_VALUE);
+    }
+
+    /**
+     * change the capacity, the cache is shrunk immediately if it is larger than the new capacity.
+     *
+     * @param maxCapacity max capacity
+     */
+    public void setMaxCapacity(int maxCapacity) {
+        setMaximum(maxCapacity);
+    }
+
+    public long getMaximumWeight() {
+        return maximum;
+    }
+
+    /**
+     * change the maximum weight, the cache is shrunk immediately if it is heavier than the new maximum.
+     *
+     * @param maximumWeight maximum weight
+     */
+    public void setMaximumWeight(long maximumWeight) {
+        setMaximum(maximumWeight);
+    }
+
+    /**
+     * Returns the total weight of the entries, which is the number of entries when the cache has no {@link Weigher}.
+     * The entries being added or removed concurrently may not be counted yet.
+     *
+     * @return weighted size
+     */
+    public long weightedSize() {
+        return weightedSize;
+    }
+
+    final long maximum() {
+        return maximum;
+    }
+
+    final boolean isWeighted() {
+        return weighted;
+    }
+
+    private void setMaximum(long maximum) {
+        if (maximum < 0) {
+            throw new IllegalArgumentException("maximum should not be negative");
+        }
+        this.maximum = maximum;
+        evictionLock.lock();
+        try {
+            maintenance();
+            evict(maximum);
+        } finally {
+            evictionLock.unlock();
+        }
+    }
+
+    /**
+     * the entry was read, called under the eviction lock and possibly after the entry has been removed
+     *
+     * @param node node
+     */
+    abstract void onAccess(Node<K, V> node);
+
+    /**
+     * a live entry was added, called under the eviction lock
+     *
+     * @param node node
+     */
+    abstract void onAdd(Node<K, V> node);
+
+    /**
+     * the entry was removed or replaced and must leave the policy, called under the eviction lock
+     *
+     * @param node node
+     * @return {@code true} if the policy held the entry
+     */
+    abstract boolean onRemove(Node<K, V> node);
+
+    /**
+     * evict entries while {@link #weightedSize()} is over the given maximum, called under the eviction lock
+     *
+     * @param maximum usually {@link #maximum()}, lower to make room ahead of an insertion
+     */
+    abstract void evict(long maximum);
+
+    /**
+     * visit the entries from the most to the least valuable to keep, called under the eviction lock
+     *
+     * @param action action
+     */
+    abstract void forEachHottest(Consumer<Node<K, V>> action);
+
+    /**
+     * visit the entries from the least to the most valuable to keep while the action returns {@code true}, called under
+     * the eviction lock; the action may evict the entry it is given
+     *
+     * @param action action
+     */
+    abstract void forEachColdest(Predicate<Node<K, V>> action);
+
+    /**
+     * @return the live entries, from the most to the least valuable to keep according to the policy
+     */
+    final List<Node<K, V>> hottestNodes() {
+        evictionLock.lock();
+        try {
+            maintenance();
+            long now = expires() ? now() : 0L;
+            List<Node<K, V>> nodes = new ArrayList<>(data.size());
+            forEachHottest(node -> {
+                if (node.isAlive() && !(expires() && hasExpired(node, now))) {
+                    nodes.add(node);
+                }
+            });
+            return nodes;
+        } finally {
+            evictionLock.unlock();
+        }
+    }
+
+    /**
+     * @return {@code true} if one more entry would make the cache evict
+     */
+    final boolean isFull() {
+        return weightedSize >= maximum;
+    }
+
+    /**
+     * evict the least valuable entries whose value matches, until they weigh at least {@code weight} in total, for the
+     * callers which need room of a kind the policy does not know about before they insert
+     *
+     * @param matching the values which may be evicted
+     * @param weight   weight to free, {@link Long#MAX_VALUE} to evict all the matching entries
+     * @return the number of entries evicted
+     */
+    final int evictMatching(Predicate<? super V> matching, long weight) {
+        evictionLock.lock();
+        try {
+            maintenance();
+            int[] count = new int[1];
+            long[] evicted = new long[1];
+            forEachColdest(node -> {
+                if (node.isAlive() && matching.test(node.value)) {
+                    evictEntry(node);
+                    count[0]++;
+                    evicted[0] += node.weight;
+                }
+                return evicted[0] < weight;
+            });
+            return count[0];
+        } finally {
+            evictionLock.unlock();
+        }
+    }
+
+    /**
+     * remove a victim chosen by the policy from the map and from the policy
+     *
+     * @param node victim
+     */
+    final void evictEntry(Node<K, V> node) {
+        boolean removed = data.remove(node.key, node);
+        if (removed) {
+            node.retire();
+        }
+        unlinkNode(node);
+        if (removed) {
+            notifyRemoval(node, RemovalCause.SIZE);
+        }
+    }
+
+    /**
+     * called by the {@link TimerWheel} under the eviction lock for an entry of a bucket it walked past
+     *
+     * @param node node
+     * @param now  current time of the wheel
+     * @return {@code true} if the entry was expired and removed, {@code false} if it must be scheduled again
+     */
+    final boolean expireIfDue(Node<K, V> node, long now) {
+        if (node.isAlive()) {
+            long deadline = expirationTime(node);
+            if (deadline > now) {
+                node.deadline = deadline;
+                return false;
+            }
+            if (data.remove(node.key, node)) {
+                node.retire();
+                removeFromPolicy(node);
+                notifyRemoval(node, RemovalCause.EXPIRED);
+                return true;
+            }
+        }
+        removeFromPolicy(node);
+        return true;
+    }
+
+    final void drainBuffers() {
+        readBuffer.drainTo(this::accessNode);
+    }
+
+    private boolean expires() {
+        return timerWheel != null;
+    }
+
+    private long now() {
+        return ticker.read() - origin;
+    }
+
+    private Node<K, V> newNode(K key, V value) {
+        int weight = weigher.weigh(key, value);
+        if (weight < 0) {
+            throw new IllegalArgumentException("weight should not be negative");
+        }
+        Node<K, V> node = new Node<>(key, value, weight);
+        if (expires()) {
+            long now = now();
+            node.writeTime = now;
+            node.accessTime = now;
+        }
+        return node;
+    }
+
+    private long expirationTime(Node<K, V> node) {
+        long deadline = Long.MAX_VALUE;
+        if (expiresAfterWrite) {
+            deadline = saturatedAdd(node.writeTime, expireAfterWriteNanos);
+        }
+        if (expiresAfterAccess) {
+            deadline = Math.min(deadline, saturatedAdd(node.accessTime, expireAfterAccessNanos));
+        }
+        return deadline;
+    }
+
+    private boolean hasExpired(Node<K, V> node, long now) {
+        return expirationTime(node) <= now;
+    }
+
+    private void accessNode(Node<K, V> node) {
+        onAccess(node);
+        if (expiresAfterAccess && node.isAlive() && node.timerNext != null) {
+            node.deadline = expirationTime(node);
+            timerWheel.reschedule(node);
+        }
+    }
+
+    private void unlinkNode(Node<K, V> node) {
+        removeFromPolicy(node);
+        if (expires()) {
+            timerWheel.deschedule(node);
+        }
+    }
+
+    private void removeFromPolicy(Node<K, V> node) {
+        if (onRemove(node)) {
+            weightedSize -= node.weight;
+        }
+    }
+
+    private void notifyRemoval(Node<K, V> node, RemovalCause cause) {
+        statsCounter.recordRemoval(cause);
+        if (removalListener == null) {
+            return;
+        }
+        try {
+            removalListener.onRemoval(node.key, node.value, cause);
+        } catch (Throwable e) {
+            logger.warn("Exception thrown by removal listener, " + e.getMessage(), e);
+        }
+    }
+
+    private void maintenance() {
+        drainBuffers();
+        if (expires()) {
+            timerWheel.advance(now());
+        }
+    }
+
+    private void scheduleCleanUp() {
+        if (evictionLock.tryLock()) {
+            try {
+                maintenance();
+            } finally {
+                evictionLock.unlock();
+            }
+        }
+    }
+
+    private void afterRead(Node<K, V> node) {
+        if (readBuffer.offer(node) != StripedReadBuffer.SUCCESS) {
+            scheduleCleanUp();
+        }
+    }
+
+    private void afterWrite(Node<K, V> node, Node<K, V> prior) {
+        evictionLock.lock();
+        try {
+            maintenance();
+            if (prior != null) {
+                unlinkNode(prior);
+            }
+            if (node.isAlive()) {
+                onAdd(node);
+                weightedSize += node.weight;
+                if (expires()) {
+                    node.deadline = expirationTime(node);
+                    timerWheel.schedule(node);
+                }
+            }
+            evict(maximum);
+        } finally {
+            evictionLock.unlock();
+        }
+    }
+
+    static final class Node<K, V> {
+        final K key;
+        final V value;
+        final int weight;
+        private volatile boolean alive = true;
+        volatile long writeTime;
+        volatile long accessTime;
+
+        /**
+         * the following fields are guarded by the eviction lock
+         */
+        AccessOrderDeque<K, V> queue;
+        Node<K, V> prev;
+        Node<K, V> next;
+        long deadline;
+        Node<K, V> timerPrev;
+        Node<K, V> timerNext;
+
+        Node(K key, V value, int weight) {
+            this.key = key;
+            this.value = value;
+            this.weight = weight;
+        }
+
+        boolean isAlive() {
+            return alive;
+        }
+
+        void retire() {
+            alive = false;
+        }
+    }
+}
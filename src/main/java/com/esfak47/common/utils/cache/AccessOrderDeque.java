@@ -0,0 +1,123 @@
+package com.esfak47.common.utils.cache;
+
+import java.util.function.Consumer;
+import java.util.function.Predicate;
+
+/**
+ * An intrusive doubly linked list of {@link AbstractConcurrentCache.Node}s ordered from the least to the most recently
+ * used entry. A node knows which deque it belongs to, so a policy with several regions can tell them apart in O(1).
+ * Not thread safe, it is always guarded by the eviction lock of the owning cache.
+ *
+ * @author tony
+ */
+final class AccessOrderDeque<K, V> {
+
+    private AbstractConcurrentCache.Node<K, V> head;
+
+    private AbstractConcurrentCache.Node<K, V> tail;
+
+    private int size;
+
+    private long weight;
+
+    boolean contains(AbstractConcurrentCache.Node<K, V> node) {
+        return node.queue == this;
+    }
+
+    AbstractConcurrentCache.Node<K, V> peekFirst() {
+        return head;
+    }
+
+    AbstractConcurrentCache.Node<K, V> peekLast() {
+        return tail;
+    }
+
+    int size() {
+        return size;
+    }
+
+    /**
+     * @return the total weight of the nodes in this deque
+     */
+    long weight() {
+        return weight;
+    }
+
+    void linkLast(AbstractConcurrentCache.Node<K, V> node) {
+        node.prev = tail;
+        node.next = null;
+        if (tail == null) {
+            head = node;
+        } else {
+            tail.next = node;
+        }
+        tail = node;
+        node.queue = this;
+        size++;
+        weight += node.weight;
+    }
+
+    void moveToLast(AbstractConcurrentCache.Node<K, V> node) {
+        if (node != tail) {
+            unlink(node);
+            linkLast(node);
+        }
+    }
+
+    AbstractConcurrentCache.Node<K, V> pollFirst() {
+        AbstractConcurrentCache.Node<K, V> first = head;
+        if (first != null) {
+            unlink(first);
+        }
+        return first;
+    }
+
+    /**
+     * @param action called from the most to the least recently used node
+     */
+    void forEachDescending(Consumer<AbstractConcurrentCache.Node<K, V>> action) {
+        for (AbstractConcurrentCache.Node<K, V> node = tail; node != null; node = node.prev) {
+            action.accept(node);
+        }
+    }
+
+    /**
+     * @param action called from the least to the most recently used node while it returns {@code true}, it may unlink
+     *               the node it is given
+     * @return {@code false} if the action stopped the walk
+     */
+    boolean forEachAscending(Predicate<AbstractConcurrentCache.Node<K, V>> action) {
+        for (AbstractConcurrentCache.Node<K, V> node = head; node != null; ) {
+            AbstractConcurrentCache.Node<K, V> next = node.next;
+            if (!action.test(node)) {
+                return false;
+            }
+            node = next;
+        }
+        return true;
+    }
+
+    boolean unlink(AbstractConcurrentCache.Node<K, V> node) {
+        if (node.queue != this) {
+            return false;
+        }
+        AbstractConcurrentCache.Node<K, V> prev = node.prev;
+        AbstractConcurrentCache.Node<K, V> next = node.next;
+        if (prev == null) {
+            head = next;
+        } else {
+            prev.next = next;
+        }
+        if (next == null) {
+            tail = prev;
+        } else {
+            next.prev = prev;
+        }
+        node.prev = null;
+        node.next = null;
+        node.queue = null;
+        size--;
+        weight -= node.weight;
+        return true;
+    }
+}
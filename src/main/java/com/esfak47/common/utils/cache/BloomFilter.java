@@ -0,0 +1,283 @@
+package com.esfak47.common.utils.cache;
+
+import com.esfak47.common.lang.Assert;
+
+import java.nio.ByteBuffer;
+import java.util.concurrent.atomic.AtomicLongArray;
+
+/**
+ * A thread-safe Bloom filter: a set which answers "definitely not seen" or "probably seen" in a fraction of the memory
+ * of a {@link ConcurrentHashSet}, for guards where most lookups are negative.
+ * <pre class="code">
+ * BloomFilter seen = BloomFilter.create(10_000_000, 0.01);
+ * if (!seen.mightContain(id)) {
+ *     seen.put(id);
+ *     // first time
+ * }
+ * </pre>
+ * The bits are split into blocks of 512 bits, the size of a cache line, and all the bits of an element are taken from
+ * a single block: a lookup reads one cache line whatever the number of hash functions, at the price of a slightly
+ * higher false positive rate than the classic layout. Bits are set with a compare-and-set on an
+ * {@link AtomicLongArray}, so concurrent insertions never lock and never lose a bit.
+ *
+ * @author tony
+ */
+public final class BloomFilter {
+
+    static final int BLOCK_BITS = 512;
+
+    static final int BLOCK_LONGS = BLOCK_BITS / Long.SIZE;
+
+    private static final int FORMAT = 1;
+
+    private static final double LN2 = Math.log(2);
+
+    private final AtomicLongArray bits;
+
+    private final int blockCount;
+
+    private final int hashCount;
+
+    private BloomFilter(int blockCount, int hashCount) {
+        this.blockCount = blockCount;
+        this.hashCount = hashCount;
+        this.bits = new AtomicLongArray(blockCount * BLOCK_LONGS);
+    }
+
+    /**
+     * @param expectedInsertions number of distinct elements the filter is sized for
+     * @param fpp                target false positive probability once it holds {@code expectedInsertions} elements
+     * @return an empty filter
+     */
+    public static BloomFilter create(long expectedInsertions, double fpp) {
+        long bits = optimalBits(expectedInsertions, fpp);
+        return new BloomFilter(blockCount(bits), optimalHashCount(expectedInsertions, bits));
+    }
+
+    /**
+     * @param bytes the content of {@link #toByteArray()}
+     * @return a filter holding the same elements
+     */
+    public static BloomFilter readFrom(byte[] bytes) {
+        Assert.notNull(bytes, "bytes should not be null");
+        ByteBuffer buffer = ByteBuffer.wrap(bytes);
+        Assert.isTrue(bytes.length >= 12 && buffer.getInt() == FORMAT, "not a serialized BloomFilter");
+        int hashCount = buffer.getInt();
+        int blockCount = buffer.getInt();
+        Assert.isTrue(hashCount > 0 && blockCount > 0
+                        && buffer.remaining() == (long) blockCount * BLOCK_LONGS * Long.BYTES,
+                "corrupted BloomFilter");
+        BloomFilter filter = new BloomFilter(blockCount, hashCount);
+        for (int i = 0; i < filter.bits.length(); i++) {
+            filter.bits.set(i, buffer.getLong());
+        }
+        return filter;
+    }
+
+    static long optimalBits(long expectedInsertions, double fpp) {
+        Assert.isTrue(expectedInsertions > 0, "expectedInsertions should be positive");
+        Assert.isTrue(fpp > 0 && fpp < 1, "fpp should be between 0 and 1");
+        return (long) Math.ceil(-expectedInsertions * Math.log(fpp) / (LN2 * LN2));
+    }
+
+    static int blockCount(long bits) {
+        long blocks = (bits + BLOCK_BITS - 1) / BLOCK_BITS;
+        Assert.isTrue(blocks <= (Integer.MAX_VALUE - 8) / BLOCK_LONGS, "the filter would be too large");
+        return (int) Math.max(1, blocks);
+    }
+
+    static int optimalHashCount(long expectedInsertions, long bits) {
+        return (int) Math.max(1, Math.min(16, Math.round((double) bits / expectedInsertions * LN2)));
+    }
+
+    /**
+     * @return the 64 bits hash of the bytes
+     */
+    static long hash(byte[] bytes) {
+        long h = bytes.length;
+        int i = 0;
+        for (; i + 8 <= bytes.length; i += 8) {
+            long word = (bytes[i] & 0xffL) | (bytes[i + 1] & 0xffL) << 8 | (bytes[i + 2] & 0xffL) << 16
+                    | (bytes[i + 3] & 0xffL) << 24 | (bytes[i + 4] & 0xffL) << 32 | (bytes[i + 5] & 0xffL) << 40
+                    | (bytes[i + 6] & 0xffL) << 48 | (bytes[i + 7] & 0xffL) << 56;
+            h = mix(h, word);
+        }
+        if (i < bytes.length) {
+            long word = 0;
+            for (int shift = 0; i < bytes.length; i++, shift += 8) {
+                word |= (bytes[i] & 0xffL) << shift;
+            }
+            h = mix(h, word);
+        }
+        return ConcurrentLongHashSet.hash(h);
+    }
+
+    /**
+     * @return the 64 bits hash of the chars
+     */
+    static long hash(CharSequence chars) {
+        int length = chars.length();
+        long h = length;
+        int i = 0;
+        for (; i + 4 <= length; i += 4) {
+            long word = chars.charAt(i) | (long) chars.charAt(i + 1) << 16
+                    | (long) chars.charAt(i + 2) << 32 | (long) chars.charAt(i + 3) << 48;
+            h = mix(h, word);
+        }
+        if (i < length) {
+            long word = 0;
+            for (int shift = 0; i < length; i++, shift += 16) {
+                word |= (long) chars.charAt(i) << shift;
+            }
+            h = mix(h, word);
+        }
+        return ConcurrentLongHashSet.hash(h);
+    }
+
+    private static long mix(long h, long word) {
+        return Long.rotateLeft(h ^ ConcurrentLongHashSet.hash(word), 27) * 0x9e3779b97f4a7c15L;
+    }
+
+    /**
+     * @return the index of the first long of the block of a hash
+     */
+    static int blockOffset(long hash, int blockCount) {
+        return (int) (((hash >>> 32) * blockCount) >>> 32) * BLOCK_LONGS;
+    }
+
+    /**
+     * @return the next probe, its top bits pick a position within the block
+     */
+    static long nextProbe(long probe) {
+        return probe * 0x9e3779b97f4a7c15L + 0x632be59bd9b4e019L;
+    }
+
+    /**
+     * @param item element
+     * @return {@code true} if a bit changed, so the element was certainly not in the filter before
+     */
+    public boolean put(long item) {
+        return putHash(ConcurrentLongHashSet.hash(item));
+    }
+
+    /**
+     * @param item element
+     * @return {@code true} if a bit changed, so the element was certainly not in the filter before
+     */
+    public boolean put(CharSequence item) {
+        Assert.notNull(item, "item should not be null");
+        return putHash(hash(item));
+    }
+
+    /**
+     * @param item element
+     * @return {@code true} if a bit changed, so the element was certainly not in the filter before
+     */
+    public boolean put(byte[] item) {
+        Assert.notNull(item, "item should not be null");
+        return putHash(hash(item));
+    }
+
+    /**
+     * @param item element
+     * @return {@code false} if the element was certainly never put, {@code true} if it probably was
+     */
+    public boolean mightContain(long item) {
+        return mightContainHash(ConcurrentLongHashSet.hash(item));
+    }
+
+    /**
+     * @param item element
+     * @return {@code false} if the element was certainly never put, {@code true} if it probably was
+     */
+    public boolean mightContain(CharSequence item) {
+        Assert.notNull(item, "item should not be null");
+        return mightContainHash(hash(item));
+    }
+
+    /**
+     * @param item element
+     * @return {@code false} if the element was certainly never put, {@code true} if it probably was
+     */
+    public boolean mightContain(byte[] item) {
+        Assert.notNull(item, "item should not be null");
+        return mightContainHash(hash(item));
+    }
+
+    private boolean putHash(long hash) {
+        int offset = blockOffset(hash, blockCount);
+        long probe = hash;
+        boolean changed = false;
+        for (int i = 0; i < hashCount; i++) {
+            probe = nextProbe(probe);
+            int bit = (int) (probe >>> 55);
+            int index = offset + (bit >>> 6);
+            long mask = 1L << bit;
+            for (; ; ) {
+                long word = bits.get(index);
+                if ((word & mask) != 0) {
+                    break;
+                }
+                if (bits.compareAndSet(index, word, word | mask)) {
+                    changed = true;
+                    break;
+                }
+            }
+        }
+        return changed;
+    }
+
+    private boolean mightContainHash(long hash) {
+        int offset = blockOffset(hash, blockCount);
+        long probe = hash;
+        for (int i = 0; i < hashCount; i++) {
+            probe = nextProbe(probe);
+            int bit = (int) (probe >>> 55);
+            if ((bits.get(offset + (bit >>> 6)) & (1L << bit)) == 0) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    /**
+     * @return the number of bits of the filter
+     */
+    public long bitSize() {
+        return (long) bits.length() * Long.SIZE;
+    }
+
+    public int hashCount() {
+        return hashCount;
+    }
+
+    /**
+     * @return the probability that {@link #mightContain} answers {@code true} for an element never put, estimated
+     * from the proportion of bits set
+     */
+    public double expectedFpp() {
+        long set = 0;
+        for (int i = 0; i < bits.length(); i++) {
+            set += Long.bitCount(bits.get(i));
+        }
+        return Math.pow((double) set / bitSize(), hashCount);
+    }
+
+    /**
+     * @return the filter as bytes, read back by {@link #readFrom(byte[])}. Elements put concurrently may or may not be
+     * included
+     */
+    public byte[] toByteArray() {
+        ByteBuffer buffer = ByteBuffer.allocate(12 + bits.length() * Long.BYTES);
+        buffer.putInt(FORMAT).putInt(hashCount).putInt(blockCount);
+        for (int i = 0; i < bits.length(); i++) {
+            buffer.putLong(bits.get(i));
+        }
+        return buffer.array();
+    }
+
+    @Override
+    public String toString() {
+        return "BloomFilter{bitSize=" + bitSize() + ", hashCount=" + hashCount + '}';
+    }
+}
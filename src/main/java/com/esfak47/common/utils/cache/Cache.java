@@ -0,0 +1,81 @@
+package com.esfak47.common.utils.cache;
+
+/**
+ * Common view of the caches in this package, so that different eviction policies can be swapped or compared on the
+ * same access traces.
+ * <p>
+ * The method signatures follow {@link java.util.Map} so that {@link LRUCache} implements it as it is.
+ *
+ * @author tony
+ */
+public interface Cache<K, V> {
+
+    /**
+     * Returns the value to which the specified key is mapped, or {@code null} if this cache contains no mapping for
+     * the key.
+     *
+     * @param key the key whose associated value is to be returned
+     * @return the cached value or {@code null}
+     */
+    V get(Object key);
+
+    /**
+     * Associates the specified value with the specified key in this cache.
+     *
+     * @param key   key with which the specified value is to be associated
+     * @param value value to be associated with the specified key
+     * @return the previous value associated with {@code key}, or {@code null}
+     */
+    V put(K key, V value);
+
+    /**
+     * Associates the specified value with the specified key if the key is not already cached.
+     *
+     * @param key   key with which the specified value is to be associated
+     * @param value value to be associated with the specified key
+     * @return the current value associated with {@code key}, or {@code null} if the value was put
+     */
+    V putIfAbsent(K key, V value);
+
+    /**
+     * Removes the mapping for a key from this cache if it is present.
+     *
+     * @param key key whose mapping is to be removed from the cache
+     * @return the previous value associated with {@code key}, or {@code null}
+     */
+    V remove(Object key);
+
+    boolean containsKey(Object key);
+
+    /**
+     * Returns the approximate number of entries in this cache.
+     *
+     * @return the number of entries
+     */
+    int size();
+
+    boolean isEmpty();
+
+    /**
+     * Discards all entries in the cache.
+     */
+    void clear();
+
+    /**
+     * Performs any pending maintenance, such as removing expired entries. Caches without deferred work do nothing.
+     */
+    default void cleanUp() {
+    }
+
+    /**
+     * Returns a snapshot of the statistics of this cache. Caches which do not record statistics return
+     * {@link CacheStats#empty()}.
+     *
+     * @return statistics
+     * @see CacheBuilder#recordStats()
+     */
+    default CacheStats stats() {
+        return CacheStats.empty();
+    }
+
+}
@@ -0,0 +1,236 @@
+package com.esfak47.common.utils.cache;
+
+import com.esfak47.common.lang.Assert;
+
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Builder of the concurrent caches in this package.
+ * <pre class="code">
+ * Cache&lt;String, String&gt; cache = CacheBuilder.newBuilder()
+ *     .maxCapacity(10000)
+ *     .expireAfterWrite(5, TimeUnit.MINUTES)
+ *     .evictionPolicy(EvictionPolicy.TINY_LFU)
+ *     .build();
+ * </pre>
+ *
+ * @author tony
+ */
+public final class CacheBuilder<K, V> {
+
+    static final int DEFAULT_MAX_CAPACITY = 1000;
+
+    private static final long UNSET = -1L;
+
+    private static final int UNSET_INT = -1;
+
+    int maxCapacity = UNSET_INT;
+
+    long maximumWeight = UNSET;
+
+    Weigher<? super K, ? super V> weigher;
+
+    RemovalListener<? super K, ? super V> removalListener;
+
+    long expireAfterWriteNanos = UNSET;
+
+    long expireAfterAccessNanos = UNSET;
+
+    EvictionPolicy evictionPolicy = EvictionPolicy.LRU;
+
+    Ticker ticker = Ticker.SYSTEM;
+
+    boolean recordStats;
+
+    private CacheBuilder() {
+    }
+
+    public static CacheBuilder<Object, Object> newBuilder() {
+        return new CacheBuilder<>();
+    }
+
+    /**
+     * @param maxCapacity the maximum number of entries the cache may contain
+     * @return this builder
+     */
+    public CacheBuilder<K, V> maxCapacity(int maxCapacity) {
+        Assert.isTrue(maxCapacity >= 0, "maxCapacity should not be negative");
+        Assert.isTrue(maximumWeight == UNSET, "maximumWeight was already set");
+        this.maxCapacity = maxCapacity;
+        return this;
+    }
+
+    /**
+     * bound the cache by the total weight of its entries, as computed by the {@link #weigher(Weigher)}
+     *
+     * @param maximumWeight the maximum total weight of the entries
+     * @return this builder
+     */
+    public CacheBuilder<K, V> maximumWeight(long maximumWeight) {
+        Assert.isTrue(maximumWeight >= 0, "maximumWeight should not be negative");
+        Assert.isTrue(maxCapacity == UNSET_INT, "maxCapacity was already set");
+        this.maximumWeight = maximumWeight;
+        return this;
+    }
+
+    /**
+     * @param weigher weigher of the entries, requires {@link #maximumWeight(long)}
+     * @param <K1>    key type
+     * @param <V1>    value type
+     * @return this builder
+     * @see Weighers
+     */
+    @SuppressWarnings("unchecked")
+    public <K1 extends K, V1 extends V> CacheBuilder<K1, V1> weigher(Weigher<? super K1, ? super V1> weigher) {
+        Assert.notNull(weigher, "weigher should not be null");
+        CacheBuilder<K1, V1> self = (CacheBuilder<K1, V1>) this;
+        self.weigher = weigher;
+        return self;
+    }
+
+    /**
+     * @param removalListener notified of the entries evicted, expired or cleared
+     * @param <K1>            key type
+     * @param <V1>            value type
+     * @return this builder
+     */
+    @SuppressWarnings("unchecked")
+    public <K1 extends K, V1 extends V> CacheBuilder<K1, V1> removalListener(
+            RemovalListener<? super K1, ? super V1> removalListener) {
+        Assert.notNull(removalListener, "removalListener should not be null");
+        CacheBuilder<K1, V1> self = (CacheBuilder<K1, V1>) this;
+        self.removalListener = removalListener;
+        return self;
+    }
+
+    /**
+     * entries expire once the given duration has elapsed after they were created or replaced
+     *
+     * @param duration duration
+     * @param unit     unit of duration
+     * @return this builder
+     */
+    public CacheBuilder<K, V> expireAfterWrite(long duration, TimeUnit unit) {
+        Assert.isTrue(duration >= 0, "duration should not be negative");
+        Assert.notNull(unit, "unit should not be null");
+        this.expireAfterWriteNanos = unit.toNanos(duration);
+        return this;
+    }
+
+    /**
+     * entries expire once the given duration has elapsed after they were created, replaced or last read
+     *
+     * @param duration duration
+     * @param unit     unit of duration
+     * @return this builder
+     */
+    public CacheBuilder<K, V> expireAfterAccess(long duration, TimeUnit unit) {
+        Assert.isTrue(duration >= 0, "duration should not be negative");
+        Assert.notNull(unit, "unit should not be null");
+        this.expireAfterAccessNanos = unit.toNanos(duration);
+        return this;
+    }
+
+    public CacheBuilder<K, V> evictionPolicy(EvictionPolicy evictionPolicy) {
+        Assert.notNull(evictionPolicy, "evictionPolicy should not be null");
+        this.evictionPolicy = evictionPolicy;
+        return this;
+    }
+
+    /**
+     * record the hits, misses, loads and evictions of the cache, see {@link Cache#stats()}
+     *
+     * @return this builder
+     */
+    public CacheBuilder<K, V> recordStats() {
+        this.recordStats = true;
+        return this;
+    }
+
+    CacheBuilder<K, V> ticker(Ticker ticker) {
+        Assert.notNull(ticker, "ticker should not be null");
+        this.ticker = ticker;
+        return this;
+    }
+
+    boolean isWeighted() {
+        return weigher != null;
+    }
+
+    /**
+     * @return the bound of the cache, a number of entries or a total weight
+     */
+    long maximum() {
+        if (isWeighted()) {
+            return maximumWeight;
+        }
+        return maxCapacity == UNSET_INT ? DEFAULT_MAX_CAPACITY : maxCapacity;
+    }
+
+    @SuppressWarnings("unchecked")
+    Weigher<K, V> getWeigher() {
+        return isWeighted() ? (Weigher<K, V>) weigher : Weighers.singleton();
+    }
+
+    /**
+     * @return a builder with the same bounds, expiration, policy and statistics, but no weigher nor listener
+     */
+    CacheBuilder<Object, Object> copySettings() {
+        CacheBuilder<Object, Object> copy = new CacheBuilder<>();
+        copy.maxCapacity = maxCapacity;
+        copy.maximumWeight = maximumWeight;
+        copy.expireAfterWriteNanos = expireAfterWriteNanos;
+        copy.expireAfterAccessNanos = expireAfterAccessNanos;
+        copy.evictionPolicy = evictionPolicy;
+        copy.ticker = ticker;
+        copy.recordStats = recordStats;
+        return copy;
+    }
+
+    boolean expiresAfterWrite() {
+        return expireAfterWriteNanos != UNSET;
+    }
+
+    boolean expiresAfterAccess() {
+        return expireAfterAccessNanos != UNSET;
+    }
+
+    public <K1 extends K, V1 extends V> Cache<K1, V1> build() {
+        Assert.isTrue(isWeighted() == (maximumWeight != UNSET), "maximumWeight and weigher should be used together");
+        switch (evictionPolicy) {
+            case TINY_LFU:
+                return new TinyLfuCache<>(this);
+            case LRU:
+            default:
+                return new ConcurrentLRUCache<>(this);
+        }
+    }
+
+    /**
+     * build a cache computing the missing values with the loader
+     *
+     * @param loader loader
+     * @param <K1>   key type
+     * @param <V1>   value type
+     * @return a loading cache
+     */
+    public <K1 extends K, V1 extends V> LoadingCache<K1, V1> build(CacheLoader<? super K1, V1> loader) {
+        return new DefaultLoadingCache<>(this.<K1, V1>build(), loader);
+    }
+
+    /**
+     * build a cache storing its values outside of the heap, the {@link #maximumWeight(long)} is its capacity in bytes
+     *
+     * @param codec codec of the values
+     * @param <K1>  key type
+     * @param <V1>  value type
+     * @return an off-heap cache
+     */
+    public <K1 extends K, V1 extends V> OffHeapCache<K1, V1> buildOffHeap(ValueCodec<V1> codec) {
+        Assert.notNull(codec, "codec should not be null");
+        Assert.isTrue(maximumWeight != UNSET, "maximumWeight should be set to the off-heap capacity in bytes");
+        Assert.isTrue(!isWeighted(), "an off-heap cache weighs its entries by their allocated size");
+        Assert.isTrue(removalListener == null, "an off-heap cache does not support removal listeners");
+        return new OffHeapCache<>(this, codec);
+    }
+}
@@ -0,0 +1,42 @@
+package com.esfak47.common.utils.cache;
+
+import java.util.HashMap;
+import java.util.Map;
+import java.util.Set;
+
+/**
+ * Computes the values of a {@link LoadingCache}.
+ *
+ * @author tony
+ */
+@FunctionalInterface
+public interface CacheLoader<K, V> {
+
+    /**
+     * Computes the value of the key.
+     *
+     * @param key the key to load
+     * @return the value, or {@code null} if there is none, in which case nothing is cached
+     * @throws Exception if the value can not be computed
+     */
+    V load(K key) throws Exception;
+
+    /**
+     * Computes the values of several keys in one call, override it when the backend supports bulk retrieval. The
+     * default implementation calls {@link #load(Object)} for each key.
+     *
+     * @param keys the keys to load
+     * @return the values found, keys without a value may be absent
+     * @throws Exception if the values can not be computed
+     */
+    default Map<K, V> loadAll(Set<? extends K> keys) throws Exception {
+        Map<K, V> result = new HashMap<>(keys.size() * 2);
+        for (K key : keys) {
+            V value = load(key);
+            if (value != null) {
+                result.put(key, value);
+            }
+        }
+        return result;
+    }
+}
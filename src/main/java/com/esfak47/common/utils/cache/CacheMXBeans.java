@@ -0,0 +1,151 @@
+package com.esfak47.common.utils.cache;
+
+import com.esfak47.common.lang.Assert;
+
+import javax.management.InstanceNotFoundException;
+import javax.management.JMException;
+import javax.management.MBeanServer;
+import javax.management.MalformedObjectNameException;
+import javax.management.ObjectName;
+import java.lang.management.ManagementFactory;
+
+/**
+ * Registers the statistics of caches in the platform MBean server, under
+ * {@code com.esfak47.common.utils.cache:type=CacheStats,name=<name>}, so that a monitoring system can alert on their
+ * hit rate. The cache should be built with {@link CacheBuilder#recordStats()}, otherwise every counter stays zero.
+ *
+ * @author tony
+ */
+public final class CacheMXBeans {
+
+    private static final String DOMAIN = "com.esfak47.common.utils.cache";
+
+    private CacheMXBeans() {
+        throw new UnsupportedOperationException();
+    }
+
+    /**
+     * @param name name of the cache, unique in the JVM
+     * @return the name of the registered bean
+     */
+    public static ObjectName objectName(String name) {
+        Assert.notNull(name, "name should not be null");
+        Assert.hasLength(name, "name should not be empty");
+        try {
+            return new ObjectName(DOMAIN + ":type=CacheStats,name=" + ObjectName.quote(name));
+        } catch (MalformedObjectNameException e) {
+            throw new IllegalArgumentException("invalid cache name: " + name, e);
+        }
+    }
+
+    /**
+     * register the statistics of the cache, replacing the bean registered under the same name if any
+     *
+     * @param name  name of the cache
+     * @param cache cache
+     * @return the name of the registered bean
+     */
+    public static ObjectName register(String name, Cache<?, ?> cache) {
+        Assert.notNull(cache, "cache should not be null");
+        ObjectName objectName = objectName(name);
+        MBeanServer server = ManagementFactory.getPlatformMBeanServer();
+        try {
+            if (server.isRegistered(objectName)) {
+                server.unregisterMBean(objectName);
+            }
+            server.registerMBean(new CacheStatsBean(cache), objectName);
+        } catch (JMException e) {
+            throw new IllegalStateException("failed to register " + objectName, e);
+        }
+        return objectName;
+    }
+
+    /**
+     * @param name name of the cache
+     * @return {@code false} if no bean was registered under the name
+     */
+    public static boolean unregister(String name) {
+        try {
+            ManagementFactory.getPlatformMBeanServer().unregisterMBean(objectName(name));
+            return true;
+        } catch (InstanceNotFoundException e) {
+            return false;
+        } catch (JMException e) {
+            throw new IllegalStateException("failed to unregister cache " + name, e);
+        }
+    }
+
+    private static final class CacheStatsBean implements CacheStatsMXBean {
+
+        private final Cache<?, ?> cache;
+
+        CacheStatsBean(Cache<?, ?> cache) {
+            this.cache = cache;
+        }
+
+        @Override
+        public long getHitCount() {
+            return cache.stats().hitCount();
+        }
+
+        @Override
+        public long getMissCount() {
+            return cache.stats().missCount();
+        }
+
+        @Override
+        public long getRequestCount() {
+            return cache.stats().requestCount();
+        }
+
+        @Override
+        public double getHitRate() {
+            return cache.stats().hitRate();
+        }
+
+        @Override
+        public long getLoadSuccessCount() {
+            return cache.stats().loadSuccessCount();
+        }
+
+        @Override
+        public long getLoadFailureCount() {
+            return cache.stats().loadFailureCount();
+        }
+
+        @Override
+        public long getTotalLoadTime() {
+            return cache.stats().totalLoadTime();
+        }
+
+        @Override
+        public double getAverageLoadPenalty() {
+            return cache.stats().averageLoadPenalty();
+        }
+
+        @Override
+        public long getEvictionCount() {
+            return cache.stats().evictionCount();
+        }
+
+        @Override
+        public long getSizeEvictionCount() {
+            return cache.stats().removalCount(RemovalCause.SIZE);
+        }
+
+        @Override
+        public long getExpiredCount() {
+            return cache.stats().removalCount(RemovalCause.EXPIRED);
+        }
+
+        @Override
+        public long getWeightedSize() {
+            return cache.stats().weightedSize();
+        }
+
+        @Override
+        public int getSize() {
+            return cache.size();
+        }
+    }
+}
@@ -0,0 +1,349 @@
+package com.esfak47.common.utils.cache;
+
+import com.esfak47.common.lang.Assert;
+import com.esfak47.common.utils.io.FileUtils;
+import com.esfak47.common.utils.thread.NamedThreadFactory;
+
+import java.io.Closeable;
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.ByteBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.Executor;
+import java.util.concurrent.TimeUnit;
+import java.util.function.BiConsumer;
+
+/**
+ * Saves the content of a cache to a memory-mapped file and loads it back after a restart, so that a new process does
+ * not start with a cold cache.
+ * <pre class="code">
+ * CacheSnapshot&lt;String, byte[]&gt; snapshot = new CacheSnapshot&lt;&gt;(ValueCodecs.string(), ValueCodecs.bytes());
+ * snapshot.write(cache, "/data/cache.snapshot");                // on shutdown
+ * snapshot.restore(cache, "/data/cache.snapshot");              // on startup
+ * </pre>
+ * The entries are written from the most to the least valuable to keep according to the eviction policy, each one as
+ * the length and bytes of its key followed by the length and bytes of its value, after a header holding the format
+ * version, the time of the snapshot and the number of entries. The file is written next to its destination and moved
+ * over it once complete, so a crash never leaves a truncated snapshot behind.
+ * <p>
+ * The restore puts the first {@link #hotEntries(int)} entries synchronously, which takes milliseconds, and loads the
+ * rest in the background. It uses {@code putIfAbsent}, so the values written by the application meanwhile win, and it
+ * stops once the cache is full so colder entries never evict hotter ones. Restored entries expire as if they had just
+ * been written, {@link #maxAge(long, TimeUnit)} discards the snapshots which are too old to be trusted.
+ * <p>
+ * Supports the caches built by {@link CacheBuilder}, including the off-heap and loading ones. The file is created
+ * sparse with {@link FileUtils#createFileWithSparse(String, long)}, and the mapped regions are unmapped as soon as they
+ * are written or read with {@link FileUtils#unmapQuietly(MappedByteBuffer)}.
+ *
+ * @author tony
+ */
+public final class CacheSnapshot<K, V> {
+
+    private static final int MAGIC = 0x45534353;
+
+    private static final int VERSION = 1;
+
+    private static final int HEADER_SIZE = 4 + 4 + 8 + 4;
+
+    private static final int COUNT_OFFSET = HEADER_SIZE - 4;
+
+    private static final int REGION_SIZE = 64 << 20;
+
+    private static final int DEFAULT_HOT_ENTRIES = 1024;
+
+    private final ValueCodec<K> keyCodec;
+
+    private final ValueCodec<V> valueCodec;
+
+    private int hotEntries = DEFAULT_HOT_ENTRIES;
+
+    private long maxAgeMillis = Long.MAX_VALUE;
+
+    private Executor executor;
+
+    /**
+     * @param keyCodec   codec of the keys
+     * @param valueCodec codec of the values
+     */
+    public CacheSnapshot(ValueCodec<K> keyCodec, ValueCodec<V> valueCodec) {
+        Assert.notNull(keyCodec, "keyCodec should not be null");
+        Assert.notNull(valueCodec, "valueCodec should not be null");
+        this.keyCodec = keyCodec;
+        this.valueCodec = valueCodec;
+    }
+
+    /**
+     * @param hotEntries number of entries restored before {@link #restore(Cache, String)} returns
+     * @return this snapshot
+     */
+    public CacheSnapshot<K, V> hotEntries(int hotEntries) {
+        Assert.isTrue(hotEntries >= 0, "hotEntries should not be negative");
+        this.hotEntries = hotEntries;
+        return this;
+    }
+
+    /**
+     * @param maxAge age beyond which a snapshot is ignored
+     * @param unit   unit of maxAge
+     * @return this snapshot
+     */
+    public CacheSnapshot<K, V> maxAge(long maxAge, TimeUnit unit) {
+        Assert.isTrue(maxAge >= 0, "maxAge should not be negative");
+        Assert.notNull(unit, "unit should not be null");
+        this.maxAgeMillis = unit.toMillis(maxAge);
+        return this;
+    }
+
+    /**
+     * @param executor runs the background part of the restore, a new daemon thread by default
+     * @return this snapshot
+     */
+    public CacheSnapshot<K, V> executor(Executor executor) {
+        Assert.notNull(executor, "executor should not be null");
+        this.executor = executor;
+        return this;
+    }
+
+    /**
+     * @param cache    cache
+     * @param filePath path of the snapshot, replaced if it exists
+     * @return the number of entries written
+     * @throws IOException if the file can not be written
+     */
+    public int write(Cache<K, V> cache, String filePath) throws IOException {
+        Assert.notNull(filePath, "filePath should not be null");
+        Path path = Paths.get(filePath);
+        Path tmp = path.resolveSibling(path.getFileName() + ".tmp");
+        int count;
+        try (MappedWriter writer = new MappedWriter(tmp)) {
+            writer.ensure(HEADER_SIZE);
+            writer.buffer.putInt(MAGIC).putInt(VERSION).putLong(System.currentTimeMillis()).putInt(0);
+            int[] written = new int[1];
+            forEachHottest(unwrap(cache), (key, value) -> {
+                byte[] keyBytes = keyCodec.encode(key);
+                byte[] valueBytes = valueCodec.encode(value);
+                try {
+                    writer.ensure(8 + keyBytes.length + valueBytes.length);
+                } catch (IOException e) {
+                    throw new UncheckedIOException(e);
+                }
+                writer.buffer.putInt(keyBytes.length).put(keyBytes).putInt(valueBytes.length).put(valueBytes);
+                written[0]++;
+            });
+            count = written[0];
+            writer.count = count;
+        } catch (UncheckedIOException e) {
+            Files.deleteIfExists(tmp);
+            throw e.getCause();
+        } catch (IOException | RuntimeException e) {
+            Files.deleteIfExists(tmp);
+            throw e;
+        }
+        Files.move(tmp, path, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+        return count;
+    }
+
+    /**
+     * Restores the hot entries of the snapshot, then the others in the background.
+     *
+     * @param cache    cache
+     * @param filePath path of the snapshot
+     * @return completed with the number of entries restored, once the whole snapshot has been read
+     * @throws IOException if the file can not be read or is not a snapshot
+     */
+    public CompletableFuture<Integer> restore(Cache<K, V> cache, String filePath) throws IOException {
+        Assert.notNull(cache, "cache should not be null");
+        Assert.notNull(filePath, "filePath should not be null");
+        Cache<K, V> target = unwrap(cache);
+        MappedReader reader = new MappedReader(Paths.get(filePath));
+        int remaining;
+        int restored;
+        try {
+            if (!reader.ensure(HEADER_SIZE) || reader.buffer.getInt() != MAGIC) {
+                throw new IOException("not a cache snapshot: " + filePath);
+            }
+            int version = reader.buffer.getInt();
+            if (version != VERSION) {
+                throw new IOException("unsupported cache snapshot version " + version + ": " + filePath);
+            }
+            long createdTime = reader.buffer.getLong();
+            remaining = reader.buffer.getInt();
+            if (System.currentTimeMillis() - createdTime > maxAgeMillis) {
+                remaining = 0;
+            }
+            restored = restoreEntries(target, reader, Math.min(hotEntries, remaining));
+            remaining -= hotEntries;
+        } catch (IOException | RuntimeException e) {
+            reader.close();
+            throw e;
+        }
+        if (remaining <= 0 || isFull(target)) {
+            reader.close();
+            return CompletableFuture.completedFuture(restored);
+        }
+        CompletableFuture<Integer> future = new CompletableFuture<>();
+        int rest = remaining;
+        Runnable task = () -> {
+            try (MappedReader r = reader) {
+                future.complete(restored + restoreEntries(target, r, rest));
+            } catch (Throwable e) {
+                future.completeExceptionally(e);
+            }
+        };
+        if (executor == null) {
+            new NamedThreadFactory("cache-snapshot-restore", true).newThread(task).start();
+        } else {
+            executor.execute(task);
+        }
+        return future;
+    }
+
+    private int restoreEntries(Cache<K, V> cache, MappedReader reader, int count) throws IOException {
+        int restored = 0;
+        for (int i = 0; i < count && !isFull(cache); i++) {
+            K key = keyCodec.decode(reader.readBytes());
+            V value = valueCodec.decode(reader.readBytes());
+            if (cache.putIfAbsent(key, value) == null) {
+                restored++;
+            }
+        }
+        return restored;
+    }
+
+    @SuppressWarnings("unchecked")
+    private Cache<K, V> unwrap(Cache<K, V> cache) {
+        Assert.notNull(cache, "cache should not be null");
+        while (cache instanceof DefaultLoadingCache) {
+            cache = ((DefaultLoadingCache<K, V>) cache).delegate();
+        }
+        if (!(cache instanceof AbstractConcurrentCache) && !(cache instanceof OffHeapCache)) {
+            throw new IllegalArgumentException("snapshots are not supported by " + cache.getClass().getName());
+        }
+        return cache;
+    }
+
+    private void forEachHottest(Cache<K, V> cache, BiConsumer<K, V> action) {
+        if (cache instanceof OffHeapCache) {
+            ((OffHeapCache<K, V>) cache).forEachHottest(action);
+            return;
+        }
+        for (AbstractConcurrentCache.Node<K, V> node : ((AbstractConcurrentCache<K, V>) cache).hottestNodes()) {
+            action.accept(node.key, node.value);
+        }
+    }
+
+    private boolean isFull(Cache<K, V> cache) {
+        if (cache instanceof OffHeapCache) {
+            return ((OffHeapCache<K, V>) cache).isFull();
+        }
+        return ((AbstractConcurrentCache<K, V>) cache).isFull();
+    }
+
+    /**
+     * writes through a window of the file mapped in memory, moved forward and grown as needed
+     */
+    private static final class MappedWriter implements Closeable {
+        private final FileChannel channel;
+        private MappedByteBuffer buffer;
+        private long regionStart;
+        private int count;
+
+        MappedWriter(Path path) throws IOException {
+            FileUtils.createFileWithSparse(path.toString(), REGION_SIZE);
+            this.channel = FileChannel.open(path, StandardOpenOption.READ, StandardOpenOption.WRITE);
+            try {
+                this.buffer = channel.map(FileChannel.MapMode.READ_WRITE, 0, REGION_SIZE);
+            } catch (IOException e) {
+                channel.close();
+                throw e;
+            }
+        }
+
+        void ensure(int length) throws IOException {
+            if (buffer.remaining() >= length) {
+                return;
+            }
+            long position = regionStart + buffer.position();
+            buffer.force();
+            FileUtils.unmapQuietly(buffer);
+            buffer = channel.map(FileChannel.MapMode.READ_WRITE, position, Math.max(REGION_SIZE, length));
+            regionStart = position;
+        }
+
+        @Override
+        public void close() throws IOException {
+            try {
+                long length = regionStart + buffer.position();
+                buffer.force();
+                FileUtils.unmapQuietly(buffer);
+                channel.write((ByteBuffer) ByteBuffer.allocate(4).putInt(count).flip(), COUNT_OFFSET);
+                channel.truncate(length);
+                channel.force(true);
+            } finally {
+                channel.close();
+            }
+        }
+    }
+
+    /**
+     * reads through a window of the file mapped in memory, moved forward as needed
+     */
+    private static final class MappedReader implements Closeable {
+        private final FileChannel channel;
+        private final long size;
+        private MappedByteBuffer buffer;
+        private long regionStart;
+
+        MappedReader(Path path) throws IOException {
+            this.channel = FileChannel.open(path, StandardOpenOption.READ);
+            try {
+                this.size = channel.size();
+                this.buffer = channel.map(FileChannel.MapMode.READ_ONLY, 0, Math.min(REGION_SIZE, size));
+            } catch (IOException e) {
+                channel.close();
+                throw e;
+            }
+        }
+
+        boolean ensure(int length) throws IOException {
+            if (buffer.remaining() >= length) {
+                return true;
+            }
+            long position = regionStart + buffer.position();
+            if (position + length > size) {
+                return false;
+            }
+            FileUtils.unmapQuietly(buffer);
+            buffer = channel.map(FileChannel.MapMode.READ_ONLY, position,
+                    Math.min(Math.max(REGION_SIZE, length), size - position));
+            regionStart = position;
+            return true;
+        }
+
+        byte[] readBytes() throws IOException {
+            if (!ensure(4)) {
+                throw new IOException("truncated cache snapshot");
+            }
+            int length = buffer.getInt();
+            if (length < 0 || !ensure(length)) {
+                throw new IOException("corrupted cache snapshot");
+            }
+            byte[] bytes = new byte[length];
+            buffer.get(bytes);
+            return bytes;
+        }
+
+        @Override
+        public void close() throws IOException {
+            FileUtils.unmapQuietly(buffer);
+            channel.close();
+        }
+    }
+}
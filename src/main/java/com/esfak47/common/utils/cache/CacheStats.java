@@ -0,0 +1,198 @@
+package com.esfak47.common.utils.cache;
+
+import java.util.Arrays;
+
+/**
+ * An immutable snapshot of the statistics of a cache, see {@link CacheBuilder#recordStats()}.
+ * <p>
+ * The counters only grow, so the activity over an interval is the difference of two snapshots taken at its bounds,
+ * see {@link #minus(CacheStats)}. The weighted size is a gauge taken with the snapshot.
+ *
+ * @author tony
+ */
+public final class CacheStats {
+
+    private static final CacheStats EMPTY = new CacheStats(0, 0, 0, 0, 0, new long[RemovalCause.values().length], 0);
+
+    private final long hitCount;
+
+    private final long missCount;
+
+    private final long loadSuccessCount;
+
+    private final long loadFailureCount;
+
+    private final long totalLoadTime;
+
+    /**
+     * indexed by {@link RemovalCause#ordinal()}
+     */
+    private final long[] removalCounts;
+
+    private final long weightedSize;
+
+    CacheStats(long hitCount, long missCount, long loadSuccessCount, long loadFailureCount, long totalLoadTime,
+               long[] removalCounts, long weightedSize) {
+        this.hitCount = hitCount;
+        this.missCount = missCount;
+        this.loadSuccessCount = loadSuccessCount;
+        this.loadFailureCount = loadFailureCount;
+        this.totalLoadTime = totalLoadTime;
+        this.removalCounts = removalCounts;
+        this.weightedSize = weightedSize;
+    }
+
+    /**
+     * @return the statistics of a cache which records nothing
+     */
+    public static CacheStats empty() {
+        return EMPTY;
+    }
+
+    public long hitCount() {
+        return hitCount;
+    }
+
+    public long missCount() {
+        return missCount;
+    }
+
+    public long requestCount() {
+        return hitCount + missCount;
+    }
+
+    /**
+     * @return the ratio of the reads which found a value, 1.0 if there was no read
+     */
+    public double hitRate() {
+        long requestCount = requestCount();
+        return requestCount == 0 ? 1.0 : (double) hitCount / requestCount;
+    }
+
+    /**
+     * @return the ratio of the reads which found no value, 0.0 if there was no read
+     */
+    public double missRate() {
+        long requestCount = requestCount();
+        return requestCount == 0 ? 0.0 : (double) missCount / requestCount;
+    }
+
+    /**
+     * @return the number of loads which returned a value
+     */
+    public long loadSuccessCount() {
+        return loadSuccessCount;
+    }
+
+    /**
+     * @return the number of loads which threw or returned no value
+     */
+    public long loadFailureCount() {
+        return loadFailureCount;
+    }
+
+    public long loadCount() {
+        return loadSuccessCount + loadFailureCount;
+    }
+
+    /**
+     * @return the time spent loading values in nanoseconds, failed loads included
+     */
+    public long totalLoadTime() {
+        return totalLoadTime;
+    }
+
+    /**
+     * @return the average time of a load in nanoseconds
+     */
+    public double averageLoadPenalty() {
+        long loadCount = loadCount();
+        return loadCount == 0 ? 0.0 : (double) totalLoadTime / loadCount;
+    }
+
+    /**
+     * @return the number of entries evicted because the cache was full or because they expired
+     */
+    public long evictionCount() {
+        return removalCount(RemovalCause.SIZE) + removalCount(RemovalCause.EXPIRED);
+    }
+
+    /**
+     * @param cause cause
+     * @return the number of entries which left the cache for the given cause
+     * @see RemovalListener
+     */
+    public long removalCount(RemovalCause cause) {
+        return removalCounts[cause.ordinal()];
+    }
+
+    /**
+     * @return the total weight of the entries when the snapshot was taken
+     */
+    public long weightedSize() {
+        return weightedSize;
+    }
+
+    /**
+     * @param other an earlier snapshot of the same cache
+     * @return the activity between the two snapshots, with the weighted size of this one
+     */
+    public CacheStats minus(CacheStats other) {
+        long[] counts = new long[removalCounts.length];
+        for (int i = 0; i < counts.length; i++) {
+            counts[i] = Math.max(0, removalCounts[i] - other.removalCounts[i]);
+        }
+        return new CacheStats(
+                Math.max(0, hitCount - other.hitCount),
+                Math.max(0, missCount - other.missCount),
+                Math.max(0, loadSuccessCount - other.loadSuccessCount),
+                Math.max(0, loadFailureCount - other.loadFailureCount),
+                Math.max(0, totalLoadTime - other.totalLoadTime),
+                counts, weightedSize);
+    }
+
+    CacheStats withWeightedSize(long weightedSize) {
+        return new CacheStats(hitCount, missCount, loadSuccessCount, loadFailureCount, totalLoadTime, removalCounts,
+                weightedSize);
+    }
+
+    @Override
+    public boolean equals(Object o) {
+        if (this == o) {
+            return true;
+        }
+        if (!(o instanceof CacheStats)) {
+            return false;
+        }
+        CacheStats that = (CacheStats) o;
+        return hitCount == that.hitCount && missCount == that.missCount && loadSuccessCount == that.loadSuccessCount
+                && loadFailureCount == that.loadFailureCount && totalLoadTime == that.totalLoadTime
+                && weightedSize == that.weightedSize && Arrays.equals(removalCounts, that.removalCounts);
+    }
+
+    @Override
+    public int hashCode() {
+        int result = Long.hashCode(hitCount);
+        result = 31 * result + Long.hashCode(missCount);
+        result = 31 * result + Long.hashCode(loadSuccessCount);
+        result = 31 * result + Long.hashCode(loadFailureCount);
+        result = 31 * result + Long.hashCode(totalLoadTime);
+        result = 31 * result + Arrays.hashCode(removalCounts);
+        return 31 * result + Long.hashCode(weightedSize);
+    }
+
+    @Override
+    public String toString() {
+        return "CacheStats{" +
+                "hitCount=" + hitCount +
+                ", missCount=" + missCount +
+                ", loadSuccessCount=" + loadSuccessCount +
+                ", loadFailureCount=" + loadFailureCount +
+                ", totalLoadTime=" + totalLoadTime +
+                ", sizeEvictionCount=" + removalCount(RemovalCause.SIZE) +
+                ", expiredCount=" + removalCount(RemovalCause.EXPIRED) +
+                ", explicitCount=" + removalCount(RemovalCause.EXPLICIT) +
+                ", weightedSize=" + weightedSize +
+                '}';
+    }
+}
@@ -0,0 +1,43 @@
+package com.esfak47.common.utils.cache;
+
+/**
+ * JMX view of the statistics of a cache, registered by {@link CacheMXBeans#register(String, Cache)}. Every attribute
+ * is read from a fresh {@link CacheStats} snapshot, the counters are cumulative since the cache was created.
+ *
+ * @author tony
+ */
+public interface CacheStatsMXBean {
+
+    long getHitCount();
+
+    long getMissCount();
+
+    long getRequestCount();
+
+    double getHitRate();
+
+    long getLoadSuccessCount();
+
+    long getLoadFailureCount();
+
+    /**
+     * @return nanoseconds spent loading
+     */
+    long getTotalLoadTime();
+
+    /**
+     * @return average nanoseconds of a load
+     */
+    double getAverageLoadPenalty();
+
+    long getEvictionCount();
+
+    long getSizeEvictionCount();
+
+    long getExpiredCount();
+
+    long getWeightedSize();
+
+    int getSize();
+
+}
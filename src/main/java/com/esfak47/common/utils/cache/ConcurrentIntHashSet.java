@@ -0,0 +1,352 @@
+package com.esfak47.common.utils.cache;
+
+import com.esfak47.common.lang.Assert;
+
+import java.util.Arrays;
+import java.util.concurrent.locks.StampedLock;
+import java.util.function.IntConsumer;
+
+/**
+ * A concurrent set of primitive {@code int}s, where {@link ConcurrentHashSet} would box every element and allocate a
+ * map node for it.
+ * <p>
+ * The set is split into sections, each an open addressing table with linear probing guarded by its own
+ * {@link StampedLock}: lookups run without locking and only retry under the read lock if a writer modified the section
+ * meanwhile, writers of different sections never contend. Removal shifts the following entries back instead of
+ * leaving tombstones, so a table never fills up with deleted slots. An element takes 6 to 12 bytes depending on how
+ * full its table is, against some 70 bytes for a boxed element of a {@link ConcurrentHashSet}.
+ * <p>
+ * Iteration is weakly consistent, like the one of {@link java.util.concurrent.ConcurrentHashMap}.
+ *
+ * @author tony
+ */
+public class ConcurrentIntHashSet {
+
+    private static final int EMPTY = 0;
+
+    private static final int DEFAULT_EXPECTED_ITEMS = 256;
+
+    private static final int DEFAULT_CONCURRENCY_LEVEL = 16;
+
+    private static final float MAX_LOAD_FACTOR = 0.66f;
+
+    private final Section[] sections;
+
+    private final int sectionShift;
+
+    public ConcurrentIntHashSet() {
+        this(DEFAULT_EXPECTED_ITEMS);
+    }
+
+    public ConcurrentIntHashSet(int expectedItems) {
+        this(expectedItems, DEFAULT_CONCURRENCY_LEVEL);
+    }
+
+    /**
+     * @param expectedItems    number of elements the set is sized for, it grows beyond as needed
+     * @param concurrencyLevel number of sections, rounded up to a power of two
+     */
+    public ConcurrentIntHashSet(int expectedItems, int concurrencyLevel) {
+        Assert.isTrue(expectedItems >= 0, "expectedItems should not be negative");
+        Assert.isTrue(concurrencyLevel > 0, "concurrencyLevel should be positive");
+        int sectionCount = StripedReadBuffer.ceilingPowerOfTwo(concurrencyLevel);
+        int perSection = Math.max(2, (int) Math.ceil(expectedItems / (double) sectionCount / MAX_LOAD_FACTOR));
+        this.sections = new Section[sectionCount];
+        this.sectionShift = 32 - Integer.numberOfTrailingZeros(sectionCount);
+        for (int i = 0; i < sectionCount; i++) {
+            sections[i] = new Section(StripedReadBuffer.ceilingPowerOfTwo(perSection));
+        }
+    }
+
+    /**
+     * murmur3 finalizer, the high bits select the section and the low bits the bucket
+     */
+    static int hash(int key) {
+        int h = key;
+        h ^= h >>> 16;
+        h *= 0x85ebca6b;
+        h ^= h >>> 13;
+        h *= 0xc2b2ae35;
+        h ^= h >>> 16;
+        return h;
+    }
+
+    private Section section(int hash) {
+        return sectionShift == 32 ? sections[0] : sections[hash >>> sectionShift];
+    }
+
+    public boolean contains(int item) {
+        int h = hash(item);
+        return section(h).contains(item, h);
+    }
+
+    /**
+     * @param item element
+     * @return {@code true} if the set did not already contain the element
+     */
+    public boolean add(int item) {
+        int h = hash(item);
+        return section(h).add(item, h);
+    }
+
+    /**
+     * @param item element
+     * @return {@code true} if the set contained the element
+     */
+    public boolean remove(int item) {
+        int h = hash(item);
+        return section(h).remove(item, h);
+    }
+
+    public long size() {
+        long size = 0;
+        for (Section section : sections) {
+            size += section.size;
+        }
+        return size;
+    }
+
+    public boolean isEmpty() {
+        for (Section section : sections) {
+            if (section.size != 0) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    /**
+     * @return the number of buckets of the tables
+     */
+    public long capacity() {
+        long capacity = 0;
+        for (Section section : sections) {
+            capacity += section.table.length;
+        }
+        return capacity;
+    }
+
+    public void clear() {
+        for (Section section : sections) {
+            section.clear();
+        }
+    }
+
+    /**
+     * Visit the elements, one section at a time. The action may modify the set.
+     *
+     * @param action action
+     */
+    public void forEach(IntConsumer action) {
+        for (Section section : sections) {
+            section.forEach(action);
+        }
+    }
+
+    public int[] toArray() {
+        int[] items = new int[(int) Math.min(size(), Integer.MAX_VALUE - 8)];
+        int[] count = new int[1];
+        forEach(item -> {
+            if (count[0] < items.length) {
+                items[count[0]++] = item;
+            }
+        });
+        return count[0] == items.length ? items : Arrays.copyOf(items, count[0]);
+    }
+
+    @Override
+    public String toString() {
+        StringBuilder sb = new StringBuilder("[");
+        forEach(item -> {
+            if (sb.length() > 1) {
+                sb.append(", ");
+            }
+            sb.append(item);
+        });
+        return sb.append(']').toString();
+    }
+
+    /**
+     * An open addressing table. {@link #EMPTY} marks a free bucket, the element equal to it is kept in a flag.
+     */
+    private static final class Section extends StampedLock {
+
+        private static final long serialVersionUID = -3301846256091784812L;
+
+        private final int initialCapacity;
+
+        /**
+         * the following fields are written under the write lock
+         */
+        private volatile int[] table;
+        private volatile int size;
+        private volatile boolean containsEmpty;
+
+        Section(int capacity) {
+            this.initialCapacity = capacity;
+            this.table = new int[capacity];
+        }
+
+        boolean contains(int item, int hash) {
+            long stamp = tryOptimisticRead();
+            boolean found = item == EMPTY ? containsEmpty : find(table, item, hash) >= 0;
+            if (validate(stamp)) {
+                return found;
+            }
+            stamp = readLock();
+            try {
+                return item == EMPTY ? containsEmpty : find(table, item, hash) >= 0;
+            } finally {
+                unlockRead(stamp);
+            }
+        }
+
+        boolean add(int item, int hash) {
+            long stamp = writeLock();
+            try {
+                if (item == EMPTY) {
+                    if (containsEmpty) {
+                        return false;
+                    }
+                    containsEmpty = true;
+                    size++;
+                    return true;
+                }
+                int[] table = this.table;
+                int mask = table.length - 1;
+                int bucket = hash & mask;
+                for (; ; ) {
+                    int stored = table[bucket];
+                    if (stored == item) {
+                        return false;
+                    }
+                    if (stored == EMPTY) {
+                        table[bucket] = item;
+                        size++;
+                        if (size > table.length * MAX_LOAD_FACTOR) {
+                            rehash(table.length * 2);
+                        }
+                        return true;
+                    }
+                    bucket = (bucket + 1) & mask;
+                }
+            } finally {
+                unlockWrite(stamp);
+            }
+        }
+
+        boolean remove(int item, int hash) {
+            long stamp = writeLock();
+            try {
+                if (item == EMPTY) {
+                    if (!containsEmpty) {
+                        return false;
+                    }
+                    containsEmpty = false;
+                    size--;
+                    return true;
+                }
+                int[] table = this.table;
+                int bucket = find(table, item, hash);
+                if (bucket < 0) {
+                    return false;
+                }
+                shiftBack(table, bucket);
+                size--;
+                return true;
+            } finally {
+                unlockWrite(stamp);
+            }
+        }
+
+        void clear() {
+            long stamp = writeLock();
+            try {
+                table = new int[initialCapacity];
+                containsEmpty = false;
+                size = 0;
+            } finally {
+                unlockWrite(stamp);
+            }
+        }
+
+        void forEach(IntConsumer action) {
+            int[] copy;
+            boolean empty;
+            long stamp = readLock();
+            try {
+                copy = table.clone();
+                empty = containsEmpty;
+            } finally {
+                unlockRead(stamp);
+            }
+            if (empty) {
+                action.accept(EMPTY);
+            }
+            for (int item : copy) {
+                if (item != EMPTY) {
+                    action.accept(item);
+                }
+            }
+        }
+
+        /**
+         * @return the bucket of the item, or -1. Bounded by the table length, so it terminates even on a table
+         * modified by a concurrent writer
+         */
+        private static int find(int[] table, int item, int hash) {
+            int mask = table.length - 1;
+            int bucket = hash & mask;
+            for (int i = 0; i < table.length; i++) {
+                int stored = table[bucket];
+                if (stored == item) {
+                    return bucket;
+                }
+                if (stored == EMPTY) {
+                    return -1;
+                }
+                bucket = (bucket + 1) & mask;
+            }
+            return -1;
+        }
+
+        /**
+         * free a bucket, moving back the following entries of the probe sequence which would not be found anymore
+         */
+        private static void shiftBack(int[] table, int bucket) {
+            int mask = table.length - 1;
+            int hole = bucket;
+            int next = bucket;
+            for (; ; ) {
+                next = (next + 1) & mask;
+                int stored = table[next];
+                if (stored == EMPTY) {
+                    break;
+                }
+                int ideal = hash(stored) & mask;
+                // move the entry if its ideal bucket is not cyclically within (hole, next]
+                if (((next - ideal) & mask) >= ((next - hole) & mask)) {
+                    table[hole] = stored;
+                    hole = next;
+                }
+            }
+            table[hole] = EMPTY;
+        }
+
+        private void rehash(int capacity) {
+            int[] old = table;
+            int[] resized = new int[capacity];
+            int mask = capacity - 1;
+            for (int item : old) {
+                if (item != EMPTY) {
+                    int bucket = hash(item) & mask;
+                    while (resized[bucket] != EMPTY) {
+                        bucket = (bucket + 1) & mask;
+                    }
+                    resized[bucket] = item;
+                }
+            }
+            table = resized;
+        }
+    }
+}
@@ -0,0 +1,67 @@
+package com.esfak47.common.utils.cache;
+
+import java.util.function.Consumer;
+import java.util.function.Predicate;
+
+/**
+ * A concurrent replacement of {@link LRUCache}.
+ * <p>
+ * Reads never take a lock, the access order is kept in a doubly linked list which is updated in batches under the
+ * eviction lock, see {@link AbstractConcurrentCache}. The least recently used entries are evicted while the cache is
+ * larger than {@link #getMaxCapacity()}, or heavier than {@link #getMaximumWeight()} when a {@link Weigher} is set.
+ *
+ * @author tony
+ */
+public class ConcurrentLRUCache<K, V> extends AbstractConcurrentCache<K, V> {
+
+    /**
+     * guarded by evictionLock
+     */
+    private final AccessOrderDeque<K, V> accessOrder = new AccessOrderDeque<>();
+
+    public ConcurrentLRUCache() {
+        this(CacheBuilder.DEFAULT_MAX_CAPACITY);
+    }
+
+    public ConcurrentLRUCache(int maxCapacity) {
+        this(CacheBuilder.newBuilder().maxCapacity(maxCapacity));
+    }
+
+    ConcurrentLRUCache(CacheBuilder<? super K, ? super V> builder) {
+        super(builder);
+    }
+
+    @Override
+    void onAccess(Node<K, V> node) {
+        if (node.isAlive() && accessOrder.contains(node)) {
+            accessOrder.moveToLast(node);
+        }
+    }
+
+    @Override
+    void onAdd(Node<K, V> node) {
+        accessOrder.linkLast(node);
+    }
+
+    @Override
+    boolean onRemove(Node<K, V> node) {
+        return accessOrder.unlink(node);
+    }
+
+    @Override
+    void forEachHottest(Consumer<Node<K, V>> action) {
+        accessOrder.forEachDescending(action);
+    }
+
+    @Override
+    void forEachColdest(Predicate<Node<K, V>> action) {
+        accessOrder.forEachAscending(action);
+    }
+
+    @Override
+    void evict(long maximum) {
+        while (weightedSize() > maximum) {
+            evictEntry(accessOrder.peekFirst());
+        }
+    }
+}
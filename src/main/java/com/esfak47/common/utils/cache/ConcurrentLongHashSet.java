@@ -0,0 +1,352 @@
+package com.esfak47.common.utils.cache;
+
+import com.esfak47.common.lang.Assert;
+
+import java.util.Arrays;
+import java.util.concurrent.locks.StampedLock;
+import java.util.function.LongConsumer;
+
+/**
+ * A concurrent set of primitive {@code long}s, where {@link ConcurrentHashSet} would box every element and allocate a
+ * map node for it.
+ * <p>
+ * The set is split into sections, each an open addressing table with linear probing guarded by its own
+ * {@link StampedLock}: lookups run without locking and only retry under the read lock if a writer modified the section
+ * meanwhile, writers of different sections never contend. Removal shifts the following entries back instead of
+ * leaving tombstones, so a table never fills up with deleted slots. An element takes 12 to 24 bytes depending on how
+ * full its table is, against some 70 bytes for a boxed element of a {@link ConcurrentHashSet}.
+ * <p>
+ * Iteration is weakly consistent, like the one of {@link java.util.concurrent.ConcurrentHashMap}.
+ *
+ * @author tony
+ */
+public class ConcurrentLongHashSet {
+
+    private static final long EMPTY = 0L;
+
+    private static final int DEFAULT_EXPECTED_ITEMS = 256;
+
+    private static final int DEFAULT_CONCURRENCY_LEVEL = 16;
+
+    private static final float MAX_LOAD_FACTOR = 0.66f;
+
+    private final Section[] sections;
+
+    private final int sectionShift;
+
+    public ConcurrentLongHashSet() {
+        this(DEFAULT_EXPECTED_ITEMS);
+    }
+
+    public ConcurrentLongHashSet(int expectedItems) {
+        this(expectedItems, DEFAULT_CONCURRENCY_LEVEL);
+    }
+
+    /**
+     * @param expectedItems    number of elements the set is sized for, it grows beyond as needed
+     * @param concurrencyLevel number of sections, rounded up to a power of two
+     */
+    public ConcurrentLongHashSet(int expectedItems, int concurrencyLevel) {
+        Assert.isTrue(expectedItems >= 0, "expectedItems should not be negative");
+        Assert.isTrue(concurrencyLevel > 0, "concurrencyLevel should be positive");
+        int sectionCount = StripedReadBuffer.ceilingPowerOfTwo(concurrencyLevel);
+        int perSection = Math.max(2, (int) Math.ceil(expectedItems / (double) sectionCount / MAX_LOAD_FACTOR));
+        this.sections = new Section[sectionCount];
+        this.sectionShift = 64 - Integer.numberOfTrailingZeros(sectionCount);
+        for (int i = 0; i < sectionCount; i++) {
+            sections[i] = new Section(StripedReadBuffer.ceilingPowerOfTwo(perSection));
+        }
+    }
+
+    /**
+     * murmur3 finalizer, the high bits select the section and the low bits the bucket
+     */
+    static long hash(long key) {
+        long h = key;
+        h ^= h >>> 33;
+        h *= 0xff51afd7ed558ccdL;
+        h ^= h >>> 33;
+        h *= 0xc4ceb9fe1a85ec53L;
+        h ^= h >>> 33;
+        return h;
+    }
+
+    private Section section(long hash) {
+        return sectionShift == 64 ? sections[0] : sections[(int) (hash >>> sectionShift)];
+    }
+
+    public boolean contains(long item) {
+        long h = hash(item);
+        return section(h).contains(item, (int) h);
+    }
+
+    /**
+     * @param item element
+     * @return {@code true} if the set did not already contain the element
+     */
+    public boolean add(long item) {
+        long h = hash(item);
+        return section(h).add(item, (int) h);
+    }
+
+    /**
+     * @param item element
+     * @return {@code true} if the set contained the element
+     */
+    public boolean remove(long item) {
+        long h = hash(item);
+        return section(h).remove(item, (int) h);
+    }
+
+    public long size() {
+        long size = 0;
+        for (Section section : sections) {
+            size += section.size;
+        }
+        return size;
+    }
+
+    public boolean isEmpty() {
+        for (Section section : sections) {
+            if (section.size != 0) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    /**
+     * @return the number of buckets of the tables
+     */
+    public long capacity() {
+        long capacity = 0;
+        for (Section section : sections) {
+            capacity += section.table.length;
+        }
+        return capacity;
+    }
+
+    public void clear() {
+        for (Section section : sections) {
+            section.clear();
+        }
+    }
+
+    /**
+     * Visit the elements, one section at a time. The action may modify the set.
+     *
+     * @param action action
+     */
+    public void forEach(LongConsumer action) {
+        for (Section section : sections) {
+            section.forEach(action);
+        }
+    }
+
+    public long[] toArray() {
+        long[] items = new long[(int) Math.min(size(), Integer.MAX_VALUE - 8)];
+        int[] count = new int[1];
+        forEach(item -> {
+            if (count[0] < items.length) {
+                items[count[0]++] = item;
+            }
+        });
+        return count[0] == items.length ? items : Arrays.copyOf(items, count[0]);
+    }
+
+    @Override
+    public String toString() {
+        StringBuilder sb = new StringBuilder("[");
+        forEach(item -> {
+            if (sb.length() > 1) {
+                sb.append(", ");
+            }
+            sb.append(item);
+        });
+        return sb.append(']').toString();
+    }
+
+    /**
+     * An open addressing table. {@link #EMPTY} marks a free bucket, the element equal to it is kept in a flag.
+     */
+    private static final class Section extends StampedLock {
+
+        private static final long serialVersionUID = 2713924601462958331L;
+
+        private final int initialCapacity;
+
+        /**
+         * the following fields are written under the write lock
+         */
+        private volatile long[] table;
+        private volatile int size;
+        private volatile boolean containsEmpty;
+
+        Section(int capacity) {
+            this.initialCapacity = capacity;
+            this.table = new long[capacity];
+        }
+
+        boolean contains(long item, int hash) {
+            long stamp = tryOptimisticRead();
+            boolean found = item == EMPTY ? containsEmpty : find(table, item, hash) >= 0;
+            if (validate(stamp)) {
+                return found;
+            }
+            stamp = readLock();
+            try {
+                return item == EMPTY ? containsEmpty : find(table, item, hash) >= 0;
+            } finally {
+                unlockRead(stamp);
+            }
+        }
+
+        boolean add(long item, int hash) {
+            long stamp = writeLock();
+            try {
+                if (item == EMPTY) {
+                    if (containsEmpty) {
+                        return false;
+                    }
+                    containsEmpty = true;
+                    size++;
+                    return true;
+                }
+                long[] table = this.table;
+                int mask = table.length - 1;
+                int bucket = hash & mask;
+                for (; ; ) {
+                    long stored = table[bucket];
+                    if (stored == item) {
+                        return false;
+                    }
+                    if (stored == EMPTY) {
+                        table[bucket] = item;
+                        size++;
+                        if (size > table.length * MAX_LOAD_FACTOR) {
+                            rehash(table.length * 2);
+                        }
+                        return true;
+                    }
+                    bucket = (bucket + 1) & mask;
+                }
+            } finally {
+                unlockWrite(stamp);
+            }
+        }
+
+        boolean remove(long item, int hash) {
+            long stamp = writeLock();
+            try {
+                if (item == EMPTY) {
+                    if (!containsEmpty) {
+                        return false;
+                    }
+                    containsEmpty = false;
+                    size--;
+                    return true;
+                }
+                long[] table = this.table;
+                int bucket = find(table, item, hash);
+                if (bucket < 0) {
+                    return false;
+                }
+                shiftBack(table, bucket);
+                size--;
+                return true;
+            } finally {
+                unlockWrite(stamp);
+            }
+        }
+
+        void clear() {
+            long stamp = writeLock();
+            try {
+                table = new long[initialCapacity];
+                containsEmpty = false;
+                size = 0;
+            } finally {
+                unlockWrite(stamp);
+            }
+        }
+
+        void forEach(LongConsumer action) {
+            long[] copy;
+            boolean empty;
+            long stamp = readLock();
+            try {
+                copy = table.clone();
+                empty = containsEmpty;
+            } finally {
+                unlockRead(stamp);
+            }
+            if (empty) {
+                action.accept(EMPTY);
+            }
+            for (long item : copy) {
+                if (item != EMPTY) {
+                    action.accept(item);
+                }
+            }
+        }
+
+        /**
+         * @return the bucket of the item, or -1. Bounded by the table length, so it terminates even on a table
+         * modified by a concurrent writer
+         */
+        private static int find(long[] table, long item, int hash) {
+            int mask = table.length - 1;
+            int bucket = hash & mask;
+            for (int i = 0; i < table.length; i++) {
+                long stored = table[bucket];
+                if (stored == item) {
+                    return bucket;
+                }
+                if (stored == EMPTY) {
+                    return -1;
+                }
+                bucket = (bucket + 1) & mask;
+            }
+            return -1;
+        }
+
+        /**
+         * free a bucket, moving back the following entries of the probe sequence which would not be found anymore
+         */
+        private static void shiftBack(long[] table, int bucket) {
+            int mask = table.length - 1;
+            int hole = bucket;
+            int next = bucket;
+            for (; ; ) {
+                next = (next + 1) & mask;
+                long stored = table[next];
+                if (stored == EMPTY) {
+                    break;
+                }
+                int ideal = (int) hash(stored) & mask;
+                // move the entry if its ideal bucket is not cyclically within (hole, next]
+                if (((next - ideal) & mask) >= ((next - hole) & mask)) {
+                    table[hole] = stored;
+                    hole = next;
+                }
+            }
+            table[hole] = EMPTY;
+        }
+
+        private void rehash(int capacity) {
+            long[] old = table;
+            long[] resized = new long[capacity];
+            int mask = capacity - 1;
+            for (long item : old) {
+                if (item != EMPTY) {
+                    int bucket = (int) hash(item) & mask;
+                    while (resized[bucket] != EMPTY) {
+                        bucket = (bucket + 1) & mask;
+                    }
+                    resized[bucket] = item;
+                }
+            }
+            table = resized;
+        }
+    }
+}
@@ -0,0 +1,401 @@
+package com.esfak47.common.utils.cache;
+
+import com.esfak47.common.lang.Assert;
+
+import java.util.concurrent.locks.StampedLock;
+import java.util.function.LongFunction;
+
+/**
+ * A concurrent map from primitive {@code long} keys to objects, where a {@link java.util.concurrent.ConcurrentHashMap}
+ * would box every key and allocate a node per entry.
+ * <p>
+ * Built like {@link ConcurrentLongHashSet}: sections of open addressing tables with linear probing, each guarded by a
+ * {@link StampedLock} so that lookups do not lock. The keys and the values are kept in two parallel arrays, a
+ * {@code null} value marks a free bucket, so every {@code long} is a valid key and values may not be {@code null}.
+ *
+ * @param <V> type of the values
+ * @author tony
+ */
+public class ConcurrentLongObjectMap<V> {
+
+    private static final int DEFAULT_EXPECTED_ITEMS = 256;
+
+    private static final int DEFAULT_CONCURRENCY_LEVEL = 16;
+
+    private static final float MAX_LOAD_FACTOR = 0.66f;
+
+    private final Section<V>[] sections;
+
+    private final int sectionShift;
+
+    public ConcurrentLongObjectMap() {
+        this(DEFAULT_EXPECTED_ITEMS);
+    }
+
+    public ConcurrentLongObjectMap(int expectedItems) {
+        this(expectedItems, DEFAULT_CONCURRENCY_LEVEL);
+    }
+
+    /**
+     * @param expectedItems    number of entries the map is sized for, it grows beyond as needed
+     * @param concurrencyLevel number of sections, rounded up to a power of two
+     */
+    @SuppressWarnings("unchecked")
+    public ConcurrentLongObjectMap(int expectedItems, int concurrencyLevel) {
+        Assert.isTrue(expectedItems >= 0, "expectedItems should not be negative");
+        Assert.isTrue(concurrencyLevel > 0, "concurrencyLevel should be positive");
+        int sectionCount = StripedReadBuffer.ceilingPowerOfTwo(concurrencyLevel);
+        int perSection = Math.max(2, (int) Math.ceil(expectedItems / (double) sectionCount / MAX_LOAD_FACTOR));
+        this.sections = new Section[sectionCount];
+        this.sectionShift = 64 - Integer.numberOfTrailingZeros(sectionCount);
+        for (int i = 0; i < sectionCount; i++) {
+            sections[i] = new Section<>(StripedReadBuffer.ceilingPowerOfTwo(perSection));
+        }
+    }
+
+    private Section<V> section(long hash) {
+        return sectionShift == 64 ? sections[0] : sections[(int) (hash >>> sectionShift)];
+    }
+
+    public V get(long key) {
+        long h = ConcurrentLongHashSet.hash(key);
+        return section(h).get(key, (int) h);
+    }
+
+    public boolean containsKey(long key) {
+        return get(key) != null;
+    }
+
+    /**
+     * @param key   key
+     * @param value value
+     * @return the previous value, or {@code null}
+     */
+    public V put(long key, V value) {
+        Assert.notNull(value, "value should not be null");
+        long h = ConcurrentLongHashSet.hash(key);
+        return section(h).put(key, value, (int) h, false);
+    }
+
+    /**
+     * @param key   key
+     * @param value value
+     * @return the current value, or {@code null} if the value was put
+     */
+    public V putIfAbsent(long key, V value) {
+        Assert.notNull(value, "value should not be null");
+        long h = ConcurrentLongHashSet.hash(key);
+        return section(h).put(key, value, (int) h, true);
+    }
+
+    /**
+     * Returns the value of the key, computing it first if absent. The function runs under the lock of the section of
+     * the key, so it should be short and must not modify this map.
+     *
+     * @param key             key
+     * @param mappingFunction computes the value, it may return {@code null} to leave the key absent
+     * @return the current or computed value, or {@code null}
+     */
+    public V computeIfAbsent(long key, LongFunction<? extends V> mappingFunction) {
+        Assert.notNull(mappingFunction, "mappingFunction should not be null");
+        long h = ConcurrentLongHashSet.hash(key);
+        Section<V> section = section(h);
+        V value = section.get(key, (int) h);
+        return value != null ? value : section.computeIfAbsent(key, (int) h, mappingFunction);
+    }
+
+    /**
+     * @param key key
+     * @return the removed value, or {@code null}
+     */
+    public V remove(long key) {
+        long h = ConcurrentLongHashSet.hash(key);
+        return section(h).remove(key, null, (int) h);
+    }
+
+    /**
+     * @param key   key
+     * @param value expected value
+     * @return {@code true} if the key was mapped to a value equal to {@code value} and was removed
+     */
+    public boolean remove(long key, Object value) {
+        if (value == null) {
+            return false;
+        }
+        long h = ConcurrentLongHashSet.hash(key);
+        return section(h).remove(key, value, (int) h) != null;
+    }
+
+    public long size() {
+        long size = 0;
+        for (Section<V> section : sections) {
+            size += section.size;
+        }
+        return size;
+    }
+
+    public boolean isEmpty() {
+        for (Section<V> section : sections) {
+            if (section.size != 0) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    public void clear() {
+        for (Section<V> section : sections) {
+            section.clear();
+        }
+    }
+
+    /**
+     * Visit the entries, one section at a time. The action may modify the map.
+     *
+     * @param action action
+     */
+    public void forEach(EntryConsumer<? super V> action) {
+        for (Section<V> section : sections) {
+            section.forEach(action);
+        }
+    }
+
+    @Override
+    public String toString() {
+        StringBuilder sb = new StringBuilder("{");
+        forEach((key, value) -> {
+            if (sb.length() > 1) {
+                sb.append(", ");
+            }
+            sb.append(key).append('=').append(value);
+        });
+        return sb.append('}').toString();
+    }
+
+    /**
+     * receives an entry without boxing its key
+     *
+     * @param <V> type of the values
+     */
+    @FunctionalInterface
+    public interface EntryConsumer<V> {
+        void accept(long key, V value);
+    }
+
+    /**
+     * the arrays of a section, replaced together when it grows
+     */
+    private static final class Table {
+        final long[] keys;
+        final Object[] values;
+
+        Table(int capacity) {
+            this.keys = new long[capacity];
+            this.values = new Object[capacity];
+        }
+
+        int mask() {
+            return keys.length - 1;
+        }
+
+        /**
+         * @return the bucket of the key, or -1. Bounded by the table length, so it terminates even on a table
+         * modified by a concurrent writer
+         */
+        int find(long key, int hash) {
+            int mask = mask();
+            int bucket = hash & mask;
+            for (int i = 0; i < keys.length; i++) {
+                if (values[bucket] == null) {
+                    return -1;
+                }
+                if (keys[bucket] == key) {
+                    return bucket;
+                }
+                bucket = (bucket + 1) & mask;
+            }
+            return -1;
+        }
+
+        void insert(long key, Object value, int hash) {
+            int mask = mask();
+            int bucket = hash & mask;
+            while (values[bucket] != null) {
+                bucket = (bucket + 1) & mask;
+            }
+            keys[bucket] = key;
+            values[bucket] = value;
+        }
+
+        /**
+         * free a bucket, moving back the following entries of the probe sequence which would not be found anymore
+         */
+        void shiftBack(int bucket) {
+            int mask = mask();
+            int hole = bucket;
+            int next = bucket;
+            for (; ; ) {
+                next = (next + 1) & mask;
+                Object value = values[next];
+                if (value == null) {
+                    break;
+                }
+                int ideal = (int) ConcurrentLongHashSet.hash(keys[next]) & mask;
+                // move the entry if its ideal bucket is not cyclically within (hole, next]
+                if (((next - ideal) & mask) >= ((next - hole) & mask)) {
+                    keys[hole] = keys[next];
+                    values[hole] = value;
+                    hole = next;
+                }
+            }
+            values[hole] = null;
+        }
+    }
+
+    private static final class Section<V> extends StampedLock {
+
+        private static final long serialVersionUID = -6017230431571590914L;
+
+        private final int initialCapacity;
+
+        /**
+         * the following fields are written under the write lock
+         */
+        private volatile Table table;
+        private volatile int size;
+
+        Section(int capacity) {
+            this.initialCapacity = capacity;
+            this.table = new Table(capacity);
+        }
+
+        @SuppressWarnings("unchecked")
+        private static <V> V valueAt(Table table, int bucket) {
+            return bucket < 0 ? null : (V) table.values[bucket];
+        }
+
+        V get(long key, int hash) {
+            long stamp = tryOptimisticRead();
+            Table table = this.table;
+            V value = valueAt(table, table.find(key, hash));
+            if (validate(stamp)) {
+                return value;
+            }
+            stamp = readLock();
+            try {
+                table = this.table;
+                return valueAt(table, table.find(key, hash));
+            } finally {
+                unlockRead(stamp);
+            }
+        }
+
+        V put(long key, V value, int hash, boolean onlyIfAbsent) {
+            long stamp = writeLock();
+            try {
+                Table table = this.table;
+                int bucket = table.find(key, hash);
+                if (bucket >= 0) {
+                    V previous = valueAt(table, bucket);
+                    if (!onlyIfAbsent) {
+                        table.values[bucket] = value;
+                    }
+                    return previous;
+                }
+                add(table, key, value, hash);
+                return null;
+            } finally {
+                unlockWrite(stamp);
+            }
+        }
+
+        V computeIfAbsent(long key, int hash, LongFunction<? extends V> mappingFunction) {
+            long stamp = writeLock();
+            try {
+                Table table = this.table;
+                int bucket = table.find(key, hash);
+                if (bucket >= 0) {
+                    return valueAt(table, bucket);
+                }
+                V value = mappingFunction.apply(key);
+                if (value != null) {
+                    add(table, key, value, hash);
+                }
+                return value;
+            } finally {
+                unlockWrite(stamp);
+            }
+        }
+
+        /**
+         * @param expected the value to remove, or {@code null} for any
+         */
+        V remove(long key, Object expected, int hash) {
+            long stamp = writeLock();
+            try {
+                Table table = this.table;
+                int bucket = table.find(key, hash);
+                if (bucket < 0) {
+                    return null;
+                }
+                V previous = valueAt(table, bucket);
+                if (expected != null && !expected.equals(previous)) {
+                    return null;
+                }
+                table.shiftBack(bucket);
+                size--;
+                return previous;
+            } finally {
+                unlockWrite(stamp);
+            }
+        }
+
+        void clear() {
+            long stamp = writeLock();
+            try {
+                table = new Table(initialCapacity);
+                size = 0;
+            } finally {
+                unlockWrite(stamp);
+            }
+        }
+
+        void forEach(EntryConsumer<? super V> action) {
+            long[] keys;
+            Object[] values;
+            long stamp = readLock();
+            try {
+                keys = table.keys.clone();
+                values = table.values.clone();
+            } finally {
+                unlockRead(stamp);
+            }
+            for (int i = 0; i < values.length; i++) {
+                if (values[i] != null) {
+                    action.accept(keys[i], valueAt(values, i));
+                }
+            }
+        }
+
+        @SuppressWarnings("unchecked")
+        private static <V> V valueAt(Object[] values, int i) {
+            return (V) values[i];
+        }
+
+        private void add(Table table, long key, V value, int hash) {
+            table.insert(key, value, hash);
+            size++;
+            if (size > table.keys.length * MAX_LOAD_FACTOR) {
+                Table resized = new Table(table.keys.length * 2);
+                for (int i = 0; i < table.values.length; i++) {
+                    Object stored = table.values[i];
+                    if (stored != null) {
+                        long storedKey = table.keys[i];
+                        resized.insert(storedKey, stored, (int) ConcurrentLongHashSet.hash(storedKey));
+                    }
+                }
+                this.table = resized;
+            }
+        }
+    }
+}
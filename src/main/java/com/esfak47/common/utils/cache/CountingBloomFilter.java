@@ -0,0 +1,207 @@
+package com.esfak47.common.utils.cache;
+
+import com.esfak47.common.lang.Assert;
+
+import java.nio.ByteBuffer;
+import java.util.concurrent.atomic.AtomicLongArray;
+
+/**
+ * A thread-safe {@link BloomFilter} which supports removal, at four times the memory.
+ * <p>
+ * Every bit is replaced by a 4-bit counter, sixteen to a {@code long}, laid out in blocks of a cache line like the
+ * bits of {@link BloomFilter}. Adding increments the counters of the element and removing decrements them, each with a
+ * compare-and-set. A counter which reaches 15 sticks there, since it no longer knows how many elements share it, so
+ * removals never cause false negatives because of an overflow. Removing an element which was never added does, it
+ * should only be done for elements known to be in the filter.
+ *
+ * @author tony
+ */
+public final class CountingBloomFilter {
+
+    private static final int COUNTERS_PER_BLOCK = BloomFilter.BLOCK_BITS / 4;
+
+    private static final long MAX_COUNT = 0xfL;
+
+    private static final int FORMAT = 2;
+
+    private final AtomicLongArray counters;
+
+    private final int blockCount;
+
+    private final int hashCount;
+
+    private CountingBloomFilter(int blockCount, int hashCount) {
+        this.blockCount = blockCount;
+        this.hashCount = hashCount;
+        this.counters = new AtomicLongArray(blockCount * BloomFilter.BLOCK_LONGS);
+    }
+
+    /**
+     * @param expectedInsertions number of distinct elements the filter is sized for
+     * @param fpp                target false positive probability once it holds {@code expectedInsertions} elements
+     * @return an empty filter
+     */
+    public static CountingBloomFilter create(long expectedInsertions, double fpp) {
+        long counters = BloomFilter.optimalBits(expectedInsertions, fpp);
+        return new CountingBloomFilter(BloomFilter.blockCount(counters * 4),
+                BloomFilter.optimalHashCount(expectedInsertions, counters));
+    }
+
+    /**
+     * @param bytes the content of {@link #toByteArray()}
+     * @return a filter holding the same elements
+     */
+    public static CountingBloomFilter readFrom(byte[] bytes) {
+        Assert.notNull(bytes, "bytes should not be null");
+        ByteBuffer buffer = ByteBuffer.wrap(bytes);
+        Assert.isTrue(bytes.length >= 12 && buffer.getInt() == FORMAT, "not a serialized CountingBloomFilter");
+        int hashCount = buffer.getInt();
+        int blockCount = buffer.getInt();
+        Assert.isTrue(hashCount > 0 && blockCount > 0
+                        && buffer.remaining() == (long) blockCount * BloomFilter.BLOCK_LONGS * Long.BYTES,
+                "corrupted CountingBloomFilter");
+        CountingBloomFilter filter = new CountingBloomFilter(blockCount, hashCount);
+        for (int i = 0; i < filter.counters.length(); i++) {
+            filter.counters.set(i, buffer.getLong());
+        }
+        return filter;
+    }
+
+    public void add(long item) {
+        update(ConcurrentLongHashSet.hash(item), 1);
+    }
+
+    public void add(CharSequence item) {
+        Assert.notNull(item, "item should not be null");
+        update(BloomFilter.hash(item), 1);
+    }
+
+    public void add(byte[] item) {
+        Assert.notNull(item, "item should not be null");
+        update(BloomFilter.hash(item), 1);
+    }
+
+    /**
+     * @param item element
+     * @return {@code false} if the element was certainly not in the filter, which is left unchanged
+     */
+    public boolean remove(long item) {
+        return removeHash(ConcurrentLongHashSet.hash(item));
+    }
+
+    /**
+     * @param item element
+     * @return {@code false} if the element was certainly not in the filter, which is left unchanged
+     */
+    public boolean remove(CharSequence item) {
+        Assert.notNull(item, "item should not be null");
+        return removeHash(BloomFilter.hash(item));
+    }
+
+    /**
+     * @param item element
+     * @return {@code false} if the element was certainly not in the filter, which is left unchanged
+     */
+    public boolean remove(byte[] item) {
+        Assert.notNull(item, "item should not be null");
+        return removeHash(BloomFilter.hash(item));
+    }
+
+    /**
+     * @param item element
+     * @return {@code false} if the element is certainly not in the filter, {@code true} if it probably is
+     */
+    public boolean mightContain(long item) {
+        return mightContainHash(ConcurrentLongHashSet.hash(item));
+    }
+
+    /**
+     * @param item element
+     * @return {@code false} if the element is certainly not in the filter, {@code true} if it probably is
+     */
+    public boolean mightContain(CharSequence item) {
+        Assert.notNull(item, "item should not be null");
+        return mightContainHash(BloomFilter.hash(item));
+    }
+
+    /**
+     * @param item element
+     * @return {@code false} if the element is certainly not in the filter, {@code true} if it probably is
+     */
+    public boolean mightContain(byte[] item) {
+        Assert.notNull(item, "item should not be null");
+        return mightContainHash(BloomFilter.hash(item));
+    }
+
+    private boolean removeHash(long hash) {
+        if (!mightContainHash(hash)) {
+            return false;
+        }
+        update(hash, -1);
+        return true;
+    }
+
+    private void update(long hash, int delta) {
+        int offset = BloomFilter.blockOffset(hash, blockCount);
+        long probe = hash;
+        for (int i = 0; i < hashCount; i++) {
+            probe = BloomFilter.nextProbe(probe);
+            int counter = (int) (probe >>> 57);
+            int index = offset + (counter >>> 4);
+            int shift = (counter & 15) << 2;
+            for (; ; ) {
+                long word = counters.get(index);
+                long count = (word >>> shift) & MAX_COUNT;
+                // a saturated counter no longer knows its count, an empty one has nothing to remove
+                if (count == MAX_COUNT || (delta < 0 && count == 0)) {
+                    break;
+                }
+                if (counters.compareAndSet(index, word, word + ((long) delta << shift))) {
+                    break;
+                }
+            }
+        }
+    }
+
+    private boolean mightContainHash(long hash) {
+        int offset = BloomFilter.blockOffset(hash, blockCount);
+        long probe = hash;
+        for (int i = 0; i < hashCount; i++) {
+            probe = BloomFilter.nextProbe(probe);
+            int counter = (int) (probe >>> 57);
+            if (((counters.get(offset + (counter >>> 4)) >>> ((counter & 15) << 2)) & MAX_COUNT) == 0) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    /**
+     * @return the number of counters of the filter
+     */
+    public long counterSize() {
+        return (long) blockCount * COUNTERS_PER_BLOCK;
+    }
+
+    public int hashCount() {
+        return hashCount;
+    }
+
+    /**
+     * @return the filter as bytes, read back by {@link #readFrom(byte[])}. Elements added or removed concurrently may
+     * or may not be included
+     */
+    public byte[] toByteArray() {
+        ByteBuffer buffer = ByteBuffer.allocate(12 + counters.length() * Long.BYTES);
+        buffer.putInt(FORMAT).putInt(hashCount).putInt(blockCount);
+        for (int i = 0; i < counters.length(); i++) {
+            buffer.putLong(counters.get(i));
+        }
+        return buffer.array();
+    }
+
+    @Override
+    public String toString() {
+        return "CountingBloomFilter{counterSize=" + counterSize() + ", hashCount=" + hashCount + '}';
+    }
+}
@@ -0,0 +1,244 @@
+package com.esfak47.common.utils.cache;
+
+import com.esfak47.common.lang.Assert;
+
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+
+/**
+ * A {@link LoadingCache} on top of any {@link Cache}.
+ * <p>
+ * A miss registers a {@link CompletableFuture} for the key, the thread which registered it runs the loader and the
+ * threads missing the same key meanwhile wait on that future. The future is unregistered once the value is cached.
+ * <p>
+ * The loads are recorded in the statistics of the underlying cache when it is one of the concurrent caches of this
+ * package built with {@link CacheBuilder#recordStats()}.
+ *
+ * @author tony
+ */
+public class DefaultLoadingCache<K, V> implements LoadingCache<K, V> {
+
+    private final Cache<K, V> cache;
+
+    private final CacheLoader<? super K, V> loader;
+
+    private final ConcurrentMap<K, CompletableFuture<V>> loading = new ConcurrentHashMap<>();
+
+    private final StatsCounter statsCounter;
+
+    public DefaultLoadingCache(Cache<K, V> cache, CacheLoader<? super K, V> loader) {
+        Assert.notNull(cache, "cache should not be null");
+        Assert.notNull(loader, "loader should not be null");
+        this.cache = cache;
+        this.loader = loader;
+        this.statsCounter = cache instanceof AbstractConcurrentCache
+                ? ((AbstractConcurrentCache<K, V>) cache).statsCounter() : StatsCounter.disabled();
+    }
+
+    private static RuntimeException launder(Throwable throwable) {
+        if (throwable instanceof CompletionException && throwable.getCause() != null) {
+            throwable = throwable.getCause();
+        }
+        if (throwable instanceof RuntimeException) {
+            return (RuntimeException) throwable;
+        }
+        if (throwable instanceof Error) {
+            throw (Error) throwable;
+        }
+        return new CompletionException(throwable);
+    }
+
+    private static <V> V join(CompletableFuture<V> future) {
+        try {
+            return future.join();
+        } catch (CompletionException e) {
+            throw launder(e);
+        }
+    }
+
+    @Override
+    public V getOrLoad(K key) {
+        V value = cache.get(key);
+        if (value != null) {
+            return value;
+        }
+        CompletableFuture<V> future = new CompletableFuture<>();
+        CompletableFuture<V> inFlight = loading.putIfAbsent(key, future);
+        if (inFlight != null) {
+            return join(inFlight);
+        }
+        try {
+            // another caller may have finished loading between the miss and the registration
+            value = getQuietly(key);
+            if (value == null) {
+                value = load(key);
+                if (value != null) {
+                    cache.put(key, value);
+                }
+            }
+            future.complete(value);
+            return value;
+        } catch (Throwable e) {
+            future.completeExceptionally(e);
+            throw launder(e);
+        } finally {
+            loading.remove(key, future);
+        }
+    }
+
+    @Override
+    public Map<K, V> getAll(Iterable<? extends K> keys) {
+        Map<K, V> found = new HashMap<>();
+        Map<K, CompletableFuture<V>> claimed = new LinkedHashMap<>();
+        Map<K, CompletableFuture<V>> waiting = new HashMap<>();
+        for (K key : keys) {
+            if (found.containsKey(key) || claimed.containsKey(key) || waiting.containsKey(key)) {
+                continue;
+            }
+            V value = cache.get(key);
+            if (value != null) {
+                found.put(key, value);
+                continue;
+            }
+            CompletableFuture<V> future = new CompletableFuture<>();
+            CompletableFuture<V> inFlight = loading.putIfAbsent(key, future);
+            if (inFlight == null) {
+                claimed.put(key, future);
+            } else {
+                waiting.put(key, inFlight);
+            }
+        }
+        if (!claimed.isEmpty()) {
+            loadAll(claimed, found);
+        }
+        for (Map.Entry<K, CompletableFuture<V>> entry : waiting.entrySet()) {
+            V value = join(entry.getValue());
+            if (value != null) {
+                found.put(entry.getKey(), value);
+            }
+        }
+        Map<K, V> result = new LinkedHashMap<>(found.size() * 2);
+        for (K key : keys) {
+            V value = found.get(key);
+            if (value != null) {
+                result.put(key, value);
+            }
+        }
+        return result;
+    }
+
+    Cache<K, V> delegate() {
+        return cache;
+    }
+
+    private V getQuietly(K key) {
+        if (cache instanceof AbstractConcurrentCache) {
+            return ((AbstractConcurrentCache<K, V>) cache).getQuietly(key);
+        }
+        return cache.get(key);
+    }
+
+    private V load(K key) throws Exception {
+        long start = System.nanoTime();
+        V value;
+        try {
+            value = loader.load(key);
+        } catch (Throwable e) {
+            statsCounter.recordLoadFailure(System.nanoTime() - start);
+            throw e;
+        }
+        if (value == null) {
+            statsCounter.recordLoadFailure(System.nanoTime() - start);
+        } else {
+            statsCounter.recordLoadSuccess(System.nanoTime() - start);
+        }
+        return value;
+    }
+
+    private void loadAll(Map<K, CompletableFuture<V>> claimed, Map<K, V> found) {
+        long start = System.nanoTime();
+        try {
+            Map<?, ? extends V> loaded;
+            try {
+                loaded = loader.loadAll(Collections.unmodifiableSet(claimed.keySet()));
+            } catch (Throwable e) {
+                statsCounter.recordLoadFailure(System.nanoTime() - start);
+                throw e;
+            }
+            statsCounter.recordLoadSuccess(System.nanoTime() - start);
+            for (Map.Entry<K, CompletableFuture<V>> entry : claimed.entrySet()) {
+                V value = loaded == null ? null : loaded.get(entry.getKey());
+                if (value != null) {
+                    cache.put(entry.getKey(), value);
+                    found.put(entry.getKey(), value);
+                }
+                entry.getValue().complete(value);
+            }
+        } catch (Throwable e) {
+            for (CompletableFuture<V> future : claimed.values()) {
+                future.completeExceptionally(e);
+            }
+            throw launder(e);
+        } finally {
+            for (Map.Entry<K, CompletableFuture<V>> entry : claimed.entrySet()) {
+                loading.remove(entry.getKey(), entry.getValue());
+            }
+        }
+    }
+
+    @Override
+    public V get(Object key) {
+        return cache.get(key);
+    }
+
+    @Override
+    public V put(K key, V value) {
+        return cache.put(key, value);
+    }
+
+    @Override
+    public V putIfAbsent(K key, V value) {
+        return cache.putIfAbsent(key, value);
+    }
+
+    @Override
+    public V remove(Object key) {
+        return cache.remove(key);
+    }
+
+    @Override
+    public boolean containsKey(Object key) {
+        return cache.containsKey(key);
+    }
+
+    @Override
+    public int size() {
+        return cache.size();
+    }
+
+    @Override
+    public boolean isEmpty() {
+        return cache.isEmpty();
+    }
+
+    @Override
+    public void clear() {
+        cache.clear();
+    }
+
+    @Override
+    public void cleanUp() {
+        cache.cleanUp();
+    }
+
+    @Override
+    public CacheStats stats() {
+        return cache.stats();
+    }
+}
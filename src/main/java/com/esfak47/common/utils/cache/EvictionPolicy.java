@@ -0,0 +1,20 @@
+package com.esfak47.common.utils.cache;
+
+/**
+ * The size based eviction policies of the caches built by {@link CacheBuilder}.
+ *
+ * @author tony
+ */
+public enum EvictionPolicy {
+
+    /**
+     * least recently used, see {@link ConcurrentLRUCache}
+     */
+    LRU,
+
+    /**
+     * frequency aware admission in front of a segmented LRU, see {@link TinyLfuCache}
+     */
+    TINY_LFU
+
+}
@@ -0,0 +1,137 @@
+/*
+ * Copyright 2015 Ben Manes. All Rights Reserved.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.esfak47.common.utils.cache;
+
+/**
+ * A count-min sketch estimating how often a key was seen in the recent past.
+ * <p>
+ * Every {@code long} in the table holds sixteen 4-bit counters, a key maps to four counters picked by four hash
+ * functions and its estimate is the minimum of them. Once the number of increments reaches ten times the capacity
+ * all counters are halved, so the sketch forgets old popularity and adapts to a changing workload. Not thread safe,
+ * it is always guarded by the eviction lock of the owning cache.
+ * <p>
+ * Derived from {@code com.github.benmanes.caffeine.cache.FrequencySketch} of Caffeine, whose seeds and indexing scheme
+ * it keeps.
+ *
+ * @author tony
+ */
+final class FrequencySketch {
+
+    private static final long[] SEED = {
+            0xc3a5c85c97cb3127L, 0xb492b66fbe98f273L, 0x9ae16a3b2f90404fL, 0xcbf29ce484222325L};
+
+    private static final long RESET_MASK = 0x7777777777777777L;
+
+    private static final long ONE_MASK = 0x1111111111111111L;
+
+    private static final int MAX_TABLE_SIZE = 1 << 30;
+
+    private long[] table;
+
+    private int tableMask;
+
+    private int sampleSize;
+
+    private int size;
+
+    FrequencySketch(int maximumSize) {
+        ensureCapacity(maximumSize);
+    }
+
+    private static int spread(int x) {
+        x = ((x >>> 16) ^ x) * 0x45d9f3b;
+        x = ((x >>> 16) ^ x) * 0x45d9f3b;
+        return (x >>> 16) ^ x;
+    }
+
+    /**
+     * grow the table so that it can estimate {@code maximumSize} keys, the popularity seen so far is discarded.
+     *
+     * @param maximumSize expected number of keys
+     */
+    void ensureCapacity(int maximumSize) {
+        int maximum = Math.min(Math.max(maximumSize, 1), MAX_TABLE_SIZE);
+        if (table != null && table.length >= maximum) {
+            return;
+        }
+        table = new long[StripedReadBuffer.ceilingPowerOfTwo(maximum)];
+        tableMask = table.length - 1;
+        sampleSize = 10 * maximum;
+        if (sampleSize <= 0) {
+            sampleSize = Integer.MAX_VALUE;
+        }
+        size = 0;
+    }
+
+    /**
+     * @param key key
+     * @return the estimated number of occurrences of the key, at most 15
+     */
+    int frequency(Object key) {
+        int hash = spread(key.hashCode());
+        int start = (hash & 3) << 2;
+        int frequency = Integer.MAX_VALUE;
+        for (int i = 0; i < 4; i++) {
+            int index = indexOf(hash, i);
+            int count = (int) ((table[index] >>> ((start + i) << 2)) & 0xfL);
+            frequency = Math.min(frequency, count);
+        }
+        return frequency;
+    }
+
+    /**
+     * increment the popularity of the key if it is not already at the maximum
+     *
+     * @param key key
+     */
+    void increment(Object key) {
+        int hash = spread(key.hashCode());
+        int start = (hash & 3) << 2;
+        boolean added = false;
+        for (int i = 0; i < 4; i++) {
+            added |= incrementAt(indexOf(hash, i), start + i);
+        }
+        if (added && ++size == sampleSize) {
+            reset();
+        }
+    }
+
+    private boolean incrementAt(int i, int j) {
+        int offset = j << 2;
+        long mask = 0xfL << offset;
+        if ((table[i] & mask) != mask) {
+            table[i] += 1L << offset;
+            return true;
+        }
+        return false;
+    }
+
+    private void reset() {
+        int count = 0;
+        for (int i = 0; i < table.length; i++) {
+            count += Long.bitCount(table[i] & ONE_MASK);
+            table[i] = (table[i] >>> 1) & RESET_MASK;
+        }
+        size = (size >>> 1) - (count >>> 2);
+    }
+
+    private int indexOf(int item, int i) {
+        long hash = (item + SEED[i]) * SEED[i];
+        hash += hash >>> 32;
+        return ((int) hash) & tableMask;
+    }
+}
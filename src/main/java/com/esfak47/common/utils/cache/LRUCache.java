@@ -23,7 +23,7 @@ import java.util.concurrent.locks.ReentrantLock;
 /**
  * @author tonywang
  */
-public class LRUCache<K, V> extends LinkedHashMap<K, V> {
+public class LRUCache<K, V> extends LinkedHashMap<K, V> implements Cache<K, V> {
 
     private static final long serialVersionUID = -5167631809472116969L;
 
@@ -31,6 +31,7 @@ public class LRUCache<K, V> extends LinkedHashMap<K, V> {
 
     private static final int DEFAULT_MAX_CAPACITY = 1000;
     private final Lock lock = new ReentrantLock();
+    private final ConcurrentStatsCounter statsCounter = new ConcurrentStatsCounter();
     private volatile int maxCapacity;
 
     public LRUCache() {
@@ -44,7 +45,11 @@ public class LRUCache<K, V> extends LinkedHashMap<K, V> {
 
     @Override
     protected boolean removeEldestEntry(java.util.Map.Entry<K, V> eldest) {
-        return size() > maxCapacity;
+        if (size() > maxCapacity) {
+            statsCounter.recordRemoval(RemovalCause.SIZE);
+            return true;
+        }
+        return false;
     }
 
     @Override
@@ -61,7 +66,13 @@ public class LRUCache<K, V> extends LinkedHashMap<K, V> {
     public V get(Object key) {
         try {
             lock.lock();
-            return super.get(key);
+            V value = super.get(key);
+            if (value == null) {
+                statsCounter.recordMisses(1);
+            } else {
+                statsCounter.recordHits(1);
+            }
+            return value;
         } finally {
             lock.unlock();
         }
@@ -77,6 +88,16 @@ public class LRUCache<K, V> extends LinkedHashMap<K, V> {
         }
     }
 
+    @Override
+    public V putIfAbsent(K key, V value) {
+        try {
+            lock.lock();
+            return super.putIfAbsent(key, value);
+        } finally {
+            lock.unlock();
+        }
+    }
+
     @Override
     public V remove(Object key) {
         try {
@@ -97,6 +118,16 @@ public class LRUCache<K, V> extends LinkedHashMap<K, V> {
         }
     }
 
+    @Override
+    public boolean isEmpty() {
+        try {
+            lock.lock();
+            return super.isEmpty();
+        } finally {
+            lock.unlock();
+        }
+    }
+
     @Override
     public void clear() {
         try {
@@ -107,6 +138,14 @@ public class LRUCache<K, V> extends LinkedHashMap<K, V> {
         }
     }
 
+    /**
+     * the hits, misses and evictions are always recorded, the weighted size is the number of entries
+     */
+    @Override
+    public CacheStats stats() {
+        return statsCounter.snapshot().withWeightedSize(size());
+    }
+
     public int getMaxCapacity() {
         return maxCapacity;
     }
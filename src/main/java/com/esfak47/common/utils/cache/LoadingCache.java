@@ -0,0 +1,34 @@
+package com.esfak47.common.utils.cache;
+
+import java.util.Map;
+
+/**
+ * A {@link Cache} which computes missing values with its {@link CacheLoader}.
+ * <p>
+ * Concurrent misses of the same key are coalesced: one caller runs the loader while the others wait for its result,
+ * so a missing key under load costs one computation instead of one per thread. If the loader fails the exception is
+ * rethrown to every waiting caller and nothing is cached; checked exceptions are wrapped in a
+ * {@link java.util.concurrent.CompletionException}.
+ *
+ * @author tony
+ */
+public interface LoadingCache<K, V> extends Cache<K, V> {
+
+    /**
+     * Returns the cached value of the key, loading it if necessary.
+     *
+     * @param key key
+     * @return the value, or {@code null} if the loader found none
+     */
+    V getOrLoad(K key);
+
+    /**
+     * Returns the cached values of the keys, the missing ones are loaded with a single
+     * {@link CacheLoader#loadAll(java.util.Set)} call.
+     *
+     * @param keys keys
+     * @return the values found, in the iteration order of {@code keys}
+     */
+    Map<K, V> getAll(Iterable<? extends K> keys);
+
+}
@@ -0,0 +1,271 @@
+package com.esfak47.common.utils.cache;
+
+import java.util.concurrent.atomic.AtomicIntegerFieldUpdater;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.function.BiConsumer;
+
+/**
+ * A cache keeping its values outside of the heap, for large caches of serialized payloads which would otherwise fill
+ * the old generation and lengthen the GC pauses.
+ * <pre class="code">
+ * OffHeapCache&lt;String, byte[]&gt; cache = CacheBuilder.newBuilder()
+ *     .maximumWeight(4L &lt;&lt; 30)
+ *     .expireAfterWrite(10, TimeUnit.MINUTES)
+ *     .buildOffHeap(ValueCodecs.bytes());
+ * </pre>
+ * The values are encoded by a {@link ValueCodec} and copied into chunks of direct memory handed out by a
+ * {@link SlabAllocator}. Only the keys and small slot references stay on the heap, in a regular concurrent cache of
+ * this package which is bounded by the size of the allocated chunks and frees them when it evicts or expires an entry.
+ * The maximum weight is the off-heap capacity in bytes.
+ * <p>
+ * Every read decodes a fresh copy of the value. A slot is reference counted, so a reader racing with the eviction of
+ * the entry finishes copying before the chunk is reused. When no chunk is free, the least valuable entries of the same
+ * chunk size are evicted ahead of the insertion until one is: evicting in the order of the policy whatever the size
+ * would empty the chunks of every class but rarely a whole slab, and flush most of the cache before a new class gets
+ * one. A class which has no entry to give up takes over the emptiest slab of another class, evicting its entries. A
+ * value which still cannot be stored, because it is larger than a slab or its chunks are still being read, behaves as
+ * if it was evicted right away, see {@link #rejectedCount()}.
+ *
+ * @author tony
+ */
+public class OffHeapCache<K, V> implements Cache<K, V> {
+
+    private final SlabAllocator allocator;
+
+    private final ValueCodec<V> codec;
+
+    private final AbstractConcurrentCache<K, Slot> slots;
+
+    private final LongAdder rejected = new LongAdder();
+
+    OffHeapCache(CacheBuilder<? super K, ? super V> builder, ValueCodec<V> codec) {
+        this.codec = codec;
+        this.allocator = new SlabAllocator(builder.maximumWeight, SlabAllocator.DEFAULT_SLAB_SIZE);
+        this.slots = (AbstractConcurrentCache<K, Slot>) builder.copySettings()
+                .weigher((K key, Slot slot) -> allocator.chunkSize(slot.length))
+                .removalListener((K key, Slot slot, RemovalCause cause) -> slot.release())
+                .<K, Slot>build();
+    }
+
+    @Override
+    public V get(Object key) {
+        Slot slot = slots.get(key);
+        if (slot == null || !slot.retain()) {
+            return null;
+        }
+        byte[] bytes;
+        try {
+            bytes = allocator.read(slot.address, slot.length);
+        } finally {
+            slot.release();
+        }
+        return codec.decode(bytes);
+    }
+
+    @Override
+    public V put(K key, V value) {
+        if (key == null || value == null) {
+            throw new NullPointerException();
+        }
+        Slot slot = store(value);
+        if (slot == null) {
+            rejected.increment();
+            return take(slots.remove(key));
+        }
+        return take(slots.put(key, slot));
+    }
+
+    @Override
+    public V putIfAbsent(K key, V value) {
+        if (key == null || value == null) {
+            throw new NullPointerException();
+        }
+        Slot slot = store(value);
+        if (slot == null) {
+            rejected.increment();
+            return get(key);
+        }
+        for (; ; ) {
+            Slot current = slots.putIfAbsent(key, slot);
+            if (current == null) {
+                return null;
+            }
+            // a slot which can not be retained any more has already left the map
+            if (current.retain()) {
+                slot.release();
+                byte[] bytes;
+                try {
+                    bytes = allocator.read(current.address, current.length);
+                } finally {
+                    current.release();
+                }
+                return codec.decode(bytes);
+            }
+        }
+    }
+
+    @Override
+    public V remove(Object key) {
+        return take(slots.remove(key));
+    }
+
+    @Override
+    public boolean containsKey(Object key) {
+        return slots.containsKey(key);
+    }
+
+    @Override
+    public int size() {
+        return slots.size();
+    }
+
+    @Override
+    public boolean isEmpty() {
+        return slots.isEmpty();
+    }
+
+    @Override
+    public void clear() {
+        slots.clear();
+    }
+
+    @Override
+    public void cleanUp() {
+        slots.cleanUp();
+    }
+
+    /**
+     * the statistics of the map of slots, a read which loses the race with the eviction of its entry counts as a hit
+     */
+    @Override
+    public CacheStats stats() {
+        return slots.stats();
+    }
+
+    /**
+     * @return the number of off-heap bytes taken by the entries, counting whole chunks
+     */
+    public long weightedSize() {
+        return slots.weightedSize();
+    }
+
+    /**
+     * @return the number of bytes of direct memory the cache may allocate
+     */
+    public long getCapacity() {
+        return allocator.capacity();
+    }
+
+    /**
+     * @return the number of values which could not be stored since the cache was created
+     */
+    public long rejectedCount() {
+        return rejected.sum();
+    }
+
+    /**
+     * decode the entries one at a time, from the most to the least valuable to keep
+     *
+     * @param action action
+     */
+    void forEachHottest(BiConsumer<? super K, ? super V> action) {
+        for (AbstractConcurrentCache.Node<K, Slot> node : slots.hottestNodes()) {
+            Slot slot = node.value;
+            if (!slot.retain()) {
+                continue;
+            }
+            byte[] bytes;
+            try {
+                bytes = allocator.read(slot.address, slot.length);
+            } finally {
+                slot.release();
+            }
+            action.accept(node.key, codec.decode(bytes));
+        }
+    }
+
+    boolean isFull() {
+        return slots.isFull();
+    }
+
+    private Slot store(V value) {
+        byte[] bytes = codec.encode(value);
+        int chunkSize = allocator.chunkSize(bytes.length);
+        if (chunkSize < 0) {
+            return null;
+        }
+        long address = allocator.allocate(bytes.length);
+        // the slabs are full, evict ahead of the insertion until a chunk of the right size is freed
+        while (address == SlabAllocator.NO_MEMORY
+                && slots.evictMatching(slot -> allocator.chunkSize(slot.length) == chunkSize, chunkSize) > 0) {
+            address = allocator.allocate(bytes.length);
+        }
+        if (address == SlabAllocator.NO_MEMORY) {
+            int slab = allocator.retireEmptiestSlab(bytes.length);
+            if (slab >= 0) {
+                slots.evictMatching(slot -> SlabAllocator.slabIndex(slot.address) == slab, Long.MAX_VALUE);
+                address = allocator.allocate(bytes.length);
+            }
+        }
+        if (address == SlabAllocator.NO_MEMORY) {
+            return null;
+        }
+        allocator.write(address, bytes);
+        return new Slot(allocator, address, bytes.length);
+    }
+
+    /**
+     * decode a slot removed from the map by this thread, and free it
+     */
+    private V take(Slot slot) {
+        if (slot == null) {
+            return null;
+        }
+        byte[] bytes;
+        try {
+            bytes = allocator.read(slot.address, slot.length);
+        } finally {
+            slot.release();
+        }
+        return codec.decode(bytes);
+    }
+
+    /**
+     * A chunk holding an encoded value. The map holds one reference until the entry is removed, readers hold one while
+     * copying, and the chunk is freed when the count drops to zero.
+     */
+    static final class Slot {
+
+        private static final AtomicIntegerFieldUpdater<Slot> REFS =
+                AtomicIntegerFieldUpdater.newUpdater(Slot.class, "refs");
+
+        final long address;
+        final int length;
+        private final SlabAllocator allocator;
+        private volatile int refs = 1;
+
+        Slot(SlabAllocator allocator, long address, int length) {
+            this.allocator = allocator;
+            this.address = address;
+            this.length = length;
+        }
+
+        boolean retain() {
+            for (; ; ) {
+                int current = refs;
+                if (current == 0) {
+                    return false;
+                }
+                if (REFS.compareAndSet(this, current, current + 1)) {
+                    return true;
+                }
+            }
+        }
+
+        void release() {
+            if (REFS.decrementAndGet(this) == 0) {
+                allocator.free(address);
+            }
+        }
+    }
+}
@@ -0,0 +1,25 @@
+package com.esfak47.common.utils.cache;
+
+/**
+ * The reason why a {@link RemovalListener} was notified.
+ *
+ * @author tony
+ */
+public enum RemovalCause {
+
+    /**
+     * the entry was discarded by {@link Cache#clear()}
+     */
+    EXPLICIT,
+
+    /**
+     * the entry was evicted because the cache was over its maximum
+     */
+    SIZE,
+
+    /**
+     * the entry expired, it was cleaned up or overwritten after its deadline
+     */
+    EXPIRED
+
+}
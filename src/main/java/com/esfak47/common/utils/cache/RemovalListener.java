@@ -0,0 +1,23 @@
+package com.esfak47.common.utils.cache;
+
+/**
+ * Notified of the entries which leave a cache without being handed back to a caller: evicted, expired or cleared.
+ * The value returned by {@link Cache#put(Object, Object)} or {@link Cache#remove(Object)} is not notified, it belongs
+ * to the caller from then on, so every value is either returned or notified exactly once.
+ * <p>
+ * The listener is called synchronously by the thread which removed the entry, sometimes while holding the eviction
+ * lock, so it should be short and must not call back into the cache.
+ *
+ * @author tony
+ */
+@FunctionalInterface
+public interface RemovalListener<K, V> {
+
+    /**
+     * @param key   key of the removed entry
+     * @param value value of the removed entry
+     * @param cause why the entry was removed
+     */
+    void onRemoval(K key, V value, RemovalCause cause);
+
+}
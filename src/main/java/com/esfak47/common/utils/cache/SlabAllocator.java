@@ -0,0 +1,316 @@
+package com.esfak47.common.utils.cache;
+
+import java.nio.ByteBuffer;
+
+/**
+ * Allocates chunks of off-heap memory out of direct {@link ByteBuffer} slabs.
+ * <p>
+ * Requests are rounded up to a power of two size class, from {@link #MIN_CHUNK_SIZE} bytes up to the slab size. A slab
+ * is cut into chunks of a single class when the class first needs it, and goes back to the shared pool once all its
+ * chunks are freed, so memory moves between the classes as the value sizes change. When a class needs a slab and none
+ * is left, the caller frees the chunks of the emptiest slab of another class, see {@link #retireEmptiestSlab(int)},
+ * rather than wait for one to empty by chance. A slab hands out its chunks in
+ * order and then reuses the freed ones, linked through their first four bytes: the bookkeeping takes no heap however
+ * small the chunks, and allocating or freeing creates no garbage. The buffers are allocated lazily and kept for the
+ * lifetime of the allocator.
+ * <p>
+ * A chunk is addressed by a {@code long} holding the slab index in the high 32 bits and the offset in the low ones.
+ * Allocation and release are serialized per size class, reads and writes of distinct chunks run concurrently.
+ *
+ * @author tony
+ */
+final class SlabAllocator {
+
+    static final int MIN_CHUNK_SIZE = 64;
+
+    static final int DEFAULT_SLAB_SIZE = 4 << 20;
+
+    static final long NO_MEMORY = -1L;
+
+    private final int slabSize;
+
+    private final Slab[] slabs;
+
+    private final SizeClass[] sizeClasses;
+
+    /**
+     * indexes of the unused slabs, guarded by this
+     */
+    private final int[] freeSlabs;
+
+    private int freeSlabCount;
+
+    /**
+     * @param capacity maximum number of bytes, rounded up to a whole number of slabs
+     * @param slabSize power of two size of a slab
+     */
+    SlabAllocator(long capacity, int slabSize) {
+        if (slabSize < MIN_CHUNK_SIZE || Integer.bitCount(slabSize) != 1) {
+            throw new IllegalArgumentException("slabSize should be a power of two not less than " + MIN_CHUNK_SIZE);
+        }
+        long slabCount = Math.max(1, (capacity + slabSize - 1) / slabSize);
+        if (slabCount > Integer.MAX_VALUE - 8) {
+            throw new IllegalArgumentException("capacity is too large: " + capacity);
+        }
+        this.slabSize = slabSize;
+        this.slabs = new Slab[(int) slabCount];
+        this.freeSlabs = new int[slabs.length];
+        for (int i = 0; i < freeSlabs.length; i++) {
+            freeSlabs[i] = slabs.length - 1 - i;
+        }
+        this.freeSlabCount = freeSlabs.length;
+        int classes = Integer.numberOfTrailingZeros(slabSize) - Integer.numberOfTrailingZeros(MIN_CHUNK_SIZE) + 1;
+        this.sizeClasses = new SizeClass[classes];
+        for (int i = 0; i < classes; i++) {
+            sizeClasses[i] = new SizeClass();
+        }
+    }
+
+    static int slabIndex(long address) {
+        return (int) (address >>> 32);
+    }
+
+    private static int offset(long address) {
+        return (int) address;
+    }
+
+    /**
+     * @param size number of bytes
+     * @return the size of the chunk which would hold {@code size} bytes, or -1 if it is larger than a slab
+     */
+    int chunkSize(int size) {
+        if (size > slabSize) {
+            return -1;
+        }
+        return size <= MIN_CHUNK_SIZE ? MIN_CHUNK_SIZE : Integer.highestOneBit(size - 1) << 1;
+    }
+
+    /**
+     * @param size number of bytes
+     * @return the address of a chunk of at least {@code size} bytes, or {@link #NO_MEMORY}
+     */
+    long allocate(int size) {
+        int chunkSize = chunkSize(size);
+        if (chunkSize < 0) {
+            return NO_MEMORY;
+        }
+        SizeClass sizeClass = sizeClasses[Integer.numberOfTrailingZeros(chunkSize / MIN_CHUNK_SIZE)];
+        synchronized (sizeClass) {
+            if (sizeClass.partialCount == 0) {
+                Slab slab = takeSlab(chunkSize);
+                if (slab == null) {
+                    return NO_MEMORY;
+                }
+                slab.owner = sizeClass;
+                sizeClass.addPartial(slab);
+            }
+            Slab slab = sizeClass.partial[sizeClass.partialCount - 1];
+            int offset = slab.take();
+            if (slab.isFull(slabSize)) {
+                sizeClass.removePartial(slab);
+            }
+            return ((long) slab.index << 32) | offset;
+        }
+    }
+
+    /**
+     * give back a chunk returned by {@link #allocate(int)}
+     *
+     * @param address address of the chunk
+     */
+    void free(long address) {
+        Slab slab = slabs[slabIndex(address)];
+        SizeClass sizeClass = sizeClasses[Integer.numberOfTrailingZeros(slab.chunkSize / MIN_CHUNK_SIZE)];
+        synchronized (sizeClass) {
+            if (slab.isFull(slabSize) && !slab.retiring) {
+                sizeClass.addPartial(slab);
+            }
+            slab.give(offset(address));
+            if (slab.used == 0) {
+                if (slab.partialIndex >= 0) {
+                    sizeClass.removePartial(slab);
+                }
+                slab.owner = null;
+                slab.retiring = false;
+                releaseSlab(slab);
+            }
+        }
+    }
+
+    /**
+     * Stop allocating from the slab of another size class with the fewest chunks in use, so that it goes back to the
+     * pool once they are freed, to serve the class of {@code size}. The chunks still in use are left to the caller to
+     * free.
+     *
+     * @param size number of bytes
+     * @return the index of the slab, -1 if no other size class has a slab in use
+     */
+    int retireEmptiestSlab(int size) {
+        int chunkSize = chunkSize(size);
+        SizeClass target = chunkSize < 0 ? null
+                : sizeClasses[Integer.numberOfTrailingZeros(chunkSize / MIN_CHUNK_SIZE)];
+        for (; ; ) {
+            // the counts are read without the locks of their classes, a slab changing meanwhile is only a worse choice
+            Slab emptiest = null;
+            for (Slab slab : slabs) {
+                SizeClass owner = slab == null ? null : slab.owner;
+                if (owner != null && owner != target && !slab.retiring
+                        && (emptiest == null || slab.used < emptiest.used)) {
+                    emptiest = slab;
+                }
+            }
+            if (emptiest == null) {
+                return -1;
+            }
+            SizeClass owner = emptiest.owner;
+            if (owner == null) {
+                continue;
+            }
+            synchronized (owner) {
+                if (emptiest.owner == owner && !emptiest.retiring) {
+                    emptiest.retiring = true;
+                    if (emptiest.partialIndex >= 0) {
+                        owner.removePartial(emptiest);
+                    }
+                    return emptiest.index;
+                }
+            }
+        }
+    }
+
+    void write(long address, byte[] bytes) {
+        ByteBuffer buffer = slabs[slabIndex(address)].buffer.duplicate();
+        buffer.position(offset(address));
+        buffer.put(bytes);
+    }
+
+    byte[] read(long address, int length) {
+        ByteBuffer buffer = slabs[slabIndex(address)].buffer.duplicate();
+        buffer.position(offset(address));
+        byte[] bytes = new byte[length];
+        buffer.get(bytes);
+        return bytes;
+    }
+
+    /**
+     * @return the number of bytes of the slabs in use, including the free chunks of partially used slabs
+     */
+    synchronized long usedBytes() {
+        return (long) (slabs.length - freeSlabCount) * slabSize;
+    }
+
+    long capacity() {
+        return (long) slabs.length * slabSize;
+    }
+
+    private synchronized Slab takeSlab(int chunkSize) {
+        if (freeSlabCount == 0) {
+            return null;
+        }
+        int index = freeSlabs[--freeSlabCount];
+        Slab slab = slabs[index];
+        if (slab == null) {
+            slab = new Slab(index, ByteBuffer.allocateDirect(slabSize));
+            slabs[index] = slab;
+        }
+        slab.format(chunkSize);
+        return slab;
+    }
+
+    private synchronized void releaseSlab(Slab slab) {
+        freeSlabs[freeSlabCount++] = slab.index;
+    }
+
+    private static final class Slab {
+        final int index;
+        final ByteBuffer buffer;
+
+        /**
+         * the size class the slab is formatted for, {@code null} while it is in the pool, written under the lock of the
+         * class
+         */
+        volatile SizeClass owner;
+
+        /**
+         * the following fields are guarded by the size class the slab is formatted for
+         */
+        int chunkSize;
+        int used;
+        int partialIndex = -1;
+
+        /**
+         * no longer allocated from, it goes back to the pool once its last chunk is freed
+         */
+        boolean retiring;
+
+        /**
+         * offset of the first never used chunk
+         */
+        private int top;
+
+        /**
+         * offset of the last freed chunk, which holds the offset of the one freed before, -1 if none
+         */
+        private int freeHead;
+
+        Slab(int index, ByteBuffer buffer) {
+            this.index = index;
+            this.buffer = buffer;
+        }
+
+        void format(int chunkSize) {
+            this.chunkSize = chunkSize;
+            this.used = 0;
+            this.top = 0;
+            this.freeHead = -1;
+        }
+
+        boolean isFull(int slabSize) {
+            return freeHead < 0 && top + chunkSize > slabSize;
+        }
+
+        int take() {
+            int offset = freeHead;
+            if (offset >= 0) {
+                freeHead = buffer.getInt(offset);
+            } else {
+                offset = top;
+                top += chunkSize;
+            }
+            used++;
+            return offset;
+        }
+
+        void give(int offset) {
+            buffer.putInt(offset, freeHead);
+            freeHead = offset;
+            used--;
+        }
+    }
+
+    /**
+     * the slabs of one chunk size which still have free chunks, guarded by this
+     */
+    private static final class SizeClass {
+        Slab[] partial = new Slab[4];
+        int partialCount;
+
+        void addPartial(Slab slab) {
+            if (partialCount == partial.length) {
+                Slab[] grown = new Slab[partial.length * 2];
+                System.arraycopy(partial, 0, grown, 0, partialCount);
+                partial = grown;
+            }
+            slab.partialIndex = partialCount;
+            partial[partialCount++] = slab;
+        }
+
+        void removePartial(Slab slab) {
+            Slab last = partial[--partialCount];
+            partial[slab.partialIndex] = last;
+            last.partialIndex = slab.partialIndex;
+            partial[partialCount] = null;
+            slab.partialIndex = -1;
+        }
+    }
+}
@@ -0,0 +1,69 @@
+package com.esfak47.common.utils.cache;
+
+/**
+ * Records the statistics of a cache as they happen, see {@link CacheStats}.
+ *
+ * @author tony
+ */
+public interface StatsCounter {
+
+    /**
+     * @return a counter which records nothing
+     */
+    static StatsCounter disabled() {
+        return DisabledStatsCounter.INSTANCE;
+    }
+
+    void recordHits(int count);
+
+    void recordMisses(int count);
+
+    /**
+     * @param loadTime nanoseconds spent loading
+     */
+    void recordLoadSuccess(long loadTime);
+
+    /**
+     * @param loadTime nanoseconds spent before the load failed
+     */
+    void recordLoadFailure(long loadTime);
+
+    /**
+     * @param cause why an entry left the cache
+     */
+    void recordRemoval(RemovalCause cause);
+
+    /**
+     * @return the counts recorded so far, with a weighted size of zero
+     */
+    CacheStats snapshot();
+
+    enum DisabledStatsCounter implements StatsCounter {
+        INSTANCE;
+
+        @Override
+        public void recordHits(int count) {
+        }
+
+        @Override
+        public void recordMisses(int count) {
+        }
+
+        @Override
+        public void recordLoadSuccess(long loadTime) {
+        }
+
+        @Override
+        public void recordLoadFailure(long loadTime) {
+        }
+
+        @Override
+        public void recordRemoval(RemovalCause cause) {
+        }
+
+        @Override
+        public CacheStats snapshot() {
+            return CacheStats.empty();
+        }
+    }
+}
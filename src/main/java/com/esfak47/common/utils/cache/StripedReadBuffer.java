@@ -0,0 +1,116 @@
+package com.esfak47.common.utils.cache;
+
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicReferenceArray;
+import java.util.function.Consumer;
+
+/**
+ * A lossy, striped, multiple-producer / single-consumer buffer used to record reads without taking a lock.
+ * <p>
+ * Every stripe is a small ring buffer with its own write counter, the calling thread picks a stripe by its id so
+ * that concurrent readers rarely touch the same cache line. When a stripe is full the element is simply dropped:
+ * losing a few access-order hints is harmless for a cache policy, blocking the reader is not. The consumer must
+ * hold an external lock while draining.
+ *
+ * @author tony
+ */
+final class StripedReadBuffer<E> {
+
+    /**
+     * the stripe accepted the element
+     */
+    static final int SUCCESS = 0;
+
+    /**
+     * the stripe accepted the element and has reached the drain threshold
+     */
+    static final int DRAIN = 1;
+
+    /**
+     * the stripe is full or contended, the element was dropped
+     */
+    static final int FULL = 2;
+
+    private static final int NCPU = Runtime.getRuntime().availableProcessors();
+
+    private static final int STRIPES = Math.min(4 * ceilingPowerOfTwo(NCPU), 64);
+
+    private static final int BUFFER_SIZE = 16;
+
+    private static final int BUFFER_MASK = BUFFER_SIZE - 1;
+
+    private static final int DRAIN_THRESHOLD = BUFFER_SIZE / 2;
+
+    private final Stripe<E>[] stripes;
+
+    private final int stripeMask;
+
+    @SuppressWarnings("unchecked")
+    StripedReadBuffer() {
+        stripes = new Stripe[STRIPES];
+        for (int i = 0; i < STRIPES; i++) {
+            stripes[i] = new Stripe<>();
+        }
+        stripeMask = STRIPES - 1;
+    }
+
+    static int ceilingPowerOfTwo(int x) {
+        return 1 << -Integer.numberOfLeadingZeros(x - 1);
+    }
+
+    private static int probe() {
+        long id = Thread.currentThread().getId();
+        int h = (int) (id ^ (id >>> 32)) * 0x9E3779B9;
+        return h ^ (h >>> 16);
+    }
+
+    /**
+     * record an element into the stripe owned by the calling thread
+     *
+     * @param e element
+     * @return {@link #SUCCESS}, {@link #DRAIN} or {@link #FULL}
+     */
+    int offer(E e) {
+        Stripe<E> stripe = stripes[probe() & stripeMask];
+        long head = stripe.readCounter;
+        long tail = stripe.writeCounter.get();
+        long size = tail - head;
+        if (size >= BUFFER_SIZE) {
+            return FULL;
+        }
+        if (!stripe.writeCounter.compareAndSet(tail, tail + 1)) {
+            return FULL;
+        }
+        stripe.buffer.lazySet((int) (tail & BUFFER_MASK), e);
+        return size + 1 >= DRAIN_THRESHOLD ? DRAIN : SUCCESS;
+    }
+
+    /**
+     * drain every stripe, the caller must hold the lock which guards the consumer
+     *
+     * @param consumer consumer of buffered elements
+     */
+    void drainTo(Consumer<E> consumer) {
+        for (Stripe<E> stripe : stripes) {
+            long head = stripe.readCounter;
+            long tail = stripe.writeCounter.get();
+            for (; head < tail; head++) {
+                int index = (int) (head & BUFFER_MASK);
+                E e = stripe.buffer.get(index);
+                if (e == null) {
+                    // the producer won the slot but has not published it yet
+                    break;
+                }
+                stripe.buffer.lazySet(index, null);
+                consumer.accept(e);
+            }
+            stripe.readCounter = head;
+        }
+    }
+
+    private static final class Stripe<E> {
+        private final AtomicReferenceArray<E> buffer = new AtomicReferenceArray<>(BUFFER_SIZE);
+        private final AtomicLong writeCounter = new AtomicLong();
+        private volatile long readCounter;
+    }
+}
@@ -0,0 +1,17 @@
+package com.esfak47.common.utils.cache;
+
+/**
+ * A time source returning nanoseconds, replaceable in tests.
+ *
+ * @author tony
+ */
+@FunctionalInterface
+interface Ticker {
+
+    Ticker SYSTEM = System::nanoTime;
+
+    /**
+     * @return the number of nanoseconds elapsed since a fixed but arbitrary point in time
+     */
+    long read();
+}
@@ -0,0 +1,165 @@
+/*
+ * Copyright 2017 Ben Manes. All Rights Reserved.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.esfak47.common.utils.cache;
+
+import java.util.concurrent.TimeUnit;
+
+/**
+ * A hierarchical timing wheel scheduling the expiration of cache entries in O(1).
+ * <p>
+ * Each level is an array of buckets covering a power of two span of time: about one second, one minute, one hour and
+ * one day per bucket, the last level holding everything further away. An entry is put in the bucket of the finest
+ * level whose whole wheel still covers its deadline. When time advances the buckets it walked past are emptied: due
+ * entries are expired and the others cascade down to a finer level. No thread is involved, the owning cache advances
+ * the wheel during its maintenance on reads and writes. Not thread safe, it is always guarded by the eviction lock.
+ * <p>
+ * Derived from {@code com.github.benmanes.caffeine.cache.TimerWheel} of Caffeine, whose layout of the levels it keeps.
+ *
+ * @author tony
+ */
+final class TimerWheel<K, V> {
+
+    private static final int[] BUCKETS = {64, 64, 32, 4, 1};
+
+    private static final long[] SPANS = {
+            ceilingPowerOfTwo(TimeUnit.SECONDS.toNanos(1)),
+            ceilingPowerOfTwo(TimeUnit.MINUTES.toNanos(1)),
+            ceilingPowerOfTwo(TimeUnit.HOURS.toNanos(1)),
+            ceilingPowerOfTwo(TimeUnit.DAYS.toNanos(1)),
+            BUCKETS[3] * ceilingPowerOfTwo(TimeUnit.DAYS.toNanos(1)),
+            BUCKETS[3] * ceilingPowerOfTwo(TimeUnit.DAYS.toNanos(1)),
+    };
+
+    private static final long[] SHIFT = {
+            Long.numberOfTrailingZeros(SPANS[0]),
+            Long.numberOfTrailingZeros(SPANS[1]),
+            Long.numberOfTrailingZeros(SPANS[2]),
+            Long.numberOfTrailingZeros(SPANS[3]),
+            Long.numberOfTrailingZeros(SPANS[4]),
+    };
+
+    private final AbstractConcurrentCache<K, V> cache;
+
+    private final AbstractConcurrentCache.Node<K, V>[][] wheel;
+
+    private long nanos;
+
+    @SuppressWarnings("unchecked")
+    TimerWheel(AbstractConcurrentCache<K, V> cache) {
+        this.cache = cache;
+        wheel = new AbstractConcurrentCache.Node[BUCKETS.length][];
+        for (int i = 0; i < wheel.length; i++) {
+            wheel[i] = new AbstractConcurrentCache.Node[BUCKETS[i]];
+            for (int j = 0; j < wheel[i].length; j++) {
+                AbstractConcurrentCache.Node<K, V> sentinel = new AbstractConcurrentCache.Node<>(null, null, 0);
+                sentinel.timerPrev = sentinel;
+                sentinel.timerNext = sentinel;
+                wheel[i][j] = sentinel;
+            }
+        }
+    }
+
+    private static long ceilingPowerOfTwo(long x) {
+        return 1L << -Long.numberOfLeadingZeros(x - 1);
+    }
+
+    /**
+     * advance the wheel to the given time, expiring or cascading the entries of the buckets walked past
+     *
+     * @param currentTimeNanos current time
+     */
+    void advance(long currentTimeNanos) {
+        long previousTimeNanos = nanos;
+        if (currentTimeNanos <= previousTimeNanos) {
+            return;
+        }
+        nanos = currentTimeNanos;
+        for (int i = 0; i < SHIFT.length; i++) {
+            long previousTicks = previousTimeNanos >>> SHIFT[i];
+            long currentTicks = currentTimeNanos >>> SHIFT[i];
+            long delta = currentTicks - previousTicks;
+            if (delta <= 0L) {
+                break;
+            }
+            expire(i, previousTicks, delta);
+        }
+    }
+
+    private void expire(int index, long previousTicks, long delta) {
+        AbstractConcurrentCache.Node<K, V>[] buckets = wheel[index];
+        int mask = buckets.length - 1;
+        int steps = (int) Math.min(1 + delta, buckets.length);
+        int start = (int) (previousTicks & mask);
+        int end = start + steps;
+        for (int i = start; i < end; i++) {
+            AbstractConcurrentCache.Node<K, V> sentinel = buckets[i & mask];
+            AbstractConcurrentCache.Node<K, V> node = sentinel.timerNext;
+            sentinel.timerPrev = sentinel;
+            sentinel.timerNext = sentinel;
+            while (node != sentinel) {
+                AbstractConcurrentCache.Node<K, V> next = node.timerNext;
+                node.timerPrev = null;
+                node.timerNext = null;
+                if (!cache.expireIfDue(node, nanos)) {
+                    schedule(node);
+                }
+                node = next;
+            }
+        }
+    }
+
+    /**
+     * put the entry in the bucket matching its {@code deadline}
+     *
+     * @param node node
+     */
+    void schedule(AbstractConcurrentCache.Node<K, V> node) {
+        AbstractConcurrentCache.Node<K, V> sentinel = findBucket(node.deadline);
+        AbstractConcurrentCache.Node<K, V> last = sentinel.timerPrev;
+        node.timerPrev = last;
+        node.timerNext = sentinel;
+        last.timerNext = node;
+        sentinel.timerPrev = node;
+    }
+
+    void reschedule(AbstractConcurrentCache.Node<K, V> node) {
+        deschedule(node);
+        schedule(node);
+    }
+
+    void deschedule(AbstractConcurrentCache.Node<K, V> node) {
+        if (node.timerNext != null) {
+            node.timerNext.timerPrev = node.timerPrev;
+            node.timerPrev.timerNext = node.timerNext;
+            node.timerPrev = null;
+            node.timerNext = null;
+        }
+    }
+
+    private AbstractConcurrentCache.Node<K, V> findBucket(long time) {
+        long duration = time - nanos;
+        int length = wheel.length - 1;
+        for (int i = 0; i < length; i++) {
+            if (duration < SPANS[i + 1]) {
+                long ticks = time >>> SHIFT[i];
+                int index = (int) (ticks & (wheel[i].length - 1));
+                return wheel[i][index];
+            }
+        }
+        return wheel[length][0];
+    }
+}
@@ -0,0 +1,152 @@
+package com.esfak47.common.utils.cache;
+
+import java.util.function.Consumer;
+import java.util.function.Predicate;
+
+/**
+ * A concurrent cache with the W-TinyLFU eviction policy, which keeps hot entries when a scan walks a large key range.
+ * <p>
+ * New entries enter a small LRU window (1% of the capacity). Entries leaving the window are candidates to the main
+ * region, a segmented LRU split into a probation and a protected (80%) segment. When the cache is full a candidate is
+ * only admitted if the {@link FrequencySketch} estimates that it was used more often than the victim at the head of
+ * the probation segment, so one-off keys are discarded instead of flushing the popular ones. An entry read while in
+ * probation is promoted to the protected segment. When a {@link Weigher} is set, the regions are sized by weight
+ * rather than by number of entries.
+ * <p>
+ * Reads never take a lock, see {@link AbstractConcurrentCache}.
+ *
+ * @author tony
+ */
+public class TinyLfuCache<K, V> extends AbstractConcurrentCache<K, V> {
+
+    private static final int WINDOW_PERCENT = 1;
+
+    private static final int PROTECTED_PERCENT = 80;
+
+    /**
+     * the following fields are guarded by evictionLock
+     */
+    private final AccessOrderDeque<K, V> window = new AccessOrderDeque<>();
+    private final AccessOrderDeque<K, V> probation = new AccessOrderDeque<>();
+    private final AccessOrderDeque<K, V> protectedSegment = new AccessOrderDeque<>();
+    private final FrequencySketch sketch;
+
+    public TinyLfuCache() {
+        this(CacheBuilder.DEFAULT_MAX_CAPACITY);
+    }
+
+    public TinyLfuCache(int maxCapacity) {
+        this(CacheBuilder.newBuilder().maxCapacity(maxCapacity));
+    }
+
+    TinyLfuCache(CacheBuilder<? super K, ? super V> builder) {
+        super(builder);
+        this.sketch = new FrequencySketch(sketchSize());
+    }
+
+    private long windowMaximum() {
+        long maximum = maximum();
+        return maximum == 0 ? 0 : Math.max(1, maximum / 100 * WINDOW_PERCENT + maximum % 100 * WINDOW_PERCENT / 100);
+    }
+
+    private long protectedMaximum() {
+        long mainMaximum = maximum() - windowMaximum();
+        return mainMaximum / 100 * PROTECTED_PERCENT + mainMaximum % 100 * PROTECTED_PERCENT / 100;
+    }
+
+    /**
+     * the sketch counts keys, so a weighted cache sizes it by its number of entries instead of its maximum weight
+     */
+    private int sketchSize() {
+        return (int) Math.min(isWeighted() ? data.size() : maximum(), Integer.MAX_VALUE);
+    }
+
+    @Override
+    void onAccess(Node<K, V> node) {
+        if (!node.isAlive()) {
+            return;
+        }
+        sketch.increment(node.key);
+        if (window.contains(node)) {
+            window.moveToLast(node);
+        } else if (probation.contains(node)) {
+            probation.unlink(node);
+            protectedSegment.linkLast(node);
+            long protectedMaximum = protectedMaximum();
+            while (protectedSegment.weight() > protectedMaximum) {
+                probation.linkLast(protectedSegment.pollFirst());
+            }
+        } else if (protectedSegment.contains(node)) {
+            protectedSegment.moveToLast(node);
+        }
+    }
+
+    @Override
+    void onAdd(Node<K, V> node) {
+        sketch.increment(node.key);
+        window.linkLast(node);
+    }
+
+    @Override
+    boolean onRemove(Node<K, V> node) {
+        return window.unlink(node) || probation.unlink(node) || protectedSegment.unlink(node);
+    }
+
+    /**
+     * the protected segment first, then the window and the probation segment, each from its most recently used entry
+     */
+    @Override
+    void forEachHottest(Consumer<Node<K, V>> action) {
+        protectedSegment.forEachDescending(action);
+        window.forEachDescending(action);
+        probation.forEachDescending(action);
+    }
+
+    /**
+     * the reverse of {@link #forEachHottest(Consumer)}
+     */
+    @Override
+    void forEachColdest(Predicate<Node<K, V>> action) {
+        if (probation.forEachAscending(action) && window.forEachAscending(action)) {
+            protectedSegment.forEachAscending(action);
+        }
+    }
+
+    @Override
+    void evict(long maximum) {
+        sketch.ensureCapacity(sketchSize());
+        long protectedMaximum = protectedMaximum();
+        while (protectedSegment.weight() > protectedMaximum) {
+            probation.linkLast(protectedSegment.pollFirst());
+        }
+        // entries leaving the window are appended to the probation segment and compete with its head
+        int candidates = 0;
+        long windowMaximum = windowMaximum();
+        while (window.weight() > windowMaximum) {
+            probation.linkLast(window.pollFirst());
+            candidates++;
+        }
+        while (weightedSize() > maximum) {
+            Node<K, V> victim = probation.peekFirst();
+            Node<K, V> candidate = candidates > 0 ? probation.peekLast() : null;
+            if (victim == null) {
+                victim = protectedSegment.size() > 0 ? protectedSegment.peekFirst() : window.peekFirst();
+                evictEntry(victim);
+            } else if (candidate == null) {
+                evictEntry(victim);
+            } else if (candidate == victim) {
+                evictEntry(victim);
+                candidates--;
+            } else if (admit(candidate, victim)) {
+                evictEntry(victim);
+            } else {
+                evictEntry(candidate);
+                candidates--;
+            }
+        }
+    }
+
+    private boolean admit(Node<K, V> candidate, Node<K, V> victim) {
+        return sketch.frequency(candidate.key) > sketch.frequency(victim.key);
+    }
+}
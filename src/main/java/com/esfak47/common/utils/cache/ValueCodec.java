@@ -0,0 +1,23 @@
+package com.esfak47.common.utils.cache;
+
+/**
+ * Converts the values of an {@link OffHeapCache} to and from the bytes stored outside of the heap. See
+ * {@link ValueCodecs} for the built-in codecs.
+ *
+ * @author tony
+ */
+public interface ValueCodec<V> {
+
+    /**
+     * @param value value, never {@code null}
+     * @return the bytes of the value
+     */
+    byte[] encode(V value);
+
+    /**
+     * @param bytes bytes returned by {@link #encode(Object)}
+     * @return the value
+     */
+    V decode(byte[] bytes);
+
+}
@@ -0,0 +1,126 @@
+package com.esfak47.common.utils.cache;
+
+import com.esfak47.common.json.AbstractTypeRef;
+import com.esfak47.common.lang.Assert;
+
+import java.lang.reflect.Type;
+import java.nio.charset.StandardCharsets;
+
+/**
+ * Built-in {@link ValueCodec}s. The JSON codecs go through the {@code JsonUtil} facades of the project, Gson and
+ * Fastjson being optional dependencies they are only needed when their codec is used.
+ *
+ * @author tony
+ */
+public final class ValueCodecs {
+
+    private ValueCodecs() {
+        throw new UnsupportedOperationException();
+    }
+
+    /**
+     * stores the arrays as they are, the cache never shares its arrays with the caller
+     *
+     * @return codec
+     */
+    public static ValueCodec<byte[]> bytes() {
+        return BytesCodec.INSTANCE;
+    }
+
+    /**
+     * @return a codec storing strings in UTF-8
+     */
+    public static ValueCodec<String> string() {
+        return StringCodec.INSTANCE;
+    }
+
+    /**
+     * @param type type of the values
+     * @param <V>  value type
+     * @return a codec storing the values as JSON with {@link com.esfak47.common.json.gson.JsonUtil}
+     */
+    public static <V> ValueCodec<V> gson(Type type) {
+        Assert.notNull(type, "type should not be null");
+        return new ValueCodec<V>() {
+            @Override
+            public byte[] encode(V value) {
+                return com.esfak47.common.json.gson.JsonUtil.toJson(value, false).getBytes(StandardCharsets.UTF_8);
+            }
+
+            @Override
+            public V decode(byte[] bytes) {
+                return com.esfak47.common.json.gson.JsonUtil.fromJson(new String(bytes, StandardCharsets.UTF_8), type);
+            }
+        };
+    }
+
+    /**
+     * @param clazz class of the values
+     * @param <V>   value type
+     * @return a codec storing the values as JSON with {@link com.esfak47.common.json.fastjson.JsonUtil}
+     */
+    public static <V> ValueCodec<V> fastjson(Class<V> clazz) {
+        Assert.notNull(clazz, "clazz should not be null");
+        return new ValueCodec<V>() {
+            @Override
+            public byte[] encode(V value) {
+                return com.esfak47.common.json.fastjson.JsonUtil.toJson(value, false).getBytes(StandardCharsets.UTF_8);
+            }
+
+            @Override
+            public V decode(byte[] bytes) {
+                return com.esfak47.common.json.fastjson.JsonUtil.fromJson(new String(bytes, StandardCharsets.UTF_8),
+                        clazz);
+            }
+        };
+    }
+
+    /**
+     * @param typeRef type of the values
+     * @param <V>     value type
+     * @return a codec storing the generic values as JSON with {@link com.esfak47.common.json.fastjson.JsonUtil}
+     */
+    public static <V> ValueCodec<V> fastjson(AbstractTypeRef<V> typeRef) {
+        Assert.notNull(typeRef, "typeRef should not be null");
+        return new ValueCodec<V>() {
+            @Override
+            public byte[] encode(V value) {
+                return com.esfak47.common.json.fastjson.JsonUtil.toJson(value, false).getBytes(StandardCharsets.UTF_8);
+            }
+
+            @Override
+            public V decode(byte[] bytes) {
+                return com.esfak47.common.json.fastjson.JsonUtil.fromJson(new String(bytes, StandardCharsets.UTF_8),
+                        typeRef);
+            }
+        };
+    }
+
+    private enum BytesCodec implements ValueCodec<byte[]> {
+        INSTANCE;
+
+        @Override
+        public byte[] encode(byte[] value) {
+            return value;
+        }
+
+        @Override
+        public byte[] decode(byte[] bytes) {
+            return bytes;
+        }
+    }
+
+    private enum StringCodec implements ValueCodec<String> {
+        INSTANCE;
+
+        @Override
+        public byte[] encode(String value) {
+            return value.getBytes(StandardCharsets.UTF_8);
+        }
+
+        @Override
+        public String decode(byte[] bytes) {
+            return new String(bytes, StandardCharsets.UTF_8);
+        }
+    }
+}
@@ -0,0 +1,21 @@
+package com.esfak47.common.utils.cache;
+
+/**
+ * Calculates the weight of a cache entry, the cache is then bounded by the total weight of its entries instead of
+ * their number. See {@link Weighers} for the built-in estimators.
+ *
+ * @author tony
+ */
+@FunctionalInterface
+public interface Weigher<K, V> {
+
+    /**
+     * Returns the weight of the entry, computed once when the entry is put in the cache.
+     *
+     * @param key   key
+     * @param value value
+     * @return a non-negative weight
+     */
+    int weigh(K key, V value);
+
+}
@@ -0,0 +1,116 @@
+package com.esfak47.common.utils.cache;
+
+/**
+ * Built-in {@link Weigher}s. The byte-size estimators assume a 64-bit JVM with compressed oops, where an object header
+ * takes 12 bytes, an array header 16 bytes and every object is aligned to 8 bytes.
+ *
+ * @author tony
+ */
+public final class Weighers {
+
+    private static final int OBJECT_HEADER = 12;
+
+    private static final int ARRAY_HEADER = 16;
+
+    private static final int REFERENCE = 4;
+
+    /**
+     * java.lang.String: header, value reference and hash
+     */
+    private static final int STRING_SHALLOW = align(OBJECT_HEADER + REFERENCE + 4);
+
+    private Weighers() {
+        throw new UnsupportedOperationException();
+    }
+
+    private static int align(long size) {
+        return (int) Math.min(Integer.MAX_VALUE, (size + 7) & ~7L);
+    }
+
+    /**
+     * every entry weighs 1, the cache is bounded by the number of entries
+     *
+     * @param <K> key type
+     * @param <V> value type
+     * @return weigher
+     */
+    @SuppressWarnings("unchecked")
+    public static <K, V> Weigher<K, V> singleton() {
+        return (Weigher<K, V>) SingletonWeigher.INSTANCE;
+    }
+
+    /**
+     * weighs an entry by the estimated heap size of its {@code String} value
+     *
+     * @param <K> key type
+     * @return weigher
+     */
+    public static <K> Weigher<K, String> string() {
+        return (key, value) -> sizeOf(value);
+    }
+
+    /**
+     * weighs an entry by the estimated heap size of its {@code byte[]} value
+     *
+     * @param <K> key type
+     * @return weigher
+     */
+    public static <K> Weigher<K, byte[]> byteArray() {
+        return (key, value) -> sizeOf(value);
+    }
+
+    /**
+     * weighs an entry by the estimated heap size of its {@code CharSequence} value
+     *
+     * @param <K> key type
+     * @return weigher
+     */
+    public static <K> Weigher<K, CharSequence> charSequence() {
+        return (key, value) -> sizeOf(value);
+    }
+
+    /**
+     * @param value string
+     * @return the estimated number of bytes retained by the string and its backing array
+     */
+    public static int sizeOf(String value) {
+        return STRING_SHALLOW + align(ARRAY_HEADER + 2L * value.length());
+    }
+
+    /**
+     * @param value array
+     * @return the number of bytes retained by the array
+     */
+    public static int sizeOf(byte[] value) {
+        return align(ARRAY_HEADER + (long) value.length);
+    }
+
+    /**
+     * Strings are sized exactly, builders by their capacity and other sequences are assumed to hold a {@code char[]}
+     * of their length.
+     *
+     * @param value sequence
+     * @return the estimated number of bytes retained by the sequence
+     */
+    public static int sizeOf(CharSequence value) {
+        if (value instanceof String) {
+            return sizeOf((String) value);
+        }
+        long chars = value.length();
+        if (value instanceof StringBuilder) {
+            chars = ((StringBuilder) value).capacity();
+        } else if (value instanceof StringBuffer) {
+            chars = ((StringBuffer) value).capacity();
+        }
+        return align(OBJECT_HEADER + REFERENCE + 4) + align(ARRAY_HEADER + 2 * chars);
+    }
+
+    private enum SingletonWeigher implements Weigher<Object, Object> {
+        INSTANCE;
+
+        @Override
+        public int weigh(Object key, Object value) {
+            return 1;
+        }
+    }
+}
@@ -1,13 +1,23 @@
 package com.esfak47.common.utils.id;
 
+import com.esfak47.common.lang.Assert;
 import com.esfak47.common.utils.StringUtils;
 import com.esfak47.common.utils.system.SystemUtils;
 
 import java.util.UUID;
-import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
 import java.util.regex.Pattern;
 
 /**
+ * Generates trace ids made of the hexadecimal local address, the timestamp in milliseconds, a sequence within the
+ * millisecond written as a 6 digits number from 100000, and the hexadecimal pid.
+ * <p>
+ * The sequence restarts every millisecond, so an id is unique per address, pid and millisecond. Threads claim blocks
+ * of sequence numbers of the current millisecond from a shared counter and hand them out locally, which keeps the
+ * shared cache line out of the hot path. A block is only used within the millisecond it was claimed for, and a clock
+ * moving backwards keeps the ids on the last millisecond claimed. When the 900000 numbers of a millisecond are used up,
+ * the {@link OverflowPolicy} decides between waiting for the next millisecond and widening the sequence to more digits.
+ *
  * @author tony
  * @date 2018/7/4
  */
@@ -18,7 +28,20 @@ public class EagerEyeIdGenerator implements IdGenerator {
     private static String IP_16 = "ffffffff";
     private static String IP_int = "255255255255";
     private static String PID = "0000";
-    private static AtomicInteger count = new AtomicInteger(100000);
+    /**
+     * the sequence is written as {@code MIN_ID + sequence}, 6 digits as long as it is below {@link #SEQUENCE_RANGE}
+     */
+    private static final int MIN_ID = 100000;
+    private static final int SEQUENCE_RANGE = 900000;
+    private static final int SEQUENCE_BITS = 21;
+    private static final long SEQUENCE_MASK = (1L << SEQUENCE_BITS) - 1;
+    private static final int BLOCK_SIZE = 64;
+    /**
+     * the millisecond of the last claimed block in the high bits, and the first unclaimed sequence in the low ones,
+     * leaving 43 bits to the millisecond (until 2248)
+     */
+    private static final AtomicLong STATE = new AtomicLong();
+    private static final ThreadLocal<Block> BLOCKS = ThreadLocal.withInitial(Block::new);
 
     static {
         try {
@@ -34,7 +57,50 @@ public class EagerEyeIdGenerator implements IdGenerator {
 
     }
 
+    /**
+     * length of an id generated by {@link #writeId(char[], int)}, as long as the timestamp has 13 digits (until 2286),
+     * the local address is an IPv4 one and the sequence has not been widened
+     */
+    public static final int ID_LENGTH = 32;
+
+    private static final char PID_FLAG = 100;
+
+    private static final int TIMESTAMP_DIGITS = 13;
+
+    private static final int NEXT_ID_DIGITS = 6;
+
+    private static final char[] PREFIX = IP_16.toCharArray();
+
+    /**
+     * the pid flag followed by the pid
+     */
+    private static final char[] SUFFIX = (PID_FLAG + PID).toCharArray();
+
+    /**
+     * the nibbles of the prefix and of the suffix when the ids have the layout of {@link #ID_LENGTH}, which lets
+     * {@link #generateUUID()} compute the UUID from the numbers, -1 otherwise
+     */
+    private static final long PREFIX_BITS = PREFIX.length == 8 ? parseHex(PREFIX) : -1;
+
+    private static final long SUFFIX_BITS = SUFFIX.length == 5 ? parseHex(SUFFIX) : -1;
+
+    private final OverflowPolicy overflowPolicy;
+
     public EagerEyeIdGenerator() {
+        this(OverflowPolicy.SPIN);
+    }
+
+    private EagerEyeIdGenerator(OverflowPolicy overflowPolicy) {
+        this.overflowPolicy = overflowPolicy;
+    }
+
+    /**
+     * @param overflowPolicy what to do once the sequence numbers of a millisecond are used up
+     * @return a generator sharing the sequence of the others
+     */
+    public static EagerEyeIdGenerator withOverflowPolicy(OverflowPolicy overflowPolicy) {
+        Assert.notNull(overflowPolicy, "overflowPolicy should not be null");
+        return new EagerEyeIdGenerator(overflowPolicy);
     }
 
     private static String getHexPid(int pid) {
@@ -53,17 +119,75 @@ public class EagerEyeIdGenerator implements IdGenerator {
     }
 
     private static String getTraceId(String ip, long timestamp, int nextId) {
-        char pidFlag = 100;
-        return ip + timestamp + nextId + pidFlag + PID;
+        return ip + timestamp + nextId + PID_FLAG + PID;
+    }
+
+    private static String generate(OverflowPolicy overflowPolicy) {
+        Block block = BLOCKS.get();
+        char[] chars = block.chars();
+        long next = nextSequence(block, overflowPolicy);
+        int length = write(chars, 0, timestampOf(next), idOf(next));
+        return new String(chars, 0, length);
     }
 
-    private static String generate() {
-        return getTraceId(IP_16, System.currentTimeMillis(), getNextId());
+    /**
+     * @return the offset following the id written at {@code offset}
+     */
+    private static int write(char[] chars, int offset, long timestamp, int nextId) {
+        System.arraycopy(PREFIX, 0, chars, offset, PREFIX.length);
+        offset = writeDigits(chars, offset + PREFIX.length, timestamp);
+        offset = writeDigits(chars, offset, nextId);
+        System.arraycopy(SUFFIX, 0, chars, offset, SUFFIX.length);
+        return offset + SUFFIX.length;
+    }
+
+    /**
+     * write the decimal digits of a non negative number
+     *
+     * @return the offset following the digits
+     */
+    private static int writeDigits(char[] chars, int offset, long value) {
+        int digits = 1;
+        for (long bound = 10; digits < 19 && value >= bound; bound *= 10) {
+            digits++;
+        }
+        for (int i = offset + digits - 1; i >= offset; i--) {
+            chars[i] = (char) ('0' + value % 10);
+            value /= 10;
+        }
+        return offset + digits;
+    }
+
+    /**
+     * @return the decimal digits of the number, each one in a nibble, like the hexadecimal number they would read as
+     */
+    private static long decimalNibbles(long value, int digits) {
+        long nibbles = 0;
+        for (int shift = 0; shift < digits * 4; shift += 4) {
+            nibbles |= (value % 10) << shift;
+            value /= 10;
+        }
+        return nibbles;
+    }
+
+    private static long parseHex(char[] chars) {
+        long value = 0;
+        for (char c : chars) {
+            int digit = Character.digit(c, 16);
+            if (digit < 0) {
+                return -1;
+            }
+            value = value << 4 | digit;
+        }
+        return value;
     }
 
     static String generate(String ip) {
-        return ip != null && !ip.isEmpty() && validate(ip) ? getTraceId(getip16(ip), System.currentTimeMillis(),
-                getNextId()) : generate();
+        if (ip != null && !ip.isEmpty() && validate(ip)) {
+            long next = nextSequence(OverflowPolicy.SPIN);
+            return getTraceId(getip16(ip), timestampOf(next), idOf(next));
+        }
+        return generate(OverflowPolicy.SPIN);
     }
 
     static String generateIpv4Id() {
@@ -101,32 +225,188 @@ public class EagerEyeIdGenerator implements IdGenerator {
         return ip.replace(".", "");
     }
 
-    private static int getNextId() {
-        int current;
-        int next;
-        do {
-            current = count.get();
-            next = current > 900000 ? 100000 : current + 1;
-        } while (!count.compareAndSet(current, next));
+    /**
+     * @return the millisecond of the next id in the high bits and its sequence in the low ones, taken from the block of
+     * the current thread
+     */
+    private static long nextSequence(OverflowPolicy overflowPolicy) {
+        return nextSequence(BLOCKS.get(), overflowPolicy);
+    }
 
-        return next;
+    private static long nextSequence(Block block, OverflowPolicy overflowPolicy) {
+        // the block is shared by the policies, a block claimed by a widening generator may go past what a spinning one
+        // can use
+        if (block.next >= Math.min(block.end, capacityOf(overflowPolicy))
+                || System.currentTimeMillis() > block.timestamp) {
+            claim(block, BLOCK_SIZE, overflowPolicy);
+        }
+        return block.timestamp << SEQUENCE_BITS | block.next++;
+    }
+
+    private static long timestampOf(long sequence) {
+        return sequence >>> SEQUENCE_BITS;
+    }
+
+    private static int idOf(long sequence) {
+        return MIN_ID + (int) (sequence & SEQUENCE_MASK);
+    }
+
+    /**
+     * claim up to {@code size} sequence numbers of the current millisecond, or of the last claimed one if the clock
+     * moved backwards, with one update of the shared counter
+     */
+    private static long capacityOf(OverflowPolicy overflowPolicy) {
+        return overflowPolicy == OverflowPolicy.WIDEN ? SEQUENCE_MASK + 1 : SEQUENCE_RANGE;
+    }
+
+    private static void claim(Block block, int size, OverflowPolicy overflowPolicy) {
+        long capacity = capacityOf(overflowPolicy);
+        for (; ; ) {
+            long current = STATE.get();
+            long now = System.currentTimeMillis();
+            long timestamp = timestampOf(current);
+            long start = current & SEQUENCE_MASK;
+            if (now > timestamp) {
+                timestamp = now;
+                start = 0;
+            }
+            long end = Math.min(start + size, capacity);
+            if (start >= end) {
+                // the millisecond is used up, wait for the next one
+                Thread.yield();
+                continue;
+            }
+            if (STATE.compareAndSet(current, timestamp << SEQUENCE_BITS | end)) {
+                block.timestamp = timestamp;
+                block.next = (int) start;
+                block.end = (int) end;
+                return;
+            }
+        }
+    }
+
+    private static UUID toUUID(String id) {
+        final String str1 = id.substring(0, 8);
+        final String str2 = id.substring(8, 12);
+        final String str3 = id.substring(12, 16);
+        final String str4 = id.substring(16, 20);
+        final String str5 = id.substring(20);
+        final String join = StringUtils.join("-", str1, str2, str3, str4, str5);
+
+        return UUID.fromString(join);
     }
 
     @Override
     public String generateId() {
-        return generate();
+        return generate(overflowPolicy);
     }
 
+    /**
+     * The UUID reading the 32 characters of an id as hexadecimal digits, computed from the parts of the id rather than
+     * parsed from it.
+     */
     @Override
     public UUID generateUUID() {
-        final String generate = generate();
-        final String str1 = generate.substring(0, 8);
-        final String str2 = generate.substring(8, 12);
-        final String str3 = generate.substring(12, 16);
-        final String str4 = generate.substring(16, 20);
-        final String str5 = generate.substring(20);
-        final String join = StringUtils.join("-", str1, str2, str3, str4, str5);
+        // a widened sequence does not fit in a UUID
+        long next = nextSequence(OverflowPolicy.SPIN);
+        return toUUID(timestampOf(next), idOf(next));
+    }
 
-        return UUID.fromString(join);
+    private static UUID toUUID(long timestamp, int nextId) {
+        if (PREFIX_BITS < 0 || SUFFIX_BITS < 0 || timestamp < 1_000_000_000_000L || timestamp >= 10_000_000_000_000L) {
+            return toUUID(getTraceId(IP_16, timestamp, nextId));
+        }
+        long timestampBits = decimalNibbles(timestamp, TIMESTAMP_DIGITS);
+        // 8 + 8 nibbles in the most significant bits, 5 + 6 + 5 in the least significant ones
+        long mostSigBits = PREFIX_BITS << 32 | timestampBits >>> 20;
+        long leastSigBits = (timestampBits & 0xfffffL) << 44 | decimalNibbles(nextId, NEXT_ID_DIGITS) << 20 | SUFFIX_BITS;
+        return new UUID(mostSigBits, leastSigBits);
+    }
+
+    /**
+     * Write a new id without allocating, for callers embedding ids in their own buffers.
+     *
+     * @param chars  buffer with room for {@link #ID_LENGTH} characters from {@code offset}
+     * @param offset offset of the id
+     * @return the offset following the id
+     */
+    public int writeId(char[] chars, int offset) {
+        long next = nextSequence(overflowPolicy);
+        return write(chars, offset, timestampOf(next), idOf(next));
+    }
+
+    /**
+     * Append a new id without creating intermediate strings, for callers embedding ids in log lines.
+     *
+     * @param sb builder
+     * @return the builder
+     */
+    public StringBuilder appendId(StringBuilder sb) {
+        long next = nextSequence(overflowPolicy);
+        return sb.append(PREFIX).append(timestampOf(next)).append(idOf(next)).append(SUFFIX);
+    }
+
+    /**
+     * Claims the sequence numbers of the whole batch at once, a millisecond's worth at most, rather than through the
+     * block of the thread.
+     */
+    @Override
+    public void generateIds(String[] ids) {
+        char[] chars = BLOCKS.get().chars();
+        Block block = new Block();
+        for (int offset = 0; offset < ids.length; ) {
+            claim(block, ids.length - offset, overflowPolicy);
+            for (int sequence = block.next; sequence < block.end; sequence++) {
+                int length = write(chars, 0, block.timestamp, MIN_ID + sequence);
+                ids[offset++] = new String(chars, 0, length);
+            }
+        }
+    }
+
+    @Override
+    public void generateUUIDs(UUID[] uuids) {
+        Block block = new Block();
+        for (int offset = 0; offset < uuids.length; ) {
+            claim(block, uuids.length - offset, OverflowPolicy.SPIN);
+            for (int sequence = block.next; sequence < block.end; sequence++) {
+                uuids[offset++] = toUUID(block.timestamp, MIN_ID + sequence);
+            }
+        }
+    }
+
+    /**
+     * What to do once the sequence numbers of a millisecond are used up. {@link #generateUUID()} always spins, since a
+     * UUID has no room for a wider sequence.
+     */
+    public enum OverflowPolicy {
+        /**
+         * wait for the next millisecond, the ids keep their length
+         */
+        SPIN,
+        /**
+         * carry on with 7 digits sequences, up to 2 million ids per millisecond
+         */
+        WIDEN
+    }
+
+    /**
+     * sequence numbers claimed by a thread, from {@code next} to {@code end} excluded, and the buffer the thread writes
+     * its ids in
+     */
+    private static final class Block {
+        long timestamp = -1;
+        int next;
+        int end;
+        private char[] chars;
+
+        /**
+         * @return a buffer with room for any id, allocated once per thread
+         */
+        char[] chars() {
+            if (chars == null) {
+                chars = new char[PREFIX.length + 20 + 20 + SUFFIX.length];
+            }
+            return chars;
+        }
     }
 }
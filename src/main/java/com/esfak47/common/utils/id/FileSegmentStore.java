@@ -0,0 +1,121 @@
+package com.esfak47.common.utils.id;
+
+import com.esfak47.common.lang.Assert;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.channels.FileLock;
+import java.nio.file.Files;
+import java.nio.file.NoSuchFileException;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.util.regex.Pattern;
+
+/**
+ * A {@link SegmentStore} keeping the end of the last range of every sequence in a small file of a local directory.
+ * <p>
+ * A lease writes the new end to a temporary file, forces it to disk, renames it over the previous one and forces the
+ * directory, so the file always holds either the old or the new value, even after a power loss, and a range is never
+ * leased twice. Forcing the directory is skipped on the platforms which can not open one, such as Windows. Leases of a sequence are serialized by a file lock,
+ * which also protects a directory shared by several processes of the same host; within a process, use a single store
+ * per directory. Sequences start at 1.
+ *
+ * @author tony
+ */
+public class FileSegmentStore implements SegmentStore {
+
+    private static final Pattern NAME = Pattern.compile("[A-Za-z0-9._-]+");
+
+    private static final int MAGIC = 0x45534944;
+
+    private static final int RECORD_SIZE = 4 + 8;
+
+    private static final long FIRST_ID = 1;
+
+    private final Path directory;
+
+    /**
+     * @param directory directory of the sequence files, created if it does not exist
+     * @throws IOException if the directory can not be created
+     */
+    public FileSegmentStore(String directory) throws IOException {
+        Assert.notNull(directory, "directory should not be null");
+        this.directory = Files.createDirectories(Paths.get(directory));
+    }
+
+    @Override
+    public synchronized long lease(String name, long size) throws IOException {
+        Assert.isTrue(name != null && NAME.matcher(name).matches(), "invalid sequence name: " + name);
+        Assert.isTrue(size > 0, "size should be positive");
+        Path file = directory.resolve(name + ".segment");
+        try (FileChannel lockChannel = FileChannel.open(directory.resolve(name + ".lock"),
+                StandardOpenOption.CREATE, StandardOpenOption.WRITE);
+             FileLock ignored = lockChannel.lock()) {
+            long first = read(file);
+            if (first > Long.MAX_VALUE - size) {
+                throw new IOException("sequence " + name + " is exhausted");
+            }
+            write(file, first + size);
+            return first;
+        }
+    }
+
+    private long read(Path file) throws IOException {
+        ByteBuffer buffer = ByteBuffer.allocate(RECORD_SIZE);
+        try (FileChannel channel = FileChannel.open(file, StandardOpenOption.READ)) {
+            while (buffer.hasRemaining() && channel.read(buffer) >= 0) {
+                // read the whole record
+            }
+        } catch (NoSuchFileException e) {
+            return FIRST_ID;
+        }
+        buffer.flip();
+        if (buffer.remaining() != RECORD_SIZE || buffer.getInt() != MAGIC) {
+            throw new IOException("corrupted segment file: " + file);
+        }
+        return buffer.getLong();
+    }
+
+    private void write(Path file, long next) throws IOException {
+        Path tmp = file.resolveSibling(file.getFileName() + ".tmp");
+        try (FileChannel channel = FileChannel.open(tmp, StandardOpenOption.CREATE,
+                StandardOpenOption.TRUNCATE_EXISTING, StandardOpenOption.WRITE)) {
+            ByteBuffer buffer = ByteBuffer.allocate(RECORD_SIZE);
+            buffer.putInt(MAGIC).putLong(next).flip();
+            while (buffer.hasRemaining()) {
+                channel.write(buffer);
+            }
+            channel.force(true);
+        }
+        Files.move(tmp, file, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+        forceDirectory();
+    }
+
+    /**
+     * make the rename durable, the old file could come back after a power loss otherwise
+     *
+     * @throws IOException if the directory could not be forced, the rename may then be lost
+     */
+    private void forceDirectory() throws IOException {
+        FileChannel channel;
+        try {
+            channel = FileChannel.open(directory, StandardOpenOption.READ);
+        } catch (IOException e) {
+            // the platform does not open directories, the rename is as durable as it gets
+            return;
+        }
+        try {
+            channel.force(true);
+        } finally {
+            channel.close();
+        }
+    }
+
+    @Override
+    public String toString() {
+        return "FileSegmentStore{" + directory + '}';
+    }
+}
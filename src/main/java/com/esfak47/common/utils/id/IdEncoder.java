@@ -0,0 +1,377 @@
+package com.esfak47.common.utils.id;
+
+import java.util.Arrays;
+import java.util.UUID;
+
+/**
+ * Writes {@code long} and {@link UUID} ids with a fixed number of digits of an alphabet, into a caller provided
+ * {@code char[]}, ASCII {@code byte[]} or {@link StringBuilder}, and parses them back from a range of a
+ * {@link CharSequence}. Neither direction allocates, apart from the {@link String} or {@link UUID} asked for.
+ * <pre class="code">
+ * StringBuilder header = new StringBuilder("X-Request-Id: ");
+ * IdEncoder.BASE62.encode(generator.generateUUID(), header);
+ * UUID uuid = IdEncoder.BASE62.decodeUUID(header, 14, header.length());
+ * </pre>
+ * The digits are the most significant first and every id of a kind has the same length, so the encoded ids sort like
+ * the unsigned numbers they hold. {@link #BASE62} writes a UUID as its two halves of 11 digits each, the other encoders
+ * write the 128 bits as one number, like {@link TimeOrderedIdGenerator#generateId()} does.
+ *
+ * @author tony
+ * @see IdGenerator#generateId(IdEncoder)
+ */
+public abstract class IdEncoder {
+
+    /**
+     * lowercase hexadecimal digits, 16 for a {@code long} and 32 for a UUID; uppercase ones are accepted too
+     */
+    public static final IdEncoder HEX = new PowerOfTwo("0123456789abcdef", 4) {
+        @Override
+        int valueOf(char c) {
+            return super.valueOf(Character.toLowerCase(c));
+        }
+    };
+
+    /**
+     * Crockford's base32, 13 digits for a {@code long} and 26 for a UUID; decoding ignores the case and reads
+     * {@code I} and {@code L} as 1 and {@code O} as 0
+     */
+    public static final IdEncoder CROCKFORD_BASE32 = new PowerOfTwo("0123456789ABCDEFGHJKMNPQRSTVWXYZ", 5) {
+        @Override
+        int valueOf(char c) {
+            switch (Character.toUpperCase(c)) {
+                case 'I':
+                case 'L':
+                    return 1;
+                case 'O':
+                    return 0;
+                default:
+                    return super.valueOf(Character.toUpperCase(c));
+            }
+        }
+    };
+
+    /**
+     * digits, uppercase then lowercase letters, in ASCII order: 11 digits for a {@code long} and 22 for a UUID
+     */
+    public static final IdEncoder BASE62 = new Base62();
+
+    private final char[] digits;
+
+    private final int[] values = new int[128];
+
+    private final int longLength;
+
+    private final int uuidLength;
+
+    IdEncoder(String alphabet, int longLength, int uuidLength) {
+        this.digits = alphabet.toCharArray();
+        this.longLength = longLength;
+        this.uuidLength = uuidLength;
+        Arrays.fill(values, -1);
+        for (int i = 0; i < digits.length; i++) {
+            values[digits[i]] = i;
+        }
+    }
+
+    /**
+     * @return the number of characters of an encoded {@code long}
+     */
+    public int longLength() {
+        return longLength;
+    }
+
+    /**
+     * @return the number of characters of an encoded UUID
+     */
+    public int uuidLength() {
+        return uuidLength;
+    }
+
+    /**
+     * @return the digit at the index, counted from the most significant one, of the {@code long}
+     */
+    abstract int digitOf(long value, int index);
+
+    /**
+     * @return the digit at the index, counted from the most significant one, of the 128 bits number
+     */
+    abstract int digitOf(long mostSigBits, long leastSigBits, int index);
+
+    /**
+     * @throws IllegalArgumentException if the digits overflow a {@code long}
+     */
+    abstract long parseLong(CharSequence cs, int start);
+
+    /**
+     * @throws IllegalArgumentException if the digits overflow 128 bits
+     */
+    abstract UUID parseUUID(CharSequence cs, int start);
+
+    /**
+     * @return the value of the digit, or -1 if it is not in the alphabet
+     */
+    int valueOf(char c) {
+        return c < values.length ? values[c] : -1;
+    }
+
+    final int digitValue(CharSequence cs, int index) {
+        int value = valueOf(cs.charAt(index));
+        if (value < 0) {
+            throw new IllegalArgumentException("invalid digit '" + cs.charAt(index) + "' at " + index);
+        }
+        return value;
+    }
+
+    /**
+     * @return the offset following the {@link #longLength()} characters written
+     */
+    public int encode(long value, char[] chars, int offset) {
+        for (int i = 0; i < longLength; i++) {
+            chars[offset + i] = digits[digitOf(value, i)];
+        }
+        return offset + longLength;
+    }
+
+    /**
+     * @return the offset following the {@link #longLength()} ASCII bytes written
+     */
+    public int encode(long value, byte[] bytes, int offset) {
+        for (int i = 0; i < longLength; i++) {
+            bytes[offset + i] = (byte) digits[digitOf(value, i)];
+        }
+        return offset + longLength;
+    }
+
+    public StringBuilder encode(long value, StringBuilder sb) {
+        sb.ensureCapacity(sb.length() + longLength);
+        for (int i = 0; i < longLength; i++) {
+            sb.append(digits[digitOf(value, i)]);
+        }
+        return sb;
+    }
+
+    public String encode(long value) {
+        char[] chars = new char[longLength];
+        encode(value, chars, 0);
+        return new String(chars);
+    }
+
+    /**
+     * @return the offset following the {@link #uuidLength()} characters written
+     */
+    public int encode(UUID uuid, char[] chars, int offset) {
+        return encode(uuid.getMostSignificantBits(), uuid.getLeastSignificantBits(), chars, offset);
+    }
+
+    /**
+     * @return the offset following the {@link #uuidLength()} ASCII bytes written
+     */
+    public int encode(UUID uuid, byte[] bytes, int offset) {
+        long mostSigBits = uuid.getMostSignificantBits();
+        long leastSigBits = uuid.getLeastSignificantBits();
+        for (int i = 0; i < uuidLength; i++) {
+            bytes[offset + i] = (byte) digits[digitOf(mostSigBits, leastSigBits, i)];
+        }
+        return offset + uuidLength;
+    }
+
+    public StringBuilder encode(UUID uuid, StringBuilder sb) {
+        long mostSigBits = uuid.getMostSignificantBits();
+        long leastSigBits = uuid.getLeastSignificantBits();
+        sb.ensureCapacity(sb.length() + uuidLength);
+        for (int i = 0; i < uuidLength; i++) {
+            sb.append(digits[digitOf(mostSigBits, leastSigBits, i)]);
+        }
+        return sb;
+    }
+
+    public String encode(UUID uuid) {
+        return encode(uuid.getMostSignificantBits(), uuid.getLeastSignificantBits());
+    }
+
+    /**
+     * the encoding of the UUID made of the two halves, without creating it
+     */
+    int encode(long mostSigBits, long leastSigBits, char[] chars, int offset) {
+        for (int i = 0; i < uuidLength; i++) {
+            chars[offset + i] = digits[digitOf(mostSigBits, leastSigBits, i)];
+        }
+        return offset + uuidLength;
+    }
+
+    String encode(long mostSigBits, long leastSigBits) {
+        char[] chars = new char[uuidLength];
+        encode(mostSigBits, leastSigBits, chars, 0);
+        return new String(chars);
+    }
+
+    public long decodeLong(CharSequence cs) {
+        return decodeLong(cs, 0, cs.length());
+    }
+
+    /**
+     * @param cs    characters holding the encoded id
+     * @param start index of the first digit
+     * @param end   index following the last digit
+     * @return the id
+     * @throws IllegalArgumentException if the range does not hold an id encoded by this encoder
+     */
+    public long decodeLong(CharSequence cs, int start, int end) {
+        checkLength(end - start, longLength);
+        return parseLong(cs, start);
+    }
+
+    public UUID decodeUUID(CharSequence cs) {
+        return decodeUUID(cs, 0, cs.length());
+    }
+
+    /**
+     * @param cs    characters holding the encoded UUID
+     * @param start index of the first digit
+     * @param end   index following the last digit
+     * @return the UUID
+     * @throws IllegalArgumentException if the range does not hold a UUID encoded by this encoder
+     */
+    public UUID decodeUUID(CharSequence cs, int start, int end) {
+        checkLength(end - start, uuidLength);
+        return parseUUID(cs, start);
+    }
+
+    private static void checkLength(int length, int expected) {
+        if (length != expected) {
+            throw new IllegalArgumentException("expected " + expected + " digits but got " + length);
+        }
+    }
+
+    /**
+     * Alphabets of 2^bits digits, each digit taking the next bits of the number. The leading digit holds what is left
+     * when the width of the number is not a multiple of the bits.
+     */
+    private static class PowerOfTwo extends IdEncoder {
+
+        private final int bits;
+
+        private final int mask;
+
+        PowerOfTwo(String alphabet, int bits) {
+            super(alphabet, (64 + bits - 1) / bits, (128 + bits - 1) / bits);
+            this.bits = bits;
+            this.mask = (1 << bits) - 1;
+        }
+
+        @Override
+        int digitOf(long value, int index) {
+            int shift = (longLength() - 1 - index) * bits;
+            return shift < 64 ? (int) (value >>> shift) & mask : 0;
+        }
+
+        @Override
+        int digitOf(long mostSigBits, long leastSigBits, int index) {
+            int shift = (uuidLength() - 1 - index) * bits;
+            long shifted;
+            if (shift == 0) {
+                shifted = leastSigBits;
+            } else if (shift < 64) {
+                shifted = leastSigBits >>> shift | mostSigBits << (64 - shift);
+            } else {
+                shifted = mostSigBits >>> (shift - 64);
+            }
+            return (int) shifted & mask;
+        }
+
+        @Override
+        long parseLong(CharSequence cs, int start) {
+            checkLeadingDigit(cs, start, 64 - (longLength() - 1) * bits);
+            long value = 0;
+            for (int i = 0; i < longLength(); i++) {
+                value = value << bits | digitValue(cs, start + i);
+            }
+            return value;
+        }
+
+        @Override
+        UUID parseUUID(CharSequence cs, int start) {
+            checkLeadingDigit(cs, start, 128 - (uuidLength() - 1) * bits);
+            long mostSigBits = 0;
+            long leastSigBits = 0;
+            for (int i = 0; i < uuidLength(); i++) {
+                mostSigBits = mostSigBits << bits | leastSigBits >>> (64 - bits);
+                leastSigBits = leastSigBits << bits | digitValue(cs, start + i);
+            }
+            return new UUID(mostSigBits, leastSigBits);
+        }
+
+        private void checkLeadingDigit(CharSequence cs, int start, int leadingBits) {
+            if (digitValue(cs, start) >>> leadingBits != 0) {
+                throw new IllegalArgumentException("'" + cs.subSequence(start, start + 1) + "' overflows the id");
+            }
+        }
+    }
+
+    /**
+     * A {@code long} takes 11 digits, since 62^11 is above 2^64, and a UUID its two halves one after the other, which
+     * is as short as the 128 bits as one number.
+     */
+    private static final class Base62 extends IdEncoder {
+
+        private static final long[] POWERS = new long[11];
+
+        /**
+         * the largest unsigned value which can be multiplied by 62 without overflow
+         */
+        private static final long MULTIPLY_LIMIT = divideUnsigned(-1L, 62);
+
+        static {
+            POWERS[0] = 1;
+            for (int i = 1; i < POWERS.length; i++) {
+                POWERS[i] = POWERS[i - 1] * 62;
+            }
+        }
+
+        Base62() {
+            super("0123456789ABCDEFGHIJKLMNOPQRSTUVWXYZabcdefghijklmnopqrstuvwxyz", 11, 22);
+        }
+
+        /**
+         * unsigned division, {@link Long#divideUnsigned(long, long)} goes through {@code BigInteger} for negative values
+         */
+        private static long divideUnsigned(long dividend, long divisor) {
+            long quotient = ((dividend >>> 1) / divisor) << 1;
+            long remainder = dividend - quotient * divisor;
+            return Long.compareUnsigned(remainder, divisor) >= 0 ? quotient + 1 : quotient;
+        }
+
+        @Override
+        int digitOf(long value, int index) {
+            long quotient = divideUnsigned(value, POWERS[10 - index]);
+            return (int) (quotient - divideUnsigned(quotient, 62) * 62);
+        }
+
+        @Override
+        int digitOf(long mostSigBits, long leastSigBits, int index) {
+            return index < 11 ? digitOf(mostSigBits, index) : digitOf(leastSigBits, index - 11);
+        }
+
+        @Override
+        long parseLong(CharSequence cs, int start) {
+            long value = 0;
+            for (int i = 0; i < 11; i++) {
+                int digit = digitValue(cs, start + i);
+                if (Long.compareUnsigned(value, MULTIPLY_LIMIT) > 0) {
+                    throw new IllegalArgumentException(cs.subSequence(start, start + 11) + " overflows a long");
+                }
+                long next = value * 62 + digit;
+                if (Long.compareUnsigned(next, value * 62) < 0) {
+                    throw new IllegalArgumentException(cs.subSequence(start, start + 11) + " overflows a long");
+                }
+                value = next;
+            }
+            return value;
+        }
+
+        @Override
+        UUID parseUUID(CharSequence cs, int start) {
+            return new UUID(parseLong(cs, start), parseLong(cs, start + 11));
+        }
+    }
+}
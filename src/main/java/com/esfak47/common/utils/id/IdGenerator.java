@@ -2,14 +2,29 @@ package com.esfak47.common.utils.id;
 
 import com.esfak47.common.extension.ExtensionLoader;
 import com.esfak47.common.extension.SPI;
+import com.esfak47.common.lang.Assert;
 import com.esfak47.common.utils.reflection.ClassLoaderUtils;
 import com.esfak47.common.utils.StringUtils;
 
+import java.lang.ref.WeakReference;
+import java.util.Map;
 import java.util.UUID;
+import java.util.WeakHashMap;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
 
 @SPI
 public interface IdGenerator {
 
+    /**
+     * @param providerName name of the extension
+     * @return the handle of the extension for the default class loader, resolved once
+     * @see Handle#of(String, ClassLoader)
+     */
+    static Handle handle(String providerName) {
+        return Handle.of(providerName, ClassLoaderUtils.getDefaultClassLoader());
+    }
+
     static String generateIdWithProvider(String providerName) {
         return generateIdWithProvider(providerName, ClassLoaderUtils.getDefaultClassLoader());
     }
@@ -19,18 +34,19 @@ public interface IdGenerator {
     }
 
     static UUID generateUUIDWithProvider(String providerName, ClassLoader classLoader) {
-        final IdGenerator extension;
-        extension = ExtensionLoader
-            .getExtensionLoader(IdGenerator.class, classLoader)
-            .getExtension(providerName);
-        return extension.generateUUID();
+        return Handle.of(providerName, classLoader).generator().generateUUID();
     }
 
     static String generateIdWithProvider(String providerName, ClassLoader classLoader) {
-        final IdGenerator extension = ExtensionLoader
-            .getExtensionLoader(IdGenerator.class, classLoader)
-            .getExtension(providerName);
-        return extension.generateId();
+        return Handle.of(providerName, classLoader).generator().generateId();
+    }
+
+    static long generateLongIdWithProvider(String providerName) {
+        return generateLongIdWithProvider(providerName, ClassLoaderUtils.getDefaultClassLoader());
+    }
+
+    static long generateLongIdWithProvider(String providerName, ClassLoader classLoader) {
+        return Handle.of(providerName, classLoader).generator().generateLongId();
     }
 
     /**
@@ -42,6 +58,173 @@ public interface IdGenerator {
         return StringUtils.replace(generateUUID().toString(), "-", "");
     }
 
+    /**
+     * Generate a new identifier written with the encoder.
+     *
+     * @param encoder writes the identifier
+     * @return the generated identifier, the encoded {@link #generateUUID()} unless the generator produces
+     * {@code long} identifiers
+     */
+    default String generateId(IdEncoder encoder) {
+        return encoder.encode(generateUUID());
+    }
+
     UUID generateUUID();
 
-}
\ No newline at end of file
+    /**
+     * Generate a new identifier fitting in a {@code long}, for the generators which support it.
+     *
+     * @return the generated identifier
+     * @throws UnsupportedOperationException if the generator only produces wider identifiers
+     */
+    default long generateLongId() {
+        throw new UnsupportedOperationException(getClass().getName() + " does not generate long ids");
+    }
+
+    /**
+     * Fill the array with new identifiers, cheaper per id than {@link #generateId()} for the generators which
+     * reserve the whole batch at once.
+     *
+     * @param ids array to fill
+     */
+    default void generateIds(String[] ids) {
+        for (int i = 0; i < ids.length; i++) {
+            ids[i] = generateId();
+        }
+    }
+
+    /**
+     * Fill the array with new UUIDs.
+     *
+     * @param uuids array to fill
+     * @see #generateIds(String[])
+     */
+    default void generateUUIDs(UUID[] uuids) {
+        for (int i = 0; i < uuids.length; i++) {
+            uuids[i] = generateUUID();
+        }
+    }
+
+    /**
+     * Fill the array with new identifiers fitting in a {@code long}.
+     *
+     * @param ids array to fill
+     * @throws UnsupportedOperationException if the generator only produces wider identifiers
+     * @see #generateIds(String[])
+     */
+    default void generateLongIds(long[] ids) {
+        for (int i = 0; i < ids.length; i++) {
+            ids[i] = generateLongId();
+        }
+    }
+
+    /**
+     * An extension resolved once, which generates ids without going through the {@link ExtensionLoader} again.
+     * <pre class="code">
+     * private static final IdGenerator.Handle TRACE_IDS = IdGenerator.handle("eager");
+     * String traceId = TRACE_IDS.generateId();
+     * </pre>
+     * The handles are cached per class loader and name, which is what the static {@code ...WithProvider} helpers go
+     * through. The cache only references the class loaders weakly, but a handle keeps its generator reachable, and so
+     * the class loader of the generator, as the {@link ExtensionLoader} does with the extensions it creates.
+     */
+    final class Handle {
+
+        /**
+         * the handles of every class loader, guarded by itself
+         */
+        private static final Map<ClassLoader, ConcurrentMap<String, Handle>> HANDLES = new WeakHashMap<>();
+
+        /**
+         * the handles of the class loader last looked up, read without locking since it is nearly always the same one
+         */
+        private static volatile LoaderHandles last = handlesOf(null);
+
+        private final String name;
+
+        private final IdGenerator generator;
+
+        private Handle(String name, IdGenerator generator) {
+            this.name = name;
+            this.generator = generator;
+        }
+
+        /**
+         * @param providerName name of the extension
+         * @param classLoader  class loader to look the extension up with
+         * @return the handle of the extension, the same one on every call
+         * @throws IllegalArgumentException if the name is empty
+         * @throws IllegalStateException    if there is no such extension
+         */
+        public static Handle of(String providerName, ClassLoader classLoader) {
+            Assert.notNull(providerName, "providerName should not be null");
+            Assert.hasLength(providerName, "providerName should not be empty");
+            LoaderHandles loaderHandles = last;
+            if (!loaderHandles.isOf(classLoader)) {
+                loaderHandles = handlesOf(classLoader);
+                last = loaderHandles;
+            }
+            Handle handle = loaderHandles.handles.get(providerName);
+            if (handle == null) {
+                IdGenerator generator = ExtensionLoader
+                    .getExtensionLoader(IdGenerator.class, classLoader)
+                    .getExtension(providerName);
+                handle = new Handle(providerName, generator);
+                Handle existing = loaderHandles.handles.putIfAbsent(providerName, handle);
+                if (existing != null) {
+                    handle = existing;
+                }
+            }
+            return handle;
+        }
+
+        private static LoaderHandles handlesOf(ClassLoader classLoader) {
+            synchronized (HANDLES) {
+                return new LoaderHandles(classLoader,
+                    HANDLES.computeIfAbsent(classLoader, key -> new ConcurrentHashMap<>()));
+            }
+        }
+
+        public String name() {
+            return name;
+        }
+
+        public IdGenerator generator() {
+            return generator;
+        }
+
+        public String generateId() {
+            return generator.generateId();
+        }
+
+        public UUID generateUUID() {
+            return generator.generateUUID();
+        }
+
+        public long generateLongId() {
+            return generator.generateLongId();
+        }
+
+        @Override
+        public String toString() {
+            return "IdGenerator.Handle(" + name + ": " + generator.getClass().getName() + ")";
+        }
+
+        private static final class LoaderHandles {
+            /**
+             * {@code null} for the bootstrap class loader, so that a collected class loader is not taken for it
+             */
+            final WeakReference<ClassLoader> classLoader;
+            final ConcurrentMap<String, Handle> handles;
+
+            LoaderHandles(ClassLoader classLoader, ConcurrentMap<String, Handle> handles) {
+                this.classLoader = classLoader == null ? null : new WeakReference<>(classLoader);
+                this.handles = handles;
+            }
+
+            boolean isOf(ClassLoader loader) {
+                return classLoader == null ? loader == null : loader != null && classLoader.get() == loader;
+            }
+        }
+    }
+}
@@ -0,0 +1,299 @@
+package com.esfak47.common.utils.id;
+
+import com.esfak47.common.lang.Assert;
+import com.esfak47.common.utils.properties.ConfigUtils;
+import com.esfak47.common.utils.thread.NamedThreadFactory;
+
+import java.io.File;
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.util.UUID;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.Executor;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Generates increasing {@code long} ids which stay increasing across restarts, without a coordination service.
+ * <pre class="code">
+ * SegmentIdGenerator generator = SegmentIdGenerator.newBuilder()
+ *     .store(new FileSegmentStore("/data/ids"))
+ *     .name("order")
+ *     .build();
+ * long id = generator.generateLongId();
+ * </pre>
+ * Ids are handed out from a segment, a range leased from a {@link SegmentStore} which persists its end before
+ * returning it, so a restarted process continues after every id it may have issued. Within a segment an id costs one
+ * atomic increment. Once a share of the segment given by the prefetch threshold is used, the next segment is leased in
+ * the background, and the switch to it does not wait for the store unless the current segment runs out before the lease
+ * completes.
+ * <p>
+ * Ids are unique and increase with every segment, but the ids left in the segment of a stopped process are never used,
+ * so the sequence has gaps. The extension registered as {@code segment} uses a {@link FileSegmentStore} in the
+ * directory of the {@code ID.SEGMENT.DIR} system property, {@code ~/.esfak47/id-segments} by default.
+ *
+ * @author tony
+ */
+public class SegmentIdGenerator implements IdGenerator {
+
+    public static final long DEFAULT_SEGMENT_SIZE = 100_000;
+
+    public static final double DEFAULT_PREFETCH_THRESHOLD = 0.75;
+
+    public static final String DEFAULT_NAME = "default";
+
+    private static final String DIRECTORY_PROPERTY = "ID.SEGMENT.DIR";
+
+    private static final NamedThreadFactory PREFETCH_THREADS = new NamedThreadFactory("segment-id-prefetch", true);
+
+    private static final Segment EXHAUSTED = new Segment(0, 0, 0);
+
+    private final SegmentStore store;
+
+    private final String name;
+
+    private final long segmentSize;
+
+    private final double prefetchThreshold;
+
+    private final Executor executor;
+
+    private volatile Segment current = EXHAUSTED;
+
+    /**
+     * the lease of the segment following the current one, guarded by this
+     */
+    private CompletableFuture<Segment> next;
+
+    /**
+     * the only public constructor, as required by the extension loader
+     */
+    public SegmentIdGenerator() {
+        this(newBuilder());
+    }
+
+    private SegmentIdGenerator(Builder builder) {
+        this.store = builder.store != null ? builder.store : defaultStore();
+        this.name = builder.name;
+        this.segmentSize = builder.segmentSize;
+        this.prefetchThreshold = builder.prefetchThreshold;
+        this.executor = builder.executor != null ? builder.executor
+                : task -> PREFETCH_THREADS.newThread(task).start();
+    }
+
+    public static Builder newBuilder() {
+        return new Builder();
+    }
+
+    private static SegmentStore defaultStore() {
+        String directory = ConfigUtils.getSystemProperty(DIRECTORY_PROPERTY);
+        if (directory == null || directory.isEmpty()) {
+            directory = System.getProperty("user.home") + File.separator + ".esfak47" + File.separator + "id-segments";
+        }
+        try {
+            return new FileSegmentStore(directory);
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+    }
+
+    /**
+     * @throws IllegalStateException if a segment is needed and can not be leased
+     */
+    @Override
+    public long generateLongId() {
+        for (; ; ) {
+            Segment segment = current;
+            long id = segment.cursor.getAndIncrement();
+            if (id < segment.end) {
+                if (id == segment.prefetchAt) {
+                    prefetch(segment);
+                }
+                return id;
+            }
+            advance(segment);
+        }
+    }
+
+    /**
+     * Takes each run of ids out of the current segment with one atomic addition.
+     *
+     * @throws IllegalStateException if a segment is needed and can not be leased
+     */
+    @Override
+    public void generateLongIds(long[] ids) {
+        int offset = 0;
+        while (offset < ids.length) {
+            Segment segment = current;
+            long first = segment.cursor.getAndAdd(ids.length - offset);
+            if (first >= segment.end) {
+                advance(segment);
+                continue;
+            }
+            long end = Math.min(segment.end, first + ids.length - offset);
+            if (first <= segment.prefetchAt && segment.prefetchAt < end) {
+                prefetch(segment);
+            }
+            for (long id = first; id < end; id++) {
+                ids[offset++] = id;
+            }
+        }
+    }
+
+    @Override
+    public String generateId() {
+        return Long.toString(generateLongId());
+    }
+
+    /**
+     * @return the encoded {@link #generateLongId()}
+     */
+    @Override
+    public String generateId(IdEncoder encoder) {
+        return encoder.encode(generateLongId());
+    }
+
+    @Override
+    public void generateIds(String[] ids) {
+        long[] longIds = new long[ids.length];
+        generateLongIds(longIds);
+        for (int i = 0; i < ids.length; i++) {
+            ids[i] = Long.toString(longIds[i]);
+        }
+    }
+
+    /**
+     * @return a UUID holding a long id in its most significant bits
+     */
+    @Override
+    public UUID generateUUID() {
+        return new UUID(generateLongId(), 0L);
+    }
+
+    private synchronized void prefetch(Segment segment) {
+        if (current == segment && next == null) {
+            next = CompletableFuture.supplyAsync(this::lease, executor);
+        }
+    }
+
+    /**
+     * replace the exhausted segment by the prefetched one, or lease one now if the prefetch did not happen or failed
+     */
+    private synchronized void advance(Segment exhausted) {
+        if (current != exhausted) {
+            return;
+        }
+        CompletableFuture<Segment> prefetched = next;
+        next = null;
+        Segment segment = null;
+        if (prefetched != null) {
+            try {
+                segment = prefetched.join();
+            } catch (RuntimeException e) {
+                // lease again below
+            }
+        }
+        if (segment == null) {
+            try {
+                segment = lease();
+            } catch (UncheckedIOException e) {
+                throw new IllegalStateException("could not lease a segment of " + name + " from " + store, e.getCause());
+            }
+        }
+        current = segment;
+    }
+
+    private Segment lease() {
+        try {
+            long first = store.lease(name, segmentSize);
+            return new Segment(first, first + segmentSize, first + (long) (segmentSize * prefetchThreshold));
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+    }
+
+    public String getName() {
+        return name;
+    }
+
+    public long getSegmentSize() {
+        return segmentSize;
+    }
+
+    private static final class Segment {
+        final AtomicLong cursor;
+        final long end;
+        final long prefetchAt;
+
+        Segment(long first, long end, long prefetchAt) {
+            this.cursor = new AtomicLong(first);
+            this.end = end;
+            this.prefetchAt = prefetchAt;
+        }
+    }
+
+    public static final class Builder {
+        private SegmentStore store;
+        private String name = DEFAULT_NAME;
+        private long segmentSize = DEFAULT_SEGMENT_SIZE;
+        private double prefetchThreshold = DEFAULT_PREFETCH_THRESHOLD;
+        private Executor executor;
+
+        private Builder() {
+        }
+
+        /**
+         * @param store source of the segments, a {@link FileSegmentStore} in the default directory if not set
+         * @return this builder
+         */
+        public Builder store(SegmentStore store) {
+            Assert.notNull(store, "store should not be null");
+            this.store = store;
+            return this;
+        }
+
+        /**
+         * @param name name of the sequence in the store
+         * @return this builder
+         */
+        public Builder name(String name) {
+            Assert.notNull(name, "name should not be null");
+            Assert.hasLength(name, "name should not be empty");
+            this.name = name;
+            return this;
+        }
+
+        /**
+         * @param segmentSize number of ids leased at once
+         * @return this builder
+         */
+        public Builder segmentSize(long segmentSize) {
+            Assert.isTrue(segmentSize > 0, "segmentSize should be positive");
+            this.segmentSize = segmentSize;
+            return this;
+        }
+
+        /**
+         * @param prefetchThreshold share of a segment used before the next one is leased, from 0 to 1
+         * @return this builder
+         */
+        public Builder prefetchThreshold(double prefetchThreshold) {
+            Assert.isTrue(prefetchThreshold >= 0 && prefetchThreshold < 1, "prefetchThreshold should be in [0, 1)");
+            this.prefetchThreshold = prefetchThreshold;
+            return this;
+        }
+
+        /**
+         * @param executor runs the prefetches, a new daemon thread for each by default
+         * @return this builder
+         */
+        public Builder executor(Executor executor) {
+            Assert.notNull(executor, "executor should not be null");
+            this.executor = executor;
+            return this;
+        }
+
+        public SegmentIdGenerator build() {
+            return new SegmentIdGenerator(this);
+        }
+    }
+}
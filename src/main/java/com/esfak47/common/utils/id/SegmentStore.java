@@ -0,0 +1,23 @@
+package com.esfak47.common.utils.id;
+
+import java.io.IOException;
+
+/**
+ * Durable source of id ranges for {@link SegmentIdGenerator}.
+ *
+ * @author tony
+ */
+@FunctionalInterface
+public interface SegmentStore {
+
+    /**
+     * Reserve the next range of ids of a sequence. The range must be persisted before this method returns, and never
+     * overlap a range returned before, even by another process sharing the store.
+     *
+     * @param name name of the sequence
+     * @param size number of ids to reserve
+     * @return the first id of the range, which ends before {@code first + size}
+     * @throws IOException if the store can not be read or updated
+     */
+    long lease(String name, long size) throws IOException;
+}
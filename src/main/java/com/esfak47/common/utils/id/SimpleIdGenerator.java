@@ -21,4 +21,17 @@ public class SimpleIdGenerator implements IdGenerator {
         return new UUID(this.mostSigBits.get(), leastSigBits);
     }
 
+    @Override
+    public void generateUUIDs(UUID[] uuids) {
+        long last = this.leastSigBits.addAndGet(uuids.length);
+        long first = last - uuids.length + 1;
+        if (last >= 0 && first - 1 < 0) {
+            this.mostSigBits.incrementAndGet();
+        }
+        long mostSigBits = this.mostSigBits.get();
+        for (int i = 0; i < uuids.length; i++) {
+            uuids[i] = new UUID(mostSigBits, first + i);
+        }
+    }
+
 }
\ No newline at end of file
@@ -0,0 +1,220 @@
+package com.esfak47.common.utils.id;
+
+import com.esfak47.common.lang.Assert;
+import com.esfak47.common.utils.StringUtils;
+import com.esfak47.common.utils.properties.ConfigUtils;
+import com.esfak47.common.utils.system.SystemUtils;
+
+import java.util.UUID;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.function.LongSupplier;
+
+/**
+ * Generates 64 bits ids made of the milliseconds since {@link #DEFAULT_EPOCH} (41 bits, 69 years), a worker id
+ * (10 bits) and a sequence within the millisecond (12 bits), so that ids are roughly ordered by time and unique across
+ * up to 1024 processes.
+ * <p>
+ * The last id is the whole state, kept in a single {@link AtomicLong}: an id is issued by one compare-and-set and
+ * allocates nothing. When the 4096 ids of a millisecond are used up, the generator borrows the next millisecond
+ * rather than waiting for the clock, so bursts are not throttled; it only waits once it runs ahead of the clock by the
+ * tolerance. A clock which moves backwards, after an NTP adjustment, is handled the same way: ids keep increasing from
+ * the last timestamp, and a move larger than the tolerance fails with an {@link IllegalStateException} instead of
+ * risking duplicates.
+ * <p>
+ * The worker id is read from the {@code ID.WORKER} system property, and otherwise derived from the local address and
+ * the pid, which may collide: deployments of more than a few processes should set it.
+ *
+ * @author tony
+ */
+public class SnowflakeIdGenerator implements IdGenerator {
+
+    /**
+     * 2018-01-01T00:00:00Z
+     */
+    public static final long DEFAULT_EPOCH = 1514764800000L;
+
+    public static final long DEFAULT_CLOCK_TOLERANCE_MILLIS = 1000;
+
+    static final int SEQUENCE_BITS = 12;
+
+    static final int WORKER_BITS = 10;
+
+    static final int MAX_WORKER_ID = (1 << WORKER_BITS) - 1;
+
+    private static final int TIMESTAMP_SHIFT = SEQUENCE_BITS + WORKER_BITS;
+
+    private static final long SEQUENCE_MASK = (1L << SEQUENCE_BITS) - 1;
+
+    private static final String WORKER_PROPERTY = "ID.WORKER";
+
+    private final AtomicLong last = new AtomicLong();
+
+    private final long epoch;
+
+    private final long workerBits;
+
+    private final long toleranceMillis;
+
+    private final LongSupplier clock;
+
+    /**
+     * the only public constructor, as required by the extension loader
+     */
+    public SnowflakeIdGenerator() {
+        this(defaultWorkerId(), DEFAULT_EPOCH, DEFAULT_CLOCK_TOLERANCE_MILLIS, System::currentTimeMillis);
+    }
+
+    SnowflakeIdGenerator(int workerId, long epoch, long toleranceMillis, LongSupplier clock) {
+        Assert.isTrue(workerId >= 0 && workerId <= MAX_WORKER_ID, "workerId should be between 0 and " + MAX_WORKER_ID);
+        Assert.isTrue(epoch >= 0 && epoch <= clock.getAsLong(), "epoch should not be in the future");
+        Assert.isTrue(toleranceMillis >= 0, "toleranceMillis should not be negative");
+        this.workerBits = (long) workerId << SEQUENCE_BITS;
+        this.epoch = epoch;
+        this.toleranceMillis = toleranceMillis;
+        this.clock = clock;
+    }
+
+    /**
+     * @param workerId id of this generator among the ones sharing the epoch, from 0 to 1023
+     * @return a generator using the default epoch and clock tolerance
+     */
+    public static SnowflakeIdGenerator of(int workerId) {
+        return of(workerId, DEFAULT_EPOCH, DEFAULT_CLOCK_TOLERANCE_MILLIS);
+    }
+
+    /**
+     * @param workerId        id of this generator among the ones sharing the epoch, from 0 to 1023
+     * @param epoch           start of the timestamps, in milliseconds since the Unix epoch
+     * @param toleranceMillis how far the ids may run ahead of the clock
+     * @return a generator
+     */
+    public static SnowflakeIdGenerator of(int workerId, long epoch, long toleranceMillis) {
+        return new SnowflakeIdGenerator(workerId, epoch, toleranceMillis, System::currentTimeMillis);
+    }
+
+    private static int defaultWorkerId() {
+        String workerId = ConfigUtils.getSystemProperty(WORKER_PROPERTY);
+        if (StringUtils.isNotBlank(workerId) && StringUtils.isNumeric(workerId)) {
+            return Integer.parseInt(workerId) & MAX_WORKER_ID;
+        }
+        String address = SystemUtils.getLocalAddress();
+        int hash = address == null ? 0 : address.hashCode() * 31;
+        return (hash ^ SystemUtils.getCurrentPid()) & MAX_WORKER_ID;
+    }
+
+    @Override
+    public long generateLongId() {
+        for (; ; ) {
+            long current = last.get();
+            long now = clock.getAsLong() - epoch;
+            long timestamp = current >>> TIMESTAMP_SHIFT;
+            long next;
+            if (now > timestamp) {
+                next = now << TIMESTAMP_SHIFT | workerBits;
+            } else {
+                if (timestamp - now > toleranceMillis) {
+                    throw new IllegalStateException(
+                            "clock moved backwards by " + (timestamp - now) + " ms, refusing to generate ids");
+                }
+                next = (current & SEQUENCE_MASK) == SEQUENCE_MASK
+                        ? (timestamp + 1) << TIMESTAMP_SHIFT | workerBits : current + 1;
+                if ((next >>> TIMESTAMP_SHIFT) - now > toleranceMillis) {
+                    // ahead of the clock by the whole tolerance, let it catch up
+                    Thread.yield();
+                    continue;
+                }
+            }
+            if (last.compareAndSet(current, next)) {
+                return next;
+            }
+        }
+    }
+
+    /**
+     * Reserves a run of consecutive sequence numbers, spanning milliseconds if needed, with one compare-and-set per
+     * run. A run is only cut short by the clock tolerance.
+     */
+    @Override
+    public void generateLongIds(long[] ids) {
+        int offset = 0;
+        while (offset < ids.length) {
+            long current = last.get();
+            long now = clock.getAsLong() - epoch;
+            long timestamp = current >>> TIMESTAMP_SHIFT;
+            // ids counted as timestamp * 4096 + sequence, the worker bits set apart
+            long first;
+            if (now > timestamp) {
+                first = now << SEQUENCE_BITS;
+            } else {
+                if (timestamp - now > toleranceMillis) {
+                    throw new IllegalStateException(
+                            "clock moved backwards by " + (timestamp - now) + " ms, refusing to generate ids");
+                }
+                first = (timestamp << SEQUENCE_BITS | (current & SEQUENCE_MASK)) + 1;
+            }
+            long limit = (now + toleranceMillis + 1) << SEQUENCE_BITS;
+            int size = (int) Math.min(ids.length - offset, limit - first);
+            if (size <= 0) {
+                // ahead of the clock by the whole tolerance, let it catch up
+                Thread.yield();
+                continue;
+            }
+            long end = first + size - 1;
+            if (last.compareAndSet(current, toId(end))) {
+                for (long counter = first; counter <= end; counter++) {
+                    ids[offset++] = toId(counter);
+                }
+            }
+        }
+    }
+
+    private long toId(long counter) {
+        return (counter >>> SEQUENCE_BITS) << TIMESTAMP_SHIFT | workerBits | (counter & SEQUENCE_MASK);
+    }
+
+    @Override
+    public String generateId() {
+        return Long.toString(generateLongId());
+    }
+
+    /**
+     * @return the encoded {@link #generateLongId()}
+     */
+    @Override
+    public String generateId(IdEncoder encoder) {
+        return encoder.encode(generateLongId());
+    }
+
+    @Override
+    public void generateIds(String[] ids) {
+        long[] longIds = new long[ids.length];
+        generateLongIds(longIds);
+        for (int i = 0; i < ids.length; i++) {
+            ids[i] = Long.toString(longIds[i]);
+        }
+    }
+
+    /**
+     * @return a UUID holding a long id in its most significant bits
+     */
+    @Override
+    public UUID generateUUID() {
+        return new UUID(generateLongId(), 0L);
+    }
+
+    /**
+     * @param id id generated by this generator
+     * @return the time of the id, in milliseconds since the Unix epoch
+     */
+    public long timestampOf(long id) {
+        return (id >>> TIMESTAMP_SHIFT) + epoch;
+    }
+
+    public int workerIdOf(long id) {
+        return (int) (id >>> SEQUENCE_BITS) & MAX_WORKER_ID;
+    }
+
+    public int workerId() {
+        return (int) (workerBits >>> SEQUENCE_BITS);
+    }
+}
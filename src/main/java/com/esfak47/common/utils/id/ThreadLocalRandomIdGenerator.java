@@ -0,0 +1,79 @@
+package com.esfak47.common.utils.id;
+
+import java.security.SecureRandom;
+import java.util.SplittableRandom;
+import java.util.UUID;
+import java.util.concurrent.ThreadLocalRandom;
+
+/**
+ * Generates random (version 4) UUIDs from per-thread random state, so that threads never contend on a shared seed like
+ * they do on the {@link java.util.Random} of {@link AlternativeJdkIdGenerator}, and no byte array is allocated per
+ * UUID: the two halves are drawn directly as {@code long}s.
+ * <p>
+ * By default, registered as the {@code random} extension, the numbers come from {@link ThreadLocalRandom}.
+ * {@link Secure}, registered as {@code secureRandom}, gives every thread its own {@link SplittableRandom} seeded from
+ * {@link SecureRandom}, which makes the ids of a thread unpredictable from the ids of another one. Neither is a
+ * cryptographically secure generator, use {@link JdkIdGenerator} for ids which must not be guessable.
+ *
+ * @author tony
+ */
+public class ThreadLocalRandomIdGenerator implements IdGenerator {
+
+    private static final ThreadLocal<SplittableRandom> SECURE_SEEDED = ThreadLocal.withInitial(
+            () -> new SplittableRandom(SeedHolder.SEED_SOURCE.nextLong()));
+
+    private final boolean secureSeeded;
+
+    public ThreadLocalRandomIdGenerator() {
+        this(false);
+    }
+
+    ThreadLocalRandomIdGenerator(boolean secureSeeded) {
+        this.secureSeeded = secureSeeded;
+    }
+
+    private long nextLong() {
+        return secureSeeded ? SECURE_SEEDED.get().nextLong() : ThreadLocalRandom.current().nextLong();
+    }
+
+    /**
+     * set the version 4 and the IETF variant, like {@link UUID#randomUUID()}
+     */
+    private static long mostSigBits(long random) {
+        return random & 0xffffffffffff0fffL | 0x0000000000004000L;
+    }
+
+    private static long leastSigBits(long random) {
+        return random & 0x3fffffffffffffffL | 0x8000000000000000L;
+    }
+
+    @Override
+    public UUID generateUUID() {
+        return new UUID(mostSigBits(nextLong()), leastSigBits(nextLong()));
+    }
+
+    /**
+     * the hex digits of {@link #generateUUID()}, written directly
+     */
+    @Override
+    public String generateId() {
+        return IdEncoder.HEX.encode(mostSigBits(nextLong()), leastSigBits(nextLong()));
+    }
+
+    /**
+     * Seeds the state of every thread from {@link SecureRandom}.
+     */
+    public static class Secure extends ThreadLocalRandomIdGenerator {
+
+        public Secure() {
+            super(true);
+        }
+    }
+
+    /**
+     * the secure random is only created when the secure mode is used
+     */
+    private static final class SeedHolder {
+        static final SecureRandom SEED_SOURCE = new SecureRandom();
+    }
+}
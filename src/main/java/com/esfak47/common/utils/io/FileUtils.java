@@ -2,6 +2,8 @@ package com.esfak47.common.utils.io;
 
 import com.esfak47.common.utils.io.ArrayUtils;
 import com.esfak47.common.utils.system.SystemUtils;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
 
 import java.io.*;
 import java.lang.reflect.Method;
@@ -15,11 +17,21 @@ import java.nio.file.StandardOpenOption;
 import java.util.Arrays;
 import java.util.Stack;
 import java.util.UUID;
+import java.util.concurrent.atomic.AtomicBoolean;
 import java.util.zip.ZipEntry;
 import java.util.zip.ZipInputStream;
 
 public class FileUtils {
 
+    private static final Logger logger = LoggerFactory.getLogger(FileUtils.class);
+
+    private static final AtomicBoolean UNMAP_FAILURE_LOGGED = new AtomicBoolean();
+
+    /**
+     * sun.nio.ch.FileChannelImpl#unmap，运行时不允许访问时为 null
+     */
+    private static final Method UNMAP = lookupUnmap();
+
     /**
      * 文件或目录是否存在
      */
@@ -183,16 +195,52 @@ public class FileUtils {
     }
 
     public static void unmap(MappedByteBuffer mappedBuffer) throws IOException {
+        if (UNMAP == null) {
+            throw new IOException("LargeMappedByteBuffer close, unmap is not accessible");
+        }
         try {
-            Class<?> clazz = Class.forName("sun.nio.ch.FileChannelImpl");
-            Method m = clazz.getDeclaredMethod("unmap", MappedByteBuffer.class);
-            m.setAccessible(true);
-            m.invoke(clazz, mappedBuffer);
+            UNMAP.invoke(null, mappedBuffer);
         } catch (Exception e) {
             throw new IOException("LargeMappedByteBuffer close", e);
         }
     }
 
+    /**
+     * 解除内存映射，失败时不抛出异常：Java 9 起 sun.nio.ch.FileChannelImpl 不可访问，映射在缓冲区被垃圾回收时才释放，只记录一次日志
+     *
+     * @return 是否已解除映射
+     */
+    public static boolean unmapQuietly(MappedByteBuffer mappedBuffer) {
+        if (UNMAP == null) {
+            return false;
+        }
+        try {
+            UNMAP.invoke(null, mappedBuffer);
+            return true;
+        } catch (Exception e) {
+            unmapFailed(e);
+            return false;
+        }
+    }
+
+    private static Method lookupUnmap() {
+        try {
+            Method unmap = Class.forName("sun.nio.ch.FileChannelImpl").getDeclaredMethod("unmap", MappedByteBuffer.class);
+            unmap.setAccessible(true);
+            return unmap;
+        } catch (Exception e) {
+            unmapFailed(e);
+            return null;
+        }
+    }
+
+    private static void unmapFailed(Exception e) {
+        if (UNMAP_FAILURE_LOGGED.compareAndSet(false, true)) {
+            logger.warn("mapped buffers can not be unmapped, the mappings are released when the buffers are garbage "
+                    + "collected: {}", e.toString());
+        }
+    }
+
     /**
      * 去掉后缀名
      */
@@ -17,15 +17,18 @@
 package com.esfak47.common.utils.system;
 
 import com.esfak47.common.extension.URL;
-import com.esfak47.common.utils.cache.LRUCache;
+import com.esfak47.common.utils.cache.CacheBuilder;
+import com.esfak47.common.utils.cache.CacheStats;
+import com.esfak47.common.utils.cache.LoadingCache;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
 import java.io.IOException;
 import java.net.*;
 import java.util.Enumeration;
-import java.util.Map;
 import java.util.Random;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.TimeUnit;
 import java.util.regex.Pattern;
 
 /**
@@ -48,9 +51,32 @@ public class NetUtils {
     private static final Pattern ADDRESS_PATTERN = Pattern.compile("^\\d{1,3}(\\.\\d{1,3}){3}\\:\\d{1,5}$");
     private static final Pattern LOCAL_IP_PATTERN = Pattern.compile("127(\\.\\d{1,3}){3}$");
     private static final Pattern IP_PATTERN = Pattern.compile("\\d{1,3}(\\.\\d{1,3}){3,5}$");
-    private static final Map<String, String> HOST_NAME_CACHE = new LRUCache<String, String>(1000);
+    private static final LoadingCache<String, String> HOST_NAME_CACHE = CacheBuilder.newBuilder()
+            .maxCapacity(1000)
+            .expireAfterWrite(5, TimeUnit.MINUTES)
+            .recordStats()
+            .build(address -> InetAddress.getByName(address).getHostName());
+    private static final LoadingCache<String, String> HOST_ADDRESS_CACHE = CacheBuilder.newBuilder()
+            .maxCapacity(1000)
+            .expireAfterWrite(30, TimeUnit.SECONDS)
+            .recordStats()
+            .build(hostName -> InetAddress.getByName(hostName).getHostAddress());
     private static volatile InetAddress LOCAL_ADDRESS = null;
 
+    /**
+     * @return statistics of the cache of {@link #getHostName(String)}
+     */
+    public static CacheStats getHostNameCacheStats() {
+        return HOST_NAME_CACHE.stats();
+    }
+
+    /**
+     * @return statistics of the cache of {@link #getIpByHost(String)}
+     */
+    public static CacheStats getHostAddressCacheStats() {
+        return HOST_ADDRESS_CACHE.stats();
+    }
+
     public static int getRandomPort() {
         return RND_PORT_START + RANDOM.nextInt(RND_PORT_RANGE);
     }
@@ -210,16 +236,10 @@ public class NetUtils {
             if (i > -1) {
                 address = address.substring(0, i);
             }
-            String hostname = HOST_NAME_CACHE.get(address);
+            String hostname = HOST_NAME_CACHE.getOrLoad(address);
             if (hostname != null && hostname.length() > 0) {
                 return hostname;
             }
-            InetAddress inetAddress = InetAddress.getByName(address);
-            if (inetAddress != null) {
-                hostname = inetAddress.getHostName();
-                HOST_NAME_CACHE.put(address, hostname);
-                return hostname;
-            }
         } catch (Throwable e) {
             // ignore
         }
@@ -232,9 +252,17 @@ public class NetUtils {
      */
     public static String getIpByHost(String hostName) {
         try {
-            return InetAddress.getByName(hostName).getHostAddress();
+            if (hostName == null) {
+                return InetAddress.getByName(null).getHostAddress();
+            }
+            return HOST_ADDRESS_CACHE.getOrLoad(hostName);
         } catch (UnknownHostException e) {
             return hostName;
+        } catch (CompletionException e) {
+            if (e.getCause() instanceof UnknownHostException) {
+                return hostName;
+            }
+            throw e;
         }
     }
 
@@ -0,0 +1,125 @@
+package com.esfak47.common.utils.thread;
+
+import com.esfak47.common.lang.Assert;
+
+import java.util.Queue;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.Executor;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * Runs at most a given number of tasks at the same time on another executor, the others waiting in an unbounded queue,
+ * so that one kind of tasks can not take all the threads of a shared executor, or flood an executor of virtual threads.
+ * <p>
+ * Nothing blocks: a task submitted while the limit is reached is queued, and run by one of the running drainers when it
+ * is done with its current task. A drainer holds its thread until the queue is empty.
+ *
+ * @author tony
+ */
+public class ConcurrencyLimitedExecutor implements Executor {
+
+    private final Executor delegate;
+
+    private final int limit;
+
+    private final Queue<Runnable> tasks = new ConcurrentLinkedQueue<>();
+
+    private final AtomicInteger queued = new AtomicInteger();
+
+    private final AtomicInteger active = new AtomicInteger();
+
+    /**
+     * @param delegate executor running the tasks
+     * @param limit    maximum number of tasks run at the same time
+     */
+    public ConcurrencyLimitedExecutor(Executor delegate, int limit) {
+        Assert.notNull(delegate, "delegate should not be null");
+        Assert.isTrue(limit > 0, "limit should be positive");
+        this.delegate = delegate;
+        this.limit = limit;
+    }
+
+    /**
+     * @throws RejectedExecutionException if the task had to be run and the delegate rejected it
+     */
+    @Override
+    public void execute(Runnable task) {
+        Assert.notNull(task, "task should not be null");
+        tasks.add(task);
+        queued.incrementAndGet();
+        try {
+            startDrainer();
+        } catch (RejectedExecutionException e) {
+            if (tasks.remove(task)) {
+                queued.decrementAndGet();
+            }
+            throw e;
+        }
+    }
+
+    /**
+     * @param task task which is no longer needed
+     * @return {@code true} if the task was waiting for the limit, and will not run
+     */
+    public boolean remove(Runnable task) {
+        if (!tasks.remove(task)) {
+            return false;
+        }
+        queued.decrementAndGet();
+        return true;
+    }
+
+    /**
+     * @return the number of tasks running
+     */
+    public int getActiveCount() {
+        return active.get();
+    }
+
+    /**
+     * @return the number of tasks waiting for the limit
+     */
+    public int getQueueSize() {
+        return queued.get();
+    }
+
+    public int getLimit() {
+        return limit;
+    }
+
+    private void startDrainer() {
+        for (; ; ) {
+            int current = active.get();
+            if (current >= limit || queued.get() == 0) {
+                return;
+            }
+            if (active.compareAndSet(current, current + 1)) {
+                try {
+                    delegate.execute(this::drain);
+                } catch (RejectedExecutionException e) {
+                    active.decrementAndGet();
+                    throw e;
+                }
+                return;
+            }
+        }
+    }
+
+    private void drain() {
+        try {
+            for (Runnable task; (task = tasks.poll()) != null; ) {
+                queued.decrementAndGet();
+                task.run();
+            }
+        } finally {
+            active.decrementAndGet();
+            try {
+                // a task queued after the last poll, while this drainer still counted as active
+                startDrainer();
+            } catch (RejectedExecutionException e) {
+                // the delegate is shut down, the queued tasks will not run
+            }
+        }
+    }
+}
@@ -0,0 +1,54 @@
+package com.esfak47.common.utils.thread;
+
+import com.esfak47.common.lang.Assert;
+
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+
+/**
+ * The kind of threads tasks run on. Tasks which mostly wait for I/O should run on virtual threads, which do not hold
+ * a platform thread while they are blocked, so that a fixed pool does not run out of threads while the processors are
+ * idle.
+ *
+ * @author tony
+ */
+public enum ExecutionMode {
+
+    /**
+     * on a pool of platform threads
+     */
+    PLATFORM,
+
+    /**
+     * on a new virtual thread for each task when the runtime supports it, on a pool of platform threads otherwise
+     */
+    VIRTUAL;
+
+    /**
+     * @return whether the runtime supports virtual threads, from Java 21 on
+     */
+    public static boolean isVirtualThreadSupported() {
+        return NamedVirtualThreadFactory.isSupported();
+    }
+
+    /**
+     * @return whether the tasks of this mode really run on virtual threads
+     */
+    public boolean isVirtual() {
+        return this == VIRTUAL && isVirtualThreadSupported();
+    }
+
+    /**
+     * @param name            prefix of the names of the threads
+     * @param platformThreads number of threads of the pool, when the tasks run on platform threads
+     * @return an executor of this mode, whose threads are daemons
+     */
+    public ExecutorService newExecutor(String name, int platformThreads) {
+        Assert.notNull(name, "name should not be null");
+        if (isVirtual()) {
+            return NamedVirtualThreadFactory.newThreadPerTaskExecutor(new NamedVirtualThreadFactory(name));
+        }
+        Assert.isTrue(platformThreads > 0, "platformThreads should be positive");
+        return Executors.newFixedThreadPool(platformThreads, new NamedThreadFactory(name, true));
+    }
+}
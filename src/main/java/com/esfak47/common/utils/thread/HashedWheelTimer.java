@@ -0,0 +1,313 @@
+package com.esfak47.common.utils.thread;
+
+import com.esfak47.common.lang.Assert;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.io.Closeable;
+import java.util.Queue;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicIntegerFieldUpdater;
+import java.util.concurrent.locks.LockSupport;
+
+/**
+ * Runs tasks after a delay, on a hashed timing wheel turned by a single thread, for large numbers of timeouts which
+ * are mostly cancelled or not needed to the millisecond.
+ * <p>
+ * The wheel is an array of buckets, one per tick: a timeout goes to the bucket of its deadline, with the number of
+ * turns of the wheel left before it is due. Scheduling and cancelling cost O(1) and take no lock, they queue the
+ * timeout for the thread, which moves it in or out of its bucket at the next tick, and every tick the thread walks the
+ * bucket under its hand, running the timeouts due. A task runs at the latest a tick after its deadline, so the tick is
+ * the precision of the timer. Tasks run on the thread of the timer and should hand anything long off to an executor.
+ *
+ * @author tony
+ */
+public class HashedWheelTimer implements Closeable {
+
+    private static final Logger logger = LoggerFactory.getLogger(HashedWheelTimer.class);
+
+    private static final int INIT = 0;
+
+    private static final int CANCELLED = 1;
+
+    private static final int EXPIRED = 2;
+
+    /**
+     * timeouts moved to the wheel per tick at most, so that a burst of scheduling does not delay the tick too much
+     */
+    private static final int MAX_TRANSFERS_PER_TICK = 100_000;
+
+    private static final AtomicIntegerFieldUpdater<Timeout> STATE =
+            AtomicIntegerFieldUpdater.newUpdater(Timeout.class, "state");
+
+    private final long tickNanos;
+
+    private final Bucket[] wheel;
+
+    private final int mask;
+
+    private final Queue<Timeout> scheduled = new ConcurrentLinkedQueue<>();
+
+    private final Queue<Timeout> cancelled = new ConcurrentLinkedQueue<>();
+
+    private final AtomicInteger pendingCount = new AtomicInteger();
+
+    private final long startNanos;
+
+    private final Thread worker;
+
+    private volatile boolean stopped;
+
+    /**
+     * ticks done, only read and written by the worker
+     */
+    private long tick;
+
+    /**
+     * @param name          prefix of the name of the thread
+     * @param tickDuration  duration of a tick, the precision of the timer
+     * @param unit          unit of the duration
+     * @param ticksPerWheel number of buckets, rounded up to a power of two
+     */
+    public HashedWheelTimer(String name, long tickDuration, TimeUnit unit, int ticksPerWheel) {
+        Assert.notNull(name, "name should not be null");
+        Assert.notNull(unit, "unit should not be null");
+        Assert.isTrue(tickDuration > 0, "tickDuration should be positive");
+        Assert.isTrue(ticksPerWheel > 0 && ticksPerWheel <= 1 << 30, "ticksPerWheel should be in [1, 2^30]");
+        this.tickNanos = unit.toNanos(tickDuration);
+        Assert.isTrue(tickNanos < Long.MAX_VALUE / ticksPerWheel, "tickDuration is too long");
+        int size = ticksPerWheel == 1 ? 1 : Integer.highestOneBit(ticksPerWheel - 1) << 1;
+        this.wheel = new Bucket[size];
+        for (int i = 0; i < size; i++) {
+            wheel[i] = new Bucket();
+        }
+        this.mask = size - 1;
+        this.worker = new NamedThreadFactory(name, true).newThread(this::work);
+        this.startNanos = System.nanoTime();
+        worker.start();
+    }
+
+    /**
+     * @param task  run once the delay elapsed, on the thread of the timer
+     * @param delay delay, a task with no delay runs at the next tick
+     * @param unit  unit of the delay
+     * @return the timeout, to cancel it
+     * @throws RejectedExecutionException if the timer is stopped
+     */
+    public Timeout newTimeout(Runnable task, long delay, TimeUnit unit) {
+        Assert.notNull(task, "task should not be null");
+        Assert.notNull(unit, "unit should not be null");
+        if (stopped) {
+            throw new RejectedExecutionException("timer is stopped");
+        }
+        long delayNanos = Math.max(0, unit.toNanos(delay));
+        long elapsed = System.nanoTime() - startNanos;
+        long deadline = delayNanos > Long.MAX_VALUE - elapsed ? Long.MAX_VALUE : elapsed + delayNanos;
+        Timeout timeout = new Timeout(task, deadline);
+        pendingCount.incrementAndGet();
+        scheduled.add(timeout);
+        return timeout;
+    }
+
+    /**
+     * @return the number of timeouts neither run nor cancelled
+     */
+    public int getPendingCount() {
+        return pendingCount.get();
+    }
+
+    /**
+     * stop the thread and wait for it, the pending timeouts will not run
+     */
+    public void stop() {
+        stopped = true;
+        LockSupport.unpark(worker);
+        if (Thread.currentThread() != worker) {
+            try {
+                worker.join();
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+            }
+        }
+    }
+
+    @Override
+    public void close() {
+        stop();
+    }
+
+    private void work() {
+        while (!stopped) {
+            long now = waitForNextTick();
+            if (now < 0) {
+                return;
+            }
+            removeCancelled();
+            transferScheduled();
+            wheel[(int) (tick & mask)].expire(now);
+            tick++;
+        }
+    }
+
+    /**
+     * @return the time elapsed since the start of the timer, or -1 if the timer is stopped
+     */
+    private long waitForNextTick() {
+        long deadline = tickNanos * (tick + 1);
+        for (; ; ) {
+            long now = System.nanoTime() - startNanos;
+            if (now >= deadline) {
+                return now;
+            }
+            LockSupport.parkNanos(this, deadline - now);
+            if (stopped) {
+                return -1;
+            }
+        }
+    }
+
+    private void removeCancelled() {
+        for (Timeout timeout; (timeout = cancelled.poll()) != null; ) {
+            if (timeout.bucket != null) {
+                timeout.bucket.remove(timeout);
+            }
+        }
+    }
+
+    private void transferScheduled() {
+        for (int i = 0; i < MAX_TRANSFERS_PER_TICK; i++) {
+            Timeout timeout = scheduled.poll();
+            if (timeout == null) {
+                return;
+            }
+            if (timeout.state != INIT) {
+                continue;
+            }
+            long dueTick = timeout.deadline / tickNanos;
+            timeout.remainingRounds = (dueTick - tick) / wheel.length;
+            // a timeout already due goes under the hand
+            wheel[(int) (Math.max(dueTick, tick) & mask)].add(timeout);
+        }
+    }
+
+    /**
+     * A task waiting for its deadline.
+     */
+    public final class Timeout {
+
+        private final Runnable task;
+
+        /**
+         * nanoseconds since the start of the timer
+         */
+        private final long deadline;
+
+        volatile int state = INIT;
+
+        /**
+         * turns of the wheel left, and links of the bucket, only used by the worker
+         */
+        private long remainingRounds;
+
+        private Bucket bucket;
+
+        private Timeout prev;
+
+        private Timeout next;
+
+        private Timeout(Runnable task, long deadline) {
+            this.task = task;
+            this.deadline = deadline;
+        }
+
+        /**
+         * @return {@code true} if the task had not run and will not
+         */
+        public boolean cancel() {
+            if (!STATE.compareAndSet(this, INIT, CANCELLED)) {
+                return false;
+            }
+            pendingCount.decrementAndGet();
+            cancelled.add(this);
+            return true;
+        }
+
+        public boolean isCancelled() {
+            return state == CANCELLED;
+        }
+
+        public boolean isExpired() {
+            return state == EXPIRED;
+        }
+
+        private void expire() {
+            if (!STATE.compareAndSet(this, INIT, EXPIRED)) {
+                return;
+            }
+            pendingCount.decrementAndGet();
+            try {
+                task.run();
+            } catch (Throwable e) {
+                logger.warn("timer task failed", e);
+            }
+        }
+    }
+
+    /**
+     * The timeouts of a tick, in a doubly linked list so that a cancelled one is removed in O(1).
+     */
+    private static final class Bucket {
+
+        private Timeout head;
+
+        private Timeout tail;
+
+        void add(Timeout timeout) {
+            timeout.bucket = this;
+            timeout.prev = tail;
+            if (tail == null) {
+                head = timeout;
+            } else {
+                tail.next = timeout;
+            }
+            tail = timeout;
+        }
+
+        void remove(Timeout timeout) {
+            if (timeout.prev == null) {
+                head = timeout.next;
+            } else {
+                timeout.prev.next = timeout.next;
+            }
+            if (timeout.next == null) {
+                tail = timeout.prev;
+            } else {
+                timeout.next.prev = timeout.prev;
+            }
+            timeout.bucket = null;
+            timeout.prev = null;
+            timeout.next = null;
+        }
+
+        /**
+         * run the timeouts due by the time, and count a turn down for the others
+         */
+        void expire(long now) {
+            for (Timeout timeout = head; timeout != null; ) {
+                Timeout next = timeout.next;
+                if (timeout.state != INIT) {
+                    remove(timeout);
+                } else if (timeout.remainingRounds <= 0 && timeout.deadline <= now) {
+                    remove(timeout);
+                    timeout.expire();
+                } else if (timeout.remainingRounds > 0) {
+                    timeout.remainingRounds--;
+                }
+                timeout = next;
+            }
+        }
+    }
+}
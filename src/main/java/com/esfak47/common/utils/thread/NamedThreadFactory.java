@@ -38,12 +38,19 @@ public class NamedThreadFactory implements ThreadFactory {
 
     @Override
     public Thread newThread(@NotNull Runnable runnable) {
-        String name = mPrefix + mThreadNum.getAndIncrement();
+        String name = nextThreadName();
         Thread ret = new Thread(mGroup, runnable, name, 0);
         ret.setDaemon(mDaemon);
         return ret;
     }
 
+    /**
+     * @return the name of the next thread, the prefix followed by a sequence number
+     */
+    protected String nextThreadName() {
+        return mPrefix + mThreadNum.getAndIncrement();
+    }
+
     public ThreadGroup getThreadGroup() {
         return mGroup;
     }
@@ -0,0 +1,72 @@
+package com.esfak47.common.utils.thread;
+
+import org.jetbrains.annotations.NotNull;
+
+import java.lang.reflect.Method;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ThreadFactory;
+
+/**
+ * Creates virtual threads named like the ones of {@link NamedThreadFactory}, when the runtime supports them (Java 21
+ * and later), and daemon platform threads otherwise. Virtual threads are looked up by reflection, so that the library
+ * still runs on Java 8.
+ *
+ * @author tony
+ */
+public class NamedVirtualThreadFactory extends NamedThreadFactory {
+
+    /**
+     * the factory of {@code Thread.ofVirtual()}, {@code null} if the runtime has no virtual threads
+     */
+    private static final ThreadFactory VIRTUAL_THREADS = lookupVirtualThreads();
+
+    public NamedVirtualThreadFactory(String prefix) {
+        super(prefix, true);
+    }
+
+    private static ThreadFactory lookupVirtualThreads() {
+        try {
+            Object builder = Thread.class.getMethod("ofVirtual").invoke(null);
+            Method factory = Class.forName("java.lang.Thread$Builder").getMethod("factory");
+            return (ThreadFactory) factory.invoke(builder);
+        } catch (ReflectiveOperationException | RuntimeException | LinkageError e) {
+            // before Java 21, or with preview features disabled
+            return null;
+        }
+    }
+
+    /**
+     * @return whether the runtime supports virtual threads
+     */
+    public static boolean isSupported() {
+        return VIRTUAL_THREADS != null;
+    }
+
+    /**
+     * @return an executor starting a new thread of the factory for each task, see
+     * {@code Executors.newThreadPerTaskExecutor}
+     * @throws UnsupportedOperationException if the runtime has no virtual threads
+     */
+    static ExecutorService newThreadPerTaskExecutor(ThreadFactory threadFactory) {
+        if (!isSupported()) {
+            throw new UnsupportedOperationException("virtual threads are not supported by this runtime");
+        }
+        try {
+            return (ExecutorService) Executors.class.getMethod("newThreadPerTaskExecutor", ThreadFactory.class)
+                    .invoke(null, threadFactory);
+        } catch (ReflectiveOperationException e) {
+            throw new UnsupportedOperationException("virtual threads are not supported by this runtime", e);
+        }
+    }
+
+    @Override
+    public Thread newThread(@NotNull Runnable runnable) {
+        if (VIRTUAL_THREADS == null) {
+            return super.newThread(runnable);
+        }
+        Thread thread = VIRTUAL_THREADS.newThread(runnable);
+        thread.setName(nextThreadName());
+        return thread;
+    }
+}
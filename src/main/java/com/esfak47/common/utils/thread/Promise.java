@@ -28,6 +28,16 @@ public class Promise<T> {
         return promise(promiseInterface, PromiseExecutorHolder.executor);
     }
 
+    /**
+     * @param executionMode {@link ExecutionMode#VIRTUAL} to run the promise and its continuations on virtual threads,
+     *                      which suits promises blocking on I/O, when the runtime supports them
+     */
+    public static <T> Promise<T> promise(PromiseInterface<T> promiseInterface, ExecutionMode executionMode) {
+        Assert.notNull(executionMode, "executionMode should not be null");
+        return promise(promiseInterface, executionMode.isVirtual() ? VirtualExecutorHolder.executor
+                : PromiseExecutorHolder.executor);
+    }
+
     public static <T> Promise<T> promise(PromiseInterface<T> promiseInterface, Executor executor) {
         Assert.notNull(promiseInterface, "promiseInterface should not be null");
         Assert.notNull(executor, "executor should not be null");
@@ -87,4 +97,8 @@ public class Promise<T> {
         private static Executor executor = Executors.newFixedThreadPool(100);
     }
 
+    private static final class VirtualExecutorHolder {
+        private static Executor executor = ExecutionMode.VIRTUAL.newExecutor("promise", 100);
+    }
+
 }
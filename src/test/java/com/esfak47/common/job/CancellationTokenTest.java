@@ -0,0 +1,53 @@
+package com.esfak47.common.job;
+
+import org.junit.Assert;
+import org.junit.Test;
+
+import java.util.concurrent.CancellationException;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * @author tony
+ */
+public class CancellationTokenTest {
+
+    @Test
+    public void testCallbacksRunOnce() {
+        CancellationToken token = new CancellationToken();
+        AtomicInteger calls = new AtomicInteger();
+        Runnable removed = calls::incrementAndGet;
+        token.onCancel(calls::incrementAndGet);
+        token.onCancel(() -> {
+            throw new IllegalStateException("ignored");
+        });
+        token.onCancel(removed);
+        Assert.assertTrue(token.removeOnCancel(removed));
+        token.throwIfCancellationRequested();
+        Assert.assertFalse(token.isCancellationRequested());
+
+        Assert.assertTrue(token.cancel());
+        Assert.assertFalse(token.cancel());
+        Assert.assertTrue(token.isCancellationRequested());
+        Assert.assertEquals(1, calls.get());
+
+        // registered once cancelled, run at once
+        token.onCancel(calls::incrementAndGet);
+        Assert.assertEquals(2, calls.get());
+        try {
+            token.throwIfCancellationRequested();
+            Assert.fail();
+        } catch (CancellationException expected) {
+            // expected
+        }
+    }
+
+    @Test
+    public void testCancelOnCancel() {
+        CancellationToken token = new CancellationToken();
+        CompletableFuture<String> future = new CompletableFuture<>();
+        token.cancelOnCancel(future);
+        token.cancel();
+        Assert.assertTrue(future.isCancelled());
+    }
+}
@@ -0,0 +1,561 @@
+package com.esfak47.common.job.impl;
+
+import com.esfak47.common.extension.ExtensionLoader;
+import com.esfak47.common.job.Job;
+import com.esfak47.common.job.JobEvent;
+import com.esfak47.common.job.JobListener;
+import com.esfak47.common.job.JobManager;
+import com.esfak47.common.job.JobSchedule;
+import com.esfak47.common.lang.PageResult;
+import com.esfak47.common.utils.thread.ExecutionMode;
+import org.junit.After;
+import org.junit.Assert;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.ObjectInputStream;
+import java.io.ObjectOutputStream;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.function.BooleanSupplier;
+
+/**
+ * @author tony
+ */
+public class DefaultJobManagerTest {
+
+    @Rule
+    public TemporaryFolder folder = new TemporaryFolder();
+
+    private final CountDownLatch release = new CountDownLatch(1);
+
+    private final DefaultJobManager jobManager = DefaultJobManager.newBuilder()
+            .threads(1)
+            .queueCapacity(4)
+            .build();
+
+    @After
+    public void tearDown() {
+        release.countDown();
+        jobManager.shutdown();
+    }
+
+    private CompletableJob blocking(String id, CountDownLatch started) {
+        return CompletableJob.create(id, id, job -> {
+            started.countDown();
+            try {
+                release.await();
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+            }
+        });
+    }
+
+    private static void awaitTrue(BooleanSupplier condition) throws InterruptedException {
+        long deadline = System.nanoTime() + TimeUnit.SECONDS.toNanos(10);
+        while (!condition.getAsBoolean()) {
+            Assert.assertTrue(System.nanoTime() < deadline);
+            Thread.sleep(1);
+        }
+    }
+
+    @Test
+    public void testQueueAndCancel() throws InterruptedException {
+        CountDownLatch started = new CountDownLatch(1);
+        Assert.assertTrue(jobManager.submit(blocking("running", started)));
+        started.await();
+        for (int i = 0; i < 4; i++) {
+            Assert.assertTrue(jobManager.submit(CompletableJob.create("queued", "queued-" + i, job -> {
+            })));
+        }
+        // the queue is full
+        Assert.assertFalse(jobManager.submit(CompletableJob.create("refused", "refused", job -> {
+        })));
+        Assert.assertNull(jobManager.getJob("refused"));
+        Assert.assertFalse(jobManager.submit(CompletableJob.create("duplicate", "queued-0", job -> {
+        })));
+        Assert.assertEquals(1, jobManager.getRunningCount());
+        Assert.assertEquals(4, jobManager.getQueueDepth());
+
+        Assert.assertTrue(jobManager.cancel("queued-1"));
+        Assert.assertFalse(jobManager.cancel("queued-1"));
+        Assert.assertTrue(jobManager.getJob("queued-1").isCancelled());
+        Assert.assertEquals(3, jobManager.getQueueDepth());
+        // the cancelled job freed its slot
+        Assert.assertTrue(jobManager.submit(CompletableJob.create("queued", "queued-4", job -> {
+        })));
+        Assert.assertEquals(4, jobManager.getQueueDepth());
+
+        Assert.assertTrue(jobManager.cancel("running"));
+        awaitTrue(() -> jobManager.getQueueDepth() == 0 && jobManager.getRunningCount() == 0);
+        Assert.assertTrue(jobManager.getJob("running").isCancelled());
+        Assert.assertTrue(jobManager.getJob("queued-0").isFinish());
+        Assert.assertFalse(jobManager.getJob("queued-1").isFinish());
+        Assert.assertFalse(jobManager.cancel("queued-0"));
+    }
+
+    @Test
+    public void testShutdownDropsQueuedJobs() throws InterruptedException {
+        CountDownLatch started = new CountDownLatch(1);
+        Assert.assertTrue(jobManager.submit(blocking("running", started)));
+        started.await();
+        for (int i = 0; i < 3; i++) {
+            Assert.assertTrue(jobManager.submit(CompletableJob.create("queued", "queued-" + i, job -> {
+            })));
+        }
+        Assert.assertEquals(3, jobManager.getQueueDepth());
+        jobManager.shutdown();
+        Assert.assertEquals(0, jobManager.getQueueDepth());
+        Assert.assertFalse(jobManager.getJob("queued-0").isFinish());
+        Assert.assertFalse(jobManager.cancel("queued-0"));
+    }
+
+    @Test
+    public void testPagesAndDelete() throws InterruptedException {
+        DefaultJobManager manager = DefaultJobManager.newBuilder().threads(2).queueCapacity(100).build();
+        try {
+            for (int i = 0; i < 50; i++) {
+                Assert.assertTrue(manager.submit(CompletableJob.create("job", "job-" + i, job -> job.setProcess(100))));
+            }
+            Assert.assertTrue(manager.delete("job-3"));
+            Assert.assertFalse(manager.delete("job-3"));
+            Assert.assertNull(manager.getJob("job-3"));
+
+            PageResult<Job> page = manager.getJobs(2, 10);
+            Assert.assertEquals(49, page.getTotal());
+            List<String> ids = new ArrayList<>();
+            page.getItems().forEach(job -> ids.add(job.getId()));
+            Assert.assertEquals("job-11", ids.get(0));
+            Assert.assertEquals("job-20", ids.get(9));
+            Assert.assertEquals(9, manager.getJobs(5, 10).getItems().size());
+            Assert.assertTrue(manager.getJobs(6, 10).getItems().isEmpty());
+            awaitTrue(() -> manager.getRunningCount() == 0 && manager.getQueueDepth() == 0);
+        } finally {
+            manager.shutdown();
+        }
+    }
+
+    @Test
+    public void testFinishedJobsAreBounded() throws InterruptedException {
+        DefaultJobManager manager = DefaultJobManager.newBuilder().maxFinishedJobs(100).build();
+        try {
+            int submitted = 0;
+            for (int i = 0; i < 1000; i++) {
+                if (manager.submit(CompletableJob.create("job", "job-" + i, job -> {
+                }))) {
+                    submitted++;
+                }
+            }
+            Assert.assertEquals(1000, submitted);
+            awaitTrue(() -> manager.getJobCount() == 100);
+            Assert.assertNull(manager.getJob("job-0"));
+            Assert.assertNotNull(manager.getJob("job-999"));
+        } finally {
+            manager.shutdown();
+        }
+    }
+
+    @Test
+    public void testDeletedJobsLeaveTheFinishedJobs() throws InterruptedException {
+        DefaultJobManager manager = DefaultJobManager.newBuilder().threads(1).maxFinishedJobs(10).build();
+        try {
+            for (String prefix : Arrays.asList("kept-", "deleted-")) {
+                for (int i = 0; i < 5; i++) {
+                    Assert.assertTrue(manager.submit(CompletableJob.create("job", prefix + i, job -> {
+                    })));
+                }
+                awaitTrue(() -> manager.getJob(prefix + 4) != null && manager.getJob(prefix + 4).isFinish());
+            }
+            for (int i = 0; i < 5; i++) {
+                Assert.assertTrue(manager.delete("deleted-" + i));
+            }
+            // the deleted jobs no longer count, so the jobs finished before them are still kept
+            for (int i = 0; i < 5; i++) {
+                Assert.assertTrue(manager.submit(CompletableJob.create("job", "new-" + i, job -> {
+                })));
+            }
+            awaitTrue(() -> manager.getJob("new-4").isFinish() && manager.getRunningCount() == 0);
+            Thread.sleep(10);
+            Assert.assertEquals(10, manager.getJobCount());
+            Assert.assertNotNull(manager.getJob("kept-0"));
+        } finally {
+            manager.shutdown();
+        }
+    }
+
+    @Test
+    public void testFailingJob() throws InterruptedException {
+        Assert.assertTrue(jobManager.submit(CompletableJob.create("failing", "failing", job -> {
+            throw new IllegalStateException("failed");
+        })));
+        Job job = jobManager.getJob("failing");
+        awaitTrue(() -> job.getFinishTime() != null);
+        Assert.assertTrue(job.isExitUnexpectedly());
+        Assert.assertFalse(job.isFinish());
+    }
+
+    @Test
+    public void testExtension() {
+        JobManager manager = ExtensionLoader.getExtensionLoader(JobManager.class).getExtension("default");
+        Assert.assertTrue(manager instanceof DefaultJobManager);
+    }
+
+    @Test
+    public void testExecutionModesAndLimits() throws InterruptedException {
+        DefaultJobManager manager = DefaultJobManager.newBuilder()
+                .threads(4)
+                .queueCapacity(4)
+                .concurrencyLimit(ExecutionMode.VIRTUAL, 2)
+                .build();
+        try {
+            Assert.assertEquals(ExecutionMode.PLATFORM, manager.getExecutionMode());
+            CountDownLatch started = new CountDownLatch(2);
+            for (int i = 0; i < 4; i++) {
+                Assert.assertTrue(manager.submit(blocking("virtual-" + i, started)
+                        .setExecutionMode(ExecutionMode.VIRTUAL)));
+            }
+            started.await();
+            awaitTrue(() -> manager.getRunningCount() == 2);
+            Assert.assertEquals(2, manager.getQueueDepth());
+            // two started, the fifth fits in the queue whatever the timing
+            Assert.assertTrue(manager.submit(blocking("virtual-4", started).setExecutionMode(ExecutionMode.VIRTUAL)));
+            Assert.assertEquals(3, manager.getQueueDepth());
+
+            // the limit of the virtual jobs leaves threads to the others
+            CountDownLatch platformStarted = new CountDownLatch(1);
+            Assert.assertTrue(manager.submit(blocking("platform", platformStarted)));
+            platformStarted.await();
+            Assert.assertEquals(3, manager.getRunningCount());
+            // the queue capacity bounds the jobs waiting in all the modes
+            Assert.assertTrue(manager.submit(CompletableJob.create("waiting", "waiting", job -> {
+            }).setExecutionMode(ExecutionMode.VIRTUAL)));
+            Assert.assertFalse(manager.submit(CompletableJob.create("refused", "refused", job -> {
+            })));
+
+            release.countDown();
+            awaitTrue(() -> manager.getQueueDepth() == 0 && manager.getRunningCount() == 0);
+            for (Job job : manager.getJobs(1, 10).getItems()) {
+                Assert.assertTrue(job.getId(), job.isFinish());
+            }
+        } finally {
+            manager.shutdown();
+        }
+    }
+
+    @Test
+    public void testAsyncJobs() throws InterruptedException {
+        DefaultJobManager manager = DefaultJobManager.newBuilder().threads(1).build();
+        try {
+            List<CompletableFuture<String>> pending = new ArrayList<>();
+            for (int i = 0; i < 10; i++) {
+                CompletableFuture<String> future = new CompletableFuture<>();
+                pending.add(future);
+                Assert.assertTrue(manager.submit(CompletableJob.createAsync("async", "async-" + i, job -> future)));
+            }
+            // the jobs wait without holding the only thread
+            awaitTrue(() -> manager.getRunningCount() == 10 && manager.getQueueDepth() == 0);
+            Assert.assertTrue(manager.getJob("async-0").isAsync());
+            CountDownLatch ran = new CountDownLatch(1);
+            Assert.assertTrue(manager.submit(CompletableJob.create("sync", "sync", job -> ran.countDown())));
+            Assert.assertTrue(ran.await(10, TimeUnit.SECONDS));
+
+            pending.get(0).complete("done");
+            pending.get(1).completeExceptionally(new IllegalStateException("failed"));
+            Assert.assertTrue(manager.getJob("async-0").isFinish());
+            Assert.assertTrue(manager.getJob("async-1").isExitUnexpectedly());
+            Assert.assertNotNull(manager.getJob("async-1").getFinishTime());
+            Assert.assertEquals(8, manager.getRunningCount());
+            Assert.assertFalse(manager.cancel("async-0"));
+        } finally {
+            manager.shutdown();
+        }
+    }
+
+    @Test
+    public void testCancelAsyncJob() throws InterruptedException {
+        AtomicBoolean released = new AtomicBoolean();
+        CompletableFuture<String> download = new CompletableFuture<>();
+        CountDownLatch started = new CountDownLatch(1);
+        CompletableJob job = CompletableJob.createAsync("download", "download", self -> {
+            self.getCancellationToken().onCancel(() -> released.set(true));
+            self.getCancellationToken().cancelOnCancel(download);
+            started.countDown();
+            return download;
+        });
+        Assert.assertTrue(jobManager.submit(job));
+        Assert.assertTrue(started.await(10, TimeUnit.SECONDS));
+
+        Assert.assertTrue(jobManager.cancel("download"));
+        Assert.assertTrue(job.isCancelled());
+        Assert.assertTrue(job.getCancellationToken().isCancellationRequested());
+        Assert.assertTrue(released.get());
+        Assert.assertTrue(download.isCancelled());
+        // done whatever the body does, the thread and the slot being freed, by the canceller or the starting thread
+        awaitTrue(() -> jobManager.getRunningCount() == 0 && job.getFinishTime() != null);
+        Assert.assertFalse(job.isFinish());
+        Assert.assertFalse(jobManager.cancel("download"));
+    }
+
+    @Test
+    public void testCancelCallbackWaitingForTheJob() throws InterruptedException {
+        CountDownLatch started = new CountDownLatch(1);
+        AtomicBoolean jobLetGo = new AtomicBoolean();
+        CompletableJob job = CompletableJob.create("blocking", "blocking", self -> {
+            self.getCancellationToken().onCancel(() -> {
+                // such as closing a connection once the job let go of it
+                long deadline = System.nanoTime() + TimeUnit.SECONDS.toNanos(10);
+                while (jobManager.getRunningCount() != 0 && System.nanoTime() < deadline) {
+                    Thread.yield();
+                }
+                jobLetGo.set(jobManager.getRunningCount() == 0);
+            });
+            started.countDown();
+            while (!self.isCancelled()) {
+                Thread.yield();
+            }
+        });
+        Assert.assertTrue(jobManager.submit(job));
+        Assert.assertTrue(started.await(10, TimeUnit.SECONDS));
+
+        Assert.assertTrue(jobManager.cancel("blocking"));
+        Assert.assertTrue(jobLetGo.get());
+        Assert.assertNotNull(job.getFinishTime());
+    }
+
+    @Test
+    public void testTokenOfDeserializedJob() throws Exception {
+        CompletableJob job = CompletableJob.create("job", "job", self -> {
+        });
+        ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+        try (ObjectOutputStream out = new ObjectOutputStream(bytes)) {
+            out.writeObject(job);
+        }
+        CompletableJob copy;
+        try (ObjectInputStream in = new ObjectInputStream(new ByteArrayInputStream(bytes.toByteArray()))) {
+            copy = (CompletableJob) in.readObject();
+        }
+        Assert.assertFalse(copy.getCancellationToken().isCancellationRequested());
+        copy.setCancelled(true);
+        Assert.assertTrue(copy.getCancellationToken().isCancellationRequested());
+    }
+
+    @Test
+    public void testTokenOfRunningJob() throws InterruptedException {
+        CountDownLatch started = new CountDownLatch(1);
+        AtomicInteger loops = new AtomicInteger();
+        CompletableJob job = CompletableJob.create("loop", "loop", self -> {
+            started.countDown();
+            while (!self.getCancellationToken().isCancellationRequested()) {
+                loops.incrementAndGet();
+            }
+        });
+        Assert.assertTrue(jobManager.submit(job));
+        started.await();
+        Assert.assertTrue(jobManager.cancel("loop"));
+        awaitTrue(() -> jobManager.getRunningCount() == 0);
+        Assert.assertTrue(job.isCancelled());
+    }
+
+    @Test
+    public void testScheduledJobs() throws InterruptedException {
+        DefaultJobManager manager = DefaultJobManager.newBuilder().timerTick(1, TimeUnit.MILLISECONDS).build();
+        try {
+            CountDownLatch ran = new CountDownLatch(1);
+            long start = System.nanoTime();
+            JobSchedule delayed = manager.schedule(CompletableJob.create("delayed", "delayed", job -> ran.countDown()),
+                    20, TimeUnit.MILLISECONDS);
+            Assert.assertNotNull(delayed);
+            Assert.assertNull(manager.schedule(CompletableJob.create("duplicate", "delayed", job -> {
+            }), 0, TimeUnit.MILLISECONDS));
+            // waiting for its delay, the job is not listed yet
+            Assert.assertNull(manager.getJob("delayed"));
+            JobSchedule cancelled = manager.schedule(CompletableJob.create("cancelled", "cancelled", job -> {
+            }), 10, TimeUnit.MILLISECONDS);
+            Assert.assertEquals(2, manager.getScheduledCount());
+            Assert.assertTrue(manager.cancel("cancelled"));
+            Assert.assertTrue(cancelled.isCancelled());
+            Assert.assertFalse(cancelled.cancel());
+
+            Assert.assertTrue(ran.await(10, TimeUnit.SECONDS));
+            Assert.assertTrue(System.nanoTime() - start >= TimeUnit.MILLISECONDS.toNanos(20));
+            Assert.assertFalse(delayed.cancel());
+            awaitTrue(() -> manager.getJob("delayed").isFinish());
+            Assert.assertNull(manager.getJob("cancelled"));
+
+            AtomicInteger sequence = new AtomicInteger();
+            CountDownLatch periodic = new CountDownLatch(5);
+            JobSchedule refresh = manager.scheduleAtFixedRate(() -> CompletableJob.create("refresh",
+                    "refresh-" + sequence.incrementAndGet(), job -> periodic.countDown()), 0, 5,
+                    TimeUnit.MILLISECONDS);
+            Assert.assertTrue(periodic.await(10, TimeUnit.SECONDS));
+            Assert.assertTrue(refresh.getDelay(TimeUnit.MILLISECONDS) <= 5);
+            Assert.assertTrue(refresh.cancel());
+            int submitted = sequence.get();
+            Thread.sleep(30);
+            Assert.assertTrue(sequence.get() <= submitted + 1);
+            Assert.assertEquals(0, manager.getScheduledCount());
+        } finally {
+            manager.shutdown();
+        }
+        Assert.assertNull(manager.schedule(CompletableJob.create("late", "late", job -> {
+        }), 0, TimeUnit.MILLISECONDS));
+    }
+
+    @Test
+    public void testSlowSupplierDoesNotDelayTheTimer() throws InterruptedException {
+        DefaultJobManager manager = DefaultJobManager.newBuilder().threads(2).timerTick(1, TimeUnit.MILLISECONDS)
+                .build();
+        try {
+            CountDownLatch supplying = new CountDownLatch(1);
+            JobSchedule slow = manager.scheduleAtFixedRate(() -> {
+                supplying.countDown();
+                try {
+                    release.await();
+                } catch (InterruptedException e) {
+                    Thread.currentThread().interrupt();
+                }
+                return null;
+            }, 0, 1, TimeUnit.HOURS);
+            Assert.assertNotNull(slow);
+            Assert.assertTrue(supplying.await(10, TimeUnit.SECONDS));
+
+            CountDownLatch ran = new CountDownLatch(1);
+            Assert.assertNotNull(manager.schedule(CompletableJob.create("delayed", "delayed", job -> ran.countDown()),
+                    5, TimeUnit.MILLISECONDS));
+            Assert.assertTrue(ran.await(10, TimeUnit.SECONDS));
+            Assert.assertTrue(slow.getDelay(TimeUnit.MINUTES) > 0);
+        } finally {
+            release.countDown();
+            manager.shutdown();
+        }
+    }
+
+    @Test
+    public void testListenersGetCoalescedEvents() throws InterruptedException {
+        DefaultJobManager manager = DefaultJobManager.newBuilder().threads(1).maxDispatchRate(20).build();
+        List<JobEvent> events = new CopyOnWriteArrayList<>();
+        AtomicInteger batches = new AtomicInteger();
+        JobListener listener = batch -> {
+            batches.incrementAndGet();
+            events.addAll(batch);
+        };
+        try {
+            manager.addListener(listener);
+            manager.addListener(batch -> {
+                throw new IllegalStateException("a failing listener does not stop the others");
+            });
+            Assert.assertTrue(manager.submit(CompletableJob.create("progress", "progress", job -> {
+                for (int i = 1; i <= 1_000_000; i++) {
+                    job.setProcess(i);
+                }
+            })));
+            awaitTrue(() -> !events.isEmpty() && events.get(events.size() - 1).getState() == JobEvent.State.FINISHED);
+            JobEvent last = events.get(events.size() - 1);
+            Assert.assertEquals("progress", last.getJobId());
+            Assert.assertEquals(1_000_000, last.getProcess());
+            Assert.assertTrue(events.toString(), events.size() <= batches.get());
+
+            Assert.assertTrue(manager.delete("progress"));
+            awaitTrue(() -> events.get(events.size() - 1).getState() == JobEvent.State.DELETED);
+
+            Assert.assertTrue(manager.removeListener(listener));
+            Assert.assertFalse(manager.removeListener(listener));
+        } finally {
+            manager.shutdown();
+        }
+    }
+
+    @Test
+    public void testJobResubmittedAfterDeleteIsRecovered() throws Exception {
+        String directory = folder.getRoot().getPath();
+        JobJournal journal = JobJournal.newBuilder(directory).open();
+        DefaultJobManager manager = DefaultJobManager.newBuilder()
+                .threads(1)
+                .maxDispatchRate(1)
+                .journal(journal, record -> null)
+                .build();
+        List<JobEvent> events = new CopyOnWriteArrayList<>();
+        manager.addListener(events::addAll);
+        try {
+            Assert.assertTrue(manager.submit(CompletableJob.create("first", "job", job -> {
+            })));
+            awaitTrue(() -> manager.getJob("job").isFinish());
+            // deleted and submitted again before the deletion is published
+            Assert.assertTrue(manager.delete("job"));
+            CountDownLatch started = new CountDownLatch(1);
+            Assert.assertTrue(manager.submit(blocking("job", started)));
+            started.await();
+            awaitTrue(() -> events.stream().anyMatch(event -> event.getState() == JobEvent.State.DELETED)
+                    && events.stream().anyMatch(event -> event.getState() == JobEvent.State.RUNNING));
+            // the process dies with the second job running
+            journal.close();
+
+            journal = JobJournal.newBuilder(directory).open();
+            List<JobJournal.JobRecord> jobs = journal.getRecoveredJobs();
+            Assert.assertEquals(1, jobs.size());
+            Assert.assertEquals("job", jobs.get(0).getId());
+            Assert.assertTrue(jobs.get(0).isUnfinished());
+        } finally {
+            manager.shutdown();
+            journal.close();
+        }
+    }
+
+    @Test
+    public void testRecoveryFromJournal() throws Exception {
+        String directory = folder.getRoot().getPath();
+        JobJournal journal = JobJournal.newBuilder(directory).open();
+        DefaultJobManager manager = DefaultJobManager.newBuilder()
+                .threads(1)
+                .journal(journal, record -> null)
+                .build();
+        List<JobEvent> events = new CopyOnWriteArrayList<>();
+        manager.addListener(events::addAll);
+        Assert.assertTrue(manager.submit(CompletableJob.create("done", "done", job -> job.setProcess(100))));
+        CountDownLatch started = new CountDownLatch(1);
+        Assert.assertTrue(manager.submit(blocking("interrupted", started)));
+        Assert.assertTrue(manager.submit(CompletableJob.create("queued", "queued", job -> {
+        })));
+        Assert.assertTrue(manager.submit(CompletableJob.create("deleted", "deleted", job -> {
+        })));
+        Assert.assertTrue(manager.delete("deleted"));
+        started.await();
+        // the journal listener comes first, the changes seen here are recorded
+        awaitTrue(() -> events.stream().anyMatch(event -> event.getState() == JobEvent.State.FINISHED)
+                && events.stream().anyMatch(event -> event.getState() == JobEvent.State.DELETED));
+        // the process dies with a job running and another one queued
+        journal.close();
+
+        AtomicInteger reruns = new AtomicInteger();
+        journal = JobJournal.newBuilder(directory).open();
+        DefaultJobManager recovered = DefaultJobManager.newBuilder()
+                .journal(journal, record -> CompletableJob.create(record.getName(), record.getId(),
+                        job -> reruns.incrementAndGet()))
+                .build();
+        try {
+            awaitTrue(() -> reruns.get() == 2);
+            Assert.assertEquals(3, recovered.getJobCount());
+            Job done = recovered.getJob("done");
+            Assert.assertTrue(done.isFinish());
+            Assert.assertEquals(100, done.getProcess());
+            Assert.assertNull(recovered.getJob("deleted"));
+            List<String> ids = new ArrayList<>();
+            recovered.getJobs(1, 10).getItems().forEach(job -> ids.add(job.getId()));
+            Assert.assertEquals(Arrays.asList("done", "interrupted", "queued"), ids);
+        } finally {
+            manager.shutdown();
+            recovered.shutdown();
+            journal.close();
+        }
+    }
+}
@@ -0,0 +1,68 @@
+package com.esfak47.common.job.impl;
+
+import org.junit.Assert;
+import org.junit.Test;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.function.Function;
+
+/**
+ * @author tony
+ */
+public class JobIndexTest {
+
+    private static final class Element extends JobIndex.Node {
+        final int value;
+
+        Element(int value) {
+            this.value = value;
+        }
+    }
+
+    @Test
+    public void testRangesFollowInsertionOrder() {
+        JobIndex<Element> index = new JobIndex<>();
+        List<Element> expected = new ArrayList<>();
+        ThreadLocalRandom random = ThreadLocalRandom.current();
+        // enough elements and removals for the index to grow and to be compacted several times
+        for (int i = 0; i < 20000; i++) {
+            Element element = new Element(i);
+            index.add(element);
+            expected.add(element);
+            if (random.nextInt(3) == 0) {
+                Element removed = expected.remove(random.nextInt(expected.size()));
+                Assert.assertTrue(index.remove(removed));
+                Assert.assertFalse(index.remove(removed));
+            }
+        }
+        Assert.assertEquals(expected.size(), index.size());
+        for (int from = 0; from < expected.size(); from += 997) {
+            List<Integer> range = index.range(from, 50, element -> element.value);
+            Assert.assertEquals(Math.min(50, expected.size() - from), range.size());
+            for (int i = 0; i < range.size(); i++) {
+                Assert.assertEquals(expected.get(from + i).value, (int) range.get(i));
+            }
+        }
+        Assert.assertTrue(index.range(expected.size(), 10, Function.identity()).isEmpty());
+    }
+
+    @Test
+    public void testRemoveEverything() {
+        JobIndex<Element> index = new JobIndex<>();
+        List<Element> elements = new ArrayList<>();
+        for (int i = 0; i < 5000; i++) {
+            Element element = new Element(i);
+            index.add(element);
+            elements.add(element);
+        }
+        for (Element element : elements) {
+            Assert.assertTrue(index.remove(element));
+        }
+        Assert.assertEquals(0, index.size());
+        Element last = new Element(-1);
+        index.add(last);
+        Assert.assertEquals(-1, (int) index.range(0, 10, element -> element.value).get(0));
+    }
+}
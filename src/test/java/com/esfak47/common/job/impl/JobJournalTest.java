@@ -0,0 +1,176 @@
+package com.esfak47.common.job.impl;
+
+import com.esfak47.common.job.JobEvent;
+import org.junit.Assert;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+import java.io.IOException;
+import java.io.RandomAccessFile;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.List;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+import java.util.stream.Collectors;
+import java.util.stream.Stream;
+
+/**
+ * @author tony
+ */
+public class JobJournalTest {
+
+    @Rule
+    public TemporaryFolder folder = new TemporaryFolder();
+
+    private JobJournal open() throws IOException {
+        return JobJournal.newBuilder(folder.getRoot().getPath()).segmentSize(4096).maxSegments(3).open();
+    }
+
+    private static CompletableJob job(String id) {
+        return CompletableJob.create("name of " + id, id, job -> {
+        });
+    }
+
+    private List<Path> segments() throws IOException {
+        try (Stream<Path> files = Files.list(folder.getRoot().toPath())) {
+            return files.sorted().collect(Collectors.toList());
+        }
+    }
+
+    @Test
+    public void testReplay() throws IOException {
+        try (JobJournal journal = open()) {
+            Assert.assertTrue(journal.getRecoveredJobs().isEmpty());
+            long[] incarnations = new long[5];
+            for (int i = 0; i < 5; i++) {
+                incarnations[i] = journal.recordSubmit(job("job-" + i));
+            }
+            journal.recordState("job-0", incarnations[0], JobEvent.State.RUNNING, 10);
+            journal.recordState("job-0", incarnations[0], JobEvent.State.RUNNING, 50);
+            journal.recordState("job-1", incarnations[1], JobEvent.State.FINISHED, 100);
+            journal.recordState("job-2", incarnations[2], JobEvent.State.DELETED, 0);
+            journal.recordState("job-3", incarnations[3], JobEvent.State.CANCELLED, 0);
+            journal.recordState("unknown", 1, JobEvent.State.FAILED, 0);
+        }
+        try (JobJournal journal = open()) {
+            List<JobJournal.JobRecord> jobs = journal.getRecoveredJobs();
+            Assert.assertEquals(4, jobs.size());
+            Assert.assertEquals("job-0", jobs.get(0).getId());
+            Assert.assertEquals("name of job-0", jobs.get(0).getName());
+            Assert.assertEquals(JobEvent.State.RUNNING, jobs.get(0).getState());
+            Assert.assertEquals(50, jobs.get(0).getProcess());
+            Assert.assertTrue(jobs.get(0).isUnfinished());
+            Assert.assertEquals(JobEvent.State.FINISHED, jobs.get(1).getState());
+            Assert.assertEquals(JobEvent.State.CANCELLED, jobs.get(2).getState());
+            Assert.assertEquals("job-4", jobs.get(3).getId());
+            Assert.assertEquals(JobEvent.State.QUEUED, jobs.get(3).getState());
+            Assert.assertTrue(Math.abs(System.currentTimeMillis() - jobs.get(3).getCreateTime()) < 60_000);
+            // opening compacts the journal into one segment
+            Assert.assertEquals(1, segments().size());
+        }
+    }
+
+    @Test
+    public void testRollingAndCompaction() throws IOException {
+        try (JobJournal journal = open()) {
+            for (int i = 0; i < 2000; i++) {
+                journal.recordSubmit(job("job-" + i), i + 1);
+                journal.recordState("job-" + i, i + 1, JobEvent.State.FINISHED, 100);
+                if (i >= 10) {
+                    journal.recordState("job-" + (i - 10), i - 9, JobEvent.State.DELETED, 100);
+                }
+                Assert.assertTrue(journal.getSegmentCount() <= 3);
+            }
+            Assert.assertEquals(journal.getSegmentCount(), segments().size());
+        }
+        try (JobJournal journal = open()) {
+            List<JobJournal.JobRecord> jobs = journal.getRecoveredJobs();
+            Assert.assertEquals(10, jobs.size());
+            Assert.assertEquals("job-1990", jobs.get(0).getId());
+            Assert.assertEquals(JobEvent.State.FINISHED, jobs.get(9).getState());
+        }
+    }
+
+    @Test
+    public void testLateChangesOfADeletedJobAreIgnored() throws IOException {
+        long resubmitted;
+        try (JobJournal journal = open()) {
+            long deleted = journal.recordSubmit(job("job"));
+            resubmitted = journal.recordSubmit(job("job"));
+            Assert.assertTrue(resubmitted > deleted);
+            // published after the job was deleted and submitted again with the same id
+            journal.recordState("job", deleted, JobEvent.State.FINISHED, 100);
+            journal.recordState("job", deleted, JobEvent.State.DELETED, 100);
+            journal.recordState("job", resubmitted, JobEvent.State.RUNNING, 30);
+        }
+        for (int i = 0; i < 2; i++) {
+            // the second opening replays the compacted segment
+            try (JobJournal journal = open()) {
+                List<JobJournal.JobRecord> jobs = journal.getRecoveredJobs();
+                Assert.assertEquals(1, jobs.size());
+                Assert.assertEquals(resubmitted, jobs.get(0).getIncarnation());
+                Assert.assertEquals(JobEvent.State.RUNNING, jobs.get(0).getState());
+                Assert.assertEquals(30, jobs.get(0).getProcess());
+                Assert.assertTrue(journal.newIncarnation() > resubmitted);
+            }
+        }
+    }
+
+    @Test
+    public void testTornRecordEndsTheReplay() throws IOException {
+        try (JobJournal journal = open()) {
+            journal.recordSubmit(job("kept"));
+            journal.recordSubmit(job("torn"));
+        }
+        Path segment = segments().get(0);
+        try (RandomAccessFile file = new RandomAccessFile(segment.toFile(), "rw")) {
+            // the last byte of the creation time of the second record
+            int first = file.readInt();
+            long position = 8 + first + 8 + 1 + 2 + 4 + 8 + 2 + 12 + 7;
+            file.seek(position);
+            int value = file.read();
+            file.seek(position);
+            file.write(value ^ 0xff);
+        }
+        try (JobJournal journal = open()) {
+            Assert.assertEquals(1, journal.getRecoveredJobs().size());
+            Assert.assertEquals("kept", journal.getRecoveredJobs().get(0).getId());
+        }
+    }
+
+    @Test
+    public void testSyncSubmitWaitsForTheFlush() throws Exception {
+        try (JobJournal journal = JobJournal.newBuilder(folder.getRoot().getPath())
+                .syncSubmit(true)
+                .flushIntervalMillis(1000)
+                .open()) {
+            int threads = 4;
+            CountDownLatch done = new CountDownLatch(threads);
+            long start = System.nanoTime();
+            for (int t = 0; t < threads; t++) {
+                int thread = t;
+                new Thread(() -> {
+                    for (int i = 0; i < 100; i++) {
+                        journal.recordSubmit(job(thread + "-" + i));
+                    }
+                    done.countDown();
+                }).start();
+            }
+            Assert.assertTrue(done.await(30, TimeUnit.SECONDS));
+            // the waiting submissions wake the flusher up rather than waiting for the interval
+            Assert.assertTrue(System.nanoTime() - start < TimeUnit.SECONDS.toNanos(20));
+        }
+        try (JobJournal journal = open()) {
+            Assert.assertEquals(400, journal.getRecoveredJobs().size());
+        }
+    }
+
+    @Test(expected = IllegalStateException.class)
+    public void testClosed() throws IOException {
+        JobJournal journal = open();
+        journal.close();
+        journal.recordSubmit(job("late"));
+    }
+}
@@ -1,9 +1,14 @@
 package com.esfak47.common.utils;
 
+import com.esfak47.common.extension.ExtensionLoader;
 import com.esfak47.common.utils.id.IdGenerator;
 import org.junit.Assert;
 import org.junit.Test;
 
+import java.net.URL;
+import java.net.URLClassLoader;
+import java.util.Arrays;
+import java.util.HashSet;
 import java.util.UUID;
 
 /**
@@ -43,4 +48,46 @@ public class IdGeneratorTest {
         System.out.println(eager);
 
     }
+
+    @Test
+    public void testGenerateBatch() {
+        String[] providers = {"jdk", "alternative", "simple", "eager", "snowflake", "random", "secureRandom",
+                "uuidv7"};
+        for (String provider : providers) {
+            IdGenerator generator = ExtensionLoader.getExtensionLoader(IdGenerator.class).getExtension(provider);
+            String[] ids = new String[1000];
+            generator.generateIds(ids);
+            Assert.assertEquals(provider, ids.length, new HashSet<>(Arrays.asList(ids)).size());
+            Assert.assertEquals(provider, ids[0].length(), generator.generateId().length());
+
+            UUID[] uuids = new UUID[1000];
+            generator.generateUUIDs(uuids);
+            Assert.assertEquals(provider, uuids.length, new HashSet<>(Arrays.asList(uuids)).size());
+        }
+    }
+
+    @Test
+    public void testHandle() {
+        IdGenerator.Handle handle = IdGenerator.handle("snowflake");
+        Assert.assertSame(handle, IdGenerator.handle("snowflake"));
+        Assert.assertSame(ExtensionLoader.getExtensionLoader(IdGenerator.class).getExtension("snowflake"),
+                handle.generator());
+        Assert.assertEquals("snowflake", handle.name());
+        Assert.assertTrue(handle.generateLongId() < IdGenerator.generateLongIdWithProvider("snowflake"));
+
+        ClassLoader other = new URLClassLoader(new URL[0], getClass().getClassLoader());
+        IdGenerator.Handle otherHandle = IdGenerator.Handle.of("snowflake", other);
+        Assert.assertSame(otherHandle, IdGenerator.Handle.of("snowflake", other));
+        Assert.assertSame(handle, IdGenerator.handle("snowflake"));
+        Assert.assertNotNull(IdGenerator.Handle.of("eager", other).generateId());
+
+        for (String invalid : new String[]{null, ""}) {
+            try {
+                IdGenerator.handle(invalid);
+                Assert.fail();
+            } catch (IllegalArgumentException expected) {
+                // expected
+            }
+        }
+    }
 }
@@ -1,5 +1,6 @@
 package com.esfak47.common.utils;
 
+import com.esfak47.common.utils.thread.ExecutionMode;
 import com.esfak47.common.utils.thread.Promise;
 import com.esfak47.common.utils.thread.PromiseInterface;
 import org.junit.Assert;
@@ -8,6 +9,7 @@ import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
 import java.util.concurrent.CompletionException;
+import java.util.concurrent.atomic.AtomicInteger;
 
 /**
  * @author tony
@@ -80,4 +82,12 @@ public class PromiseTest {
 
     }
 
-}
\ No newline at end of file
+
+    @Test
+    public void testVirtualPromise() {
+        AtomicInteger value = new AtomicInteger();
+        Promise.promise((PromiseInterface<Long>) (resolve, reject) -> resolve.accept(42L), ExecutionMode.VIRTUAL)
+                .then(Long::intValue).then(value::set).join();
+        Assert.assertEquals(42, value.get());
+    }
+}
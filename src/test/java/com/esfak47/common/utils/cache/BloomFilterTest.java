@@ -0,0 +1,120 @@
+package com.esfak47.common.utils.cache;
+
+import org.junit.Assert;
+import org.junit.Test;
+
+import java.nio.charset.StandardCharsets;
+import java.util.Arrays;
+import java.util.concurrent.CountDownLatch;
+
+/**
+ * @author tony
+ */
+public class BloomFilterTest {
+
+    @Test
+    public void testNoFalseNegatives() {
+        BloomFilter filter = BloomFilter.create(10000, 0.01);
+        for (long i = 0; i < 10000; i++) {
+            filter.put(i);
+            filter.put("id-" + i);
+            filter.put(("b" + i).getBytes(StandardCharsets.UTF_8));
+        }
+        for (long i = 0; i < 10000; i++) {
+            Assert.assertTrue(filter.mightContain(i));
+            Assert.assertTrue(filter.mightContain("id-" + i));
+            Assert.assertTrue(filter.mightContain(("b" + i).getBytes(StandardCharsets.UTF_8)));
+        }
+    }
+
+    @Test
+    public void testFalsePositiveRate() {
+        BloomFilter filter = BloomFilter.create(100000, 0.01);
+        for (long i = 0; i < 100000; i++) {
+            filter.put(i);
+        }
+        int falsePositives = 0;
+        for (long i = 100000; i < 200000; i++) {
+            if (filter.mightContain(i)) {
+                falsePositives++;
+            }
+        }
+        // the blocked layout costs a little accuracy against the target of 1%
+        Assert.assertTrue("false positives: " + falsePositives, falsePositives < 2000);
+        Assert.assertEquals(0.01, filter.expectedFpp(), 0.01);
+        Assert.assertFalse(filter.put(1L));
+        Assert.assertFalse(BloomFilter.create(10, 0.01).mightContain("absent"));
+    }
+
+    @Test
+    public void testSerialization() {
+        BloomFilter filter = BloomFilter.create(1000, 0.001);
+        for (int i = 0; i < 1000; i++) {
+            filter.put("key" + i);
+        }
+        BloomFilter copy = BloomFilter.readFrom(filter.toByteArray());
+        Assert.assertEquals(filter.bitSize(), copy.bitSize());
+        Assert.assertEquals(filter.hashCount(), copy.hashCount());
+        for (int i = 0; i < 2000; i++) {
+            Assert.assertEquals(filter.mightContain("key" + i), copy.mightContain("key" + i));
+        }
+    }
+
+    @Test(expected = IllegalArgumentException.class)
+    public void testReadCorrupted() {
+        byte[] bytes = BloomFilter.create(1000, 0.01).toByteArray();
+        BloomFilter.readFrom(Arrays.copyOf(bytes, bytes.length - 1));
+    }
+
+    @Test
+    public void testConcurrentPut() throws InterruptedException {
+        BloomFilter filter = BloomFilter.create(400000, 0.01);
+        int threads = 4;
+        CountDownLatch done = new CountDownLatch(threads);
+        for (int t = 0; t < threads; t++) {
+            int base = t * 100000;
+            new Thread(() -> {
+                for (long i = base; i < base + 100000; i++) {
+                    filter.put(i);
+                }
+                done.countDown();
+            }).start();
+        }
+        done.await();
+        for (long i = 0; i < threads * 100000; i++) {
+            Assert.assertTrue(filter.mightContain(i));
+        }
+    }
+
+    @Test
+    public void testCountingRemove() {
+        CountingBloomFilter filter = CountingBloomFilter.create(10000, 0.01);
+        for (long i = 0; i < 10000; i++) {
+            filter.add(i);
+        }
+        for (long i = 0; i < 10000; i += 2) {
+            Assert.assertTrue(filter.remove(i));
+        }
+        int stillThere = 0;
+        for (long i = 0; i < 10000; i++) {
+            if (i % 2 == 1) {
+                Assert.assertTrue(filter.mightContain(i));
+            } else if (filter.mightContain(i)) {
+                stillThere++;
+            }
+        }
+        Assert.assertTrue("false positives: " + stillThere, stillThere < 200);
+
+        filter.add("a");
+        filter.add("a");
+        Assert.assertTrue(filter.remove("a"));
+        Assert.assertTrue(filter.mightContain("a"));
+        Assert.assertTrue(filter.remove("a"));
+
+        CountingBloomFilter copy = CountingBloomFilter.readFrom(filter.toByteArray());
+        Assert.assertEquals(filter.counterSize(), copy.counterSize());
+        for (long i = 0; i < 10000; i++) {
+            Assert.assertEquals(filter.mightContain(i), copy.mightContain(i));
+        }
+    }
+}
@@ -0,0 +1,95 @@
+package com.esfak47.common.utils.cache;
+
+import org.junit.Assert;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Paths;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * @author tony
+ */
+public class CacheSnapshotTest {
+
+    @Rule
+    public TemporaryFolder folder = new TemporaryFolder();
+
+    private final CacheSnapshot<String, String> snapshot =
+            new CacheSnapshot<>(ValueCodecs.string(), ValueCodecs.string());
+
+    @Test
+    public void testWriteAndRestore() throws Exception {
+        String file = folder.getRoot().getPath() + "/cache.snapshot";
+        Cache<String, String> cache = CacheBuilder.newBuilder().maxCapacity(10000).build();
+        for (int i = 0; i < 5000; i++) {
+            cache.put("key" + i, "value" + i);
+        }
+        cache.get("key0");
+        Assert.assertEquals(5000, snapshot.write(cache, file));
+        Assert.assertFalse(Files.exists(Paths.get(file + ".tmp")));
+
+        Cache<String, String> restored = CacheBuilder.newBuilder().maxCapacity(10000).build();
+        restored.put("key1", "fresh");
+        int count = snapshot.hotEntries(10).restore(restored, file).get(1, TimeUnit.MINUTES);
+        Assert.assertEquals(4999, count);
+        Assert.assertEquals(5000, restored.size());
+        Assert.assertEquals("value0", restored.get("key0"));
+        Assert.assertEquals("fresh", restored.get("key1"));
+        Assert.assertEquals("value4999", restored.get("key4999"));
+    }
+
+    @Test
+    public void testHotEntriesAreRestoredFirst() throws Exception {
+        String file = folder.getRoot().getPath() + "/cache.snapshot";
+        Cache<String, String> cache = CacheBuilder.newBuilder().maxCapacity(100).build();
+        for (int i = 0; i < 100; i++) {
+            cache.put("key" + i, "value" + i);
+        }
+        cache.get("key3");
+        snapshot.write(cache, file);
+
+        Cache<String, String> small = CacheBuilder.newBuilder().maxCapacity(2).build();
+        Assert.assertEquals(Integer.valueOf(2), snapshot.hotEntries(1).restore(small, file).get(1, TimeUnit.MINUTES));
+        Assert.assertEquals("value3", small.get("key3"));
+        Assert.assertEquals("value99", small.get("key99"));
+    }
+
+    @Test
+    public void testOffHeapCache() throws Exception {
+        String file = folder.getRoot().getPath() + "/offheap.snapshot";
+        OffHeapCache<String, String> cache = CacheBuilder.newBuilder()
+                .maximumWeight(1 << 20)
+                .buildOffHeap(ValueCodecs.string());
+        cache.put("a", "1");
+        cache.put("b", "2");
+        Assert.assertEquals(2, snapshot.write(cache, file));
+
+        LoadingCache<String, String> restored = CacheBuilder.newBuilder().build(key -> null);
+        Assert.assertEquals(Integer.valueOf(2), snapshot.restore(restored, file).get(1, TimeUnit.MINUTES));
+        Assert.assertEquals("2", restored.get("b"));
+    }
+
+    @Test
+    public void testStaleSnapshotIsIgnored() throws Exception {
+        String file = folder.getRoot().getPath() + "/cache.snapshot";
+        Cache<String, String> cache = CacheBuilder.newBuilder().build();
+        cache.put("a", "1");
+        snapshot.write(cache, file);
+        Thread.sleep(5);
+        Cache<String, String> restored = CacheBuilder.newBuilder().build();
+        Assert.assertEquals(Integer.valueOf(0),
+                snapshot.maxAge(1, TimeUnit.MILLISECONDS).restore(restored, file).get(1, TimeUnit.MINUTES));
+        Assert.assertTrue(restored.isEmpty());
+    }
+
+    @Test(expected = IOException.class)
+    public void testRejectNonSnapshotFile() throws IOException {
+        String file = folder.getRoot().getPath() + "/garbage";
+        Files.write(Paths.get(file), new byte[]{1, 2, 3});
+        snapshot.restore(CacheBuilder.newBuilder().<String, String>build(), file);
+    }
+}
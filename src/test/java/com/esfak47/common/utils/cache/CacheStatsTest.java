@@ -0,0 +1,105 @@
+package com.esfak47.common.utils.cache;
+
+import org.junit.Assert;
+import org.junit.Test;
+
+import javax.management.MBeanServer;
+import javax.management.ObjectName;
+import java.io.IOException;
+import java.lang.management.ManagementFactory;
+import java.util.concurrent.CompletionException;
+
+/**
+ * @author tony
+ */
+public class CacheStatsTest {
+
+    @Test
+    public void testRecordHitsMissesAndEvictions() {
+        Cache<Integer, Integer> cache = CacheBuilder.newBuilder().maxCapacity(2).recordStats().build();
+        cache.put(1, 1);
+        cache.put(2, 2);
+        cache.get(1);
+        cache.get(3);
+        CacheStats before = cache.stats();
+        cache.put(3, 3);
+        cache.get(2);
+        cache.clear();
+        CacheStats after = cache.stats();
+
+        Assert.assertEquals(1, before.hitCount());
+        Assert.assertEquals(1, before.missCount());
+        Assert.assertEquals(0.5, before.hitRate(), 0.0);
+        Assert.assertEquals(2, before.weightedSize());
+        Assert.assertEquals(1, after.evictionCount());
+        Assert.assertEquals(2, after.removalCount(RemovalCause.EXPLICIT));
+
+        CacheStats delta = after.minus(before);
+        Assert.assertEquals(0, delta.hitCount());
+        Assert.assertEquals(1, delta.missCount());
+        Assert.assertEquals(1, delta.removalCount(RemovalCause.SIZE));
+        Assert.assertEquals(0, delta.weightedSize());
+    }
+
+    @Test
+    public void testStatsAreOptIn() {
+        Cache<Integer, Integer> cache = CacheBuilder.newBuilder().build();
+        cache.put(1, 1);
+        cache.get(1);
+        Assert.assertEquals(0, cache.stats().hitCount());
+    }
+
+    @Test
+    public void testRecordLoads() {
+        LoadingCache<String, String> cache = CacheBuilder.newBuilder().recordStats().build(key -> {
+            if ("bad".equals(key)) {
+                throw new IOException(key);
+            }
+            return "none".equals(key) ? null : key;
+        });
+        cache.getOrLoad("a");
+        cache.getOrLoad("a");
+        cache.getOrLoad("none");
+        try {
+            cache.getOrLoad("bad");
+            Assert.fail();
+        } catch (CompletionException expected) {
+        }
+        CacheStats stats = cache.stats();
+        Assert.assertEquals(1, stats.hitCount());
+        Assert.assertEquals(3, stats.missCount());
+        Assert.assertEquals(1, stats.loadSuccessCount());
+        Assert.assertEquals(2, stats.loadFailureCount());
+        Assert.assertTrue(stats.totalLoadTime() > 0);
+    }
+
+    @Test
+    public void testLruCacheStats() {
+        LRUCache<Integer, Integer> cache = new LRUCache<>(1);
+        cache.put(1, 1);
+        cache.put(2, 2);
+        cache.get(1);
+        cache.get(2);
+        CacheStats stats = cache.stats();
+        Assert.assertEquals(1, stats.hitCount());
+        Assert.assertEquals(1, stats.missCount());
+        Assert.assertEquals(1, stats.evictionCount());
+    }
+
+    @Test
+    public void testRegisterMXBean() throws Exception {
+        Cache<Integer, Integer> cache = CacheBuilder.newBuilder().recordStats().build();
+        cache.put(1, 1);
+        cache.get(1);
+        ObjectName name = CacheMXBeans.register("test:cache", cache);
+        try {
+            MBeanServer server = ManagementFactory.getPlatformMBeanServer();
+            Assert.assertEquals(1L, server.getAttribute(name, "HitCount"));
+            Assert.assertEquals(1.0, server.getAttribute(name, "HitRate"));
+            Assert.assertEquals(1, server.getAttribute(name, "Size"));
+        } finally {
+            Assert.assertTrue(CacheMXBeans.unregister("test:cache"));
+        }
+        Assert.assertFalse(CacheMXBeans.unregister("test:cache"));
+    }
+}
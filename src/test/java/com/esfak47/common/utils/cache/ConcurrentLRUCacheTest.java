@@ -0,0 +1,86 @@
+package com.esfak47.common.utils.cache;
+
+import org.junit.Assert;
+import org.junit.Test;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * @author tony
+ */
+public class ConcurrentLRUCacheTest {
+
+    @Test
+    public void testEvictLeastRecentlyUsed() {
+        ConcurrentLRUCache<Integer, String> cache = new ConcurrentLRUCache<>(3);
+        cache.put(1, "1");
+        cache.put(2, "2");
+        cache.put(3, "3");
+        Assert.assertEquals("1", cache.get(1));
+        cache.put(4, "4");
+        Assert.assertEquals(3, cache.size());
+        Assert.assertTrue(cache.containsKey(1));
+        Assert.assertFalse(cache.containsKey(2));
+        Assert.assertEquals("3", cache.remove(3));
+        Assert.assertNull(cache.get(3));
+    }
+
+    @Test
+    public void testSetMaxCapacity() {
+        ConcurrentLRUCache<Integer, Integer> cache = new ConcurrentLRUCache<>(100);
+        for (int i = 0; i < 100; i++) {
+            cache.put(i, i);
+        }
+        cache.setMaxCapacity(10);
+        Assert.assertEquals(10, cache.getMaxCapacity());
+        Assert.assertEquals(10, cache.size());
+        for (int i = 90; i < 100; i++) {
+            Assert.assertEquals(Integer.valueOf(i), cache.get(i));
+        }
+        cache.clear();
+        Assert.assertTrue(cache.isEmpty());
+    }
+
+    @Test
+    public void testRemovalListener() {
+        List<String> removed = new ArrayList<>();
+        Cache<Integer, String> cache = CacheBuilder.newBuilder()
+                .maxCapacity(2)
+                .removalListener((Integer key, String value, RemovalCause cause) -> removed.add(value + ":" + cause))
+                .build();
+        cache.put(1, "1");
+        cache.put(2, "2");
+        cache.put(3, "3");
+        Assert.assertEquals("2", cache.put(2, "two"));
+        Assert.assertEquals("3", cache.remove(3));
+        cache.put(4, "4");
+        cache.clear();
+        Assert.assertEquals(Arrays.asList("1:SIZE", "two:EXPLICIT", "4:EXPLICIT"), removed);
+    }
+
+    @Test
+    public void testConcurrentAccess() throws InterruptedException {
+        ConcurrentLRUCache<Integer, Integer> cache = new ConcurrentLRUCache<>(500);
+        ExecutorService executor = Executors.newFixedThreadPool(8);
+        for (int t = 0; t < 8; t++) {
+            executor.execute(() -> {
+                ThreadLocalRandom random = ThreadLocalRandom.current();
+                for (int i = 0; i < 20000; i++) {
+                    int key = random.nextInt(2000);
+                    if (cache.get(key) == null) {
+                        cache.put(key, key);
+                    }
+                }
+            });
+        }
+        executor.shutdown();
+        Assert.assertTrue(executor.awaitTermination(1, TimeUnit.MINUTES));
+        Assert.assertTrue(cache.size() <= 500);
+    }
+}
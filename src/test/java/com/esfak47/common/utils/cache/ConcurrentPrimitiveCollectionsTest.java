@@ -0,0 +1,146 @@
+package com.esfak47.common.utils.cache;
+
+import org.junit.Assert;
+import org.junit.Test;
+
+import java.util.Arrays;
+import java.util.HashSet;
+import java.util.Set;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * @author tony
+ */
+public class ConcurrentPrimitiveCollectionsTest {
+
+    @Test
+    public void testLongSetAddRemove() {
+        ConcurrentLongHashSet set = new ConcurrentLongHashSet(4, 1);
+        Assert.assertTrue(set.isEmpty());
+        Assert.assertTrue(set.add(0));
+        Assert.assertFalse(set.add(0));
+        Assert.assertTrue(set.add(-1));
+        Assert.assertTrue(set.add(Long.MAX_VALUE));
+        Assert.assertEquals(3, set.size());
+        Assert.assertTrue(set.contains(0));
+        Assert.assertTrue(set.contains(-1));
+        Assert.assertFalse(set.contains(1));
+
+        Assert.assertTrue(set.remove(0));
+        Assert.assertFalse(set.remove(0));
+        Assert.assertFalse(set.contains(0));
+        long[] items = set.toArray();
+        Arrays.sort(items);
+        Assert.assertArrayEquals(new long[]{-1, Long.MAX_VALUE}, items);
+        set.clear();
+        Assert.assertTrue(set.isEmpty());
+    }
+
+    @Test
+    public void testLongSetGrowsAndShiftsBack() {
+        ConcurrentLongHashSet set = new ConcurrentLongHashSet(2, 1);
+        for (long i = 1; i <= 10000; i++) {
+            Assert.assertTrue(set.add(i * 31));
+        }
+        Assert.assertEquals(10000, set.size());
+        Assert.assertTrue(set.capacity() >= 10000 / 0.66);
+        // removing half of the elements shifts the others along their probe sequences
+        for (long i = 1; i <= 10000; i += 2) {
+            Assert.assertTrue(set.remove(i * 31));
+        }
+        for (long i = 1; i <= 10000; i++) {
+            Assert.assertEquals(i % 2 == 0, set.contains(i * 31));
+        }
+        Assert.assertEquals(5000, set.size());
+    }
+
+    @Test
+    public void testIntSet() {
+        ConcurrentIntHashSet set = new ConcurrentIntHashSet(2);
+        Set<Integer> expected = new HashSet<>();
+        for (int i = -5000; i <= 5000; i += 3) {
+            set.add(i);
+            expected.add(i);
+        }
+        for (int i = -5000; i <= 5000; i += 9) {
+            Assert.assertEquals(expected.remove(i), set.remove(i));
+        }
+        Assert.assertEquals(expected.size(), set.size());
+        Set<Integer> actual = new HashSet<>();
+        set.forEach(actual::add);
+        Assert.assertEquals(expected, actual);
+        for (int i = -5000; i <= 5000; i++) {
+            Assert.assertEquals(expected.contains(i), set.contains(i));
+        }
+    }
+
+    @Test
+    public void testLongObjectMap() {
+        ConcurrentLongObjectMap<String> map = new ConcurrentLongObjectMap<>(2, 2);
+        Assert.assertNull(map.put(0, "zero"));
+        Assert.assertEquals("zero", map.put(0, "0"));
+        Assert.assertEquals("0", map.putIfAbsent(0, "zero"));
+        Assert.assertEquals("0", map.get(0));
+        for (long i = 1; i <= 1000; i++) {
+            map.put(i << 40, String.valueOf(i));
+        }
+        Assert.assertEquals(1001, map.size());
+        Assert.assertFalse(map.remove(5L << 40, "6"));
+        Assert.assertTrue(map.remove(5L << 40, "5"));
+        Assert.assertEquals("6", map.remove(6L << 40));
+        Assert.assertFalse(map.containsKey(5L << 40));
+        Assert.assertEquals("7", map.get(7L << 40));
+        Assert.assertEquals("x", map.computeIfAbsent(5L << 40, key -> "x"));
+        Assert.assertEquals("x", map.computeIfAbsent(5L << 40, key -> "y"));
+        Assert.assertNull(map.computeIfAbsent(6L << 40, key -> null));
+        Assert.assertFalse(map.containsKey(6L << 40));
+
+        AtomicInteger count = new AtomicInteger();
+        map.forEach((key, value) -> {
+            Assert.assertEquals(value, map.get(key));
+            count.incrementAndGet();
+        });
+        Assert.assertEquals(1000, count.get());
+        map.clear();
+        Assert.assertTrue(map.isEmpty());
+    }
+
+    @Test
+    public void testConcurrentAddRemove() throws InterruptedException {
+        ConcurrentLongHashSet set = new ConcurrentLongHashSet(16, 4);
+        ConcurrentLongObjectMap<Long> map = new ConcurrentLongObjectMap<>(16, 4);
+        int threads = 4;
+        int perThread = 20000;
+        CountDownLatch done = new CountDownLatch(threads);
+        AtomicInteger failures = new AtomicInteger();
+        for (int t = 0; t < threads; t++) {
+            long base = (long) t * perThread;
+            new Thread(() -> {
+                try {
+                    for (long i = base; i < base + perThread; i++) {
+                        set.add(i);
+                        map.put(i, i);
+                        if (!set.contains(i) || map.get(i) != i) {
+                            failures.incrementAndGet();
+                        }
+                        if (i % 2 == 0) {
+                            set.remove(i);
+                            map.remove(i);
+                        }
+                    }
+                } finally {
+                    done.countDown();
+                }
+            }).start();
+        }
+        done.await();
+        Assert.assertEquals(0, failures.get());
+        Assert.assertEquals(threads * perThread / 2, set.size());
+        Assert.assertEquals(threads * perThread / 2, map.size());
+        for (long i = 0; i < threads * perThread; i++) {
+            Assert.assertEquals(i % 2 != 0, set.contains(i));
+            Assert.assertEquals(i % 2 != 0, map.containsKey(i));
+        }
+    }
+}
@@ -0,0 +1,83 @@
+package com.esfak47.common.utils.cache;
+
+import org.junit.Assert;
+import org.junit.Test;
+
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * @author tony
+ */
+public class ExpiringCacheTest {
+
+    private final AtomicLong time = new AtomicLong();
+
+    private void advance(long duration, TimeUnit unit) {
+        time.addAndGet(unit.toNanos(duration));
+    }
+
+    @Test
+    public void testExpireAfterWrite() {
+        AbstractConcurrentCache<Integer, Integer> cache = (AbstractConcurrentCache<Integer, Integer>) CacheBuilder
+                .newBuilder()
+                .expireAfterWrite(1, TimeUnit.MINUTES)
+                .ticker(time::get)
+                .<Integer, Integer>build();
+        cache.put(1, 1);
+        advance(30, TimeUnit.SECONDS);
+        Assert.assertEquals(Integer.valueOf(1), cache.get(1));
+        cache.put(2, 2);
+        advance(31, TimeUnit.SECONDS);
+        Assert.assertNull(cache.get(1));
+        Assert.assertFalse(cache.containsKey(1));
+        Assert.assertEquals(Integer.valueOf(2), cache.get(2));
+        advance(1, TimeUnit.MINUTES);
+        cache.cleanUp();
+        Assert.assertTrue(cache.isEmpty());
+    }
+
+    @Test
+    public void testExpireAfterAccess() {
+        AbstractConcurrentCache<Integer, Integer> cache = (AbstractConcurrentCache<Integer, Integer>) CacheBuilder
+                .newBuilder()
+                .expireAfterAccess(10, TimeUnit.SECONDS)
+                .evictionPolicy(EvictionPolicy.TINY_LFU)
+                .ticker(time::get)
+                .<Integer, Integer>build();
+        cache.put(1, 1);
+        cache.put(2, 2);
+        for (int i = 0; i < 10; i++) {
+            advance(5, TimeUnit.SECONDS);
+            Assert.assertEquals(Integer.valueOf(1), cache.get(1));
+            cache.cleanUp();
+        }
+        Assert.assertNull(cache.get(2));
+        Assert.assertEquals(1, cache.size());
+        advance(11, TimeUnit.SECONDS);
+        Assert.assertNull(cache.putIfAbsent(1, 10));
+        Assert.assertEquals(Integer.valueOf(10), cache.get(1));
+    }
+
+    @Test
+    public void testTimerWheelCascade() {
+        AbstractConcurrentCache<Integer, Integer> cache = (AbstractConcurrentCache<Integer, Integer>) CacheBuilder
+                .newBuilder()
+                .maxCapacity(100000)
+                .expireAfterWrite(3, TimeUnit.DAYS)
+                .ticker(time::get)
+                .<Integer, Integer>build();
+        for (int i = 0; i < 10000; i++) {
+            cache.put(i, i);
+            advance(1, TimeUnit.MINUTES);
+        }
+        // 10000 minutes is about 6.9 days, every entry older than 3 days was removed while writing
+        long alive = TimeUnit.DAYS.toMinutes(3);
+        cache.cleanUp();
+        Assert.assertTrue(cache.size() <= alive + 2);
+        Assert.assertTrue(cache.size() >= alive - 2);
+        advance(3, TimeUnit.DAYS);
+        cache.cleanUp();
+        Assert.assertEquals(0, cache.size());
+    }
+}
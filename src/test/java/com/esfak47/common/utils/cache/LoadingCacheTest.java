@@ -0,0 +1,102 @@
+package com.esfak47.common.utils.cache;
+
+import org.junit.Assert;
+import org.junit.Test;
+
+import java.io.IOException;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * @author tony
+ */
+public class LoadingCacheTest {
+
+    @Test
+    public void testConcurrentMissesLoadOnce() throws InterruptedException {
+        AtomicInteger loads = new AtomicInteger();
+        LoadingCache<String, String> cache = CacheBuilder.newBuilder().build(key -> {
+            loads.incrementAndGet();
+            Thread.sleep(200);
+            return key.toUpperCase();
+        });
+        int threads = 16;
+        CountDownLatch start = new CountDownLatch(1);
+        AtomicInteger matched = new AtomicInteger();
+        ExecutorService executor = Executors.newFixedThreadPool(threads);
+        for (int i = 0; i < threads; i++) {
+            executor.execute(() -> {
+                try {
+                    start.await();
+                    if ("HOST".equals(cache.getOrLoad("host"))) {
+                        matched.incrementAndGet();
+                    }
+                } catch (InterruptedException ignored) {
+                }
+            });
+        }
+        start.countDown();
+        executor.shutdown();
+        Assert.assertTrue(executor.awaitTermination(1, TimeUnit.MINUTES));
+        Assert.assertEquals(threads, matched.get());
+        Assert.assertEquals(1, loads.get());
+        Assert.assertEquals("HOST", cache.get("host"));
+    }
+
+    @Test
+    public void testGetAllBatchesMisses() {
+        AtomicInteger batches = new AtomicInteger();
+        LoadingCache<Integer, String> cache = CacheBuilder.newBuilder().build(new CacheLoader<Integer, String>() {
+            @Override
+            public String load(Integer key) {
+                throw new UnsupportedOperationException();
+            }
+
+            @Override
+            public Map<Integer, String> loadAll(Set<? extends Integer> keys) {
+                batches.incrementAndGet();
+                Map<Integer, String> result = new HashMap<>();
+                for (Integer key : keys) {
+                    if (key != 3) {
+                        result.put(key, String.valueOf(key));
+                    }
+                }
+                return result;
+            }
+        });
+        cache.put(1, "one");
+        Map<Integer, String> all = cache.getAll(Arrays.asList(1, 2, 3, 4, 2));
+        Assert.assertEquals(1, batches.get());
+        Assert.assertEquals(Arrays.asList(1, 2, 4), Arrays.asList(all.keySet().toArray()));
+        Assert.assertEquals("one", all.get(1));
+        Assert.assertEquals("4", cache.get(4));
+        Assert.assertFalse(cache.containsKey(3));
+    }
+
+    @Test
+    public void testLoaderFailureIsNotCached() {
+        AtomicInteger loads = new AtomicInteger();
+        LoadingCache<String, String> cache = CacheBuilder.newBuilder().build(key -> {
+            if (loads.incrementAndGet() == 1) {
+                throw new IOException("unreachable");
+            }
+            return key;
+        });
+        try {
+            cache.getOrLoad("a");
+            Assert.fail();
+        } catch (CompletionException e) {
+            Assert.assertTrue(e.getCause() instanceof IOException);
+        }
+        Assert.assertEquals("a", cache.getOrLoad("a"));
+        Assert.assertEquals(2, loads.get());
+    }
+}
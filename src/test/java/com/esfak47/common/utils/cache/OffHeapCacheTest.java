@@ -0,0 +1,181 @@
+package com.esfak47.common.utils.cache;
+
+import org.junit.Assert;
+import org.junit.Test;
+
+import java.util.Arrays;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * @author tony
+ */
+public class OffHeapCacheTest {
+
+    private static byte[] payload(int key, int length) {
+        byte[] bytes = new byte[length];
+        Arrays.fill(bytes, (byte) key);
+        return bytes;
+    }
+
+    @Test
+    public void testPutGetRemove() {
+        OffHeapCache<String, String> cache = CacheBuilder.newBuilder()
+                .maximumWeight(1 << 20)
+                .buildOffHeap(ValueCodecs.string());
+        Assert.assertNull(cache.put("a", "中文"));
+        Assert.assertEquals("中文", cache.get("a"));
+        Assert.assertEquals("中文", cache.put("a", "b"));
+        Assert.assertEquals("b", cache.putIfAbsent("a", "c"));
+        Assert.assertEquals(SlabAllocator.MIN_CHUNK_SIZE, cache.weightedSize());
+        Assert.assertEquals("b", cache.remove("a"));
+        Assert.assertNull(cache.get("a"));
+        Assert.assertEquals(0, cache.weightedSize());
+    }
+
+    @Test
+    public void testEvictionFreesChunks() {
+        OffHeapCache<Integer, byte[]> cache = CacheBuilder.newBuilder()
+                .maximumWeight(SlabAllocator.DEFAULT_SLAB_SIZE)
+                .buildOffHeap(ValueCodecs.bytes());
+        for (int i = 0; i < 10000; i++) {
+            cache.put(i, payload(i, 1000));
+        }
+        Assert.assertEquals(SlabAllocator.DEFAULT_SLAB_SIZE / 1024, cache.size());
+        Assert.assertEquals(0, cache.rejectedCount());
+        Assert.assertArrayEquals(payload(9999, 1000), cache.get(9999));
+        cache.clear();
+        // the slab is back in the pool and can serve another size class
+        for (int i = 0; i < 100; i++) {
+            cache.put(i, payload(i, 100));
+        }
+        Assert.assertEquals(0, cache.rejectedCount());
+        Assert.assertArrayEquals(payload(42, 100), cache.get(42));
+    }
+
+    @Test
+    public void testNewSizeClassEvictsAtMostOneSlab() {
+        OffHeapCache<Integer, byte[]> cache = CacheBuilder.newBuilder()
+                .maximumWeight(2L * SlabAllocator.DEFAULT_SLAB_SIZE)
+                .buildOffHeap(ValueCodecs.bytes());
+        int perSlab = SlabAllocator.DEFAULT_SLAB_SIZE / SlabAllocator.MIN_CHUNK_SIZE;
+        for (int i = 0; i < 2 * perSlab; i++) {
+            cache.put(i, payload(i, 10));
+        }
+        Assert.assertEquals(2 * perSlab, cache.size());
+        // the cold entries are spread over both slabs
+        for (int i = 0; i < 2 * perSlab; i += 2) {
+            cache.get(i);
+        }
+
+        for (int i = 0; i < 100; i++) {
+            cache.put(-1 - i, payload(i, 1000));
+        }
+        Assert.assertEquals(0, cache.rejectedCount());
+        Assert.assertArrayEquals(payload(42, 1000), cache.get(-43));
+        Assert.assertTrue(cache.size() - 100 >= perSlab);
+        // the other size class keeps the slabs it is left
+        cache.put(-1000, payload(0, 10));
+        Assert.assertEquals(0, cache.rejectedCount());
+        Assert.assertTrue(cache.size() - 101 >= perSlab - 1);
+    }
+
+    @Test
+    public void testRejectedValueIsNotCached() {
+        OffHeapCache<Integer, byte[]> cache = CacheBuilder.newBuilder()
+                .maximumWeight(SlabAllocator.DEFAULT_SLAB_SIZE)
+                .buildOffHeap(ValueCodecs.bytes());
+        cache.put(1, payload(1, 10));
+        Assert.assertArrayEquals(payload(1, 10), cache.put(1, new byte[SlabAllocator.DEFAULT_SLAB_SIZE + 1]));
+        Assert.assertNull(cache.get(1));
+        Assert.assertEquals(1, cache.rejectedCount());
+    }
+
+    @Test
+    public void testJsonCodecs() {
+        OffHeapCache<Integer, Item> gson = CacheBuilder.newBuilder()
+                .maximumWeight(1 << 20)
+                .buildOffHeap(ValueCodecs.<Item>gson(Item.class));
+        gson.put(1, new Item("名字", 3));
+        Assert.assertEquals(new Item("名字", 3), gson.get(1));
+
+        OffHeapCache<Integer, Item> fastjson = CacheBuilder.newBuilder()
+                .maximumWeight(1 << 20)
+                .buildOffHeap(ValueCodecs.fastjson(Item.class));
+        fastjson.put(1, new Item("名字", 3));
+        Assert.assertEquals(new Item("名字", 3), fastjson.get(1));
+    }
+
+    @Test
+    public void testConcurrentReadersNeverSeeRecycledChunks() throws InterruptedException {
+        OffHeapCache<Integer, byte[]> cache = CacheBuilder.newBuilder()
+                .maximumWeight(64 * 1024)
+                .buildOffHeap(ValueCodecs.bytes());
+        AtomicInteger corrupted = new AtomicInteger();
+        ExecutorService executor = Executors.newFixedThreadPool(8);
+        for (int t = 0; t < 8; t++) {
+            executor.execute(() -> {
+                ThreadLocalRandom random = ThreadLocalRandom.current();
+                for (int i = 0; i < 20000; i++) {
+                    int key = random.nextInt(200);
+                    byte[] value = cache.get(key);
+                    if (value == null) {
+                        cache.put(key, payload(key, 200 + key));
+                    } else if (!Arrays.equals(payload(key, 200 + key), value)) {
+                        corrupted.incrementAndGet();
+                    }
+                }
+            });
+        }
+        executor.shutdown();
+        Assert.assertTrue(executor.awaitTermination(1, TimeUnit.MINUTES));
+        Assert.assertEquals(0, corrupted.get());
+        Assert.assertTrue(cache.weightedSize() <= 64 * 1024);
+    }
+
+    public static class Item {
+        private String name;
+        private int count;
+
+        public Item() {
+        }
+
+        Item(String name, int count) {
+            this.name = name;
+            this.count = count;
+        }
+
+        public String getName() {
+            return name;
+        }
+
+        public void setName(String name) {
+            this.name = name;
+        }
+
+        public int getCount() {
+            return count;
+        }
+
+        public void setCount(int count) {
+            this.count = count;
+        }
+
+        @Override
+        public boolean equals(Object o) {
+            if (!(o instanceof Item)) {
+                return false;
+            }
+            Item item = (Item) o;
+            return count == item.count && name.equals(item.name);
+        }
+
+        @Override
+        public int hashCode() {
+            return name.hashCode() * 31 + count;
+        }
+    }
+}
@@ -0,0 +1,66 @@
+package com.esfak47.common.utils.cache;
+
+import org.junit.Assert;
+import org.junit.Test;
+
+import java.util.Random;
+
+/**
+ * @author tony
+ */
+public class TinyLfuCacheTest {
+
+    /**
+     * a popular key range interleaved with a scan over one-off keys
+     */
+    private static int[] scanTrace() {
+        Random random = new Random(47);
+        int[] trace = new int[200000];
+        int scanKey = 1000000;
+        for (int i = 0; i < trace.length; i++) {
+            trace[i] = (i & 1) == 0 ? random.nextInt(100) : scanKey++;
+        }
+        return trace;
+    }
+
+    private static double hitRatio(Cache<Integer, Integer> cache, int[] trace) {
+        int hits = 0;
+        for (int key : trace) {
+            if (cache.get(key) != null) {
+                hits++;
+            } else {
+                cache.put(key, key);
+            }
+        }
+        return (double) hits / trace.length;
+    }
+
+    @Test
+    public void testScanResistance() {
+        int[] trace = scanTrace();
+        double lru = hitRatio(new LRUCache<>(150), trace);
+        double concurrentLru = hitRatio(new ConcurrentLRUCache<>(150), trace);
+        double tinyLfu = hitRatio(new TinyLfuCache<>(150), trace);
+        Assert.assertTrue("lru " + lru + " tinyLfu " + tinyLfu, tinyLfu > lru);
+        Assert.assertTrue("lru " + concurrentLru + " tinyLfu " + tinyLfu, tinyLfu > concurrentLru);
+        Assert.assertTrue(tinyLfu > 0.45);
+    }
+
+    @Test
+    public void testCapacity() {
+        TinyLfuCache<Integer, Integer> cache = new TinyLfuCache<>(100);
+        for (int i = 0; i < 1000; i++) {
+            cache.put(i, i);
+            cache.get(i % 10);
+        }
+        Assert.assertEquals(100, cache.size());
+        for (int i = 0; i < 10; i++) {
+            Assert.assertEquals(Integer.valueOf(i), cache.get(i));
+        }
+        cache.setMaxCapacity(20);
+        Assert.assertEquals(20, cache.size());
+        Assert.assertEquals(Integer.valueOf(1), cache.remove(1));
+        cache.clear();
+        Assert.assertTrue(cache.isEmpty());
+    }
+}
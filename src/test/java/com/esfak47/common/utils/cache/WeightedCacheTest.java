@@ -0,0 +1,84 @@
+package com.esfak47.common.utils.cache;
+
+import org.junit.Assert;
+import org.junit.Test;
+
+/**
+ * @author tony
+ */
+public class WeightedCacheTest {
+
+    private static AbstractConcurrentCache<Integer, byte[]> build(EvictionPolicy evictionPolicy, long maximumWeight) {
+        return (AbstractConcurrentCache<Integer, byte[]>) CacheBuilder.newBuilder()
+                .maximumWeight(maximumWeight)
+                .weigher((Integer key, byte[] value) -> value.length)
+                .evictionPolicy(evictionPolicy)
+                .<Integer, byte[]>build();
+    }
+
+    @Test
+    public void testLruEvictsByWeight() {
+        AbstractConcurrentCache<Integer, byte[]> cache = build(EvictionPolicy.LRU, 100);
+        for (int i = 0; i < 10; i++) {
+            cache.put(i, new byte[10]);
+        }
+        Assert.assertEquals(100, cache.weightedSize());
+        cache.get(0);
+        cache.put(10, new byte[25]);
+        Assert.assertEquals(95, cache.weightedSize());
+        Assert.assertNotNull(cache.get(0));
+        Assert.assertNull(cache.get(1));
+        Assert.assertNull(cache.get(2));
+        Assert.assertNull(cache.get(3));
+        Assert.assertNotNull(cache.get(4));
+
+        cache.put(10, new byte[5]);
+        Assert.assertEquals(75, cache.weightedSize());
+        cache.remove(10);
+        Assert.assertEquals(70, cache.weightedSize());
+        cache.setMaximumWeight(30);
+        Assert.assertEquals(30, cache.weightedSize());
+        cache.clear();
+        Assert.assertEquals(0, cache.weightedSize());
+    }
+
+    @Test
+    public void testTinyLfuStaysUnderMaximumWeight() {
+        AbstractConcurrentCache<Integer, byte[]> cache = build(EvictionPolicy.TINY_LFU, 1000);
+        for (int i = 0; i < 10000; i++) {
+            cache.put(i % 500, new byte[i % 37]);
+            cache.get(i % 50);
+            Assert.assertTrue(cache.weightedSize() <= 1000);
+        }
+        long sum = 0;
+        for (int i = 0; i < 500; i++) {
+            byte[] value = cache.get(i);
+            sum += value == null ? 0 : value.length;
+        }
+        cache.cleanUp();
+        Assert.assertEquals(sum, cache.weightedSize());
+    }
+
+    @Test
+    public void testEntryHeavierThanMaximumIsNotKept() {
+        AbstractConcurrentCache<Integer, byte[]> cache = build(EvictionPolicy.LRU, 10);
+        cache.put(1, new byte[5]);
+        cache.put(2, new byte[11]);
+        Assert.assertNull(cache.get(2));
+        Assert.assertEquals(0, cache.weightedSize());
+        cache.put(3, new byte[10]);
+        Assert.assertEquals(10, cache.weightedSize());
+    }
+
+    @Test(expected = IllegalArgumentException.class)
+    public void testWeigherRequiresMaximumWeight() {
+        CacheBuilder.newBuilder().weigher(Weighers.string()).build();
+    }
+
+    @Test
+    public void testSizeOf() {
+        Assert.assertEquals(24 + 24, Weighers.sizeOf("abcd"));
+        Assert.assertEquals(32, Weighers.sizeOf(new byte[10]));
+        Assert.assertEquals(24 + 48, Weighers.sizeOf(new StringBuilder()));
+    }
+}
@@ -0,0 +1,133 @@
+package com.esfak47.common.utils.id;
+
+import org.junit.Assert;
+import org.junit.Test;
+
+import java.lang.reflect.Field;
+import java.util.Arrays;
+import java.util.HashSet;
+import java.util.Set;
+import java.util.UUID;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * @author tony
+ */
+public class EagerEyeIdGeneratorTest {
+
+    private final EagerEyeIdGenerator generator = new EagerEyeIdGenerator();
+
+    private static void assertLayout(String expected, String actual) {
+        Assert.assertEquals(EagerEyeIdGenerator.ID_LENGTH, actual.length());
+        Assert.assertEquals(expected.substring(0, 8), actual.substring(0, 8));
+        Assert.assertTrue(actual, actual.substring(8, 27).chars().allMatch(Character::isDigit));
+        Assert.assertEquals(expected.substring(27), actual.substring(27));
+    }
+
+    @Test
+    public void testWriteAndAppend() {
+        String id = generator.generateId();
+        Assert.assertEquals(EagerEyeIdGenerator.ID_LENGTH, id.length());
+        Assert.assertEquals('d', id.charAt(27));
+
+        char[] chars = new char[EagerEyeIdGenerator.ID_LENGTH + 2];
+        Assert.assertEquals(chars.length, generator.writeId(chars, 2));
+        assertLayout(id, new String(chars, 2, EagerEyeIdGenerator.ID_LENGTH));
+
+        StringBuilder sb = new StringBuilder("trace=");
+        Assert.assertSame(sb, generator.appendId(sb));
+        assertLayout(id, sb.substring(6));
+        Assert.assertNotEquals(id, sb.substring(6));
+    }
+
+    @Test
+    public void testUUIDReadsTheIdAsHex() {
+        String id = generator.generateId();
+        UUID uuid = generator.generateUUID();
+        String hex = uuid.toString().replace("-", "");
+        assertLayout(id, hex);
+        long timestamp = Long.parseLong(hex.substring(8, 21));
+        Assert.assertTrue(Math.abs(System.currentTimeMillis() - timestamp) < 60_000);
+
+        UUID[] uuids = new UUID[3];
+        generator.generateUUIDs(uuids);
+        for (UUID batched : uuids) {
+            assertLayout(id, batched.toString().replace("-", ""));
+        }
+    }
+
+    @Test
+    public void testConcurrentIdsAreUnique() throws InterruptedException {
+        Set<String> ids = ConcurrentHashMap.newKeySet();
+        int threads = 4;
+        CountDownLatch done = new CountDownLatch(threads);
+        for (int t = 0; t < threads; t++) {
+            new Thread(() -> {
+                String[] batch = new String[5];
+                for (int i = 0; i < 10000; i++) {
+                    ids.add(generator.generateId());
+                    generator.generateIds(batch);
+                    ids.addAll(Arrays.asList(batch));
+                }
+                done.countDown();
+            }).start();
+        }
+        done.await();
+        Assert.assertEquals(threads * 10000 * 6, ids.size());
+    }
+
+    @Test
+    public void testSpinKeepsTheLayout() {
+        // more ids than a millisecond holds, the batch has to move on to the next millisecond
+        String[] ids = new String[910_000];
+        generator.generateIds(ids);
+        long previous = 0;
+        for (String id : ids) {
+            Assert.assertEquals(EagerEyeIdGenerator.ID_LENGTH, id.length());
+            long timestamp = Long.parseLong(id.substring(8, 21));
+            Assert.assertTrue(timestamp >= previous);
+            previous = timestamp;
+        }
+        Assert.assertNotEquals(ids[0].substring(8, 21), ids[ids.length - 1].substring(8, 21));
+    }
+
+    @Test
+    public void testWidenGrowsTheSequence() {
+        EagerEyeIdGenerator widening = EagerEyeIdGenerator.withOverflowPolicy(EagerEyeIdGenerator.OverflowPolicy.WIDEN);
+        String[] ids = new String[910_000];
+        widening.generateIds(ids);
+        String last = ids[ids.length - 1];
+        // the whole batch fits in one millisecond, with 7 digits for the last sequences
+        Assert.assertEquals(ids[0].substring(8, 21), last.substring(8, 21));
+        Assert.assertEquals(EagerEyeIdGenerator.ID_LENGTH + 1, last.length());
+        Assert.assertEquals('d', last.charAt(28));
+        Assert.assertEquals(EagerEyeIdGenerator.ID_LENGTH, widening.generateUUID().toString().replace("-", "").length());
+    }
+
+    @Test
+    public void testSpinAfterWidenOnTheSameThread() throws ReflectiveOperationException {
+        EagerEyeIdGenerator widening = EagerEyeIdGenerator.withOverflowPolicy(EagerEyeIdGenerator.OverflowPolicy.WIDEN);
+        Field stateField = EagerEyeIdGenerator.class.getDeclaredField("STATE");
+        stateField.setAccessible(true);
+        AtomicLong state = (AtomicLong) stateField.get(null);
+        String widened;
+        do {
+            // use up the 6 digits sequences of the current millisecond
+            state.set(System.currentTimeMillis() << 21 | 900_000);
+            widened = widening.generateId();
+        } while (widened.length() == EagerEyeIdGenerator.ID_LENGTH);
+        Assert.assertEquals(EagerEyeIdGenerator.ID_LENGTH + 1, widened.length());
+
+        // the rest of the widened block of the thread is not used by the spinning calls
+        Set<UUID> uuids = new HashSet<>();
+        for (int i = 0; i < 10; i++) {
+            UUID uuid = generator.generateUUID();
+            String hex = uuid.toString().replace("-", "");
+            Assert.assertTrue(hex, Integer.parseInt(hex.substring(21, 27)) >= 100_000);
+            Assert.assertTrue(uuids.add(uuid));
+        }
+        Assert.assertEquals(EagerEyeIdGenerator.ID_LENGTH, generator.generateId().length());
+    }
+}
@@ -0,0 +1,145 @@
+package com.esfak47.common.utils.id;
+
+import org.junit.Assert;
+import org.junit.Test;
+
+import java.nio.charset.StandardCharsets;
+import java.util.Arrays;
+import java.util.List;
+import java.util.UUID;
+import java.util.concurrent.ThreadLocalRandom;
+
+/**
+ * @author tony
+ */
+public class IdEncoderTest {
+
+    private static final List<IdEncoder> ENCODERS = Arrays.asList(IdEncoder.HEX, IdEncoder.CROCKFORD_BASE32,
+            IdEncoder.BASE62);
+
+    private static final long[] EDGES = {0, 1, 61, 62, Long.MAX_VALUE, Long.MIN_VALUE, -1};
+
+    @Test
+    public void testLengths() {
+        Assert.assertEquals(16, IdEncoder.HEX.longLength());
+        Assert.assertEquals(32, IdEncoder.HEX.uuidLength());
+        Assert.assertEquals(13, IdEncoder.CROCKFORD_BASE32.longLength());
+        Assert.assertEquals(26, IdEncoder.CROCKFORD_BASE32.uuidLength());
+        Assert.assertEquals(11, IdEncoder.BASE62.longLength());
+        Assert.assertEquals(22, IdEncoder.BASE62.uuidLength());
+    }
+
+    @Test
+    public void testKnownValues() {
+        Assert.assertEquals(Long.toHexString(0xfedcba9876543210L), IdEncoder.HEX.encode(0xfedcba9876543210L));
+        Assert.assertEquals("000000000000000f", IdEncoder.HEX.encode(15));
+        UUID uuid = UUID.randomUUID();
+        Assert.assertEquals(uuid.toString().replace("-", ""), IdEncoder.HEX.encode(uuid));
+        Assert.assertEquals("0000000000010", IdEncoder.CROCKFORD_BASE32.encode(32));
+        Assert.assertEquals("FZZZZZZZZZZZZ", IdEncoder.CROCKFORD_BASE32.encode(-1));
+        Assert.assertEquals("0000000000z", IdEncoder.BASE62.encode(61));
+        Assert.assertEquals("LygHa16AHYF", IdEncoder.BASE62.encode(-1));
+        Assert.assertEquals(TimeOrderedIdGenerator.toBase32(uuid.getMostSignificantBits(),
+                uuid.getLeastSignificantBits()), IdEncoder.CROCKFORD_BASE32.encode(uuid));
+    }
+
+    @Test
+    public void testRoundTrip() {
+        ThreadLocalRandom random = ThreadLocalRandom.current();
+        for (IdEncoder encoder : ENCODERS) {
+            for (int i = 0; i < 1000; i++) {
+                long value = i < EDGES.length ? EDGES[i] : random.nextLong();
+                String encoded = encoder.encode(value);
+                Assert.assertEquals(encoder.longLength(), encoded.length());
+                Assert.assertEquals(value, encoder.decodeLong(encoded));
+
+                UUID uuid = new UUID(value, random.nextLong());
+                Assert.assertEquals(uuid, encoder.decodeUUID(encoder.encode(uuid)));
+            }
+        }
+    }
+
+    @Test
+    public void testTargets() {
+        UUID uuid = UUID.randomUUID();
+        for (IdEncoder encoder : ENCODERS) {
+            String expected = encoder.encode(uuid);
+            int length = encoder.uuidLength();
+
+            char[] chars = new char[length + 3];
+            Assert.assertEquals(length + 3, encoder.encode(uuid, chars, 3));
+            Assert.assertEquals(expected, new String(chars, 3, length));
+
+            byte[] bytes = new byte[length + 1];
+            Assert.assertEquals(length + 1, encoder.encode(uuid, bytes, 1));
+            Assert.assertEquals(expected, new String(bytes, 1, length, StandardCharsets.US_ASCII));
+
+            StringBuilder sb = new StringBuilder("id=");
+            Assert.assertSame(sb, encoder.encode(uuid, sb));
+            Assert.assertEquals("id=" + expected, sb.toString());
+            Assert.assertEquals(uuid, encoder.decodeUUID(sb, 3, sb.length()));
+
+            sb.setLength(0);
+            encoder.encode(42L, sb).append(';');
+            Assert.assertEquals(42L, encoder.decodeLong(sb, 0, sb.length() - 1));
+        }
+    }
+
+    @Test
+    public void testOrderIsPreserved() {
+        ThreadLocalRandom random = ThreadLocalRandom.current();
+        for (IdEncoder encoder : ENCODERS) {
+            for (int i = 0; i < 1000; i++) {
+                long a = random.nextLong();
+                long b = random.nextLong();
+                Assert.assertEquals(Integer.signum(Long.compareUnsigned(a, b)),
+                        Integer.signum(encoder.encode(a).compareTo(encoder.encode(b))));
+            }
+        }
+    }
+
+    @Test
+    public void testLenientBase32() {
+        long value = IdEncoder.CROCKFORD_BASE32.decodeLong("0000000000010");
+        Assert.assertEquals(32, value);
+        Assert.assertEquals(value, IdEncoder.CROCKFORD_BASE32.decodeLong("OOOOOOOOOOOLo"));
+        Assert.assertEquals(0xabL, IdEncoder.HEX.decodeLong("00000000000000AB"));
+    }
+
+    @Test
+    public void testInvalidInput() {
+        for (String invalid : new String[]{"12", "0000000000000000000", "000000000000000g"}) {
+            try {
+                IdEncoder.HEX.decodeLong(invalid);
+                Assert.fail(invalid);
+            } catch (IllegalArgumentException expected) {
+                // expected
+            }
+        }
+        for (String overflow : new String[]{"G000000000000", "LygHa16AHYG", "zzzzzzzzzzz"}) {
+            IdEncoder encoder = overflow.length() == 13 ? IdEncoder.CROCKFORD_BASE32 : IdEncoder.BASE62;
+            try {
+                encoder.decodeLong(overflow);
+                Assert.fail(overflow);
+            } catch (IllegalArgumentException expected) {
+                // expected
+            }
+        }
+        try {
+            IdEncoder.CROCKFORD_BASE32.decodeUUID("80000000000000000000000000");
+            Assert.fail();
+        } catch (IllegalArgumentException expected) {
+            // expected
+        }
+        Assert.assertEquals(-1L, IdEncoder.BASE62.decodeLong("LygHa16AHYF"));
+    }
+
+    @Test
+    public void testGenerators() {
+        Assert.assertEquals(22, new ThreadLocalRandomIdGenerator().generateId(IdEncoder.BASE62).length());
+        SnowflakeIdGenerator snowflake = SnowflakeIdGenerator.of(1);
+        long before = snowflake.generateLongId();
+        long encoded = IdEncoder.BASE62.decodeLong(snowflake.generateId(IdEncoder.BASE62));
+        Assert.assertTrue(encoded > before);
+    }
+}
@@ -0,0 +1,80 @@
+package com.esfak47.common.utils.id;
+
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * Measures the UUID throughput of the random generators from 1 to 64 threads. Not a test, run it with
+ * {@code java -cp target/classes:target/test-classes com.esfak47.common.utils.id.IdGeneratorBenchmark [seconds]}.
+ *
+ * @author tony
+ */
+public class IdGeneratorBenchmark {
+
+    private static final int[] THREADS = {1, 2, 4, 8, 16, 32, 64};
+
+    public static void main(String[] args) throws InterruptedException {
+        long millis = TimeUnit.SECONDS.toMillis(args.length > 0 ? Long.parseLong(args[0]) : 2);
+        IdGenerator[] generators = {
+                new AlternativeJdkIdGenerator(),
+                new ThreadLocalRandomIdGenerator(),
+                new ThreadLocalRandomIdGenerator.Secure(),
+                new JdkIdGenerator()
+        };
+        System.out.printf("%-36s", "threads");
+        for (int threads : THREADS) {
+            System.out.printf("%12d", threads);
+        }
+        System.out.println();
+        for (IdGenerator generator : generators) {
+            // warm up
+            run(generator, 1, millis);
+            System.out.printf("%-36s", generator instanceof ThreadLocalRandomIdGenerator.Secure
+                    ? "ThreadLocalRandomIdGenerator.Secure" : generator.getClass().getSimpleName());
+            for (int threads : THREADS) {
+                System.out.printf("%10.1fM", run(generator, threads, millis) / 1e6);
+            }
+            System.out.println();
+        }
+    }
+
+    /**
+     * @return the number of UUIDs generated per second
+     */
+    private static double run(IdGenerator generator, int threads, long millis) throws InterruptedException {
+        AtomicBoolean stop = new AtomicBoolean();
+        LongAdder count = new LongAdder();
+        CountDownLatch started = new CountDownLatch(threads);
+        CountDownLatch go = new CountDownLatch(1);
+        CountDownLatch done = new CountDownLatch(threads);
+        for (int t = 0; t < threads; t++) {
+            Thread thread = new Thread(() -> {
+                started.countDown();
+                try {
+                    go.await();
+                } catch (InterruptedException e) {
+                    Thread.currentThread().interrupt();
+                }
+                long generated = 0;
+                long sink = 0;
+                while (!stop.get()) {
+                    sink += generator.generateUUID().getLeastSignificantBits();
+                    generated++;
+                }
+                count.add(generated + (sink == 42 ? 1 : 0));
+                done.countDown();
+            });
+            thread.setDaemon(true);
+            thread.start();
+        }
+        started.await();
+        long start = System.nanoTime();
+        go.countDown();
+        Thread.sleep(millis);
+        stop.set(true);
+        done.await();
+        return count.sum() / ((System.nanoTime() - start) / 1e9);
+    }
+}
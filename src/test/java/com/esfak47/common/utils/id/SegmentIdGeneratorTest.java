@@ -0,0 +1,128 @@
+package com.esfak47.common.utils.id;
+
+import com.esfak47.common.utils.cache.ConcurrentLongHashSet;
+import org.junit.Assert;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Paths;
+import java.util.List;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * @author tony
+ */
+public class SegmentIdGeneratorTest {
+
+    @Rule
+    public TemporaryFolder folder = new TemporaryFolder();
+
+    @Test
+    public void testFileStorePersistsLeases() throws IOException {
+        String directory = folder.getRoot().getPath();
+        FileSegmentStore store = new FileSegmentStore(directory);
+        Assert.assertEquals(1, store.lease("order", 100));
+        Assert.assertEquals(101, store.lease("order", 10));
+        Assert.assertEquals(1, store.lease("user", 10));
+        Assert.assertEquals(111, new FileSegmentStore(directory).lease("order", 10));
+        Assert.assertFalse(Files.exists(Paths.get(directory, "order.segment.tmp")));
+    }
+
+    @Test(expected = IOException.class)
+    public void testCorruptedFile() throws IOException {
+        Files.write(folder.getRoot().toPath().resolve("broken.segment"), new byte[]{1, 2, 3});
+        new FileSegmentStore(folder.getRoot().getPath()).lease("broken", 10);
+    }
+
+    @Test
+    public void testIdsIncreaseAcrossRestarts() throws IOException {
+        FileSegmentStore store = new FileSegmentStore(folder.getRoot().getPath());
+        SegmentIdGenerator generator = SegmentIdGenerator.newBuilder().store(store).name("order").segmentSize(100).build();
+        long previous = 0;
+        for (int i = 0; i < 250; i++) {
+            long id = generator.generateLongId();
+            Assert.assertTrue(id > previous);
+            previous = id;
+        }
+
+        SegmentIdGenerator restarted = SegmentIdGenerator.newBuilder().store(store).name("order").segmentSize(100).build();
+        Assert.assertTrue(restarted.generateLongId() > previous);
+    }
+
+    @Test
+    public void testPrefetchAtThreshold() {
+        List<Long> leases = new CopyOnWriteArrayList<>();
+        AtomicInteger next = new AtomicInteger();
+        SegmentStore store = (name, size) -> {
+            long first = next.getAndAdd((int) size);
+            leases.add(first);
+            return first;
+        };
+        SegmentIdGenerator generator = SegmentIdGenerator.newBuilder()
+                .store(store)
+                .segmentSize(10)
+                .prefetchThreshold(0.5)
+                .executor(Runnable::run)
+                .build();
+        for (int i = 0; i < 5; i++) {
+            Assert.assertEquals(i, generator.generateLongId());
+        }
+        Assert.assertEquals(1, leases.size());
+        generator.generateLongId();
+        // the sixth id crossed the threshold, the next segment is ready before it is needed
+        Assert.assertEquals(2, leases.size());
+        long[] ids = new long[10];
+        generator.generateLongIds(ids);
+        for (int i = 0; i < ids.length; i++) {
+            Assert.assertEquals(6 + i, ids[i]);
+        }
+        Assert.assertEquals(3, leases.size());
+    }
+
+    @Test(expected = IllegalStateException.class)
+    public void testStoreFailure() {
+        SegmentIdGenerator.newBuilder()
+                .store((name, size) -> {
+                    throw new IOException("unavailable");
+                })
+                .build()
+                .generateLongId();
+    }
+
+    @Test
+    public void testConcurrentIdsAreUnique() throws Exception {
+        SegmentIdGenerator generator = SegmentIdGenerator.newBuilder()
+                .store(new FileSegmentStore(folder.getRoot().getPath()))
+                .segmentSize(1000)
+                .build();
+        ConcurrentLongHashSet ids = new ConcurrentLongHashSet(200000);
+        int threads = 4;
+        CountDownLatch done = new CountDownLatch(threads);
+        AtomicInteger duplicates = new AtomicInteger();
+        for (int t = 0; t < threads; t++) {
+            new Thread(() -> {
+                long[] batch = new long[7];
+                for (int i = 0; i < 5000; i++) {
+                    if (!ids.add(generator.generateLongId())) {
+                        duplicates.incrementAndGet();
+                    }
+                    generator.generateLongIds(batch);
+                    for (long id : batch) {
+                        if (!ids.add(id)) {
+                            duplicates.incrementAndGet();
+                        }
+                    }
+                }
+                done.countDown();
+            }).start();
+        }
+        done.await();
+        Assert.assertEquals(0, duplicates.get());
+        Assert.assertEquals(threads * 5000 * 8, ids.size());
+    }
+}
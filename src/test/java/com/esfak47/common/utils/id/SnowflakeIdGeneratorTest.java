@@ -0,0 +1,107 @@
+package com.esfak47.common.utils.id;
+
+import com.esfak47.common.utils.cache.ConcurrentLongHashSet;
+import org.junit.Assert;
+import org.junit.Test;
+
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * @author tony
+ */
+public class SnowflakeIdGeneratorTest {
+
+    @Test
+    public void testLayout() {
+        AtomicLong clock = new AtomicLong(SnowflakeIdGenerator.DEFAULT_EPOCH + 1000);
+        SnowflakeIdGenerator generator = new SnowflakeIdGenerator(5, SnowflakeIdGenerator.DEFAULT_EPOCH, 10, clock::get);
+        long id = generator.generateLongId();
+        Assert.assertEquals(clock.get(), generator.timestampOf(id));
+        Assert.assertEquals(5, generator.workerIdOf(id));
+        Assert.assertEquals(id + 1, generator.generateLongId());
+        clock.incrementAndGet();
+        long next = generator.generateLongId();
+        Assert.assertEquals(clock.get(), generator.timestampOf(next));
+        Assert.assertEquals(0, next & 0xfff);
+        Assert.assertEquals(String.valueOf(next + 1), generator.generateId());
+    }
+
+    @Test
+    public void testBorrowsAheadAndToleratesSmallRollback() {
+        AtomicLong clock = new AtomicLong(SnowflakeIdGenerator.DEFAULT_EPOCH + 1000);
+        SnowflakeIdGenerator generator = new SnowflakeIdGenerator(1, SnowflakeIdGenerator.DEFAULT_EPOCH, 10, clock::get);
+        long previous = -1;
+        // the 4096 ids of the millisecond are used up, the next ones borrow the following millisecond
+        for (int i = 0; i < 4097; i++) {
+            long id = generator.generateLongId();
+            Assert.assertTrue(id > previous);
+            previous = id;
+        }
+        Assert.assertEquals(clock.get() + 1, generator.timestampOf(previous));
+
+        clock.addAndGet(-5);
+        long id = generator.generateLongId();
+        Assert.assertTrue(id > previous);
+        Assert.assertEquals(1, generator.workerIdOf(id));
+    }
+
+    @Test
+    public void testBatchSpansMilliseconds() {
+        AtomicLong clock = new AtomicLong(SnowflakeIdGenerator.DEFAULT_EPOCH + 1000);
+        SnowflakeIdGenerator generator = new SnowflakeIdGenerator(7, SnowflakeIdGenerator.DEFAULT_EPOCH, 10, clock::get);
+        long single = generator.generateLongId();
+        long[] ids = new long[10000];
+        generator.generateLongIds(ids);
+        Assert.assertEquals(single + 1, ids[0]);
+        for (int i = 1; i < ids.length; i++) {
+            Assert.assertTrue(ids[i] > ids[i - 1]);
+            Assert.assertEquals(7, generator.workerIdOf(ids[i]));
+        }
+        Assert.assertEquals(clock.get() + 2, generator.timestampOf(ids[ids.length - 1]));
+        Assert.assertTrue(generator.generateLongId() > ids[ids.length - 1]);
+    }
+
+    @Test(expected = IllegalStateException.class)
+    public void testLargeRollbackFails() {
+        AtomicLong clock = new AtomicLong(SnowflakeIdGenerator.DEFAULT_EPOCH + 1000);
+        SnowflakeIdGenerator generator = new SnowflakeIdGenerator(1, SnowflakeIdGenerator.DEFAULT_EPOCH, 10, clock::get);
+        generator.generateLongId();
+        clock.addAndGet(-11);
+        generator.generateLongId();
+    }
+
+    @Test
+    public void testConcurrentIdsAreUnique() throws InterruptedException {
+        SnowflakeIdGenerator generator = SnowflakeIdGenerator.of(3);
+        ConcurrentLongHashSet ids = new ConcurrentLongHashSet(400000);
+        int threads = 4;
+        CountDownLatch done = new CountDownLatch(threads);
+        AtomicInteger duplicates = new AtomicInteger();
+        for (int t = 0; t < threads; t++) {
+            new Thread(() -> {
+                for (int i = 0; i < 100000; i++) {
+                    if (!ids.add(generator.generateLongId())) {
+                        duplicates.incrementAndGet();
+                    }
+                }
+                done.countDown();
+            }).start();
+        }
+        done.await();
+        Assert.assertEquals(0, duplicates.get());
+        Assert.assertEquals(400000, ids.size());
+    }
+
+    @Test
+    public void testProvider() {
+        long first = IdGenerator.generateLongIdWithProvider("snowflake");
+        Assert.assertTrue(IdGenerator.generateLongIdWithProvider("snowflake") > first);
+    }
+
+    @Test(expected = UnsupportedOperationException.class)
+    public void testLongIdsNotSupported() {
+        new JdkIdGenerator().generateLongId();
+    }
+}
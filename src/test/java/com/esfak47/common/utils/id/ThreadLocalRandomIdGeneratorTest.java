@@ -0,0 +1,49 @@
+package com.esfak47.common.utils.id;
+
+import org.junit.Assert;
+import org.junit.Test;
+
+import java.util.HashSet;
+import java.util.Set;
+import java.util.UUID;
+
+/**
+ * @author tony
+ */
+public class ThreadLocalRandomIdGeneratorTest {
+
+    private static void assertRandomUUIDs(IdGenerator generator) {
+        Set<UUID> uuids = new HashSet<>();
+        for (int i = 0; i < 10000; i++) {
+            UUID uuid = generator.generateUUID();
+            Assert.assertEquals(4, uuid.version());
+            Assert.assertEquals(2, uuid.variant());
+            uuids.add(uuid);
+        }
+        Assert.assertEquals(10000, uuids.size());
+
+        String id = generator.generateId();
+        Assert.assertEquals(32, id.length());
+        UUID parsed = UUID.fromString(id.replaceFirst("(.{8})(.{4})(.{4})(.{4})(.{12})", "$1-$2-$3-$4-$5"));
+        Assert.assertEquals(4, parsed.version());
+        Assert.assertEquals(2, parsed.variant());
+    }
+
+    @Test
+    public void testThreadLocalRandom() {
+        assertRandomUUIDs(new ThreadLocalRandomIdGenerator());
+        Assert.assertEquals(4, IdGenerator.generateUUIDWithProvider("random").version());
+    }
+
+    @Test
+    public void testSecureSeeded() throws InterruptedException {
+        ThreadLocalRandomIdGenerator generator = new ThreadLocalRandomIdGenerator.Secure();
+        assertRandomUUIDs(generator);
+        UUID[] other = new UUID[1];
+        Thread thread = new Thread(() -> other[0] = generator.generateUUID());
+        thread.start();
+        thread.join();
+        Assert.assertNotEquals(generator.generateUUID(), other[0]);
+        Assert.assertEquals(4, IdGenerator.generateUUIDWithProvider("secureRandom").version());
+    }
+}
@@ -0,0 +1,75 @@
+package com.esfak47.common.utils.id;
+
+import org.junit.Assert;
+import org.junit.Test;
+
+import java.math.BigInteger;
+import java.nio.ByteBuffer;
+import java.util.UUID;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * @author tony
+ */
+public class TimeOrderedIdGeneratorTest {
+
+    private static BigInteger toBigInteger(UUID uuid) {
+        return new BigInteger(1, ByteBuffer.allocate(16)
+                .putLong(uuid.getMostSignificantBits())
+                .putLong(uuid.getLeastSignificantBits())
+                .array());
+    }
+
+    private static BigInteger decodeBase32(String id) {
+        BigInteger value = BigInteger.ZERO;
+        for (char c : id.toCharArray()) {
+            value = value.shiftLeft(5).add(BigInteger.valueOf("0123456789ABCDEFGHJKMNPQRSTVWXYZ".indexOf(c)));
+        }
+        return value;
+    }
+
+    @Test
+    public void testLayout() {
+        long now = System.currentTimeMillis();
+        UUID uuid = new TimeOrderedIdGenerator(() -> now).generateUUID();
+        Assert.assertEquals(7, uuid.version());
+        Assert.assertEquals(2, uuid.variant());
+        Assert.assertEquals(now, TimeOrderedIdGenerator.timestampOf(uuid));
+    }
+
+    @Test
+    public void testMonotonicWithinMillisecondAndOnRollback() {
+        AtomicLong clock = new AtomicLong(1_700_000_000_000L);
+        TimeOrderedIdGenerator generator = new TimeOrderedIdGenerator(clock::get);
+        BigInteger previous = BigInteger.valueOf(-1);
+        for (int i = 0; i < 5000; i++) {
+            if (i == 3000) {
+                clock.addAndGet(-10);
+            }
+            UUID uuid = generator.generateUUID();
+            BigInteger value = toBigInteger(uuid);
+            Assert.assertTrue(value.compareTo(previous) > 0);
+            previous = value;
+        }
+        // the counter overflowed once
+        Assert.assertEquals(1_700_000_000_001L, TimeOrderedIdGenerator.timestampOf(generator.generateUUID()));
+    }
+
+    @Test
+    public void testBase32() {
+        UUID uuid = new UUID(0x0123456789abcdefL, 0xfedcba9876543210L);
+        String id = TimeOrderedIdGenerator.toBase32(uuid.getMostSignificantBits(), uuid.getLeastSignificantBits());
+        Assert.assertEquals(26, id.length());
+        Assert.assertEquals(toBigInteger(uuid), decodeBase32(id));
+        Assert.assertEquals("7ZZZZZZZZZZZZZZZZZZZZZZZZZ", TimeOrderedIdGenerator.toBase32(-1, -1));
+
+        TimeOrderedIdGenerator generator = new TimeOrderedIdGenerator();
+        String previous = "";
+        for (int i = 0; i < 10000; i++) {
+            String next = generator.generateId();
+            Assert.assertTrue(next.compareTo(previous) > 0);
+            previous = next;
+        }
+        Assert.assertEquals(7, IdGenerator.generateUUIDWithProvider("uuidv7").version());
+    }
+}
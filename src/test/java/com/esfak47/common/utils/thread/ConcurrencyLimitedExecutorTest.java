@@ -0,0 +1,120 @@
+package com.esfak47.common.utils.thread;
+
+import org.junit.After;
+import org.junit.Assert;
+import org.junit.Test;
+
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * @author tony
+ */
+public class ConcurrencyLimitedExecutorTest {
+
+    private final ExecutorService delegate = Executors.newCachedThreadPool(new NamedThreadFactory("limited", true));
+
+    @After
+    public void tearDown() {
+        delegate.shutdownNow();
+    }
+
+    @Test
+    public void testLimit() throws InterruptedException {
+        ConcurrencyLimitedExecutor executor = new ConcurrencyLimitedExecutor(delegate, 3);
+        AtomicInteger running = new AtomicInteger();
+        AtomicInteger maxRunning = new AtomicInteger();
+        int tasks = 1000;
+        CountDownLatch done = new CountDownLatch(tasks);
+        for (int i = 0; i < tasks; i++) {
+            executor.execute(() -> {
+                int current = running.incrementAndGet();
+                maxRunning.accumulateAndGet(current, Math::max);
+                Thread.yield();
+                running.decrementAndGet();
+                done.countDown();
+            });
+        }
+        Assert.assertTrue(done.await(10, TimeUnit.SECONDS));
+        Assert.assertTrue(maxRunning.get() <= 3);
+        Assert.assertEquals(3, executor.getLimit());
+    }
+
+    @Test
+    public void testQueueSize() throws InterruptedException {
+        ConcurrencyLimitedExecutor executor = new ConcurrencyLimitedExecutor(delegate, 1);
+        CountDownLatch started = new CountDownLatch(1);
+        CountDownLatch release = new CountDownLatch(1);
+        CountDownLatch done = new CountDownLatch(3);
+        executor.execute(() -> {
+            started.countDown();
+            try {
+                release.await();
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+            }
+            done.countDown();
+        });
+        started.await();
+        executor.execute(done::countDown);
+        executor.execute(done::countDown);
+        Assert.assertEquals(1, executor.getActiveCount());
+        Assert.assertEquals(2, executor.getQueueSize());
+
+        release.countDown();
+        Assert.assertTrue(done.await(10, TimeUnit.SECONDS));
+        long deadline = System.nanoTime() + TimeUnit.SECONDS.toNanos(10);
+        while (executor.getActiveCount() != 0) {
+            Assert.assertTrue(System.nanoTime() < deadline);
+            Thread.sleep(1);
+        }
+        Assert.assertEquals(0, executor.getQueueSize());
+    }
+
+    @Test
+    public void testRemove() throws InterruptedException {
+        ConcurrencyLimitedExecutor executor = new ConcurrencyLimitedExecutor(delegate, 1);
+        CountDownLatch started = new CountDownLatch(1);
+        CountDownLatch release = new CountDownLatch(1);
+        executor.execute(() -> {
+            started.countDown();
+            try {
+                release.await();
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+            }
+        });
+        started.await();
+        AtomicInteger ran = new AtomicInteger();
+        Runnable removed = ran::incrementAndGet;
+        executor.execute(removed);
+        CountDownLatch done = new CountDownLatch(1);
+        executor.execute(done::countDown);
+        Assert.assertTrue(executor.remove(removed));
+        Assert.assertFalse(executor.remove(removed));
+        Assert.assertEquals(1, executor.getQueueSize());
+
+        release.countDown();
+        Assert.assertTrue(done.await(10, TimeUnit.SECONDS));
+        Assert.assertEquals(0, ran.get());
+    }
+
+    @Test
+    public void testRejected() {
+        delegate.shutdown();
+        ConcurrencyLimitedExecutor executor = new ConcurrencyLimitedExecutor(delegate, 1);
+        try {
+            executor.execute(() -> {
+            });
+            Assert.fail();
+        } catch (RejectedExecutionException expected) {
+            // expected
+        }
+        Assert.assertEquals(0, executor.getQueueSize());
+        Assert.assertEquals(0, executor.getActiveCount());
+    }
+}
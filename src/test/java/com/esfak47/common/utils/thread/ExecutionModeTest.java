@@ -0,0 +1,36 @@
+package com.esfak47.common.utils.thread;
+
+import org.junit.Assert;
+import org.junit.Test;
+
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+
+/**
+ * @author tony
+ */
+public class ExecutionModeTest {
+
+    @Test
+    public void testExecutors() throws ExecutionException, InterruptedException {
+        Assert.assertFalse(ExecutionMode.PLATFORM.isVirtual());
+        Assert.assertEquals(ExecutionMode.isVirtualThreadSupported(), ExecutionMode.VIRTUAL.isVirtual());
+        for (ExecutionMode mode : ExecutionMode.values()) {
+            ExecutorService executor = mode.newExecutor("mode-" + mode, 2);
+            try {
+                String name = executor.submit(() -> Thread.currentThread().getName()).get();
+                Assert.assertTrue(name, name.startsWith("mode-" + mode));
+            } finally {
+                executor.shutdownNow();
+            }
+        }
+    }
+
+    @Test
+    public void testVirtualThreadFactory() {
+        Thread thread = new NamedVirtualThreadFactory("virtual").newThread(() -> {
+        });
+        Assert.assertTrue(thread.getName(), thread.getName().startsWith("virtual"));
+        Assert.assertTrue(thread.isDaemon());
+    }
+}
@@ -0,0 +1,76 @@
+package com.esfak47.common.utils.thread;
+
+import org.junit.After;
+import org.junit.Assert;
+import org.junit.Test;
+
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * @author tony
+ */
+public class HashedWheelTimerTest {
+
+    private final HashedWheelTimer timer = new HashedWheelTimer("wheel", 1, TimeUnit.MILLISECONDS, 8);
+
+    @After
+    public void tearDown() {
+        timer.stop();
+    }
+
+    @Test
+    public void testDelays() throws InterruptedException {
+        int count = 10_000;
+        CountDownLatch done = new CountDownLatch(count);
+        AtomicInteger early = new AtomicInteger();
+        for (int i = 0; i < count; i++) {
+            // up to several turns of the wheel
+            long delay = i % 50;
+            long deadline = System.nanoTime() + TimeUnit.MILLISECONDS.toNanos(delay);
+            timer.newTimeout(() -> {
+                if (System.nanoTime() < deadline) {
+                    early.incrementAndGet();
+                }
+                done.countDown();
+            }, delay, TimeUnit.MILLISECONDS);
+        }
+        Assert.assertTrue(done.await(10, TimeUnit.SECONDS));
+        Assert.assertEquals(0, early.get());
+        Assert.assertEquals(0, timer.getPendingCount());
+    }
+
+    @Test
+    public void testCancel() throws InterruptedException {
+        AtomicInteger runs = new AtomicInteger();
+        HashedWheelTimer.Timeout cancelled = timer.newTimeout(runs::incrementAndGet, 20, TimeUnit.MILLISECONDS);
+        CountDownLatch done = new CountDownLatch(1);
+        HashedWheelTimer.Timeout expired = timer.newTimeout(done::countDown, 40, TimeUnit.MILLISECONDS);
+        Assert.assertEquals(2, timer.getPendingCount());
+        Assert.assertTrue(cancelled.cancel());
+        Assert.assertFalse(cancelled.cancel());
+        Assert.assertTrue(cancelled.isCancelled());
+        Assert.assertEquals(1, timer.getPendingCount());
+
+        Assert.assertTrue(done.await(10, TimeUnit.SECONDS));
+        Assert.assertTrue(expired.isExpired());
+        Assert.assertFalse(expired.cancel());
+        Assert.assertEquals(0, runs.get());
+    }
+
+    @Test
+    public void testStop() {
+        AtomicInteger runs = new AtomicInteger();
+        timer.newTimeout(runs::incrementAndGet, 1, TimeUnit.HOURS);
+        timer.stop();
+        try {
+            timer.newTimeout(runs::incrementAndGet, 0, TimeUnit.MILLISECONDS);
+            Assert.fail();
+        } catch (RejectedExecutionException expected) {
+            // expected
+        }
+        Assert.assertEquals(0, runs.get());
+    }
+}